@@ -5,19 +5,28 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.prefs.Preferences;
 
 import de.jstacs.fx.Messages.Level;
+import de.jstacs.fx.renderers.parameters.FileParameterRenderer;
 import de.jstacs.fx.renderers.parameters.ParameterSetRenderer;
+import de.jstacs.fx.repository.GarbageReport;
 import de.jstacs.fx.repository.ResultRepository;
 import de.jstacs.fx.repository.ResultRepositoryRenderer;
+import de.jstacs.fx.repository.WorkspaceStore;
 import de.jstacs.io.FileManager;
+import de.jstacs.parameters.FileParameter;
 import de.jstacs.parameters.Parameter;
 import de.jstacs.parameters.ParameterSet;
+import de.jstacs.results.Result;
 import de.jstacs.results.ResultSetResult;
 import de.jstacs.tools.JstacsTool;
 import de.jstacs.tools.ProgressUpdater;
@@ -25,7 +34,6 @@ import de.jstacs.tools.Protocol;
 import de.jstacs.tools.ToolParameterSet;
 import de.jstacs.tools.ToolResult;
 import de.jstacs.tools.ui.cli.CLI;
-import de.jstacs.utils.Compression;
 import de.jstacs.utils.Pair;
 import javafx.animation.Transition;
 import javafx.application.Application.Parameters;
@@ -37,7 +45,6 @@ import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
-import javafx.concurrent.Worker.State;
 import javafx.concurrent.WorkerStateEvent;
 import javafx.event.ActionEvent;
 import javafx.event.Event;
@@ -52,15 +59,19 @@ import javafx.scene.control.Button;
 import javafx.scene.control.ButtonBar.ButtonData;
 import javafx.scene.control.ButtonType;
 import javafx.scene.control.CheckBox;
+import javafx.scene.control.ComboBox;
 import javafx.scene.control.Control;
 import javafx.scene.control.Label;
 import javafx.scene.control.ProgressBar;
 import javafx.scene.control.ScrollPane;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.SpinnerValueFactory;
 import javafx.scene.control.SplitPane;
 import javafx.scene.control.Tab;
 import javafx.scene.control.TabPane;
 import javafx.scene.control.TabPane.TabClosingPolicy;
 import javafx.scene.control.TitledPane;
+import javafx.scene.control.Tooltip;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
@@ -76,6 +87,7 @@ import javafx.stage.Stage;
 import javafx.stage.StageStyle;
 import javafx.stage.Window;
 import javafx.util.Duration;
+import javafx.util.StringConverter;
 
 /**
  * Class that displays the main window of the JavaFX application, creates all necessary views, and mutually registers
@@ -91,6 +103,8 @@ import javafx.util.Duration;
  * A bottom bar displays the current progress of a running tool, allows for opening a list of all scheduled tasks,
  * and provides buttons for saving and loading the workspace.
  * 
+ * Tools may also be combined to a {@link Pipeline}, whose steps are submitted at once from the {@link PipelineViewer}.
+ * 
  * @author Jan Grau
  *
  */
@@ -222,6 +236,97 @@ public class Application {
 		
 	}
 	
+	/**
+	 * Protocol of a single job, which forwards its output to the shared {@link FXProtocol} line by line, where each line is prefixed
+	 * by the name of the job. Incomplete lines are kept until they are completed or the protocol is {@link #flush() flushed}, so
+	 * the lines of concurrently running jobs are not interleaved.
+	 * 
+	 * @author Jan Grau
+	 *
+	 */
+	private static class JobProtocol implements Protocol{
+		
+		private Protocol protocol;
+		private String prefix;
+		private StringBuilder line;
+		
+		/**
+		 * Creates a new protocol for a job.
+		 * @param protocol the shared protocol
+		 * @param name the name of the job
+		 */
+		private JobProtocol(Protocol protocol, String name){
+			this.protocol = protocol;
+			this.prefix = "["+name+"] ";
+			this.line = new StringBuilder();
+		}
+		
+		private String prefix(String str){
+			StringBuilder sb = new StringBuilder( str.length()+prefix.length() );
+			boolean start = true;
+			for(int i=0;i<str.length();i++){
+				if(start){
+					sb.append( prefix );
+				}
+				char c = str.charAt( i );
+				sb.append( c );
+				start = c == '\n';
+			}
+			return sb.toString();
+		}
+		
+		@Override
+		public synchronized void append( String str ) {
+			line.append( str );
+			int end = line.lastIndexOf( "\n" );
+			if(end >= 0){
+				protocol.append( prefix( line.substring( 0, end+1 ) ) );
+				line.delete( 0, end+1 );
+			}
+		}
+
+		@Override
+		public synchronized void appendHeading( String heading ) {
+			flush();
+			protocol.appendHeading( prefix( heading ) );
+		}
+
+		@Override
+		public synchronized void appendWarning( String warning ) {
+			flush();
+			protocol.appendWarning( prefix( warning ) );
+		}
+
+		@Override
+		public synchronized void appendThrowable( Throwable th ) {
+			flush();
+			StringWriter str = new StringWriter();
+			th.printStackTrace( new PrintWriter( str ) );
+			String strstr = str.toString();
+			if(strstr.length() > 5000){
+				strstr = strstr.substring( 0, 5000 )+"\n";
+			}
+			protocol.appendWarning( prefix( strstr ) );
+		}
+
+		@Override
+		public void appendVerbatim( String verbatim ) {
+			append( verbatim );
+		}
+
+		/**
+		 * Forwards the incomplete last line, if any.
+		 */
+		@Override
+		public synchronized void flush() {
+			if(line.length() > 0){
+				protocol.append( prefix( line.toString() )+"\n" );
+				line.setLength( 0 );
+			}
+		}
+		
+	}
+	
 	/**
 	 * Class that tests if all required parameter values have been set for a {@link JstacsTool} via {@link Parameter#hasDefaultOrIsSet()}.
 	 * Only if all parameters have been set, the provided "Run" button is activated. 
@@ -278,6 +383,14 @@ public class Application {
 	 */
 	public static Window mainWindow;//TODO cleaner solution
 	
+	/**
+	 * The number of {@link Result}s restored from a workspace file that are added to the {@link ResultRepository} at once.
+	 */
+	private static final int LOAD_BATCH_SIZE = 100;
+	
+	private static final String USAGE = "Usage: [--storage=file|directory|memory] [--jobs=<number of concurrent jobs between 1 and "+JobScheduler.MAX_JOBS+">]"
+			+" [--memory=<megabytes of results kept in memory before spilling to disk, 0 for no limit>]";
+	
 	private ObservableList<Task<ResultSetResult>> enqueuedJobs;
 	private HashMap<Task<ResultSetResult>,Pair<String,Date>> nameMap;
 	
@@ -285,11 +398,15 @@ public class Application {
 	private boolean showStackTraceInProtocol;
 	private JstacsTool[] tools;
 	private SplitPane parameterMain;
-	private ProgressBar progressBar;
+	private HBox progressBars;
+	private JobScheduler scheduler;
 	private Label enqueued;
 	private Messages messageOverlay;
 	private FXProtocol protocol;
+	private int jobNumber;
 	private TaskViewer tasks;
+	private Pipeline pipeline;
+	private PipelineViewer pipelineViewer;
 
 	private HashMap<String,TitledPane> paneMap;
 	
@@ -309,6 +426,10 @@ public class Application {
 	/**
 	 * Creates a new {@link Application} with the provided title in the main window for
 	 * the given {@link JstacsTool}s.
+	 * The storage backend of the autosaved workspace may be selected by the named parameter <code>--storage=</code> with one of the values
+	 * <code>file</code> (default), <code>directory</code>, or <code>memory</code> (see {@link WorkspaceStore}).
+	 * Spilling of results to disk is switched on by the named parameter <code>--memory=</code> with the memory budget in megabytes
+	 * (see {@link ResultRepository#memoryBudget}).
 	 * @param title the title of the main window
 	 * @param showStackTraceInProtocol if stack traces of {@link Exception}s that are thrown by {@link JstacsTool} show be shown as warnings in the protocol
 	 * @param tools the tools used in this application
@@ -319,9 +440,60 @@ public class Application {
 		this.tools = tools;
 		enqueuedJobs = FXCollections.<Task<ResultSetResult>>observableArrayList(e -> new Observable[] {e.stateProperty(),e.exceptionProperty(),e.onRunningProperty(),e.onSucceededProperty(),e.onFailedProperty()});
 		nameMap = new HashMap<>();
-		this.tasks = new TaskViewer( enqueuedJobs, nameMap );
+		this.scheduler = new JobScheduler( enqueuedJobs );
+		this.tasks = new TaskViewer( scheduler, enqueuedJobs, nameMap );
+		this.pipeline = new Pipeline();
+		FileParameterRenderer.setPipeline( pipeline );
+		this.pipelineViewer = new PipelineViewer( pipeline, new Runnable() {
+			
+			@Override
+			public void run() {
+				runPipeline();
+			}
+			
+		} );
 		this.paneMap = new HashMap<>();
 		this.showStackTraceInProtocol = showStackTraceInProtocol;
+		if(pars != null && pars.getNamed().containsKey( "storage" )){
+			try{
+				ResultRepository.storage.set( WorkspaceStore.forName( pars.getNamed().get( "storage" ) ) );
+			}catch(IllegalArgumentException e){
+				System.err.println( e.getMessage()+", using "+ResultRepository.storage.get().getName()+".\n"+USAGE );
+			}
+		}
+		JobScheduler.maxConcurrentJobs.set( prefs.getInt( "maxConcurrentJobs", JobScheduler.maxConcurrentJobs.get() ) );
+		if(pars != null && pars.getNamed().containsKey( "jobs" )){
+			String jobs = pars.getNamed().get( "jobs" );
+			try{
+				int n = Integer.parseInt( jobs.trim() );
+				if(n < 1 || n > JobScheduler.MAX_JOBS){
+					throw new NumberFormatException();
+				}
+				JobScheduler.maxConcurrentJobs.set( n );
+			}catch(NumberFormatException e){
+				System.err.println( "Invalid number of concurrent jobs: "+jobs+", using "+JobScheduler.maxConcurrentJobs.get()+".\n"+USAGE );
+			}
+		}
+		if(pars != null && pars.getNamed().containsKey( "memory" )){
+			String memory = pars.getNamed().get( "memory" );
+			try{
+				long mb = Long.parseLong( memory.trim() );
+				if(mb < 0 || mb > Long.MAX_VALUE/(1024L*1024L)){
+					throw new NumberFormatException();
+				}
+				ResultRepository.memoryBudget.set( mb*1024L*1024L );
+			}catch(NumberFormatException e){
+				System.err.println( "Invalid memory budget: "+memory+", results are not spilled to disk.\n"+USAGE );
+			}
+		}
+		JobScheduler.maxConcurrentJobs.addListener( new ChangeListener<Number>() {
+
+			@Override
+			public void changed( ObservableValue<? extends Number> arg0, Number arg1, Number arg2 ) {
+				prefs.putInt( "maxConcurrentJobs", arg2.intValue() );
+			}
+
+		} );
 	}
 	
 	
@@ -340,6 +512,57 @@ public class Application {
 		
 		Pane p = renderer.render( parameters2, new ToolReady( b, parameters2 ) );
 		
+		//thread budget of the next run, remembered as default of the tool; 0 for a share of the cores determined by the scheduler
+		final Spinner<Integer> threads = new Spinner<>();
+		SpinnerValueFactory.IntegerSpinnerValueFactory threadsFactory = new SpinnerValueFactory.IntegerSpinnerValueFactory( 0, scheduler.getCores(), 
+				Math.min( scheduler.getCores(), prefs.getInt( "threads."+tool.getShortName(), 0 ) ) );
+		threadsFactory.setConverter( new StringConverter<Integer>() {
+
+			@Override
+			public String toString( Integer object ) {
+				return object == null || object == 0 ? "auto" : object.toString();
+			}
+
+			@Override
+			public Integer fromString( String string ) {
+				try{
+					return "auto".equals( string.trim() ) ? 0 : Integer.parseInt( string.trim() );
+				}catch(NumberFormatException e){
+					return 0;
+				}
+			}
+			
+		} );
+		threads.setValueFactory( threadsFactory );
+		threads.setEditable( true );
+		threads.setPrefWidth( 80 );
+		threads.setTooltip( new Tooltip( "Number of threads used by "+tool.getToolName()+"; \"auto\" splits the cores among the running tasks" ) );
+		threads.valueProperty().addListener( new ChangeListener<Integer>() {
+
+			@Override
+			public void changed( ObservableValue<? extends Integer> arg0, Integer arg1, Integer arg2 ) {
+				prefs.putInt( "threads."+tool.getShortName(), arg2 );
+			}
+			
+		} );
+		
+		//priority of the next run, remembered as default of the tool
+		final ComboBox<JobScheduler.Priority> priority = new ComboBox<>( FXCollections.observableArrayList( JobScheduler.Priority.values() ) );
+		try{
+			priority.setValue( JobScheduler.Priority.valueOf( prefs.get( "priority."+tool.getShortName(), JobScheduler.Priority.NORMAL.name() ) ) );
+		}catch(IllegalArgumentException e){
+			priority.setValue( JobScheduler.Priority.NORMAL );
+		}
+		priority.setTooltip( new Tooltip( "Priority of "+tool.getToolName()+"; pending tasks of higher priority are started first" ) );
+		priority.valueProperty().addListener( new ChangeListener<JobScheduler.Priority>() {
+
+			@Override
+			public void changed( ObservableValue<? extends JobScheduler.Priority> arg0, JobScheduler.Priority arg1, JobScheduler.Priority arg2 ) {
+				prefs.put( "priority."+tool.getShortName(), arg2.name() );
+			}
+			
+		} );
+		
 		
 		
 		p.getChildren().add( error );
@@ -358,6 +581,39 @@ public class Application {
 					return;
 				}
 				
+				//outputs of pipeline steps only exist when the pipeline is run, the parameter holds an empty placeholder
+				Map<FileParameter, Pipeline.Output> outputs = FileParameterRenderer.getSelectedOutputs( parameters2 );
+				if(!outputs.isEmpty()){
+					StringBuffer names = new StringBuffer();
+					for(FileParameter par : outputs.keySet()){
+						names.append( "\n- "+par.getName()+": "+outputs.get( par ) );
+					}
+					Alert alert = new Alert( AlertType.CONFIRMATION );
+					alert.setTitle( "Run pipeline?" );
+					alert.setHeaderText( tool.getToolName()+" uses outputs of pipeline steps, which are only available when the pipeline is run." );
+					alert.setContentText( "Inputs bound to pipeline steps:"+names+"\n\nDo you want to add "+tool.getToolName()+" as step "+(pipeline.getSteps().size()+1)+
+							" and run the pipeline?" );
+					ButtonType cancel = new ButtonType( "Cancel", ButtonData.CANCEL_CLOSE );
+					ButtonType ok = new ButtonType( "Add and run pipeline", ButtonData.OK_DONE );
+					alert.getButtonTypes().setAll( cancel, ok );
+					
+					Optional<ButtonType> result = alert.showAndWait();
+					
+					if(result.isPresent() && result.get() == ok){
+						try{
+							pipeline.addStep( tool, parameters2, outputs, FileParameterRenderer.getSelectedResults( parameters2 ), threads.getValue(), priority.getValue() );
+						}catch(CloneNotSupportedException e){
+							messageOverlay.displayMessage("Internal error copying parameter values.", Level.WARNING);
+							return;
+						}
+						runPipeline();
+					}
+					return;
+				}
+				
+				//inputs selected from the repository, recorded as provenance of the result
+				final List<Result> inputs = FileParameterRenderer.getSelectedResults( parameters2 );
+				
 				final ToolParameterSet parameters;
 				try {
 					parameters = parameters2.clone();
@@ -376,128 +632,13 @@ public class Application {
 				//final ParameterSet tempPars = tempPars2;
 				
 				//parameterMain.setDisable( true );
-				//System.out.println("setting progress bar "+progressBar);
-				progressBar.setVisible( true );
-				
-				final Task<ResultSetResult> task = new Task<ResultSetResult>() {
-					
-					
-					@Override
-					protected ResultSetResult call() throws Exception {
-						ProgressUpdater progress = new ProgressUpdater(){
-							
-							@Override
-							public void setCurrent(double d){
-								super.setCurrent( d );
-								updateProgress( getPercentage(), 1.0 );
-								
-							}
-							
-						};
-						
-						protocol.appendHeading( "Starting "+tool.getToolName()+"...\n\n" );
-						try{
-							
-							ToolResult res = tool.run( parameters, protocol, progress, Runtime.getRuntime().availableProcessors() );//TODO
-
-							
-							protocol.append( "\n...finished.\n" );
-							//System.out.println(res);
-							
-							//System.out.println("returning");
-							protocol.append("\n######################################################\n\n\n");
-							return res;
-						}catch(Exception e){
-							e.printStackTrace();
-							StringWriter sw = new StringWriter();
-							e.printStackTrace( new PrintWriter( sw ) );
-							protocol.appendHeading( "Tool "+tool.getToolName()+" failed.\nError message:\n" );
-							protocol.appendWarning(e.getMessage()+"\n\n");
-							if(showStackTraceInProtocol){
-								protocol.appendWarning( sw.toString()+"\n" );
-							}
-							protocol.append("\n######################################################\n\n\n");
-							throw e;
-							//return null;
-						}
-					}
-				};
-				
-				task.setOnSucceeded( new EventHandler<WorkerStateEvent>() {
-
-					@Override
-					public void handle( WorkerStateEvent arg0 ) {
-						//System.out.println("onSucceeded");
-						messageOverlay.displayMessage( tool.getToolName()+" finished successfully", Level.SUCCESS );
-						enqueuedJobs.remove( arg0.getSource() );
-						nameMap.remove( arg0.getSource() );
-						//enqueued.setText( "("+Math.max( 0, enqueuedJobs.size()-1)+" Jobs pending)" );
-
-						ResultSetResult toolResults = task.getValue();
-						ResultRepository.getInstance().add( toolResults );
-						//System.out.println("succeeded");
-						
-					}
-					
-				} );
-				
-				EventHandler<WorkerStateEvent> eh = new EventHandler<WorkerStateEvent>() {
-
-					@Override
-					public void handle( WorkerStateEvent arg0 ) {
-						enqueuedJobs.remove( arg0.getSource() );
-						
-						nameMap.remove( arg0.getSource() );
-						//enqueued.setText( "("+Math.max( 0, enqueuedJobs.size()-1)+" Jobs pending)" );
-						if( arg0.getEventType().equals( WorkerStateEvent.WORKER_STATE_FAILED ) ){
-							
-							String msg = "";
-							Throwable exception = arg0.getSource().getException();
-							if(exception != null){
-								msg = exception.getMessage();
-								if(msg.length() > 80){
-									msg = msg.substring(0, Math.max(80, msg.indexOf(" ",80) ) )+"...";
-								}
-								msg = msg+"\n";
-							}
-							System.err.println(exception);
-							exception.printStackTrace();
-							
-							messageOverlay.displayMessage( tool.getToolName()+" failed:\n"+msg+"See protocol for details", Level.WARNING );
-						}else if( arg0.getEventType().equals( WorkerStateEvent.WORKER_STATE_CANCELLED ) ){
-							messageOverlay.displayMessage( tool.getToolName()+" canceled; see protocol for details", Level.INFO );
-						}else{
-							messageOverlay.displayMessage( tool.getToolName()+" stopped", Level.INFO );
-						}
-						/*if(enqueuedJobs.size()>0){
-							new Thread(enqueuedJobs.get(0)).start();
-						}else{
-							progressBar.setVisible( false );
-						}*/
-					}
-					
-				};
-				
-
-				task.setOnCancelled( eh );
-				task.setOnFailed( eh );
-				
-				task.setOnRunning( new EventHandler<WorkerStateEvent>(){
-
-					@Override
-					public void handle( WorkerStateEvent arg0 ) {
-						//enqueued.setText( "("+Math.max( 0, enqueuedJobs.size()-1)+" Jobs pending)" );
-						progressBar.progressProperty().bind( arg0.getSource().progressProperty() );
-					}
-					
-				} );
-				
-				
 				
+				final Task<ResultSetResult> task = createJob( tool, parameters, inputs, null, -1 );
 				
 				
 				nameMap.put( task, new Pair<String,Date>(tool.getToolName(), new Date( System.currentTimeMillis() )) );
-				enqueuedJobs.add( enqueuedJobs.size(), task );
+				scheduler.setBudget( task, threads.getValue() );
+				scheduler.enqueue( task, priority.getValue() );
 				//enqueued.setText( "("+Math.max( 0, enqueuedJobs.size()-1)+" Jobs pending)" );
 				//System.out.println("Job "+task+" enqueued");
 				
@@ -513,13 +654,204 @@ public class Application {
 			}
 		} );
 		
-		p.getChildren().add( b );
+		//adds the tool with the current parameters as next step of the pipeline
+		Button add = new Button( "Add to pipeline" );
+		add.disableProperty().bind( b.disableProperty() );
+		add.setOnAction( new EventHandler<ActionEvent>() {
+
+			@Override
+			public void handle( ActionEvent arg0 ) {
+				error.setText( parameters2.getErrorMessage() );
+				if(!parameters2.hasDefaultOrIsSet()){
+					return;
+				}
+				try{
+					Pipeline.Step step = pipeline.addStep( tool, parameters2, FileParameterRenderer.getSelectedOutputs( parameters2 ), 
+							FileParameterRenderer.getSelectedResults( parameters2 ), threads.getValue(), priority.getValue() );
+					messageOverlay.displayMessage( step+" added as step "+pipeline.getSteps().size()+" of the pipeline", Level.INFO );
+				}catch(CloneNotSupportedException e){
+					messageOverlay.displayMessage("Internal error copying parameter values.", Level.WARNING);
+				}
+			}
+			
+		} );
+		
+		HBox run = new HBox( 10, b, add, new Label( "Threads:" ), threads, priority );
+		run.setAlignment( Pos.CENTER_LEFT );
+		p.getChildren().add( run );
 		
 		
 		
 		return p;
 	}
 	
+	/**
+	 * Submits all steps of the current {@link Pipeline} as jobs, where each job depends on the jobs of the steps it is bound to.
+	 */
+	private void runPipeline(){
+		if(pipeline.getSteps().isEmpty()){
+			messageOverlay.displayMessage( "The pipeline is empty. Add steps using the \"Add to pipeline\" buttons of the tools.", Level.INFO );
+			return;
+		}
+		final Pipeline.Run run;
+		try{
+			run = pipeline.start();
+		}catch(CloneNotSupportedException e){
+			messageOverlay.displayMessage("Internal error copying parameter values.", Level.WARNING);
+			return;
+		}
+		ArrayList<Task<ResultSetResult>> jobs = new ArrayList<>();
+		for(int i=0;i<run.getNumberOfSteps();i++){
+			Pipeline.Step step = run.getStep( i );
+			Task<ResultSetResult> task = createJob( step.getTool(), run.getParameters( i ), new ArrayList<>( step.getInputs() ), run, i );
+			ArrayList<Task<ResultSetResult>> dependsOn = new ArrayList<>();
+			List<Integer> deps = step.getDependencies();
+			for(int j=0;j<deps.size();j++){
+				dependsOn.add( jobs.get( deps.get( j ) ) );
+			}
+			jobs.add( task );
+			nameMap.put( task, new Pair<String,Date>("Step "+(i+1)+": "+step.getTool().getToolName(), new Date( System.currentTimeMillis() )) );
+			scheduler.setBudget( task, step.getThreads() );
+			scheduler.enqueue( task, step.getPriority(), dependsOn );
+		}
+		messageOverlay.displayMessage( "Pipeline with "+run.getNumberOfSteps()+" steps submitted", Level.INFO );
+	}
+	
+	/**
+	 * Creates the job running a {@link JstacsTool} with the given parameters, which adds the {@link ToolResult} to the {@link ResultRepository}
+	 * and reports progress, success and failure in the GUI.
+	 * @param tool the tool
+	 * @param parameters the parameters, which must not be modified afterwards
+	 * @param inputs the {@link Result}s of the repository used as inputs, a modifiable list
+	 * @param run the run of a {@link Pipeline} the job is a step of, or <code>null</code> for a single tool run
+	 * @param step the index of the step in the pipeline
+	 * @return the job
+	 */
+	private Task<ResultSetResult> createJob(final JstacsTool tool, final ToolParameterSet parameters, final List<Result> inputs, final Pipeline.Run run, final int step){
+		
+		final JobProtocol protocol = new JobProtocol( this.protocol, "#"+(++jobNumber)+" "+tool.getToolName() );
+		final Task<ResultSetResult> task = new Task<ResultSetResult>() {
+			
+			
+			@Override
+			protected ResultSetResult call() throws Exception {
+				ProgressUpdater progress = new ProgressUpdater(){
+					
+					@Override
+					public void setCurrent(double d){
+						super.setCurrent( d );
+						updateProgress( getPercentage(), 1.0 );
+						
+					}
+					
+				};
+				
+				int numThreads = scheduler.getThreads( this );
+				protocol.appendHeading( "Starting "+(run == null ? "" : "step "+(step+1)+" of pipeline: ")+tool.getToolName()+" using "+numThreads+" thread"+(numThreads == 1 ? "" : "s")+"...\n\n" );
+				try{
+					
+					if(run != null){
+						//fill the parameters bound to outputs of previous steps
+						inputs.addAll( run.bind( step ) );
+					}
+					
+					ToolResult res = tool.run( parameters, protocol, progress, numThreads );
+					
+					if(isCancelled()){
+						//do not publish results of canceled jobs
+						protocol.append( "\n...canceled.\n" );
+						return null;
+					}
+					
+					protocol.append( "\n...finished.\n" );
+					//System.out.println(res);
+					
+					ResultRepository.getInstance().add( res, inputs );
+					if(run != null){
+						run.setResult( step, res );
+					}
+					
+					//System.out.println("returning");
+					protocol.append("\n######################################################\n\n\n");
+					return res;
+				}catch(Exception e){
+					e.printStackTrace();
+					StringWriter sw = new StringWriter();
+					e.printStackTrace( new PrintWriter( sw ) );
+					protocol.appendHeading( "Tool "+tool.getToolName()+" failed.\nError message:\n" );
+					protocol.appendWarning(e.getMessage()+"\n\n");
+					if(showStackTraceInProtocol){
+						protocol.appendWarning( sw.toString()+"\n" );
+					}
+					protocol.append("\n######################################################\n\n\n");
+					throw e;
+					//return null;
+				}finally{
+					protocol.flush();
+				}
+			}
+		};
+		
+		task.setOnSucceeded( new EventHandler<WorkerStateEvent>() {
+
+			@Override
+			public void handle( WorkerStateEvent arg0 ) {
+				//System.out.println("onSucceeded");
+				messageOverlay.displayMessage( tool.getToolName()+" finished successfully", Level.SUCCESS );
+				enqueuedJobs.remove( arg0.getSource() );
+				nameMap.remove( arg0.getSource() );
+				//enqueued.setText( "("+Math.max( 0, enqueuedJobs.size()-1)+" Jobs pending)" );
+
+				//System.out.println("succeeded");
+				
+			}
+			
+		} );
+		
+		EventHandler<WorkerStateEvent> eh = new EventHandler<WorkerStateEvent>() {
+
+			@Override
+			public void handle( WorkerStateEvent arg0 ) {
+				enqueuedJobs.remove( arg0.getSource() );
+				
+				nameMap.remove( arg0.getSource() );
+				//enqueued.setText( "("+Math.max( 0, enqueuedJobs.size()-1)+" Jobs pending)" );
+				if( arg0.getEventType().equals( WorkerStateEvent.WORKER_STATE_FAILED ) ){
+					
+					String msg = "";
+					Throwable exception = arg0.getSource().getException();
+					if(exception != null){
+						msg = exception.getMessage();
+						if(msg.length() > 80){
+							msg = msg.substring(0, Math.max(80, msg.indexOf(" ",80) ) )+"...";
+						}
+						msg = msg+"\n";
+					}
+					System.err.println(exception);
+					exception.printStackTrace();
+					
+					messageOverlay.displayMessage( tool.getToolName()+" failed:\n"+msg+"See protocol for details", Level.WARNING );
+				}else if( arg0.getEventType().equals( WorkerStateEvent.WORKER_STATE_CANCELLED ) ){
+					messageOverlay.displayMessage( tool.getToolName()+" canceled; see protocol for details", Level.INFO );
+				}else{
+					messageOverlay.displayMessage( tool.getToolName()+" stopped", Level.INFO );
+				}
+				/*if(enqueuedJobs.size()>0){
+					new Thread(enqueuedJobs.get(0)).start();
+				}else{
+					progressBar.setVisible( false );
+				}*/
+			}
+			
+		};
+		
+
+		task.setOnCancelled( eh );
+		task.setOnFailed( eh );
+		
+		return task;
+	}
+	
 	/**
 	 * Sets the parameter values of one of the {@link JstacsTool}s to those
 	 * that are stored in the provided {@link ToolResult}. This allows tools to
@@ -541,6 +873,7 @@ public class Application {
 				
 				Pane content = getToolParameters( tools[i], tps );
 				
+				ResultRepository.getInstance().dispose( target.getContent() );
 				target.setContent( content );
 				
 				target.setExpanded( true );
@@ -667,6 +1000,16 @@ public class Application {
 		
 	}
 	
+	private static String formatSize(long bytes){
+		if(bytes < 1024L*1024L){
+			return (bytes/1024L)+" KB";
+		}else if(bytes < 1024L*1024L*1024L){
+			return String.format( "%.1f MB", bytes/(1024.0*1024.0) );
+		}else{
+			return String.format( "%.2f GB", bytes/(1024.0*1024.0*1024.0) );
+		}
+	}
+	
 	private HBox createStatusBar(){
 		HBox statusBar = new HBox(20);
 		statusBar.setPrefHeight( 30 );
@@ -677,32 +1020,51 @@ public class Application {
 	    
 	    statusBar.getChildren().add( region );
 		
-		progressBar = new ProgressBar();
-		progressBar.setVisible( false );
-		progressBar.setPrefWidth( 200 );
+		//one progress bar per running job
+		progressBars = new HBox( 5 );
+		progressBars.setAlignment( Pos.CENTER );
+		progressBars.setPrefWidth( 200 );
 		
-		statusBar.getChildren().add( progressBar );
+		statusBar.getChildren().add( progressBars );
 		
 		enqueued = new Label("(0 Jobs pending)");
 		
 		statusBar.getChildren().add( enqueued );
 		
 		
+		scheduler.getRunning().addListener( new ListChangeListener<Task<ResultSetResult>>(){
+
+			@Override
+			public void onChanged( javafx.collections.ListChangeListener.Change<? extends Task<ResultSetResult>> arg0 ) {
+				while(arg0.next()){
+					for(Task<ResultSetResult> task : arg0.getAddedSubList()){
+						messageOverlay.displayMessage( nameMap.get( task ).getFirstElement()+" started", Level.INFO );
+					}
+				}
+				for(Node bar : progressBars.getChildren()){
+					//release the tasks of finished jobs
+					((ProgressBar)bar).progressProperty().unbind();
+				}
+				progressBars.getChildren().clear();
+				List<? extends Task<ResultSetResult>> running = arg0.getList();
+				for(int i=0;i<running.size();i++){
+					ProgressBar bar = new ProgressBar();
+					bar.setPrefWidth( Math.max( 40, 200/running.size() ) );
+					bar.progressProperty().bind( running.get( i ).progressProperty() );
+					Tooltip.install( bar, new Tooltip( nameMap.get( running.get( i ) ).getFirstElement() ) );
+					progressBars.getChildren().add( bar );
+				}
+			}
+			
+		} );
+		
 		enqueuedJobs.addListener( new ListChangeListener<Task<ResultSetResult>>(){
 
 			@Override
 			public void onChanged( javafx.collections.ListChangeListener.Change<? extends Task<ResultSetResult>> arg0 ) {
-				int num = Math.max( 0, arg0.getList().size()-1);
+				int num = scheduler.getNumberOfWaiting();
 				String job = num == 1 ? "job" : "jobs";
 				enqueued.setText( "("+num+" "+job+" pending)" );
-				if(arg0.getList().size() > 0 && arg0.getList().get( 0 ).getState() == State.READY){
-					Thread thread = new Thread(arg0.getList().get( 0 ));
-					thread.setDaemon( true );
-					thread.start();
-					messageOverlay.displayMessage( nameMap.get( arg0.getList().get( 0 ) ).getFirstElement()+" started", Level.INFO );
-				}else if(arg0.getList().size() == 0 ){
-					progressBar.setVisible( false );
-				}
 			}
 			
 		} );
@@ -713,6 +1075,19 @@ public class Application {
 		
 		statusBar.getChildren().add( b );
 		
+		Button pipe = new Button("Pipeline...");
+		
+		statusBar.getChildren().add( pipe );
+		
+		pipe.setOnAction( new EventHandler<ActionEvent>() {
+
+			@Override
+			public void handle( ActionEvent arg0 ) {
+				pipelineViewer.show();
+			}
+			
+		} );
+		
 		b.setOnAction( new EventHandler<ActionEvent>() {
 
 			@Override
@@ -731,6 +1106,9 @@ public class Application {
 	    
 	    statusBar.getChildren().add( spacer );
 	    
+	    Label memory = new Label();
+	    
+	    statusBar.getChildren().add( memory );
 	    
 	    CheckBox check = new CheckBox( "Autosave workspace" );
 	    check.setAllowIndeterminate( false );
@@ -739,6 +1117,8 @@ public class Application {
 	    
 	    check.setSelected(false);
 	    prefs.putBoolean("autosave", false);
+	    //nothing to save to
+	    check.setDisable( ResultRepository.storage.get() == WorkspaceStore.MEMORY );
 	    
 	    check.selectedProperty().addListener( new ChangeListener<Boolean>(){
 
@@ -747,7 +1127,12 @@ public class Application {
 				prefs.putBoolean( "autosave", arg2 );
 				
 				if(arg2) {
-					File f = LoadSaveDialogs.showSaveDialog(mainWindow, "autosave", "JST", "*.jst");
+					File f;
+					if(ResultRepository.storage.get() == WorkspaceStore.DIRECTORY) {
+						f = LoadSaveDialogs.showDirectoryDialog(mainWindow);
+					}else {
+						f = LoadSaveDialogs.showSaveDialog(mainWindow, "autosave", "JST", "*.jst");
+					}
 
 					if(f == null) {
 						prefs.putBoolean("autosave", false);
@@ -776,9 +1161,8 @@ public class Application {
 					return;
 				}else{
 					
-					StringBuffer sb = ResultRepository.getInstance().storeResultsToXML();
 					try {
-						FileManager.writeFile( f, Compression.zip(sb.toString()) );
+						ResultRepository.getInstance().storeResults( f );
 					} catch ( IOException e ) {
 						e.printStackTrace();
 						messageOverlay.displayMessage( "Storing failed", Level.WARNING );
@@ -799,18 +1183,112 @@ public class Application {
 				if(f == null){
 					return;
 				}else{
-					try {
-						StringBuffer sb = new StringBuffer(Compression.unzip(FileManager.readFile( f ).toString()) );
-						ResultRepository.getInstance().restoreResultsFromXML( sb );
-					} catch ( Exception e ) {
-						e.printStackTrace();
-						messageOverlay.displayMessage( "Loading failed", Level.WARNING );
-					}
+					Task<Void> task = new Task<Void>() {
+
+						@Override
+						protected Void call() throws Exception {
+							//add the restored results in batches, so the first results become available early
+							//while consumers and the autosave are only notified once per batch
+							final ArrayList<Result> batch = new ArrayList<>();
+							try{
+								ResultRepository.getInstance().restoreResults( f, new Consumer<Result>() {
+
+									@Override
+									public void accept( Result t ) {
+										batch.add( t );
+										if(batch.size() >= LOAD_BATCH_SIZE){
+											ResultRepository.getInstance().addAll( batch, false );
+											batch.clear();
+										}
+									}
+
+								} );
+							}finally{
+								ResultRepository.getInstance().addAll( batch, false );
+							}
+							return null;
+						}
+						
+					};
+					
+					task.setOnSucceeded( new EventHandler<WorkerStateEvent>() {
+
+						@Override
+						public void handle( WorkerStateEvent arg0 ) {
+							messageOverlay.displayMessage( "Workspace loaded", Level.SUCCESS );
+						}
+						
+					} );
+					
+					task.setOnFailed( new EventHandler<WorkerStateEvent>() {
+
+						@Override
+						public void handle( WorkerStateEvent arg0 ) {
+							arg0.getSource().getException().printStackTrace();
+							messageOverlay.displayMessage( "Loading failed", Level.WARNING );
+						}
+						
+					} );
+					
+					ThreadPools.getBackground().execute( task );
 				}
 			}
 		} );
 	    
-	    statusBar.getChildren().addAll( check,save,load );
+	    Button collect = new Button( "Collect garbage..." );
+	    collect.setOnAction( new EventHandler<ActionEvent>() {
+
+			@Override
+			public void handle( ActionEvent arg0 ) {
+				GarbageReport report = ResultRepository.getInstance().collectGarbage( true );
+				if(report.getResults().isEmpty()){
+					messageOverlay.displayMessage( "No unreferenced results. Pin the results you want to keep first.", Level.INFO );
+					return;
+				}
+				Alert alert = new Alert( AlertType.CONFIRMATION );
+				alert.setWidth( 300 );
+				alert.setTitle( "Collect garbage?" );
+				alert.setHeaderText( "Do you really want to remove all results that are not used for any pinned result?" );
+				alert.setContentText( report.toString()+"\n\nThis cannot be undone." );
+				ButtonType cancel = new ButtonType( "Cancel", ButtonData.CANCEL_CLOSE );
+				ButtonType ok = new ButtonType( "Remove", ButtonData.OK_DONE );
+				alert.getButtonTypes().setAll( cancel, ok );
+				
+				Optional<ButtonType> result = alert.showAndWait();
+				
+				if(result.isPresent() && result.get() == ok){
+					report = ResultRepository.getInstance().collectGarbage( false );
+					messageOverlay.displayMessage( "Removed "+report.getResults().size()+" results, reclaimed "+formatSize( report.getMemory() )+" of memory.", Level.SUCCESS );
+				}
+			}
+	    	
+	    } );
+	    
+	    ChangeListener<Number> memoryListener = new ChangeListener<Number>() {
+
+			@Override
+			public void changed( ObservableValue<? extends Number> arg0, Number arg1, Number arg2 ) {
+				ResultRepository repository = ResultRepository.getInstance();
+				memory.setText( "Workspace: "+formatSize( repository.memoryUsageProperty().get() )+" in memory, "+formatSize( repository.spilledSizeProperty().get() )+" on disk" );
+			}
+	    	
+	    };
+	    ResultRepository.getInstance().memoryUsageProperty().addListener( memoryListener );
+	    ResultRepository.getInstance().spilledSizeProperty().addListener( memoryListener );
+	    memoryListener.changed( null, null, null );
+	    
+	    ResultRepository.getInstance().storageErrorProperty().addListener( new ChangeListener<String>() {
+
+			@Override
+			public void changed( ObservableValue<? extends String> observable, String oldValue, String newValue ) {
+				if(newValue != null){
+					messageOverlay.displayMessage( "Autosaving the workspace failed:\n"+newValue, Level.WARNING );
+				}
+			}
+	    	
+	    } );
+	    
+	    statusBar.getChildren().addAll( check,save,load,collect );
 	    
 	    region = new Region();
 	    region.setMinWidth( 10 );
@@ -847,6 +1325,17 @@ public class Application {
 			protected Pane call() throws Exception {
 				//System.out.println("starting...");
 				try{
+					String report = ResultRepository.getInstance().getRecoveryReport();
+					if(report != null){
+						Platform.runLater( new Runnable() {
+							
+							@Override
+							public void run() {
+								SplashScreen.setDetails( splashContent, report );
+							}
+							
+						} );
+					}
 					Pane pane = app.prepare(mainStage);
 					//System.out.println("finished");
 					return pane;
@@ -870,7 +1359,7 @@ public class Application {
 			
 		} );
 		
-		new Thread(task).start();
+		ThreadPools.getBackground().execute( task );
 		
 	}
 	
@@ -960,7 +1449,9 @@ public class Application {
 		Tab reposTab = new Tab();
 		Node reposLab = getTabLabel( "Data" );
 		reposTab.setGraphic( reposLab );
-		reposTab.setContent( c );
+		BorderPane reposPane = new BorderPane( c );
+		reposPane.setTop( rrr.getSearchBar() );
+		reposTab.setContent( reposPane );
 		
 		Transition reposTrans = getTransition( reposTab );
 		rrr.addListener( new ListChangeListener(){
@@ -979,6 +1470,7 @@ public class Application {
 		protoTab.setGraphic(protoLab );
 		
 		protocol = new FXProtocol();
+		ThreadPools.setProtocol( protocol );
 		ScrollPane protSP = new ScrollPane( protocol.getTextFlow() );
 		protSP.setFitToWidth( true );
 		protSP.setId( "protpane" );
@@ -1125,6 +1617,16 @@ public class Application {
 		mainWindow = primaryStage;
 		
 		primaryStage.show();
+		
+		String report = ResultRepository.getInstance().getRecoveryReport();
+		if(report != null){
+			Alert alert = new Alert( AlertType.WARNING );
+			alert.initOwner( primaryStage );
+			alert.setTitle( "Workspace recovered" );
+			alert.setHeaderText( "The automatically saved workspace was damaged and has been repaired." );
+			alert.setContentText( report );
+			alert.show();
+		}
 	}
 	
 	/**
@@ -0,0 +1,81 @@
+package de.jstacs.fx;
+
+import java.util.IdentityHashMap;
+
+/**
+ * Class for splitting the available cores among the running jobs of an {@link Application}. Each job is assigned a number of threads
+ * when it is started, which is passed to {@link de.jstacs.tools.JstacsTool#run(de.jstacs.parameters.ParameterSet, de.jstacs.tools.Protocol, de.jstacs.tools.ProgressUpdater, int)}
+ * and kept until the job finishes.
+ *
+ * A job either requests a fixed number of threads (its thread budget), or, if no budget is set, receives an equal share of the
+ * cores among the jobs expected to run concurrently, including waiting jobs that will be started while it is running.
+ * In both cases, a job is assigned at most the number of cores neither used by other running jobs nor reserved for the jobs expected to be
+ * started later (one core each), but at least one thread. As the number of threads of a running job cannot be changed, the cores are
+ * rebalanced whenever jobs are started after other jobs have finished.
+ *
+ * @author Jan Grau
+ *
+ */
+class CpuArbiter {
+
+	private int cores;
+	private int used;
+	private IdentityHashMap<Object, Integer> allocated;
+
+	/**
+	 * Creates a new arbiter for the given number of cores.
+	 * @param cores the number of cores
+	 */
+	CpuArbiter(int cores){
+		this.cores = Math.max( 1, cores );
+		this.allocated = new IdentityHashMap<>();
+	}
+
+	/**
+	 * Assigns threads to a job that is about to start.
+	 * @param job the job
+	 * @param budget the requested number of threads, or a value below <code>1</code> for an equal share of the cores
+	 * @param concurrent the number of jobs expected to run concurrently, including the started job and the jobs already running
+	 * @return the number of threads assigned to the job
+	 */
+	synchronized int acquire(Object job, int budget, int concurrent){
+		release( job );
+		//keep one core for each job that is expected to be started later
+		int reserved = Math.max( 0, concurrent-allocated.size()-1 );
+		int threads = budget > 0 ? budget : cores/Math.max( 1, concurrent );
+		threads = Math.max( 1, Math.min( threads, cores-used-reserved ) );
+		allocated.put( job, threads );
+		used += threads;
+		return threads;
+	}
+
+	/**
+	 * Releases the threads assigned to a job that has finished.
+	 * @param job the job
+	 */
+	synchronized void release(Object job){
+		Integer threads = allocated.remove( job );
+		if(threads != null){
+			used -= threads;
+		}
+	}
+
+	/**
+	 * Returns the number of threads assigned to a job.
+	 * @param job the job
+	 * @return the number of threads, or <code>0</code> if the job is not running
+	 */
+	synchronized int getThreads(Object job){
+		Integer threads = allocated.get( job );
+		return threads == null ? 0 : threads;
+	}
+
+	/**
+	 * Returns the number of cores split among the jobs.
+	 * @return the number of cores
+	 */
+	int getCores(){
+		return cores;
+	}
+
+}
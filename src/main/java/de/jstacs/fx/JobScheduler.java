@@ -0,0 +1,346 @@
+package de.jstacs.fx;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import javafx.concurrent.Worker.State;
+import de.jstacs.results.ResultSetResult;
+
+/**
+ * Class for scheduling the enqueued jobs (i.e., {@link Task}s running a {@link de.jstacs.tools.JstacsTool}) of an {@link Application}.
+ * Jobs are started in the order of the list of enqueued jobs, where at most {@link JobScheduler#maxConcurrentJobs} jobs are running concurrently.
+ * Jobs added by {@link #enqueue(Task, Priority)} are placed before all waiting jobs of lower {@link Priority}, so higher-priority work is started first.
+ * Waiting jobs may be reordered by {@link #moveUp(Task)}, {@link #moveDown(Task)}, and {@link #promote(Task)}.
+ * Whenever a job finishes, is removed from the list, or the maximum number of concurrent jobs is increased, the next waiting jobs are started.
+ *
+ * Jobs may depend on other jobs (see {@link #enqueue(Task, Priority, List)}), e.g., the steps of a {@link Pipeline}. Such jobs are only started
+ * after all jobs they depend on have succeeded, and are cancelled if any of these fails or is cancelled.
+ *
+ * When a job is started, the {@link CpuArbiter} assigns it a number of threads according to its thread budget (see {@link #setBudget(Task, int)}),
+ * which the job obtains by {@link #getThreads(Task)}.
+ *
+ * Jobs must be removed from the list of enqueued jobs once they have finished. All methods must be called on the JavaFX application thread.
+ *
+ * @author Jan Grau
+ *
+ */
+public class JobScheduler {
+
+	/**
+	 * Priorities of jobs.
+	 *
+	 * @author Jan Grau
+	 *
+	 */
+	public enum Priority{
+		/**
+		 * Short jobs the user is waiting for, e.g., predictions.
+		 */
+		INTERACTIVE,
+		/**
+		 * Default priority.
+		 */
+		NORMAL,
+		/**
+		 * Long-running jobs, e.g., training on large data sets.
+		 */
+		BATCH;
+
+		@Override
+		public String toString() {
+			return name().charAt( 0 )+name().substring( 1 ).toLowerCase();
+		}
+	}
+
+	/**
+	 * Global property for an {@link Application} run, how many jobs may run concurrently. Values below <code>1</code> are treated as <code>1</code>,
+	 * which corresponds to running all jobs strictly one after another.
+	 */
+	public static IntegerProperty maxConcurrentJobs = new SimpleIntegerProperty( 2 );
+	/**
+	 * Upper bound of {@link JobScheduler#maxConcurrentJobs}, which is the number of {@link Thread}s of the pool running the jobs.
+	 */
+	public static final int MAX_JOBS = Math.max( 16, Runtime.getRuntime().availableProcessors() );
+
+	private ObservableList<Task<ResultSetResult>> enqueued;
+	private ObservableList<Task<ResultSetResult>> running;
+	private IdentityHashMap<Task<ResultSetResult>, Integer> budgets;
+	private IdentityHashMap<Task<ResultSetResult>, Priority> priorities;
+	private IdentityHashMap<Task<ResultSetResult>, List<Task<ResultSetResult>>> dependencies;
+	private CpuArbiter arbiter;
+	private ExecutorService pool;
+
+	/**
+	 * Creates a new scheduler for the given list of enqueued jobs and starts the first jobs of that list.
+	 * @param enqueued the list of enqueued jobs
+	 */
+	public JobScheduler(ObservableList<Task<ResultSetResult>> enqueued){
+		this.enqueued = enqueued;
+		this.running = FXCollections.observableArrayList();
+		this.budgets = new IdentityHashMap<>();
+		this.priorities = new IdentityHashMap<>();
+		this.dependencies = new IdentityHashMap<>();
+		this.arbiter = new CpuArbiter( Runtime.getRuntime().availableProcessors() );
+		this.pool = ThreadPools.newPool( "Job", MAX_JOBS );
+
+		enqueued.addListener( new ListChangeListener<Task<ResultSetResult>>() {
+
+			@Override
+			public void onChanged( javafx.collections.ListChangeListener.Change<? extends Task<ResultSetResult>> arg0 ) {
+				schedule();
+			}
+
+		} );
+
+		maxConcurrentJobs.addListener( new ChangeListener<Number>() {
+
+			@Override
+			public void changed( ObservableValue<? extends Number> arg0, Number arg1, Number arg2 ) {
+				schedule();
+			}
+
+		} );
+
+		schedule();
+	}
+
+	/**
+	 * Returns the list of jobs that have been started by this scheduler and have not finished, yet, in the order they have been started.
+	 * @return the running jobs
+	 */
+	public ObservableList<Task<ResultSetResult>> getRunning(){
+		return FXCollections.unmodifiableObservableList( running );
+	}
+
+	/**
+	 * Adds a job with the given priority to the list of enqueued jobs, before all waiting jobs of lower priority.
+	 * @param job the job
+	 * @param priority the priority
+	 */
+	public void enqueue(Task<ResultSetResult> job, Priority priority){
+		enqueue( job, priority, null );
+	}
+
+	/**
+	 * Adds a job with the given priority to the list of enqueued jobs, before all waiting jobs of lower priority. The job is not started before
+	 * all of the given jobs have succeeded, and is cancelled if any of them fails or is cancelled.
+	 * @param job the job
+	 * @param priority the priority
+	 * @param dependsOn the jobs the job depends on, may be <code>null</code>
+	 */
+	public void enqueue(Task<ResultSetResult> job, Priority priority, List<Task<ResultSetResult>> dependsOn){
+		priorities.put( job, priority );
+		if(dependsOn != null && dependsOn.size() > 0){
+			dependencies.put( job, new ArrayList<>( dependsOn ) );
+		}
+		enqueued.add( getInsertionIndex( enqueued, priority ), job );
+	}
+
+	/**
+	 * Returns if the given job waits for other jobs it depends on.
+	 * @param job the job
+	 * @return if the job is blocked
+	 */
+	public boolean isBlocked(Task<ResultSetResult> job){
+		List<Task<ResultSetResult>> deps = dependencies.get( job );
+		for(int i=0;deps != null && i<deps.size();i++){
+			if(deps.get( i ).getState() != State.SUCCEEDED){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean hasFailedDependency(Task<ResultSetResult> job){
+		List<Task<ResultSetResult>> deps = dependencies.get( job );
+		for(int i=0;deps != null && i<deps.size();i++){
+			State state = deps.get( i ).getState();
+			if(state == State.FAILED || state == State.CANCELLED){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the priority of an enqueued job.
+	 * @param job the job
+	 * @return the priority
+	 */
+	public Priority getPriority(Task<ResultSetResult> job){
+		Priority priority = priorities.get( job );
+		return priority == null ? Priority.NORMAL : priority;
+	}
+
+	/**
+	 * Returns if the given job is enqueued and waiting to be started, i.e., if it may be reordered.
+	 * @param job the job
+	 * @return if the job is waiting
+	 */
+	public boolean isWaiting(Task<ResultSetResult> job){
+		return job != null && job.getState() == State.READY && enqueued.contains( job ) && !running.contains( job );
+	}
+
+	/**
+	 * Moves a waiting job before the previous waiting job.
+	 * @param job the job
+	 * @return <code>true</code> if the job has been moved
+	 */
+	public boolean moveUp(Task<ResultSetResult> job){
+		return swap( job, -1 );
+	}
+
+	/**
+	 * Moves a waiting job after the next waiting job.
+	 * @param job the job
+	 * @return <code>true</code> if the job has been moved
+	 */
+	public boolean moveDown(Task<ResultSetResult> job){
+		return swap( job, 1 );
+	}
+
+	/**
+	 * Increases the priority of a waiting job by one level (if not already {@link Priority#INTERACTIVE}) and moves it before all waiting jobs
+	 * of lower priority.
+	 * @param job the job
+	 * @return <code>true</code> if the job has been moved or its priority has been changed
+	 */
+	public boolean promote(Task<ResultSetResult> job){
+		if(!isWaiting( job )){
+			return false;
+		}
+		Priority priority = getPriority( job );
+		if(priority.ordinal() > 0){
+			priority = Priority.values()[priority.ordinal()-1];
+			priorities.put( job, priority );
+		}
+		ArrayList<Task<ResultSetResult>> list = new ArrayList<>( enqueued );
+		int old = list.indexOf( job );
+		list.remove( old );
+		int index = getInsertionIndex( list, priority );
+		list.add( index, job );
+		//a single change, so the job is never missing from the list
+		enqueued.setAll( list );
+		return true;
+	}
+
+	private int getInsertionIndex(List<Task<ResultSetResult>> list, Priority priority){
+		for(int i=0;i<list.size();i++){
+			if(isWaiting( list.get( i ) ) && getPriority( list.get( i ) ).compareTo( priority ) > 0){
+				return i;
+			}
+		}
+		return list.size();
+	}
+
+	private boolean swap(Task<ResultSetResult> job, int direction){
+		if(!isWaiting( job )){
+			return false;
+		}
+		int index = enqueued.indexOf( job );
+		int other = index+direction;
+		while(other >= 0 && other < enqueued.size() && !isWaiting( enqueued.get( other ) )){
+			other += direction;
+		}
+		if(other < 0 || other >= enqueued.size()){
+			return false;
+		}
+		ArrayList<Task<ResultSetResult>> list = new ArrayList<>( enqueued );
+		list.set( index, enqueued.get( other ) );
+		list.set( other, job );
+		enqueued.setAll( list );
+		return true;
+	}
+
+	/**
+	 * Sets the thread budget of a job, i.e., the number of threads requested for running the job. This method must be called before the
+	 * job is added to the list of enqueued jobs.
+	 * @param job the job
+	 * @param threads the number of threads, or <code>0</code> for an equal share of the available cores
+	 */
+	public void setBudget(Task<ResultSetResult> job, int threads){
+		budgets.put( job, threads );
+	}
+
+	/**
+	 * Returns the number of threads assigned to a running job. This method may be called from the thread running the job.
+	 * @param job the job
+	 * @return the number of threads
+	 */
+	public int getThreads(Task<ResultSetResult> job){
+		return Math.max( 1, arbiter.getThreads( job ) );
+	}
+
+	/**
+	 * Returns the number of available cores that are split among the running jobs.
+	 * @return the number of cores
+	 */
+	public int getCores(){
+		return arbiter.getCores();
+	}
+
+	/**
+	 * Returns the number of enqueued jobs that are waiting to be started, including jobs waiting for other jobs they depend on.
+	 * @return the number of waiting jobs
+	 */
+	public int getNumberOfWaiting(){
+		int n = 0;
+		for(int i=0;i<enqueued.size();i++){
+			if(isWaiting( enqueued.get( i ) )){
+				n++;
+			}
+		}
+		return n;
+	}
+
+	private static boolean isDone(Task<ResultSetResult> task){
+		State state = task.getState();
+		return state == State.SUCCEEDED || state == State.FAILED || state == State.CANCELLED;
+	}
+
+	private void schedule(){
+		for(int i=running.size()-1;i>=0;i--){
+			if(isDone( running.get( i ) ) || !enqueued.contains( running.get( i ) )){
+				arbiter.release( running.get( i ) );
+				budgets.remove( running.get( i ) );
+				priorities.remove( running.get( i ) );
+				running.remove( i );
+			}
+		}
+		budgets.keySet().retainAll( enqueued );
+		priorities.keySet().retainAll( enqueued );
+		dependencies.keySet().retainAll( enqueued );
+		int max = Math.max( 1, Math.min( MAX_JOBS, maxConcurrentJobs.get() ) );
+		//jobs expected to share the cores, including jobs waiting for their dependencies
+		int concurrent = Math.min( max, running.size()+getNumberOfWaiting() );
+		ArrayList<Task<ResultSetResult>> failed = new ArrayList<>();
+		for(int i=0;i<enqueued.size();i++){
+			Task<ResultSetResult> task = enqueued.get( i );
+			if(isWaiting( task )){
+				if(hasFailedDependency( task )){
+					failed.add( task );
+				}else if(!isBlocked( task ) && running.size() < max){
+					Integer budget = budgets.get( task );
+					arbiter.acquire( task, budget == null ? 0 : budget, concurrent );
+					running.add( task );
+					pool.execute( task );
+				}
+			}
+		}
+		//cancelling removes the jobs from the list, which re-enters this method
+		for(int i=0;i<failed.size();i++){
+			failed.get( i ).cancel();
+		}
+	}
+
+}
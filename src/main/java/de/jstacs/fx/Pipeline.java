@@ -0,0 +1,427 @@
+package de.jstacs.fx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import de.jstacs.fx.renderers.parameters.FileParameterRenderer;
+import de.jstacs.fx.repository.LazyResult;
+import de.jstacs.fx.repository.ResultRepository;
+import de.jstacs.parameters.AbstractSelectionParameter;
+import de.jstacs.parameters.FileParameter;
+import de.jstacs.parameters.Parameter;
+import de.jstacs.parameters.ParameterSet;
+import de.jstacs.parameters.ParameterSetContainer;
+import de.jstacs.results.Result;
+import de.jstacs.tools.JstacsTool;
+import de.jstacs.tools.ToolParameterSet;
+import de.jstacs.tools.ToolResult;
+
+/**
+ * Class for a pipeline of {@link JstacsTool} runs, where {@link FileParameter}s of a step may be bound to outputs of previous steps
+ * (see {@link Output}) instead of {@link Result}s that are already in the {@link ResultRepository}. Since steps may only be bound to previous steps,
+ * the steps and their bindings form a directed acyclic graph.
+ *
+ * A pipeline is submitted at once by {@link #start()}, which creates a {@link Run} with independent copies of the parameters of all steps.
+ * Each step of a run is a job of the {@link JobScheduler} that depends on the jobs of the steps it is bound to, so independent branches of the pipeline
+ * run concurrently as soon as their inputs are available.
+ *
+ * @author Jan Grau
+ *
+ */
+public class Pipeline {
+
+	/**
+	 * An output of a step of a {@link Pipeline}, i.e., a {@link Result} of the {@link ToolResult} of that step. The output is identified by its name
+	 * or, if no name is given, is the first {@link Result} admissible for the bound {@link FileParameter}.
+	 *
+	 * @author Jan Grau
+	 *
+	 */
+	public static class Output{
+
+		private int step;
+		private String name;
+		private String label;
+
+		/**
+		 * Creates a new output.
+		 * @param step the (0-based) index of the step
+		 * @param name the name of the output, or <code>null</code> for the first admissible output
+		 * @param label the label shown in the GUI
+		 */
+		public Output(int step, String name, String label){
+			this.step = step;
+			this.name = name;
+			this.label = label;
+		}
+
+		/**
+		 * Returns the (0-based) index of the step.
+		 * @return the index
+		 */
+		public int getStep(){
+			return step;
+		}
+
+		/**
+		 * Returns the name of the output, or <code>null</code> for the first admissible output.
+		 * @return the name
+		 */
+		public String getName(){
+			return name;
+		}
+
+		@Override
+		public boolean equals( Object obj ) {
+			if(obj instanceof Output){
+				Output other = (Output)obj;
+				return step == other.step && (name == null ? other.name == null : name.equals( other.name ));
+			}
+			return false;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31*step + (name == null ? 0 : name.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return label;
+		}
+
+	}
+
+	/**
+	 * A step of a {@link Pipeline}, i.e., a {@link JstacsTool} with a copy of its parameters, the bindings of its {@link FileParameter}s
+	 * to outputs of previous steps, and the thread budget and priority of its job.
+	 *
+	 * @author Jan Grau
+	 *
+	 */
+	public static class Step{
+
+		private JstacsTool tool;
+		private ToolParameterSet parameters;
+		private IdentityHashMap<FileParameter, Output> bindings;
+		private List<Result> inputs;
+		private int threads;
+		private JobScheduler.Priority priority;
+
+		private Step(JstacsTool tool, ToolParameterSet parameters, IdentityHashMap<FileParameter, Output> bindings, List<Result> inputs, int threads, JobScheduler.Priority priority){
+			this.tool = tool;
+			this.parameters = parameters;
+			this.bindings = bindings;
+			this.inputs = inputs;
+			this.threads = threads;
+			this.priority = priority;
+		}
+
+		/**
+		 * Returns the tool of this step.
+		 * @return the tool
+		 */
+		public JstacsTool getTool(){
+			return tool;
+		}
+
+		/**
+		 * Returns the outputs of previous steps the {@link FileParameter}s of this step are bound to.
+		 * @return the outputs
+		 */
+		public List<Output> getBoundOutputs(){
+			return new ArrayList<>( bindings.values() );
+		}
+
+		/**
+		 * Returns the {@link Result}s of the {@link ResultRepository} used as inputs of this step.
+		 * @return the {@link Result}s
+		 */
+		public List<Result> getInputs(){
+			return Collections.unmodifiableList( inputs );
+		}
+
+		/**
+		 * Returns the thread budget of this step.
+		 * @return the number of threads, or <code>0</code> for an equal share of the cores
+		 */
+		public int getThreads(){
+			return threads;
+		}
+
+		/**
+		 * Returns the priority of this step.
+		 * @return the priority
+		 */
+		public JobScheduler.Priority getPriority(){
+			return priority;
+		}
+
+		/**
+		 * Returns the (0-based) indexes of the steps this step depends on.
+		 * @return the indexes
+		 */
+		public List<Integer> getDependencies(){
+			ArrayList<Integer> deps = new ArrayList<>();
+			Iterator<Output> it = bindings.values().iterator();
+			while(it.hasNext()){
+				Integer step = it.next().getStep();
+				if(!deps.contains( step )){
+					deps.add( step );
+				}
+			}
+			Collections.sort( deps );
+			return deps;
+		}
+
+		@Override
+		public String toString() {
+			return tool.getToolName();
+		}
+
+	}
+
+	/**
+	 * A submitted run of a {@link Pipeline}, which holds copies of the parameters of all steps and collects the {@link ToolResult}s of finished steps.
+	 *
+	 * @author Jan Grau
+	 *
+	 */
+	public static class Run{
+
+		private Step[] steps;
+		private ToolParameterSet[] parameters;
+		private ToolResult[] results;
+
+		private Run(List<Step> steps) throws CloneNotSupportedException{
+			this.steps = steps.toArray( new Step[0] );
+			this.parameters = new ToolParameterSet[this.steps.length];
+			for(int i=0;i<parameters.length;i++){
+				parameters[i] = this.steps[i].parameters.clone();
+			}
+			this.results = new ToolResult[this.steps.length];
+		}
+
+		/**
+		 * Returns the number of steps of this run.
+		 * @return the number of steps
+		 */
+		public int getNumberOfSteps(){
+			return steps.length;
+		}
+
+		/**
+		 * Returns a step of this run.
+		 * @param step the (0-based) index of the step
+		 * @return the step
+		 */
+		public Step getStep(int step){
+			return steps[step];
+		}
+
+		/**
+		 * Returns the parameters of a step for this run.
+		 * @param step the (0-based) index of the step
+		 * @return the parameters
+		 */
+		public ToolParameterSet getParameters(int step){
+			return parameters[step];
+		}
+
+		/**
+		 * Sets the {@link ToolResult} of a finished step.
+		 * @param step the (0-based) index of the step
+		 * @param result the result
+		 */
+		public synchronized void setResult(int step, ToolResult result){
+			results[step] = result;
+		}
+
+		/**
+		 * Sets the values of the {@link FileParameter}s of a step that are bound to outputs of previous steps. This method must only be called after
+		 * all steps the step depends on have finished.
+		 * @param step the (0-based) index of the step
+		 * @return the {@link ToolResult}s of the steps the step depends on, which are inputs of the step
+		 * @throws Exception if a previous step has no result or the bound output is missing
+		 */
+		public synchronized List<Result> bind(int step) throws Exception{
+			ArrayList<Result> inputs = new ArrayList<>();
+			Iterator<Map.Entry<FileParameter, Output>> it = steps[step].bindings.entrySet().iterator();
+			while(it.hasNext()){
+				Map.Entry<FileParameter, Output> e = it.next();
+				Output output = e.getValue();
+				ToolResult source = results[output.getStep()];
+				if(source == null){
+					throw new IllegalStateException( "Step "+(output.getStep()+1)+" ("+steps[output.getStep()].tool.getToolName()+") has no result." );
+				}
+				Result selected = null;
+				List<Result> admissible = FileParameterRenderer.getAdmissible( e.getKey(), source );
+				for(int i=0;i<admissible.size() && selected == null;i++){
+					if(output.getName() == null || output.getName().equals( admissible.get( i ).getName() )){
+						selected = admissible.get( i );
+					}
+				}
+				if(selected == null){
+					throw new IllegalArgumentException( "Step "+(output.getStep()+1)+" ("+steps[output.getStep()].tool.getToolName()+") produced no output "+
+							(output.getName() == null ? "" : "\""+output.getName()+"\" ")+"accepted by parameter \""+e.getKey().getName()+"\"." );
+				}
+				FileParameter target = (FileParameter)find( steps[step].parameters, parameters[step], e.getKey() );
+				FileParameterRenderer.setValue( target, selected );
+				if(!inputs.contains( source )){
+					inputs.add( source );
+				}
+			}
+			return inputs;
+		}
+
+	}
+
+	private ObservableList<Step> steps;
+
+	/**
+	 * Creates a new, empty pipeline.
+	 */
+	public Pipeline(){
+		this.steps = FXCollections.observableArrayList();
+	}
+
+	/**
+	 * Returns the steps of this pipeline.
+	 * @return the steps
+	 */
+	public ObservableList<Step> getSteps(){
+		return FXCollections.unmodifiableObservableList( steps );
+	}
+
+	/**
+	 * Appends a step to this pipeline. The parameters are copied, so they may be modified afterwards.
+	 * @param tool the tool
+	 * @param parameters the parameters of the tool
+	 * @param bindings the {@link FileParameter}s (contained in <code>parameters</code>) bound to outputs of previous steps
+	 * @param inputs the {@link Result}s of the {@link ResultRepository} used as inputs
+	 * @param threads the thread budget, or <code>0</code> for an equal share of the cores
+	 * @param priority the priority
+	 * @return the step
+	 * @throws CloneNotSupportedException if the parameters could not be copied
+	 */
+	public Step addStep(JstacsTool tool, ToolParameterSet parameters, Map<FileParameter, Output> bindings, List<Result> inputs, int threads, JobScheduler.Priority priority) throws CloneNotSupportedException{
+		ToolParameterSet copy = parameters.clone();
+		IdentityHashMap<FileParameter, Output> copied = new IdentityHashMap<>();
+		Iterator<Map.Entry<FileParameter, Output>> it = bindings.entrySet().iterator();
+		while(it.hasNext()){
+			Map.Entry<FileParameter, Output> e = it.next();
+			if(e.getValue().getStep() < 0 || e.getValue().getStep() >= steps.size()){
+				throw new IllegalArgumentException( "Parameter \""+e.getKey().getName()+"\" is bound to an unknown step." );
+			}
+			copied.put( (FileParameter)find( parameters, copy, e.getKey() ), e.getValue() );
+		}
+		Step step = new Step( tool, copy, copied, new ArrayList<>( inputs ), threads, priority );
+		steps.add( step );
+		return step;
+	}
+
+	/**
+	 * Removes the last step of this pipeline.
+	 */
+	public void removeLast(){
+		if(steps.size() > 0){
+			steps.remove( steps.size()-1 );
+		}
+	}
+
+	/**
+	 * Removes all steps of this pipeline.
+	 */
+	public void clear(){
+		steps.clear();
+	}
+
+	/**
+	 * Creates a new run of this pipeline.
+	 * @return the run
+	 * @throws CloneNotSupportedException if the parameters could not be copied
+	 */
+	public Run start() throws CloneNotSupportedException{
+		return new Run( steps );
+	}
+
+	/**
+	 * Returns the outputs of all steps that may be bound to the given {@link FileParameter}. For each step, this is the first admissible output, and,
+	 * if a {@link ToolResult} of the same tool is in the {@link ResultRepository} (and in memory), the admissible outputs of the latest such {@link ToolResult} by name.
+	 * As tools do not declare the names of their outputs, the label of the first output of other steps hints at running the tool once.
+	 * @param parameter the parameter
+	 * @return the outputs
+	 */
+	public List<Output> getOutputs(FileParameter parameter){
+		ArrayList<Output> outputs = new ArrayList<>();
+		for(int i=0;i<steps.size();i++){
+			String label = "Step "+(i+1)+": "+steps.get( i ).tool.getToolName();
+			Result previous = getLatestResult( steps.get( i ).tool );
+			if(previous == null){
+				outputs.add( new Output( i, null, label+" (first output; run "+steps.get( i ).tool.getToolName()+" once to select outputs by name)" ) );
+			}else{
+				outputs.add( new Output( i, null, label+" (first output)" ) );
+				List<Result> admissible = FileParameterRenderer.getAdmissible( parameter, previous );
+				for(int j=0;j<admissible.size();j++){
+					Output output = new Output( i, admissible.get( j ).getName(), label+" / "+admissible.get( j ).getName() );
+					if(!outputs.contains( output )){
+						outputs.add( output );
+					}
+				}
+			}
+		}
+		return outputs;
+	}
+
+	private static Result getLatestResult(JstacsTool tool){
+		List<Result> results = ResultRepository.getInstance().getResults();
+		for(int i=results.size()-1;i>=0;i--){
+			Result res = results.get( i );
+			//do not restore results from disk only for determining names
+			if(res instanceof LazyResult && ((LazyResult)res).isToolResult() && ((LazyResult)res).isResolved()){
+				Result resolved = ResultRepository.getInstance().resolve( res );
+				if(resolved instanceof ToolResult && tool.getToolName().equals( ((ToolResult)resolved).getToolName() )){
+					return res;
+				}
+			}else if(res instanceof ToolResult && tool.getToolName().equals( ((ToolResult)res).getToolName() )){
+				return res;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the {@link Parameter} of a copy of a {@link ParameterSet} that corresponds to the given {@link Parameter} of the original.
+	 * @param original the original {@link ParameterSet}
+	 * @param copy the copy
+	 * @param target the {@link Parameter} in the original
+	 * @return the corresponding {@link Parameter} in the copy, or <code>null</code> if the target is not part of the original
+	 */
+	static Parameter find(ParameterSet original, ParameterSet copy, Parameter target){
+		for(int i=0;original != null && copy != null && i<original.getNumberOfParameters() && i<copy.getNumberOfParameters();i++){
+			Parameter found = find( original.getParameterAt( i ), copy.getParameterAt( i ), target );
+			if(found != null){
+				return found;
+			}
+		}
+		return null;
+	}
+
+	private static Parameter find(Parameter original, Parameter copy, Parameter target){
+		if(original == target){
+			return copy;
+		}else if(original instanceof ParameterSetContainer && copy instanceof ParameterSetContainer){
+			return find( ((ParameterSetContainer)original).getValue(), ((ParameterSetContainer)copy).getValue(), target );
+		}else if(original instanceof AbstractSelectionParameter && copy instanceof AbstractSelectionParameter){
+			return find( ((AbstractSelectionParameter)original).getParametersInCollection(), ((AbstractSelectionParameter)copy).getParametersInCollection(), target );
+		}
+		return null;
+	}
+
+}
@@ -0,0 +1,169 @@
+package de.jstacs.fx;
+
+import java.util.List;
+
+import javafx.beans.binding.Bindings;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.value.ObservableValue;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.Scene;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableColumn.CellDataFeatures;
+import javafx.scene.control.TableView;
+import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.stage.Stage;
+import javafx.stage.WindowEvent;
+import javafx.util.Callback;
+import de.jstacs.results.Result;
+
+/**
+ * Class for rendering the steps of a {@link Pipeline} in an {@link Application}.
+ * Steps are shown as rows of a {@link TableView} with the name of the tool, its inputs (outputs of previous steps and {@link Result}s of the repository),
+ * and the thread budget and priority of its job. The pipeline may be submitted as a whole, and steps may be removed from its end.
+ *
+ * The pipeline viewer is shown in a separate window.
+ *
+ * @author Jan Grau
+ *
+ */
+public class PipelineViewer extends Stage {
+
+	/**
+	 * Creates a new viewer for the given pipeline.
+	 * @param pipeline the pipeline
+	 * @param submit the action submitting the pipeline
+	 */
+	public PipelineViewer(Pipeline pipeline, Runnable submit) {
+
+		TableColumn<Pipeline.Step, Number> indexCol = new TableColumn<>("Step");
+		indexCol.setCellValueFactory( new Callback<TableColumn.CellDataFeatures<Pipeline.Step,Number>, ObservableValue<Number>>() {
+
+			@Override
+			public ObservableValue<Number> call( CellDataFeatures<Pipeline.Step, Number> arg0 ) {
+				return new ReadOnlyObjectWrapper<Number>( pipeline.getSteps().indexOf( arg0.getValue() )+1 );
+			}
+		} );
+
+		TableColumn<Pipeline.Step, String> nameCol = new TableColumn<>("Tool");
+		nameCol.setCellValueFactory( new Callback<TableColumn.CellDataFeatures<Pipeline.Step,String>, ObservableValue<String>>() {
+
+			@Override
+			public ObservableValue<String> call( CellDataFeatures<Pipeline.Step, String> arg0 ) {
+				return new ReadOnlyStringWrapper( arg0.getValue().getTool().getToolName() );
+			}
+		} );
+
+		TableColumn<Pipeline.Step, String> inputCol = new TableColumn<>("Inputs");
+		inputCol.setCellValueFactory( new Callback<TableColumn.CellDataFeatures<Pipeline.Step,String>, ObservableValue<String>>() {
+
+			@Override
+			public ObservableValue<String> call( CellDataFeatures<Pipeline.Step, String> arg0 ) {
+				StringBuffer sb = new StringBuffer();
+				List<Pipeline.Output> outputs = arg0.getValue().getBoundOutputs();
+				for(int i=0;i<outputs.size();i++){
+					sb.append( (sb.length() > 0 ? ", " : "")+outputs.get( i ) );
+				}
+				List<Result> inputs = arg0.getValue().getInputs();
+				for(int i=0;i<inputs.size();i++){
+					sb.append( (sb.length() > 0 ? ", " : "")+inputs.get( i ).getName() );
+				}
+				return new ReadOnlyStringWrapper( sb.toString() );
+			}
+		} );
+
+		TableColumn<Pipeline.Step, String> threadsCol = new TableColumn<>("Threads");
+		threadsCol.setCellValueFactory( new Callback<TableColumn.CellDataFeatures<Pipeline.Step,String>, ObservableValue<String>>() {
+
+			@Override
+			public ObservableValue<String> call( CellDataFeatures<Pipeline.Step, String> arg0 ) {
+				int threads = arg0.getValue().getThreads();
+				return new ReadOnlyStringWrapper( threads == 0 ? "auto" : String.valueOf( threads ) );
+			}
+		} );
+
+		TableColumn<Pipeline.Step, JobScheduler.Priority> priorityCol = new TableColumn<>("Priority");
+		priorityCol.setCellValueFactory( new Callback<TableColumn.CellDataFeatures<Pipeline.Step,JobScheduler.Priority>, ObservableValue<JobScheduler.Priority>>() {
+
+			@Override
+			public ObservableValue<JobScheduler.Priority> call( CellDataFeatures<Pipeline.Step, JobScheduler.Priority> arg0 ) {
+				return new ReadOnlyObjectWrapper<JobScheduler.Priority>( arg0.getValue().getPriority() );
+			}
+		} );
+
+		TableView<Pipeline.Step> table = new TableView<>();
+		table.getColumns().addAll( indexCol, nameCol, inputCol, threadsCol, priorityCol );
+		table.setColumnResizePolicy( TableView.CONSTRAINED_RESIZE_POLICY );
+		table.setItems( pipeline.getSteps() );
+		table.setPlaceholder( new Label( "Add steps using the \"Add to pipeline\" buttons of the tools" ) );
+
+		Button run = new Button( "Run pipeline" );
+		run.setOnAction( new EventHandler<ActionEvent>() {
+
+			@Override
+			public void handle( ActionEvent arg0 ) {
+				submit.run();
+			}
+
+		} );
+
+		Button remove = new Button( "Remove last step" );
+		remove.setOnAction( new EventHandler<ActionEvent>() {
+
+			@Override
+			public void handle( ActionEvent arg0 ) {
+				pipeline.removeLast();
+			}
+
+		} );
+
+		Button clear = new Button( "Clear" );
+		clear.setOnAction( new EventHandler<ActionEvent>() {
+
+			@Override
+			public void handle( ActionEvent arg0 ) {
+				pipeline.clear();
+			}
+
+		} );
+
+		run.disableProperty().bind( Bindings.isEmpty( pipeline.getSteps() ) );
+		remove.disableProperty().bind( Bindings.isEmpty( pipeline.getSteps() ) );
+		clear.disableProperty().bind( Bindings.isEmpty( pipeline.getSteps() ) );
+
+		HBox bottom = new HBox( 10, run, remove, clear );
+		bottom.setAlignment( Pos.CENTER_LEFT );
+		bottom.setPadding( new Insets( 5 ) );
+
+		BorderPane border = new BorderPane();
+		border.setCenter( table );
+		border.setBottom( bottom );
+
+		Scene scene = new Scene( border, 700, 250 );
+
+		this.setScene( scene );
+		this.setTitle( "Pipeline" );
+		this.hide();
+
+		final Stage st = this;
+
+		this.setOnCloseRequest( new EventHandler<WindowEvent>() {
+
+			@Override
+			public void handle( WindowEvent arg0 ) {
+				st.hide();
+			}
+
+		} );
+
+		this.setAlwaysOnTop( true );
+
+	}
+
+}
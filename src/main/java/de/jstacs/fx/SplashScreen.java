@@ -47,6 +47,19 @@ public class SplashScreen extends Scene {
 		return content;
 	}
 	
+	/**
+	 * Displays additional details, e.g., a report on recovering the automatically saved workspace, in a pane as provided by {@link #prepare(String)}.
+	 * @param prepared the prepared pane
+	 * @param details the details
+	 */
+	public static void setDetails(Pane prepared, String details){
+		Text text = new Text(details);
+		text.setStyle( "-fx-font-size:10pt;" );
+		HBox hb = new HBox(text);
+		hb.setStyle( "-fx-alignment:center;" );
+		((BorderPane)prepared).setTop( hb );
+	}
+	
 	/**
 	 * Creates a new splash screen for the pane as provided by {@link #prepare(String)}.
 	 * @param prepared the prepared pane
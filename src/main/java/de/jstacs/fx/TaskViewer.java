@@ -2,10 +2,18 @@ package de.jstacs.fx;
 
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
 import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
 import javafx.concurrent.Worker.State;
@@ -13,13 +21,23 @@ import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.Spinner;
+import javafx.scene.control.TableCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableColumn.CellDataFeatures;
 import javafx.scene.control.TableView;
+import javafx.scene.control.Tooltip;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
 import javafx.util.Callback;
+import javafx.util.Duration;
 import de.jstacs.results.ResultSetResult;
 import de.jstacs.tools.JstacsTool;
 import de.jstacs.utils.Pair;
@@ -31,8 +49,10 @@ import de.jstacs.utils.Pair;
  * until the end of the corresponding {@link JstacsTool#run(de.jstacs.parameters.ParameterSet, de.jstacs.tools.Protocol, de.jstacs.tools.ProgressUpdater, int)}
  * method.
  * 
- * Tasks are shown as rows of a {@link TableView} with the corresponding {@link JstacsTool} name, the date (and time) of starting the task, and
- * a cancel button.
+ * Tasks are shown as rows of a {@link TableView} in the order they are started, with the corresponding {@link JstacsTool} name, the date (and time)
+ * of starting the task, its priority, the progress of running tasks, and a cancel button. Pending tasks may be moved up or down, or promoted
+ * to a higher priority (see {@link JobScheduler}). Below the table, the maximum number of concurrently running tasks
+ * (see {@link JobScheduler#maxConcurrentJobs}) may be changed, and the busy thread pools of the application (see {@link ThreadPools}) are listed.
  * 
  * The task viewer is shown in a separate window.
  * 
@@ -48,10 +68,11 @@ public class TaskViewer extends Stage {
 	/**
 	 * Creates a new tasks viewer for the list of enqueued tasks and the map from task objects
 	 * to corresponding tool names and start dates.
+	 * @param scheduler the scheduler of the enqueued {@link Task}s
 	 * @param enqueued the list of enqueued {@link Task}s
 	 * @param nameMap the map from tasks to names and start dates
 	 */
-	public TaskViewer(ObservableList<Task<ResultSetResult>> enqueued, HashMap<Task<ResultSetResult>,Pair<String, Date>> nameMap) {
+	public TaskViewer(JobScheduler scheduler, ObservableList<Task<ResultSetResult>> enqueued, HashMap<Task<ResultSetResult>,Pair<String, Date>> nameMap) {
 		//this.enqueued = enqueued;
 		//this.nameMap = nameMap;
 				
@@ -86,6 +107,55 @@ public class TaskViewer extends Stage {
 		
 		
 		
+		TableColumn<Task<ResultSetResult>, JobScheduler.Priority> priorityCol = new TableColumn<>("Priority");
+		priorityCol.setCellValueFactory( new Callback<TableColumn.CellDataFeatures<Task<ResultSetResult>,JobScheduler.Priority>, ObservableValue<JobScheduler.Priority>>() {
+			
+			@Override
+			public ObservableValue<JobScheduler.Priority> call( CellDataFeatures<Task<ResultSetResult>, JobScheduler.Priority> arg0 ) {
+				return new ReadOnlyObjectWrapper<JobScheduler.Priority>( scheduler.getPriority( arg0.getValue() ) );
+			}
+		} );
+		
+		TableColumn<Task<ResultSetResult>, Task<ResultSetResult>> progressCol = new TableColumn<>("Progress");
+		progressCol.setCellValueFactory( new Callback<TableColumn.CellDataFeatures<Task<ResultSetResult>,Task<ResultSetResult>>, ObservableValue<Task<ResultSetResult>>>() {
+			
+			@Override
+			public ObservableValue<Task<ResultSetResult>> call( CellDataFeatures<Task<ResultSetResult>, Task<ResultSetResult>> arg0 ) {
+				return new ReadOnlyObjectWrapper<Task<ResultSetResult>>( arg0.getValue() );
+			}
+		} );
+		progressCol.setCellFactory( new Callback<TableColumn<Task<ResultSetResult>,Task<ResultSetResult>>, TableCell<Task<ResultSetResult>,Task<ResultSetResult>>>() {
+
+			@Override
+			public TableCell<Task<ResultSetResult>, Task<ResultSetResult>> call( TableColumn<Task<ResultSetResult>, Task<ResultSetResult>> arg0 ) {
+				return new TableCell<Task<ResultSetResult>, Task<ResultSetResult>>(){
+					
+					private ProgressBar bar = new ProgressBar();
+					
+					{
+						bar.setMaxWidth( Double.MAX_VALUE );
+					}
+
+					@Override
+					protected void updateItem( Task<ResultSetResult> item, boolean empty ) {
+						super.updateItem( item, empty );
+						bar.progressProperty().unbind();
+						bar.visibleProperty().unbind();
+						if(empty || item == null){
+							setGraphic( null );
+						}else{
+							bar.progressProperty().bind( item.progressProperty() );
+							//waiting tasks have no progress, yet
+							bar.visibleProperty().bind( item.runningProperty() );
+							setGraphic( bar );
+						}
+					}
+					
+				};
+			}
+			
+		} );
+		
 		TableColumn<Task<ResultSetResult>, Button> removeColumn = new TableColumn<>("Cancel");
 		removeColumn.setCellValueFactory( new Callback<TableColumn.CellDataFeatures<Task<ResultSetResult>, Button>, ObservableValue<Button>>() {
 
@@ -121,13 +191,114 @@ public class TaskViewer extends Stage {
 		BorderPane border = new BorderPane();
 		
 		table = new TableView<>();
-		table.getColumns().addAll( nameCol, dateCol, stateCol, removeColumn );
+		table.getColumns().addAll( nameCol, dateCol, priorityCol, stateCol, progressCol, removeColumn );
 		//table.setColumnResizePolicy( TableView.UNCONSTRAINED_RESIZE_POLICY );
 		table.setColumnResizePolicy( TableView.CONSTRAINED_RESIZE_POLICY );
 		table.setItems( enqueued );
 		
 		border.setCenter( table );
 		
+		Spinner<Integer> maxJobs = new Spinner<>( 1, JobScheduler.MAX_JOBS, Math.max( 1, JobScheduler.maxConcurrentJobs.get() ) );
+		maxJobs.setEditable( true );
+		maxJobs.setPrefWidth( 80 );
+		maxJobs.valueProperty().addListener( new ChangeListener<Integer>() {
+
+			@Override
+			public void changed( ObservableValue<? extends Integer> arg0, Integer arg1, Integer arg2 ) {
+				JobScheduler.maxConcurrentJobs.set( arg2 );
+			}
+			
+		} );
+		JobScheduler.maxConcurrentJobs.addListener( new ChangeListener<Number>() {
+
+			@Override
+			public void changed( ObservableValue<? extends Number> arg0, Number arg1, Number arg2 ) {
+				maxJobs.getValueFactory().setValue( Math.max( 1, arg2.intValue() ) );
+			}
+			
+		} );
+		Button up = new Button( "Move up" );
+		Button down = new Button( "Move down" );
+		Button promote = new Button( "Promote" );
+		promote.setTooltip( new Tooltip( "Raise the priority of the selected pending task and start it before all pending tasks of lower priority" ) );
+		EventHandler<ActionEvent> reorder = new EventHandler<ActionEvent>() {
+
+			@Override
+			public void handle( ActionEvent arg0 ) {
+				Task<ResultSetResult> task = table.getSelectionModel().getSelectedItem();
+				if(arg0.getSource() == up){
+					scheduler.moveUp( task );
+				}else if(arg0.getSource() == down){
+					scheduler.moveDown( task );
+				}else{
+					scheduler.promote( task );
+				}
+				table.refresh();
+				table.getSelectionModel().select( task );
+			}
+			
+		};
+		up.setOnAction( reorder );
+		down.setOnAction( reorder );
+		promote.setOnAction( reorder );
+		//only pending tasks may be reordered
+		InvalidationListener selection = new InvalidationListener() {
+
+			@Override
+			public void invalidated( Observable arg0 ) {
+				boolean waiting = scheduler.isWaiting( table.getSelectionModel().getSelectedItem() );
+				up.setDisable( !waiting );
+				down.setDisable( !waiting );
+				promote.setDisable( !waiting );
+			}
+			
+		};
+		table.getSelectionModel().selectedItemProperty().addListener( selection );
+		enqueued.addListener( selection );
+		selection.invalidated( null );
+		
+		Region spacer = new Region();
+		HBox.setHgrow( spacer, Priority.ALWAYS );
+		
+		HBox bottom = new HBox( 10, up, down, promote, spacer, new Label( "Maximum number of concurrent tasks:" ), maxJobs );
+		bottom.setAlignment( Pos.CENTER_LEFT );
+		bottom.setPadding( new Insets( 5 ) );
+		
+		//active and queued tasks of the thread pools, updated while shown
+		Label metrics = new Label();
+		metrics.setWrapText( true );
+		metrics.setPadding( new Insets( 0, 5, 5, 5 ) );
+		Timeline update = new Timeline( new KeyFrame( Duration.seconds( 1 ), new EventHandler<ActionEvent>() {
+
+			@Override
+			public void handle( ActionEvent event ) {
+				List<ThreadPools.Metrics> list = ThreadPools.getMetrics();
+				StringBuffer sb = new StringBuffer();
+				for(int i=0;i<list.size();i++){
+					if(list.get( i ).getActiveCount() > 0 || list.get( i ).getQueueDepth() > 0){
+						sb.append( (sb.length() > 0 ? "; " : "")+list.get( i ) );
+					}
+				}
+				metrics.setText( sb.length() == 0 ? "All thread pools idle" : sb.toString() );
+			}
+			
+		} ) );
+		update.setCycleCount( Timeline.INDEFINITE );
+		this.showingProperty().addListener( new ChangeListener<Boolean>() {
+
+			@Override
+			public void changed( ObservableValue<? extends Boolean> arg0, Boolean arg1, Boolean arg2 ) {
+				if(arg2){
+					update.play();
+				}else{
+					update.stop();
+				}
+			}
+			
+		} );
+		
+		border.setBottom( new VBox( bottom, metrics ) );
+		
 		Scene scene = new Scene( border, 700, 250 );
 		
 		this.setScene( scene );
@@ -0,0 +1,325 @@
+package de.jstacs.fx;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javafx.concurrent.Task;
+import de.jstacs.tools.Protocol;
+
+/**
+ * Factory and registry of the thread pools used by an {@link Application}. All pools
+ * <ul>
+ * <li>have a name, which is used as prefix of the names of their {@link Thread}s, so work shows up clearly in thread dumps and profilers,</li>
+ * <li>are bounded in the number of {@link Thread}s, where idle {@link Thread}s are terminated after some time,</li>
+ * <li>are bounded in the number of waiting tasks, where a {@link Thread} submitting to a full pool waits until a task has been started,</li>
+ * <li>use daemon {@link Thread}s, which do not prevent the JVM from exiting,</li>
+ * <li>route uncaught exceptions of their {@link Thread}s and failures of submitted {@link Future}s (including {@link javafx.concurrent.Task}s
+ * without an <code>onFailed</code> handler) to the protocol set by {@link ThreadPools#setProtocol(Protocol)}.</li>
+ * </ul>
+ * The active and queued tasks of all pools that have not been shut down may be obtained by {@link ThreadPools#getMetrics()}.
+ *
+ * @author Jan Grau
+ *
+ */
+public class ThreadPools {
+
+	/**
+	 * Default maximum number of waiting tasks of a pool.
+	 */
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * Current state of a pool.
+	 *
+	 * @author Jan Grau
+	 *
+	 */
+	public static class Metrics{
+
+		private String name;
+		private int active;
+		private int threads;
+		private int maxThreads;
+		private long queued;
+		private long completed;
+
+		private Metrics(String name, int active, int threads, int maxThreads, long queued, long completed){
+			this.name = name;
+			this.active = active;
+			this.threads = threads;
+			this.maxThreads = maxThreads;
+			this.queued = queued;
+			this.completed = completed;
+		}
+
+		/**
+		 * Returns the name of the pool.
+		 * @return the name
+		 */
+		public String getName(){
+			return name;
+		}
+
+		/**
+		 * Returns the number of {@link Thread}s currently running a task.
+		 * @return the number of active {@link Thread}s
+		 */
+		public int getActiveCount(){
+			return active;
+		}
+
+		/**
+		 * Returns the number of {@link Thread}s currently in the pool.
+		 * @return the number of {@link Thread}s
+		 */
+		public int getPoolSize(){
+			return threads;
+		}
+
+		/**
+		 * Returns the maximum number of {@link Thread}s of the pool.
+		 * @return the maximum number of {@link Thread}s
+		 */
+		public int getMaximumPoolSize(){
+			return maxThreads;
+		}
+
+		/**
+		 * Returns the number of tasks waiting for execution.
+		 * @return the queue depth
+		 */
+		public long getQueueDepth(){
+			return queued;
+		}
+
+		/**
+		 * Returns the (approximate) number of completed tasks, or <code>-1</code> if unknown.
+		 * @return the number of completed tasks
+		 */
+		public long getCompletedTaskCount(){
+			return completed;
+		}
+
+		@Override
+		public String toString() {
+			return name+": "+active+"/"+maxThreads+" active, "+queued+" queued";
+		}
+
+	}
+
+	private static class NamedThreadFactory implements ThreadFactory{
+
+		private String name;
+		private int priority;
+		private AtomicInteger number;
+
+		private NamedThreadFactory(String name, int priority){
+			this.name = name;
+			this.priority = priority;
+			this.number = new AtomicInteger();
+		}
+
+		@Override
+		public Thread newThread( Runnable r ) {
+			Thread thread = new Thread( r, name+"-"+number.incrementAndGet() );
+			thread.setDaemon( true );
+			thread.setPriority( priority );
+			thread.setUncaughtExceptionHandler( handler );
+			return thread;
+		}
+
+	}
+
+	private static class ManagedPool extends ThreadPoolExecutor{
+
+		private ManagedPool(String name, int threads, BlockingQueue<Runnable> queue, int priority){
+			super( threads, threads, 30L, TimeUnit.SECONDS, queue, new NamedThreadFactory( name, priority ), WAIT );
+			allowCoreThreadTimeOut( true );
+		}
+
+		@Override
+		protected void afterExecute( Runnable r, Throwable t ) {
+			super.afterExecute( r, t );
+			//exceptions thrown by other tasks reach the uncaught exception handler
+			if(t == null && r instanceof Future<?> && ((Future<?>)r).isDone()){
+				if(r instanceof Task<?> && ((Task<?>)r).getOnFailed() != null){
+					//reported by the handler
+					return;
+				}
+				try{
+					((Future<?>)r).get();
+				}catch(CancellationException e){
+				}catch(ExecutionException e){
+					report( "Task failed in thread \""+Thread.currentThread().getName()+"\"", e.getCause() );
+				}catch(InterruptedException e){
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+
+		@Override
+		protected void terminated() {
+			super.terminated();
+			synchronized(ThreadPools.class){
+				pools.remove( this );
+			}
+		}
+
+	}
+
+	/**
+	 * Waits until the queue of the pool has space for the rejected task, unless the pool has been shut down.
+	 */
+	private static final RejectedExecutionHandler WAIT = new RejectedExecutionHandler() {
+
+		@Override
+		public void rejectedExecution( Runnable r, ThreadPoolExecutor executor ) {
+			try{
+				while(!executor.isShutdown()){
+					if(executor.getQueue().offer( r, 100, TimeUnit.MILLISECONDS )){
+						return;
+					}
+				}
+			}catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+			throw new RejectedExecutionException( "Task "+r+" rejected from "+executor );
+		}
+
+	};
+
+	private static final Thread.UncaughtExceptionHandler handler = new Thread.UncaughtExceptionHandler() {
+
+		@Override
+		public void uncaughtException( Thread t, Throwable e ) {
+			report( "Uncaught exception in thread \""+t.getName()+"\"", e );
+		}
+
+	};
+
+	private static void report(String message, Throwable e){
+		e.printStackTrace();
+		Protocol p = protocol;
+		if(p != null){
+			p.appendWarning( message+": "+e+"\n" );
+		}
+	}
+
+	private static volatile Protocol protocol;
+	private static ExecutorService background;
+	private static LinkedHashMap<ExecutorService, String> pools = new LinkedHashMap<>();
+
+	/**
+	 * Sets the protocol that uncaught exceptions of the {@link Thread}s of all pools are reported to.
+	 * @param protocol the protocol, may be <code>null</code>
+	 */
+	public static void setProtocol(Protocol protocol){
+		ThreadPools.protocol = protocol;
+	}
+
+	/**
+	 * Returns the pool shared by short-lived background tasks of the user interface, e.g., loading workspaces or searching the repository.
+	 * @return the pool
+	 */
+	public static synchronized ExecutorService getBackground(){
+		if(background == null){
+			background = newPool( "Background", Math.max( 2, Math.min( 8, Runtime.getRuntime().availableProcessors() ) ) );
+		}
+		return background;
+	}
+
+	/**
+	 * Creates a new pool with a queue of {@link #DEFAULT_CAPACITY} waiting tasks, where tasks are executed by at most the given number of {@link Thread}s.
+	 * @param name the name of the pool
+	 * @param threads the maximum number of {@link Thread}s
+	 * @return the pool
+	 */
+	public static ExecutorService newPool(String name, int threads){
+		return newPool( name, threads, DEFAULT_CAPACITY, Thread.NORM_PRIORITY );
+	}
+
+	/**
+	 * Creates a new pool, where tasks are executed by at most the given number of {@link Thread}s of the given priority.
+	 * If the queue is full, the submitting {@link Thread} waits until a waiting task has been started, so producers are slowed down
+	 * to the speed of the pool. Hence, tasks of a pool must not submit further tasks to the same pool, and tasks must not be submitted while holding
+	 * a lock that the tasks of the pool acquire.
+	 * Tasks submitted after the pool has been shut down are rejected by a {@link RejectedExecutionException}.
+	 * @param name the name of the pool
+	 * @param threads the maximum number of {@link Thread}s
+	 * @param capacity the maximum number of waiting tasks
+	 * @param priority the priority of the {@link Thread}s
+	 * @return the pool
+	 */
+	public static synchronized ExecutorService newPool(String name, int threads, int capacity, int priority){
+		ManagedPool pool = new ManagedPool( name, Math.max( 1, threads ), new ArrayBlockingQueue<Runnable>( Math.max( 1, capacity ) ), priority );
+		pools.put( pool, name );
+		return pool;
+	}
+
+	/**
+	 * Creates a new {@link ForkJoinPool} with the given parallelism, whose {@link Thread}s are named and route uncaught exceptions
+	 * like those of the other pools.
+	 * @param name the name of the pool
+	 * @param parallelism the parallelism
+	 * @return the pool
+	 */
+	public static synchronized ForkJoinPool newForkJoinPool(String name, int parallelism){
+		final AtomicInteger number = new AtomicInteger();
+		ForkJoinPool pool = new ForkJoinPool( Math.max( 1, parallelism ), new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+
+			@Override
+			public ForkJoinWorkerThread newThread( ForkJoinPool pool ) {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread( pool );
+				thread.setName( name+"-"+number.incrementAndGet() );
+				thread.setDaemon( true );
+				return thread;
+			}
+
+		}, handler, false );
+		pools.put( pool, name );
+		return pool;
+	}
+
+	/**
+	 * Returns the current state of all pools that have not been shut down, in the order of their creation.
+	 * @return the states of the pools
+	 */
+	public static List<Metrics> getMetrics(){
+		LinkedHashMap<ExecutorService, String> copy;
+		//pools are not queried while holding the lock, since terminating pools acquire it in terminated()
+		synchronized(ThreadPools.class){
+			copy = new LinkedHashMap<>( pools );
+		}
+		ArrayList<Metrics> metrics = new ArrayList<>();
+		Iterator<ExecutorService> it = copy.keySet().iterator();
+		while(it.hasNext()){
+			ExecutorService pool = it.next();
+			if(pool instanceof ManagedPool){
+				ManagedPool mp = (ManagedPool)pool;
+				metrics.add( new Metrics( copy.get( pool ), mp.getActiveCount(), mp.getPoolSize(), mp.getMaximumPoolSize(), mp.getQueue().size(), mp.getCompletedTaskCount() ) );
+			}else if(pool instanceof ForkJoinPool && !pool.isShutdown()){
+				ForkJoinPool fjp = (ForkJoinPool)pool;
+				metrics.add( new Metrics( copy.get( pool ), fjp.getActiveThreadCount(), fjp.getPoolSize(), fjp.getParallelism(),
+						fjp.getQueuedSubmissionCount()+fjp.getQueuedTaskCount(), -1 ) );
+			}
+		}
+		return metrics;
+	}
+
+}
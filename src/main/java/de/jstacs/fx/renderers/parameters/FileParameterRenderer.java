@@ -2,16 +2,28 @@ package de.jstacs.fx.renderers.parameters;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import de.jstacs.fx.Application;
 import de.jstacs.fx.Application.ToolReady;
 import de.jstacs.fx.LoadSaveDialogs;
+import de.jstacs.fx.Pipeline;
+import de.jstacs.fx.ThreadPools;
+import de.jstacs.fx.repository.LazyResult;
 import de.jstacs.fx.repository.ResultRepository;
 import de.jstacs.fx.repository.ResultRepository.ResultConsumer;
+import de.jstacs.fx.repository.UnavailableResultException;
+import de.jstacs.parameters.AbstractSelectionParameter;
 import de.jstacs.parameters.FileParameter;
 import de.jstacs.parameters.FileParameter.FileRepresentation;
+import de.jstacs.parameters.Parameter;
+import de.jstacs.parameters.ParameterSet;
+import de.jstacs.parameters.ParameterSetContainer;
 import de.jstacs.parameters.SimpleParameter.IllegalValueException;
 import de.jstacs.results.Result;
 import de.jstacs.results.ResultSetResult;
@@ -21,7 +33,10 @@ import de.jstacs.results.savers.ResultSaverLibrary;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.scene.Node;
@@ -35,6 +50,8 @@ import javafx.scene.layout.Pane;
  * 
  * The {@link FileParameter} is rendered as a drop-down list of all admissible files (or results) that are already in the {@link ResultRepository} and
  * a button for loading new files from disk. This button opens a file dialog for selecting files from disk.
+ * If a {@link Pipeline} has been set, the drop-down list additionally contains the outputs of its steps, which may be selected for adding
+ * a further step to the pipeline.
  * 
  * @author Jan Grau
  *
@@ -45,33 +62,43 @@ public class FileParameterRenderer extends AbstractParameterRenderer<FileParamet
 		
 		private Result res;
 		
+		private Pipeline.Output output;
+		
 		private FileRepresentation frint2;
 		
 		public ResultContainer(Result fr){
 			this.res = fr;
 		}
 		
+		public ResultContainer(Pipeline.Output output){
+			this.output = output;
+		}
+		
 		public FileRepresentation getFileRepresentation(){
 			if(frint2 == null){
 				if(res !=null){
-					if(res instanceof TextResult){
-						frint2 = ((TextResult)res).getValue();
-					}else{
-						ResultSaver saver = ResultSaverLibrary.getSaver( res.getClass() );
-						if(saver != null){
-							StringBuffer sb = new StringBuffer();
-							saver.writeOutput( res, sb );
-							frint2 = new FileRepresentation( "", sb.toString() );
-							frint2.setExtension( saver.getFileExtensions( res )[0] );
-						}
+					try{
+						frint2 = FileParameterRenderer.getFileRepresentation( res );
+					}catch(UnavailableResultException e){
+						return null;
 					}
 				}
 			}
 			return frint2;
 		}
 		
+		public String getFilename(){
+			if(res instanceof LazyResult){
+				return ((LazyResult)res).isTextResult() ? ((LazyResult)res).getFilename() : "";
+			}
+			FileRepresentation fr = getFileRepresentation();
+			return fr == null ? null : fr.getFilename();
+		}
+		
 		public String toString(){
-			if(res == null){
+			if(output != null){
+				return "\u2192 "+output.toString();
+			}else if(res == null){
 				return "--- None ---";
 			}else{
 				return res.getName();
@@ -82,11 +109,17 @@ public class FileParameterRenderer extends AbstractParameterRenderer<FileParamet
 			if(other instanceof ResultContainer && res != null ){
 				//return res.equals( ((ResultContainer)other).res );
 				return res == ((ResultContainer)other).res;
+			}else if(other instanceof ResultContainer && output != null){
+				return output.equals( ((ResultContainer)other).output );
 			}else{
 				return false;
 			}
 		}
 		
+		public int hashCode(){
+			return output != null ? output.hashCode() : System.identityHashCode( res );
+		}
+		
 		
 	}
 	
@@ -97,6 +130,88 @@ public class FileParameterRenderer extends AbstractParameterRenderer<FileParamet
 		ParameterRendererLibrary.register( FileParameter.class, new FileParameterRenderer() );
 	}
 	
+	private static Pipeline pipeline;
+	
+	/**
+	 * Sets the {@link Pipeline} whose step outputs are offered, in addition to the {@link Result}s of the {@link ResultRepository},
+	 * in the drop-down lists of all rendered {@link FileParameter}s. The drop-down lists are updated whenever steps are added or removed.
+	 * @param pipeline the pipeline
+	 */
+	public static void setPipeline(Pipeline pipeline){
+		FileParameterRenderer.pipeline = pipeline;
+		pipeline.getSteps().addListener( new ListChangeListener<Pipeline.Step>() {
+
+			@Override
+			public void onChanged( javafx.collections.ListChangeListener.Change<? extends Pipeline.Step> c ) {
+				ArrayList<ResultConsumer> consumers = ResultRepository.getInstance().getConsumers();
+				for(int i=0;i<consumers.size();i++){
+					if(consumers.get( i ) instanceof FileResultConsumer){
+						((FileResultConsumer)consumers.get( i )).updateOutputs();
+					}
+				}
+			}
+			
+		} );
+	}
+	
+	/**
+	 * Returns the {@link Result}s nested in (or equal to) the given {@link Result} that are admissible as values of the given {@link FileParameter}.
+	 * @param parameter the parameter
+	 * @param result the {@link Result}
+	 * @return the admissible {@link Result}s
+	 */
+	public static List<Result> getAdmissible(FileParameter parameter, Result result){
+		LinkedList<ResultContainer> li = new LinkedList<>();
+		collectAdmissible( parameter, result, li );
+		ArrayList<Result> admissible = new ArrayList<>( li.size() );
+		for(ResultContainer cont : li){
+			admissible.add( cont.res );
+		}
+		return admissible;
+	}
+	
+	/**
+	 * Sets the value of a {@link FileParameter} to the contents of an admissible {@link Result} (see {@link #getAdmissible(FileParameter, Result)}).
+	 * @param parameter the parameter
+	 * @param result the {@link Result}
+	 * @throws IllegalValueException if the contents are not a valid value of the parameter
+	 * @throws CloneNotSupportedException if the contents could not be copied
+	 */
+	public static void setValue(FileParameter parameter, Result result) throws IllegalValueException, CloneNotSupportedException{
+		Result res;
+		try{
+			res = ResultRepository.getInstance().resolve( result );
+		}catch(UnavailableResultException e){
+			throw new IllegalValueException( parameter.getName(), e.getMessage() );
+		}
+		if(res instanceof TextResult){
+			((TextResult)res).fill( parameter );
+		}else{
+			FileRepresentation fr = getFileRepresentation( res );
+			if(fr == null){
+				throw new IllegalValueException( parameter.getName(), "No file representation of "+result.getName() );
+			}
+			parameter.setValue( fr );
+		}
+	}
+	
+	private static FileRepresentation getFileRepresentation(Result result){
+		Result res = ResultRepository.getInstance().resolve( result );
+		if(res instanceof TextResult){
+			return ((TextResult)res).getValue();
+		}else{
+			ResultSaver saver = ResultSaverLibrary.getSaver( res.getClass() );
+			if(saver != null){
+				StringBuffer sb = new StringBuffer();
+				saver.writeOutput( res, sb );
+				FileRepresentation fr = new FileRepresentation( "", sb.toString() );
+				fr.setExtension( saver.getFileExtensions( res )[0] );
+				return fr;
+			}
+		}
+		return null;
+	}
+	
 	/**
 	 * Returns the {@link ChoiceBox} that represents this provided {@link FileParameter} in the GUI.
 	 * @param parameter the parameter
@@ -115,6 +230,77 @@ public class FileParameterRenderer extends AbstractParameterRenderer<FileParamet
 		return null;
 	}
 	
+	/**
+	 * Returns the {@link Result} of the {@link ResultRepository} currently selected for the provided {@link FileParameter} in the GUI,
+	 * or <code>null</code> if no {@link Result} is selected or the parameter is not rendered.
+	 * @param parameter the parameter
+	 * @return the selected {@link Result}
+	 */
+	public static Result getSelectedResult(FileParameter parameter){
+		ChoiceBox<ResultContainer> box = getBox( parameter );
+		if(box == null){
+			return null;
+		}
+		ResultContainer selected = box.getSelectionModel().getSelectedItem();
+		return selected == null ? null : selected.res;
+	}
+	
+	/**
+	 * Returns the {@link Result}s of the {@link ResultRepository} currently selected for all {@link FileParameter}s of the provided
+	 * {@link ParameterSet} in the GUI, including {@link FileParameter}s in nested {@link ParameterSet}s and in the selected options of
+	 * {@link AbstractSelectionParameter}s.
+	 * @param parameters the parameters
+	 * @return the selected {@link Result}s
+	 */
+	public static List<Result> getSelectedResults(ParameterSet parameters){
+		ArrayList<Result> selected = new ArrayList<>();
+		collectSelected( parameters, selected );
+		return selected;
+	}
+	
+	/**
+	 * Returns the outputs of {@link Pipeline} steps currently selected for all {@link FileParameter}s of the provided
+	 * {@link ParameterSet} in the GUI, including {@link FileParameter}s in nested {@link ParameterSet}s and in the selected options of
+	 * {@link AbstractSelectionParameter}s.
+	 * @param parameters the parameters
+	 * @return the {@link FileParameter}s bound to outputs and the outputs
+	 */
+	public static Map<FileParameter, Pipeline.Output> getSelectedOutputs(ParameterSet parameters){
+		IdentityHashMap<FileParameter, Pipeline.Output> outputs = new IdentityHashMap<>();
+		collectSelected( parameters, null, outputs );
+		return outputs;
+	}
+	
+	private static void collectSelected(ParameterSet parameters, List<Result> selected){
+		collectSelected( parameters, selected, null );
+	}
+	
+	private static void collectSelected(ParameterSet parameters, List<Result> selected, Map<FileParameter, Pipeline.Output> outputs){
+		for(int i=0;parameters != null && i<parameters.getNumberOfParameters();i++){
+			collectSelected( parameters.getParameterAt( i ), selected, outputs );
+		}
+	}
+	
+	private static void collectSelected(Parameter parameter, List<Result> selected, Map<FileParameter, Pipeline.Output> outputs){
+		if(parameter instanceof FileParameter){
+			ChoiceBox<ResultContainer> box = getBox( (FileParameter)parameter );
+			ResultContainer cont = box == null ? null : box.getSelectionModel().getSelectedItem();
+			if(cont != null && cont.res != null && selected != null){
+				selected.add( cont.res );
+			}else if(cont != null && cont.output != null && outputs != null){
+				outputs.put( (FileParameter)parameter, cont.output );
+			}
+		}else if(parameter instanceof ParameterSetContainer){
+			collectSelected( ((ParameterSetContainer)parameter).getValue(), selected, outputs );
+		}else if(parameter instanceof AbstractSelectionParameter){
+			ParameterSet options = ((AbstractSelectionParameter)parameter).getParametersInCollection();
+			int idx = ((AbstractSelectionParameter)parameter).getSelected();
+			if(options != null && idx >= 0 && idx < options.getNumberOfParameters()){
+				collectSelected( options.getParameterAt( idx ), selected, outputs );
+			}
+		}
+	}
+	
 	private FileParameterRenderer(){
 		
 	}
@@ -158,29 +344,51 @@ public class FileParameterRenderer extends AbstractParameterRenderer<FileParamet
 			LinkedList<ResultContainer> li = new LinkedList<>();
 			collectForModification( added, li );
 			
-			box.getItems().addAll( li );
+			addAll( li );
 		}
 		
+		/**
+		 * Adds {@link Result}s before the outputs of pipeline steps, which are kept at the end of the list.
+		 * @param li the {@link Result}s
+		 */
+		private void addAll(List<ResultContainer> li){
+			int idx = box.getItems().size();
+			while(idx > 0 && box.getItems().get( idx-1 ).output != null){
+				idx--;
+			}
+			box.getItems().addAll( idx, li );
+		}
 		
-		private void collectForModification(Result result, LinkedList<ResultContainer> toModify){
-			if(result instanceof TextResult && TextResult.equals( parameter.getAcceptedMimeType(), ((TextResult)result).getMime() )){
-				//box.getItems().remove( new ResultContainer( (TextResult)removed ) );
-				toModify.add( new ResultContainer( (TextResult)result ) );
-			}else if(result instanceof ResultSetResult){
-				Result[] temp = ((ResultSetResult)result).getRawResult()[0].getResults();
-				for(int i=0;i<temp.length;i++){
-					collectForModification( temp[i], toModify );
+		/**
+		 * Replaces the outputs of pipeline steps in the list by the current ones, keeping the selection if the selected output still exists.
+		 */
+		private void updateOutputs(){
+			ResultContainer selected = box.getSelectionModel().getSelectedItem();
+			ArrayList<ResultContainer> outputs = new ArrayList<>();
+			if(pipeline != null){
+				List<Pipeline.Output> temp = pipeline.getOutputs( parameter );
+				for(int i=0;i<temp.size();i++){
+					outputs.add( new ResultContainer( temp.get( i ) ) );
 				}
-			}else{
-				ResultSaver saver = ResultSaverLibrary.getSaver( result.getClass() );
-				if(saver != null){
-					String[] exts = saver.getFileExtensions( result );
-					if(TextResult.equals( exts, parameter.getAcceptedMimeType() )){
-						//box.getItems().remove( cont );
-						toModify.add( new ResultContainer( result ) );
-					}
+			}
+			Iterator<ResultContainer> it = box.getItems().iterator();
+			while(it.hasNext()){
+				if(it.next().output != null){
+					it.remove();
 				}
 			}
+			box.getItems().addAll( outputs );
+			if(selected != null && selected.output != null){
+				if(outputs.contains( selected )){
+					box.getSelectionModel().select( outputs.get( outputs.indexOf( selected ) ) );
+				}else{
+					box.getSelectionModel().select( 0 );
+				}
+			}
+		}
+		
+		private void collectForModification(Result result, LinkedList<ResultContainer> toModify){
+			collectAdmissible( parameter, result, toModify );
 		}
 		
 		@Override
@@ -192,6 +400,24 @@ public class FileParameterRenderer extends AbstractParameterRenderer<FileParamet
 			box.getItems().removeAll( li );
 		}
 
+		@Override
+		public void notifyAddedAll( List<Result> added ) {
+			LinkedList<ResultContainer> li = new LinkedList<>();
+			for(int i=0;i<added.size();i++){
+				collectForModification( added.get( i ), li );
+			}
+			addAll( li );
+		}
+		
+		@Override
+		public void notifyRemovedAll( List<Result> removed ) {
+			LinkedList<ResultContainer> li = new LinkedList<>();
+			for(int i=0;i<removed.size();i++){
+				collectForModification( removed.get( i ), li );
+			}
+			box.getItems().removeAll( new HashSet<>( li ) );
+		}
+
 		@Override
 		public void notifyRefresh(Result renamed) {
 			if(!box.getItems().isEmpty()){
@@ -199,11 +425,70 @@ public class FileParameterRenderer extends AbstractParameterRenderer<FileParamet
 			}
 		}
 		
+		@Override
+		public void notifyReplaced( Result old, Result replacement ) {
+			IdentityHashMap<Result, Result> map = new IdentityHashMap<>();
+			collectReplacements( old, replacement, map );
+			for(ResultContainer cont : box.getItems()){
+				Result rep = map.get( cont.res );
+				if(rep != null){
+					//keep the container, so the selection remains unchanged
+					cont.res = rep;
+					cont.frint2 = null;
+				}
+			}
+		}
+		
+		private void collectReplacements(Result old, Result replacement, IdentityHashMap<Result, Result> map){
+			map.put( old, replacement );
+			if(old instanceof ResultSetResult && replacement instanceof LazyResult && ((LazyResult)replacement).getChildren() != null){
+				Result[] temp = ((ResultSetResult)old).getRawResult()[0].getResults();
+				LazyResult[] children = ((LazyResult)replacement).getChildren();
+				for(int i=0;i<temp.length && i<children.length;i++){
+					collectReplacements( temp[i], children[i], map );
+				}
+			}
+		}
+		
 		
 		
 	}
 	
 	
+	private static void collectAdmissible(FileParameter parameter, Result result, LinkedList<ResultContainer> toModify){
+		if(result instanceof LazyResult){
+			LazyResult lazy = (LazyResult)result;
+			if(lazy.getChildren() != null){
+				for(int i=0;i<lazy.getChildren().length;i++){
+					collectAdmissible( parameter, lazy.getChildren()[i], toModify );
+				}
+			}else if(lazy.isTextResult()){
+				if(TextResult.equals( parameter.getAcceptedMimeType(), lazy.getMime() )){
+					toModify.add( new ResultContainer( lazy ) );
+				}
+			}else if(TextResult.equals( lazy.getExtensions(), parameter.getAcceptedMimeType() )){
+				toModify.add( new ResultContainer( lazy ) );
+			}
+		}else if(result instanceof TextResult && TextResult.equals( parameter.getAcceptedMimeType(), ((TextResult)result).getMime() )){
+			//box.getItems().remove( new ResultContainer( (TextResult)removed ) );
+			toModify.add( new ResultContainer( (TextResult)result ) );
+		}else if(result instanceof ResultSetResult){
+			Result[] temp = ((ResultSetResult)result).getRawResult()[0].getResults();
+			for(int i=0;i<temp.length;i++){
+				collectAdmissible( parameter, temp[i], toModify );
+			}
+		}else{
+			ResultSaver saver = ResultSaverLibrary.getSaver( result.getClass() );
+			if(saver != null){
+				String[] exts = saver.getFileExtensions( result );
+				if(TextResult.equals( exts, parameter.getAcceptedMimeType() )){
+					//box.getItems().remove( cont );
+					toModify.add( new ResultContainer( result ) );
+				}
+			}
+		}
+	}
+	
 	private static ResultContainer[] getItems(FileParameter parameter){
 		List<Result> files = ResultRepository.getInstance().filterByMimeAndExtendedType( parameter.getAcceptedMimeType(), null );
 		
@@ -238,6 +523,11 @@ public class FileParameterRenderer extends AbstractParameterRenderer<FileParamet
 		}
 
 		FileRepresentation fr = new FileRepresentation(f.getAbsolutePath());
+		//share the contents of a previously loaded file with identical contents instead of keeping them twice in memory
+		Result existing = ResultRepository.getInstance().findTextResult( parameter.getAcceptedMimeType(), fr.getContent() );
+		if(existing != null){
+			fr = new FileRepresentation( f.getAbsolutePath(), ((TextResult)ResultRepository.getInstance().resolve( existing )).getValue().getContent() );
+		}
 		TextResult fres = new TextResult( f.getName(), "Loaded from "+f.getAbsolutePath(), fr, false, parameter.getAcceptedMimeType(), "Loaded from file", parameter.getExtendedType(), false );
 		try {
 			fres.fill( parameter );
@@ -262,6 +552,68 @@ public class FileParameterRenderer extends AbstractParameterRenderer<FileParamet
 		
 	}
 	
+	private static void fill(FileParameter parameter, Result resolved, ResultContainer item) throws IllegalValueException, CloneNotSupportedException{
+		if(resolved instanceof TextResult){
+			((TextResult)resolved).fill( parameter );
+		}else if(item.getFileRepresentation() != null){
+			parameter.setValue( item.getFileRepresentation() );
+		}
+	}
+	
+	/**
+	 * Restores the selected {@link LazyResult} in a background {@link Thread} and sets the value of the parameter afterwards, unless
+	 * another item has been selected in the meantime.
+	 * @param parameter the parameter
+	 * @param box the drop-down list of the parameter
+	 * @param item the selected item
+	 * @param error the label for error messages
+	 * @param ready the ready state of the tool
+	 */
+	private static void load(final FileParameter parameter, final ChoiceBox<ResultContainer> box, final ResultContainer item, final Label error, final ToolReady ready){
+		final Task<Result> task = new Task<Result>() {
+
+			@Override
+			protected Result call() throws Exception {
+				return ResultRepository.getInstance().resolve( item.res );
+			}
+			
+		};
+		task.setOnSucceeded( new EventHandler<WorkerStateEvent>() {
+
+			@Override
+			public void handle( WorkerStateEvent arg0 ) {
+				if(box.getSelectionModel().getSelectedItem() != item){
+					return;
+				}
+				try{
+					fill( parameter, task.getValue(), item );
+				}catch ( IllegalValueException e ) {
+					e.printStackTrace();
+				}catch (CloneNotSupportedException ex){
+					ex.printStackTrace();
+				}finally{
+					ready.testReady();
+					error.setText( parameter.getErrorMessage() );
+				}
+			}
+			
+		} );
+		task.setOnFailed( new EventHandler<WorkerStateEvent>() {
+
+			@Override
+			public void handle( WorkerStateEvent arg0 ) {
+				if(box.getSelectionModel().getSelectedItem() != item){
+					return;
+				}
+				parameter.reset();
+				ready.testReady();
+				error.setText( task.getException().getMessage() );
+			}
+			
+		} );
+		ThreadPools.getBackground().execute( task );
+	}
+	
 	@Override
 	protected void addInputs( final FileParameter parameter, Pane parent, Label name, Node comment, Label error, ToolReady ready ) {
 		
@@ -271,7 +623,13 @@ public class FileParameterRenderer extends AbstractParameterRenderer<FileParamet
 		final ChoiceBox<ResultContainer> box = new ChoiceBox<ResultContainer>();
 		
 		ObservableList<ResultContainer> ilist= FXCollections.observableArrayList( items );
-		ilist.add(0, new ResultContainer(null));
+		ilist.add(0, new ResultContainer((Result)null));
+		if(pipeline != null){
+			List<Pipeline.Output> outputs = pipeline.getOutputs( parameter );
+			for(int i=0;i<outputs.size();i++){
+				ilist.add( new ResultContainer( outputs.get( i ) ) );
+			}
+		}
 		box.setItems( ilist );
 		parent.getChildren().add( box );
 		
@@ -279,23 +637,36 @@ public class FileParameterRenderer extends AbstractParameterRenderer<FileParamet
 
 			@Override
 			public void changed( ObservableValue<? extends ResultContainer> arg0, ResultContainer arg1, ResultContainer arg2 ) {
+				String unavailable = null;
 				try{
 					//System.out.println("selected "+arg2);
 					if(arg2 == null){
 						parameter.reset();
-					}else if(arg2.res instanceof TextResult){
-						((TextResult)arg2.res).fill( parameter );
-					}else if(arg2.getFileRepresentation() != null){
-						parameter.setValue( arg2.getFileRepresentation() );
+					}else if(arg2.output != null){
+						//placeholder until the output of the pipeline step is available (see Pipeline.Run#bind(int))
+						FileRepresentation placeholder = new FileRepresentation( arg2.output.toString(), "" );
+						String[] ext = parameter.getAcceptedMimeType().split( "," );
+						placeholder.setExtension( ext[0] );
+						parameter.setValue( placeholder );
+					}else if(arg2.res instanceof LazyResult && !((LazyResult)arg2.res).isResolved()){
+						//restore the placeholder from the workspace file in the background
+						parameter.reset();
+						unavailable = "Loading "+arg2.res.getName()+"...";
+						load( parameter, box, arg2, error, ready );
+					}else{
+						fill( parameter, ResultRepository.getInstance().resolve( arg2.res ), arg2 );
 					}
 				} catch ( IllegalValueException e ) {
 					// TODO Auto-generated catch block
 					e.printStackTrace();
 				}catch (CloneNotSupportedException ex){
 					ex.printStackTrace();
+				}catch (UnavailableResultException ex){
+					parameter.reset();
+					unavailable = ex.getMessage();
 				}finally{
 					ready.testReady();
-					error.setText( parameter.getErrorMessage() );
+					error.setText( unavailable != null ? unavailable : parameter.getErrorMessage() );
 				}
 			}
 			
@@ -310,9 +681,9 @@ public class FileParameterRenderer extends AbstractParameterRenderer<FileParamet
 			if(filename != null && filename.length() > 0){
 				
 				for(int i=0;i<items.length && !found;i++){
-					FileRepresentation temp = items[i].getFileRepresentation();
-					//System.out.println(filename+" <-> "+temp.getFilename());
-					if(temp != null && filename.equals( temp.getFilename() )){
+					String temp = items[i].getFilename();
+					//System.out.println(filename+" <-> "+temp);
+					if(temp != null && filename.equals( temp )){
 						box.getSelectionModel().select( items[i] );
 						//System.out.println("selected "+filename);
 						found = true;
@@ -341,7 +712,7 @@ public class FileParameterRenderer extends AbstractParameterRenderer<FileParamet
 			}
 		}
 		
-		ResultRepository.getInstance().register(new FileResultConsumer( parameter, box ));
+		ResultRepository.getInstance().register( new FileResultConsumer( parameter, box ), box );
 		
 		
 		
@@ -47,6 +47,11 @@ public class TextResultRenderer implements ResultRenderer<TextResult> {
 		ResultRendererLibrary.register( TextResult.class, new TextResultRenderer() );
 	}
 	
+	/**
+	 * Key of the property of rendered tables holding the line of the contents in the first row, see {@link #showLine(Node, int)}
+	 */
+	private static final String FIRST_LINE = "textresult-first-line";
+	
 	private LinkedList<Pair<TextResult,Node>> nodeCache;
 	
 	private TextResultRenderer() {
@@ -111,6 +116,29 @@ public class TextResultRenderer implements ResultRenderer<TextResult> {
 		return opts;
 	}
 
+	/**
+	 * Selects the given line of the contents in a {@link Node} returned by {@link #render(TextResult, Pane)} and scrolls to that line.
+	 * @param node the rendered {@link TextResult}
+	 * @param line the (0-based) line of the contents
+	 */
+	public static void showLine(Node node, int line){
+		if(node instanceof ListView){
+			ListView<?> lv = (ListView<?>)node;
+			if(line < lv.getItems().size()){
+				lv.getSelectionModel().clearAndSelect( line );
+				lv.scrollTo( line );
+			}
+		}else if(node instanceof TableView){
+			TableView<?> tv = (TableView<?>)node;
+			Object first = tv.getProperties().get( FIRST_LINE );
+			int row = line - (first == null ? 0 : (Integer)first);
+			if(row >= 0 && row < tv.getItems().size()){
+				tv.getSelectionModel().clearAndSelect( row );
+				tv.scrollTo( row );
+			}
+		}
+	}
+
 	@Override
 	public Node render( TextResult result, Pane parent ) {
 		
@@ -218,6 +246,7 @@ public class TextResultRenderer implements ResultRenderer<TextResult> {
 						TableView<Object[]> tv = new TableView<>();
 						tv.getColumns().addAll( cols );
 						tv.setItems( FXCollections.observableArrayList( content ) );
+						tv.getProperties().put( FIRST_LINE, i );
 
 
 						tv.getSelectionModel().selectionModeProperty().set(SelectionMode.MULTIPLE);
@@ -0,0 +1,265 @@
+package de.jstacs.fx.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.jstacs.fx.ThreadPools;
+
+/**
+ * Background writer for snapshots of the automatically saved workspace.
+ * All snapshots are written by one dedicated {@link Thread}, so two snapshots are never written at the same time.
+ * Requests for new snapshots are coalesced: a snapshot is only written if no further request has been made within
+ * {@link AutosaveWriter#DELAY} milliseconds (but at the latest {@link AutosaveWriter#MAX_DELAY} milliseconds after the first request),
+ * and only the latest pending request is written.
+ * Each snapshot is first written to a temporary file in the same directory, which is forced to disk and then atomically replaces the previous snapshot.
+ * Hence, the snapshot file always contains a complete snapshot, even if the application or the operating system crashes while writing.
+ *
+ * @author Jan Grau
+ *
+ */
+class AutosaveWriter {
+
+	/**
+	 * Time (in milliseconds) without further requests before a pending snapshot is written
+	 */
+	static final long DELAY = 500;
+	/**
+	 * Maximum time (in milliseconds) a snapshot is deferred by subsequent requests
+	 */
+	static final long MAX_DELAY = 5000;
+
+	/**
+	 * A snapshot of the workspace that is to be written to disk.
+	 * @author Jan Grau
+	 *
+	 */
+	static interface Snapshot{
+
+		/**
+		 * Returns the file the snapshot is written to.
+		 * @return the file
+		 */
+		public File getFile();
+
+		/**
+		 * Writes the snapshot to the given temporary file.
+		 * @param temp the temporary file
+		 * @throws IOException if the snapshot could not be written
+		 */
+		public void write(File temp) throws IOException;
+
+		/**
+		 * Called after the snapshot replaced the previous one.
+		 */
+		public void written();
+
+		/**
+		 * Called if the snapshot could not be written, in which case the previous snapshot is kept.
+		 * @param e the cause
+		 */
+		public void failed(IOException e);
+
+	}
+
+	private Snapshot pending;
+	private long firstRequest;
+	private long lastRequest;
+	private Object writeLock;
+	private boolean closed;
+	private Thread hook;
+
+	private AtomicLong requested;
+	private AtomicLong performed;
+
+	/**
+	 * Creates a new writer and starts its background {@link Thread}, which terminates when the writer is closed.
+	 */
+	AutosaveWriter(){
+		this.writeLock = new Object();
+		this.requested = new AtomicLong();
+		this.performed = new AtomicLong();
+
+		this.hook = new Thread( new Runnable() {
+
+			@Override
+			public void run() {
+				flush();
+			}
+
+		}, "Workspace autosave (shutdown)" );
+		Runtime.getRuntime().addShutdownHook( hook );
+
+		ExecutorService pool = ThreadPools.newPool( "Workspace autosave", 1 );
+		pool.execute( new Runnable() {
+
+			@Override
+			public void run() {
+				try{
+					boolean last = false;
+					while(!last){
+						last = await();
+						flush();
+					}
+					Runtime.getRuntime().removeShutdownHook( hook );
+				}catch(InterruptedException e){
+				}catch(IllegalStateException e){
+					//shutting down
+				}
+			}
+
+		} );
+		//the pool terminates after the writer loop
+		pool.shutdown();
+	}
+
+	/**
+	 * Requests writing the given snapshot. Any pending snapshot that has not been written yet is discarded.
+	 * @param snapshot the snapshot
+	 */
+	synchronized void request(Snapshot snapshot){
+		requested.incrementAndGet();
+		lastRequest = System.currentTimeMillis();
+		if(pending == null){
+			firstRequest = lastRequest;
+		}
+		pending = snapshot;
+		notifyAll();
+	}
+
+	private synchronized boolean await() throws InterruptedException{
+		while(pending == null && !closed){
+			wait();
+		}
+		long now = System.currentTimeMillis();
+		while(pending != null && !closed && now - lastRequest < DELAY && now - firstRequest < MAX_DELAY){
+			wait( Math.min( DELAY - (now - lastRequest), MAX_DELAY - (now - firstRequest) ) );
+			now = System.currentTimeMillis();
+		}
+		return closed;
+	}
+
+	/**
+	 * Stops the background {@link Thread} of this writer after writing the pending snapshot, if any, without further delay.
+	 */
+	synchronized void close(){
+		closed = true;
+		notifyAll();
+	}
+
+	/**
+	 * Immediately writes the pending snapshot, if any, in the calling {@link Thread}.
+	 */
+	void flush(){
+		synchronized(writeLock){
+			Snapshot snapshot;
+			synchronized(this){
+				snapshot = pending;
+				pending = null;
+			}
+			if(snapshot != null){
+				try{
+					write( snapshot );
+					performed.incrementAndGet();
+					snapshot.written();
+				}catch(IOException e){
+					snapshot.failed( e );
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the temporary file a new snapshot for the given snapshot file is written to.
+	 * If this file exists on start-up, the application has been terminated while writing a snapshot.
+	 * @param f the snapshot file
+	 * @return the temporary file
+	 */
+	static File getTempFile(File f){
+		f = f.getAbsoluteFile();
+		return new File( f.getParentFile(), f.getName()+".tmp" );
+	}
+
+	private void write(Snapshot snapshot) throws IOException{
+		File f = snapshot.getFile().getAbsoluteFile();
+		File temp = getTempFile( f );
+		try{
+			snapshot.write( temp );
+			replace( temp, f );
+		}finally{
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Forces the contents of a completely written temporary file to disk and moves it to the target file, atomically if supported
+	 * by the file system. Hence, the target file either keeps its previous contents or has the contents of the temporary file.
+	 * @param temp the temporary file, which must be in the same directory as the target file
+	 * @param f the target file
+	 * @throws IOException if the temporary file could not be moved
+	 */
+	static void replace(File temp, File f) throws IOException{
+		force( temp );
+		try{
+			Files.move( temp.toPath(), f.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+		}catch(AtomicMoveNotSupportedException e){
+			Files.move( temp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING );
+		}
+		sync( f.getAbsoluteFile().getParentFile() );
+	}
+
+	/**
+	 * Forces the contents of the given file to disk.
+	 * @param f the file
+	 * @throws IOException if the file could not be opened
+	 */
+	static void force(File f) throws IOException{
+		FileChannel channel = FileChannel.open( f.toPath(), StandardOpenOption.WRITE );
+		try{
+			channel.force( true );
+		}finally{
+			channel.close();
+		}
+	}
+
+	/**
+	 * Forces the entries of the given directory to disk, so a renamed file is found after a crash.
+	 * Not supported on all platforms.
+	 * @param dir the directory
+	 */
+	static void sync(File dir){
+		try{
+			FileChannel channel = FileChannel.open( dir.toPath(), StandardOpenOption.READ );
+			try{
+				channel.force( true );
+			}finally{
+				channel.close();
+			}
+		}catch(IOException e){
+			//directories cannot be opened on some platforms
+		}
+	}
+
+	/**
+	 * Returns the number of snapshots requested so far.
+	 * @return the number of requests
+	 */
+	long getNumberOfRequests(){
+		return requested.get();
+	}
+
+	/**
+	 * Returns the number of snapshots actually written so far.
+	 * @return the number of written snapshots
+	 */
+	long getNumberOfWrites(){
+		return performed.get();
+	}
+
+}
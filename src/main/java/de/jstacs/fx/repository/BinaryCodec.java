@@ -0,0 +1,369 @@
+package de.jstacs.fx.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+import de.jstacs.DataType;
+import de.jstacs.io.NonParsableException;
+import de.jstacs.io.XMLParser;
+import de.jstacs.parameters.ParameterSet;
+import de.jstacs.results.CategoricalResult;
+import de.jstacs.results.ListResult;
+import de.jstacs.results.NumericalResult;
+import de.jstacs.results.Result;
+import de.jstacs.results.ResultSet;
+import de.jstacs.results.ResultSetResult;
+
+/**
+ * Compact binary representation of {@link Result}s with mostly numerical contents in workspace files, which replaces the XML
+ * representation of {@link NumericalResult}s, {@link ListResult}s and {@link ResultSetResult}s.
+ *
+ * The tables of {@link ListResult}s are stored by column: for each column, in which all cells are {@link NumericalResult}s
+ * (or {@link CategoricalResult}s) with identical name, comment and type, name and comment are stored only once, followed by the values
+ * as raw IEEE doubles, variable-length integers or strings, respectively. All lengths and counts are stored as variable-length integers.
+ * {@link Result}s of all other types, including sub-classes of the types above, are stored by their XML representation
+ * within the binary representation.
+ *
+ * Binary representations start with {@link #MARKER}, which never starts an XML representation, and a format version, so both
+ * may be used interchangeably for the records of a workspace file.
+ *
+ * @author Jan Grau
+ *
+ */
+class BinaryCodec {
+
+	/**
+	 * The first byte of each binary representation
+	 */
+	static final int MARKER = 0;
+	private static final int VERSION = 1;
+
+	private static final byte XML = 0;
+	private static final byte NUMERICAL = 1;
+	private static final byte CATEGORICAL = 2;
+	private static final byte LIST = 3;
+	private static final byte SET = 4;
+
+	private static final byte GENERIC = 0;
+	private static final byte DOUBLES = 1;
+	private static final byte INTS = 2;
+	private static final byte LONGS = 3;
+	private static final byte STRINGS = 4;
+
+	private static final byte REGULAR = 0;
+	private static final byte IRREGULAR = 1;
+
+	private BinaryCodec(){}
+
+	/**
+	 * Checks if a binary representation is available for the given {@link Result}. Otherwise, its XML representation should be used.
+	 * @param result the {@link Result}
+	 * @return if a binary representation is available
+	 */
+	static boolean isSupported(Result result){
+		return result.getClass() == ListResult.class || result.getClass() == ResultSetResult.class || getType( result ) != GENERIC;
+	}
+
+	/**
+	 * Creates the binary representation of the given {@link Result}.
+	 * @param result the {@link Result}
+	 * @return the binary representation
+	 * @throws IOException if the representation could not be written
+	 */
+	static byte[] encode(Result result) throws IOException{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream( baos );
+		out.writeByte( MARKER );
+		writeVarInt( out, VERSION );
+		writeResult( out, result );
+		out.close();
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Restores a {@link Result} from its binary representation created by {@link #encode(Result)}.
+	 * @param in the stream of the binary representation
+	 * @return the {@link Result}
+	 * @throws IOException if the representation could not be read
+	 * @throws NonParsableException if a {@link Result} stored by its XML representation could not be restored
+	 */
+	static Result decode(InputStream in) throws IOException, NonParsableException{
+		DataInputStream data = new DataInputStream( in );
+		try{
+			if(data.readUnsignedByte() != MARKER){
+				throw new IOException( "Not a binary representation" );
+			}
+			int version = readVarInt( data );
+			if(version > VERSION){
+				throw new IOException( "Unsupported version "+version+" of binary representation" );
+			}
+			return readResult( data );
+		}finally{
+			data.close();
+		}
+	}
+
+	private static byte getType(Result result){
+		if(result.getClass() == NumericalResult.class){
+			DataType type = result.getDatatype();
+			if(type == DataType.DOUBLE){
+				return DOUBLES;
+			}else if(type == DataType.INT){
+				return INTS;
+			}else if(type == DataType.LONG){
+				return LONGS;
+			}
+		}else if(result.getClass() == CategoricalResult.class && result.getDatatype() == DataType.STRING){
+			return STRINGS;
+		}
+		return GENERIC;
+	}
+
+	private static void writeResult(DataOutputStream out, Result result) throws IOException{
+		byte type = getType( result );
+		if(type != GENERIC){
+			out.writeByte( type == STRINGS ? CATEGORICAL : NUMERICAL );
+			writeString( out, result.getName() );
+			writeString( out, result.getComment() );
+			out.writeByte( type );
+			writeValue( out, type, result );
+		}else if(result.getClass() == ListResult.class){
+			ListResult list = (ListResult)result;
+			out.writeByte( LIST );
+			writeString( out, list.getName() );
+			writeString( out, list.getComment() );
+			writeAnnotation( out, list.getAnnotation() );
+			writeTable( out, list.getRawResult() );
+		}else if(result.getClass() == ResultSetResult.class){
+			ResultSetResult set = (ResultSetResult)result;
+			out.writeByte( SET );
+			writeString( out, set.getName() );
+			writeString( out, set.getComment() );
+			writeAnnotation( out, set.getAnnotation() );
+			Result[] temp = set.getRawResult()[0].getResults();
+			writeVarInt( out, temp.length );
+			for(int i=0;i<temp.length;i++){
+				writeResult( out, temp[i] );
+			}
+		}else{
+			out.writeByte( XML );
+			StringBuffer sb = new StringBuffer();
+			XMLParser.appendObjectWithTags( sb, result, "result" );
+			writeString( out, sb.toString() );
+		}
+	}
+
+	private static Result readResult(DataInputStream in) throws IOException, NonParsableException{
+		byte kind = in.readByte();
+		switch(kind){
+			case NUMERICAL:
+			case CATEGORICAL:
+				String name = readString( in );
+				String comment = readString( in );
+				return readValue( in, in.readByte(), name, comment );
+			case LIST:
+				name = readString( in );
+				comment = readString( in );
+				ParameterSet annotation = readAnnotation( in );
+				return new ListResult( name, comment, annotation, readTable( in ) );
+			case SET:
+				name = readString( in );
+				comment = readString( in );
+				annotation = readAnnotation( in );
+				Result[] temp = new Result[readVarInt( in )];
+				for(int i=0;i<temp.length;i++){
+					temp[i] = readResult( in );
+				}
+				return new ResultSetResult( name, comment, annotation, new ResultSet( temp ) );
+			case XML:
+				return (Result)XMLParser.extractObjectForTags( new StringBuffer( readString( in ) ), "result" );
+			default:
+				throw new IOException( "Unknown type "+kind+" in binary representation" );
+		}
+	}
+
+	private static void writeTable(DataOutputStream out, ResultSet[] rows) throws IOException{
+		int cols = rows.length == 0 ? 0 : rows[0].getNumberOfResults();
+		for(int i=1;i<rows.length && cols >= 0;i++){
+			if(rows[i].getNumberOfResults() != cols){
+				cols = -1;
+			}
+		}
+		writeVarInt( out, rows.length );
+		if(cols < 0){
+			out.writeByte( IRREGULAR );
+			for(int i=0;i<rows.length;i++){
+				writeVarInt( out, rows[i].getNumberOfResults() );
+				for(int j=0;j<rows[i].getNumberOfResults();j++){
+					writeResult( out, rows[i].getResultAt( j ) );
+				}
+			}
+			return;
+		}
+		out.writeByte( REGULAR );
+		writeVarInt( out, cols );
+		for(int j=0;j<cols;j++){
+			Result first = rows[0].getResultAt( j );
+			byte type = getType( first );
+			for(int i=1;i<rows.length && type != GENERIC;i++){
+				Result cell = rows[i].getResultAt( j );
+				if(getType( cell ) != type || !Objects.equals( first.getName(), cell.getName() ) || !Objects.equals( first.getComment(), cell.getComment() )){
+					type = GENERIC;
+				}
+			}
+			out.writeByte( type );
+			if(type == GENERIC){
+				for(int i=0;i<rows.length;i++){
+					writeResult( out, rows[i].getResultAt( j ) );
+				}
+			}else{
+				writeString( out, first.getName() );
+				writeString( out, first.getComment() );
+				for(int i=0;i<rows.length;i++){
+					writeValue( out, type, rows[i].getResultAt( j ) );
+				}
+			}
+		}
+	}
+
+	private static ResultSet[] readTable(DataInputStream in) throws IOException, NonParsableException{
+		ResultSet[] rows = new ResultSet[readVarInt( in )];
+		byte layout = in.readByte();
+		if(layout == IRREGULAR){
+			for(int i=0;i<rows.length;i++){
+				Result[] row = new Result[readVarInt( in )];
+				for(int j=0;j<row.length;j++){
+					row[j] = readResult( in );
+				}
+				rows[i] = new ResultSet( row );
+			}
+			return rows;
+		}else if(layout != REGULAR){
+			throw new IOException( "Unknown table layout "+layout+" in binary representation" );
+		}
+		Result[][] cells = new Result[rows.length][readVarInt( in )];
+		for(int j=0;rows.length > 0 && j<cells[0].length;j++){
+			byte type = in.readByte();
+			if(type == GENERIC){
+				for(int i=0;i<rows.length;i++){
+					cells[i][j] = readResult( in );
+				}
+			}else{
+				String name = readString( in );
+				String comment = readString( in );
+				for(int i=0;i<rows.length;i++){
+					cells[i][j] = readValue( in, type, name, comment );
+				}
+			}
+		}
+		for(int i=0;i<rows.length;i++){
+			rows[i] = new ResultSet( cells[i] );
+		}
+		return rows;
+	}
+
+	private static void writeValue(DataOutputStream out, byte type, Result result) throws IOException{
+		Object value = result.getValue();
+		switch(type){
+			case DOUBLES:
+				out.writeDouble( ((Number)value).doubleValue() );
+				break;
+			case INTS:
+			case LONGS:
+				long l = ((Number)value).longValue();
+				writeVarLong( out, (l << 1) ^ (l >> 63) );
+				break;
+			default:
+				writeString( out, value == null ? null : value.toString() );
+		}
+	}
+
+	private static Result readValue(DataInputStream in, byte type, String name, String comment) throws IOException{
+		switch(type){
+			case DOUBLES:
+				return new NumericalResult( name, comment, in.readDouble() );
+			case INTS:
+			case LONGS:
+				long l = readVarLong( in );
+				l = (l >>> 1) ^ -(l & 1);
+				return type == INTS ? new NumericalResult( name, comment, (int)l ) : new NumericalResult( name, comment, l );
+			case STRINGS:
+				return new CategoricalResult( name, comment, readString( in ) );
+			default:
+				throw new IOException( "Unknown value type "+type+" in binary representation" );
+		}
+	}
+
+	private static void writeAnnotation(DataOutputStream out, ParameterSet annotation) throws IOException{
+		if(annotation == null){
+			writeString( out, null );
+		}else{
+			StringBuffer sb = new StringBuffer();
+			XMLParser.appendObjectWithTags( sb, annotation, "annotation" );
+			writeString( out, sb.toString() );
+		}
+	}
+
+	private static ParameterSet readAnnotation(DataInputStream in) throws IOException, NonParsableException{
+		String xml = readString( in );
+		return xml == null ? null : (ParameterSet)XMLParser.extractObjectForTags( new StringBuffer( xml ), "annotation" );
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException{
+		if(s == null){
+			writeVarInt( out, 0 );
+		}else{
+			byte[] b = s.getBytes( StandardCharsets.UTF_8 );
+			writeVarInt( out, b.length+1 );
+			out.write( b );
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException{
+		int len = readVarInt( in )-1;
+		if(len < 0){
+			return null;
+		}
+		byte[] b = new byte[len];
+		in.readFully( b );
+		return new String( b, StandardCharsets.UTF_8 );
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException{
+		writeVarLong( out, value & 0xFFFFFFFFL );
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException{
+		long value = readVarLong( in );
+		if(value > Integer.MAX_VALUE){
+			throw new IOException( "Length out of range in binary representation" );
+		}
+		return (int)value;
+	}
+
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException{
+		while( (value & ~0x7FL) != 0 ){
+			out.writeByte( (int)((value & 0x7F) | 0x80) );
+			value >>>= 7;
+		}
+		out.writeByte( (int)value );
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException{
+		long value = 0;
+		for(int shift=0;shift<64;shift+=7){
+			int b = in.readUnsignedByte();
+			value |= (long)(b & 0x7F) << shift;
+			if((b & 0x80) == 0){
+				return value;
+			}
+		}
+		throw new IOException( "Malformed variable-length integer in binary representation" );
+	}
+
+}
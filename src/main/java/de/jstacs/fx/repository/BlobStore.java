@@ -0,0 +1,435 @@
+package de.jstacs.fx.repository;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.GZIPOutputStream;
+
+import de.jstacs.parameters.FileParameter.FileRepresentation;
+import de.jstacs.results.Result;
+import de.jstacs.tools.ToolResult;
+
+/**
+ * Content-addressed store of the blobs of a workspace file that is currently written.
+ * The serialized representation of each {@link Result} is split into chunks at content-defined boundaries
+ * (using a rolling hash over the bytes), and each chunk is identified by its SHA-256 hash.
+ * A chunk is only written once per workspace file, and all further occurrences just refer to that blob.
+ * As boundaries depend on the content only, identical contents of {@link FileRepresentation}s, e.g., the same input file
+ * stored as a loaded file and as parameter of several {@link ToolResult}s, yield identical chunks and
+ * are thus stored only once, irrespective of their position in the serialized {@link Result}s.
+ *
+ * Each chunk is compressed independently as a gzip member, so the chunks of a {@link Result} written in sequence form a valid
+ * (multi-member) gzip stream. New chunks are compressed in parallel on the pool of the {@link ParallelParser}, while the compressed
+ * chunks are still written in the order of their addition. At most {@link #WINDOW} chunks are compressed ahead of the chunk written next.
+ *
+ * @author Jan Grau
+ *
+ */
+class BlobStore {
+
+	/**
+	 * Minimum size of a chunk in bytes. Contents are only shared between chunk boundaries, so small chunks are required
+	 * for sharing the contents of small files.
+	 */
+	static final int MIN_CHUNK = 1 << 12;
+	/**
+	 * Maximum size of a chunk in bytes
+	 */
+	static final int MAX_CHUNK = 1 << 20;
+	/**
+	 * Number of high bits of the rolling hash that must be zero at a chunk boundary, yielding an average chunk size of about 16 KB above the minimum
+	 */
+	private static final int SHIFT = 64 - 14;
+	/**
+	 * Maximum number of chunks compressed ahead
+	 */
+	static final int WINDOW = 16*ParallelParser.PARALLELISM;
+	/**
+	 * Maximum number of uncompressed bytes in chunks compressed ahead
+	 */
+	private static final long MAX_PENDING = 1L << 26;
+
+	private static final long[] GEAR = new long[256];
+
+	static{
+		Random r = new Random( 0x4A535442L );
+		for(int i=0;i<GEAR.length;i++){
+			GEAR[i] = r.nextLong();
+		}
+	}
+
+	/**
+	 * A compressed chunk in a workspace file.
+	 * @author Jan Grau
+	 *
+	 */
+	static class Blob{
+
+		private byte[] hash;
+		private long offset;
+		private int length;
+		private long rawLength;
+		private int index;
+
+		/**
+		 * Creates a new blob.
+		 * @param hash the SHA-256 hash of the uncompressed chunk, <code>null</code> for records of files without blobs
+		 * @param offset the offset of the compressed chunk in the workspace file
+		 * @param length the length of the compressed chunk
+		 * @param rawLength the length of the uncompressed chunk, or <code>-1</code> if unknown
+		 */
+		Blob(byte[] hash, long offset, int length, long rawLength){
+			this.hash = hash;
+			this.offset = offset;
+			this.length = length;
+			this.rawLength = rawLength;
+		}
+
+		byte[] getHash(){
+			return hash;
+		}
+
+		long getOffset(){
+			return offset;
+		}
+
+		int getLength(){
+			return length;
+		}
+
+		long getRawLength(){
+			return rawLength;
+		}
+
+		/**
+		 * Returns the index of this blob among all blobs of its workspace file.
+		 * @return the index
+		 */
+		int getIndex(){
+			return index;
+		}
+
+	}
+
+	/**
+	 * A blob that has been added to the store but not written yet.
+	 * @author Jan Grau
+	 *
+	 */
+	private static class Pending{
+
+		private Blob blob;
+		private byte[] compressed;
+		private ForkJoinTask<byte[]> task;
+		private long size;
+
+		private Pending(Blob blob, byte[] compressed, ForkJoinTask<byte[]> task, long size){
+			this.blob = blob;
+			this.compressed = compressed;
+			this.task = task;
+			this.size = size;
+		}
+
+	}
+
+	private DataOutputStream out;
+	private long position;
+	private LinkedHashMap<ByteBuffer, Blob> blobs;
+	private MessageDigest digest;
+	private int level;
+	private ArrayDeque<Pending> pending;
+	private long pendingSize;
+
+	/**
+	 * Creates a new store that appends blobs to the given stream.
+	 * @param out the stream of the workspace file
+	 * @param position the current position in the workspace file
+	 * @param level the compression level of new chunks, see {@link java.util.zip.Deflater}
+	 */
+	BlobStore(DataOutputStream out, long position, int level){
+		this.out = out;
+		this.position = position;
+		this.level = level;
+		this.blobs = new LinkedHashMap<>();
+		this.pending = new ArrayDeque<>();
+		try{
+			this.digest = MessageDigest.getInstance( "SHA-256" );
+		}catch(NoSuchAlgorithmException e){
+			//every Java platform supports SHA-256
+			throw new RuntimeException( e );
+		}
+	}
+
+	/**
+	 * Creates a {@link GZIPOutputStream} with the given compression level.
+	 * @param out the underlying stream
+	 * @param level the compression level, see {@link java.util.zip.Deflater}
+	 * @return the stream
+	 * @throws IOException if the gzip header could not be written
+	 */
+	static GZIPOutputStream gzip(OutputStream out, final int level) throws IOException{
+		return new GZIPOutputStream( out, 1 << 16 ){
+
+			{
+				def.setLevel( level );
+			}
+
+		};
+	}
+
+	/**
+	 * Returns the current position in the workspace file, i.e., after the last blob written.
+	 * Only valid after {@link #finish()}.
+	 * @return the position
+	 */
+	long getPosition(){
+		return position;
+	}
+
+	/**
+	 * Returns all blobs added so far in the order of writing. Offsets and lengths of the blobs are only valid after {@link #finish()}.
+	 * @return the blobs
+	 */
+	Collection<Blob> getBlobs(){
+		return blobs.values();
+	}
+
+	/**
+	 * Waits for the compression of all pending chunks and writes them to the workspace file.
+	 * @throws IOException if a chunk could not be compressed or written
+	 */
+	void finish() throws IOException{
+		while(!pending.isEmpty()){
+			writeNext();
+		}
+	}
+
+	/**
+	 * Cancels the compression of all pending chunks, e.g., if writing the workspace file failed.
+	 */
+	void cancel(){
+		while(!pending.isEmpty()){
+			Pending p = pending.poll();
+			if(p.task != null){
+				p.task.cancel( true );
+			}
+		}
+		pendingSize = 0;
+	}
+
+	/**
+	 * Chunks the UTF-8 encoding of the given characters and adds all chunks to this store.
+	 * @param sb the characters, e.g., the XML representation of a {@link Result}
+	 * @return the blobs of the chunks in order
+	 * @throws IOException if a blob could not be written
+	 */
+	Blob[] put(StringBuffer sb) throws IOException{
+		Chunker chunker = new Chunker();
+		Writer w = new OutputStreamWriter( chunker, StandardCharsets.UTF_8 );
+		char[] buf = new char[1 << 16];
+		for(int j=0;j<sb.length();j+=buf.length){
+			int end = Math.min( sb.length(), j+buf.length );
+			sb.getChars( j, end, buf, 0 );
+			w.write( buf, 0, end-j );
+		}
+		w.close();
+		return chunker.getBlobs();
+	}
+
+	/**
+	 * Chunks the bytes of the given stream and adds all chunks to this store.
+	 * @param in the stream
+	 * @return the blobs of the chunks in order
+	 * @throws IOException if the stream could not be read or a blob could not be written
+	 */
+	Blob[] put(InputStream in) throws IOException{
+		Chunker chunker = new Chunker();
+		byte[] buf = new byte[1 << 16];
+		int len;
+		while( (len = in.read( buf )) > -1 ){
+			chunker.write( buf, 0, len );
+		}
+		in.close();
+		chunker.close();
+		return chunker.getBlobs();
+	}
+
+	/**
+	 * Adds a blob of another workspace file to this store. The compressed chunk is only copied if it has not been
+	 * written to this store before.
+	 * @param blob the blob
+	 * @param compressed the compressed chunk, only requested if necessary
+	 * @return the blob in this store
+	 * @throws IOException if the blob could not be read or written
+	 */
+	Blob copy(Blob blob, BlobSource compressed) throws IOException{
+		ByteBuffer key = ByteBuffer.wrap( blob.hash );
+		Blob known = blobs.get( key );
+		if(known == null){
+			byte[] data = compressed.read( blob );
+			known = create( blob.hash, blob.rawLength );
+			blobs.put( key, known );
+			enqueue( new Pending( known, data, null, data.length ) );
+		}
+		return known;
+	}
+
+	/**
+	 * Provider of the compressed data of a {@link Blob}.
+	 * @author Jan Grau
+	 *
+	 */
+	static interface BlobSource{
+
+		/**
+		 * Reads the compressed chunk of the given blob.
+		 * @param blob the blob
+		 * @return the compressed chunk
+		 * @throws IOException if the chunk could not be read
+		 */
+		public byte[] read(Blob blob) throws IOException;
+
+	}
+
+	private Blob add(byte[] chunk, int len) throws IOException{
+		digest.update( chunk, 0, len );
+		byte[] hash = digest.digest();
+		ByteBuffer key = ByteBuffer.wrap( hash );
+		Blob blob = blobs.get( key );
+		if(blob == null){
+			final byte[] copy = Arrays.copyOf( chunk, len );
+			final int level = this.level;
+			ForkJoinTask<byte[]> task = ParallelParser.getPool().submit( new Callable<byte[]>() {
+
+				@Override
+				public byte[] call() throws Exception {
+					ByteArrayOutputStream baos = new ByteArrayOutputStream( copy.length/4+64 );
+					GZIPOutputStream gz = gzip( baos, level );
+					gz.write( copy );
+					gz.close();
+					return baos.toByteArray();
+				}
+
+			} );
+			blob = create( hash, len );
+			blobs.put( key, blob );
+			enqueue( new Pending( blob, null, task, len ) );
+		}
+		return blob;
+	}
+
+	private Blob create(byte[] hash, long rawLength){
+		Blob blob = new Blob( hash, -1, -1, rawLength );
+		blob.index = blobs.size();
+		return blob;
+	}
+
+	private void enqueue(Pending p) throws IOException{
+		pending.add( p );
+		pendingSize += p.size;
+		while(pending.size() > WINDOW || pendingSize > MAX_PENDING){
+			writeNext();
+		}
+	}
+
+	private void writeNext() throws IOException{
+		Pending p = pending.poll();
+		pendingSize -= p.size;
+		byte[] compressed = p.compressed;
+		if(compressed == null){
+			try{
+				compressed = p.task.get();
+			}catch(InterruptedException e){
+				cancel();
+				throw new InterruptedIOException( "Writing workspace interrupted" );
+			}catch(ExecutionException e){
+				cancel();
+				if(e.getCause() instanceof IOException){
+					throw (IOException)e.getCause();
+				}else{
+					throw new IOException( e.getCause() );
+				}
+			}
+		}
+		out.write( compressed );
+		p.blob.offset = position;
+		p.blob.length = compressed.length;
+		position += compressed.length;
+	}
+
+	/**
+	 * {@link OutputStream} that splits the written bytes into chunks at content-defined boundaries
+	 * and adds these chunks to the store.
+	 * @author Jan Grau
+	 *
+	 */
+	private class Chunker extends OutputStream{
+
+		private byte[] buf;
+		private int len;
+		private long h;
+		private ArrayList<Blob> chunks;
+
+		private Chunker(){
+			this.buf = new byte[MAX_CHUNK];
+			this.chunks = new ArrayList<>();
+		}
+
+		@Override
+		public void write( int b ) throws IOException {
+			buf[len++] = (byte)b;
+			h = (h << 1) + GEAR[b & 0xFF];
+			if(len >= MAX_CHUNK || ( len >= MIN_CHUNK && (h >>> SHIFT) == 0 ) ){
+				emit();
+			}
+		}
+
+		@Override
+		public void write( byte[] b, int off, int n ) throws IOException {
+			for(int i=off;i<off+n;i++){
+				buf[len++] = b[i];
+				h = (h << 1) + GEAR[b[i] & 0xFF];
+				if(len >= MAX_CHUNK || ( len >= MIN_CHUNK && (h >>> SHIFT) == 0 ) ){
+					emit();
+				}
+			}
+		}
+
+		private void emit() throws IOException{
+			if(len > 0){
+				chunks.add( add( buf, len ) );
+				len = 0;
+				h = 0;
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			emit();
+		}
+
+		private Blob[] getBlobs(){
+			return chunks.toArray( new Blob[0] );
+		}
+
+	}
+
+}
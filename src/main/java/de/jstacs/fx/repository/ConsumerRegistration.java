@@ -0,0 +1,58 @@
+package de.jstacs.fx.repository;
+
+import java.lang.ref.WeakReference;
+
+import de.jstacs.fx.repository.ResultRepository.Registration;
+import de.jstacs.fx.repository.ResultRepository.ResultConsumer;
+
+/**
+ * The registration of a {@link ResultConsumer} in the {@link ResultRepository}.
+ * Weak registrations only keep a weak reference to their {@link ResultConsumer}, so the registration
+ * ends as soon as the {@link ResultConsumer} is no longer reachable otherwise, e.g., after the GUI component owning the {@link ResultConsumer}
+ * has been replaced.
+ *
+ * @author Jan Grau
+ *
+ */
+class ConsumerRegistration extends WeakReference<ResultConsumer> implements Registration {
+
+	private ResultRepository repository;
+	//keeps the consumer alive for strong registrations
+	private ResultConsumer strong;
+	private volatile boolean disposed;
+
+	/**
+	 * Creates a new registration.
+	 * @param repository the repository
+	 * @param consumer the consumer
+	 * @param weak if the registration should only keep a weak reference to the consumer
+	 */
+	ConsumerRegistration(ResultRepository repository, ResultConsumer consumer, boolean weak){
+		super( consumer );
+		this.repository = repository;
+		this.strong = weak ? null : consumer;
+	}
+
+	/**
+	 * Returns the registered {@link ResultConsumer}, or <code>null</code> if this registration has been disposed
+	 * or the {@link ResultConsumer} has been garbage collected.
+	 * @return the consumer
+	 */
+	ResultConsumer getConsumer(){
+		return disposed ? null : get();
+	}
+
+	@Override
+	public void dispose() {
+		disposed = true;
+		strong = null;
+		clear();
+		repository.unregister( this );
+	}
+
+	@Override
+	public boolean isDisposed() {
+		return getConsumer() == null;
+	}
+
+}
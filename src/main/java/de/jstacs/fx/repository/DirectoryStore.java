@@ -0,0 +1,441 @@
+package de.jstacs.fx.repository;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import de.jstacs.fx.ThreadPools;
+import de.jstacs.io.NonParsableException;
+import de.jstacs.results.Result;
+
+/**
+ * {@link WorkspaceStore} that writes each top-level {@link Result} to a separate file (a record as created by {@link WorkspaceCodec#toRecord(Result)})
+ * in a directory, and the order of the {@link Result}s to an index file.
+ * Hence, only added or modified {@link Result}s are written, and files of several {@link Result}s are written and read in parallel.
+ *
+ * Files are written to a temporary file, which is forced to disk and then atomically renamed. The index file is only re-written after
+ * all files it refers to have been written, and files of removed {@link Result}s are only deleted after the index no longer refers to them,
+ * so the index is the commit point of all modifications. The index is not re-written while a file it refers to could not be written.
+ * Files that are not referred to by the index on start-up are deleted. If the index itself has been lost, it is rebuilt from all files instead.
+ * Pending files and the index are written before the store is closed, which also happens when the JVM shuts down.
+ *
+ * @author Jan Grau
+ *
+ */
+class DirectoryStore implements WorkspaceStore {
+
+	private static final String INDEX = "index";
+	private static final String HEADER = "# Jstacs workspace directory 1";
+	private static final String PREFIX = "r";
+	private static final String SUFFIX = ".jsr";
+	private static final String TEMP = ".tmp";
+
+	private ResultRepository repository;
+	private File directory;
+
+	private ArrayList<String> names;
+	private IdentityHashMap<Result, String> byResult;
+	private long next;
+
+	private ExecutorService io;
+	private ExecutorService writer;
+	private ArrayList<Future<?>> pending;
+	//files whose latest write failed
+	private Set<String> unwritten;
+	private AtomicLong latest;
+	//files of removed Results whose deletion has been deferred to the next index
+	private ArrayList<String> deferred;
+
+	private AtomicLong requested;
+	private AtomicLong performed;
+
+	private Thread hook;
+
+	/**
+	 * Creates a new store.
+	 * @param repository the repository
+	 * @param directory the directory
+	 */
+	DirectoryStore(ResultRepository repository, File directory){
+		this.repository = repository;
+		this.directory = directory;
+		this.names = new ArrayList<>();
+		this.byResult = new IdentityHashMap<>();
+		this.pending = new ArrayList<>();
+		this.unwritten = ConcurrentHashMap.newKeySet();
+		this.latest = new AtomicLong();
+		this.deferred = new ArrayList<>();
+		this.requested = new AtomicLong();
+		this.performed = new AtomicLong();
+		this.io = ThreadPools.newPool( "Workspace directory I/O", ParallelParser.PARALLELISM );
+		this.writer = ThreadPools.newPool( "Workspace directory index", 1 );
+		this.hook = new Thread( new Runnable() {
+
+			@Override
+			public void run() {
+				drain();
+			}
+
+		}, "Workspace directory (shutdown)" );
+		Runtime.getRuntime().addShutdownHook( hook );
+	}
+
+	@Override
+	public File getLocation() {
+		return directory;
+	}
+
+	private static long getId(String name){
+		try{
+			return Long.parseLong( name.substring( PREFIX.length(), name.length()-SUFFIX.length() ) );
+		}catch(NumberFormatException e){
+			return -1;
+		}
+	}
+
+	@Override
+	public void restore( final RecoveryReport report ) throws IOException, NonParsableException {
+		String[] files = directory.list();
+		if(files == null){
+			return;
+		}
+		HashSet<String> existing = new HashSet<>();
+		for(int i=0;i<files.length;i++){
+			if(files[i].endsWith( TEMP )){
+				//terminated while writing
+				new File( directory, files[i] ).delete();
+				report.setIncompleteSnapshot();
+			}else if(files[i].startsWith( PREFIX ) && files[i].endsWith( SUFFIX ) && getId( files[i] ) >= 0){
+				existing.add( files[i] );
+				next = Math.max( next, getId( files[i] )+1 );
+			}
+		}
+		File index = new File( directory, INDEX );
+		List<String> indexed = new ArrayList<>();
+		boolean rebuilt = false;
+		if(index.exists()){
+			List<String> lines = Files.readAllLines( index.toPath(), StandardCharsets.UTF_8 );
+			if(lines.isEmpty() || !HEADER.equals( lines.get( 0 ) )){
+				throw new IOException( "Not a workspace directory: "+directory );
+			}
+			indexed = lines.subList( 1, lines.size() );
+		}else if(!existing.isEmpty()){
+			//index lost, restore all files in the order of their creation instead of deleting them as uncommitted
+			ArrayList<String> all = new ArrayList<>( existing );
+			Collections.sort( all, new Comparator<String>() {
+
+				@Override
+				public int compare( String o1, String o2 ) {
+					return Long.compare( getId( o1 ), getId( o2 ) );
+				}
+
+			} );
+			indexed = all;
+			rebuilt = true;
+			report.rebuiltIndex( all.size() );
+		}
+
+		final ArrayList<Result> restored = new ArrayList<>();
+		final ArrayList<String> submitted = new ArrayList<>();
+		final int[] pos = new int[1];
+		ParallelParser parser = new ParallelParser( new Consumer<Result>() {
+
+			@Override
+			public void accept( Result t ) {
+				String name = submitted.get( pos[0]++ );
+				if(t == null){
+					//keep the unreadable file instead of deleting it with the next index
+					report.lost();
+					new File( directory, name ).renameTo( new File( directory, name+".damaged" ) );
+				}else{
+					restored.add( t );
+					names.add( name );
+					byResult.put( t, name );
+				}
+			}
+
+		} );
+		try{
+			for(int i=0;i<indexed.size();i++){
+				final String name = indexed.get( i );
+				if(name.trim().length() == 0){
+					continue;
+				}
+				if(!existing.remove( name )){
+					report.lost();
+					continue;
+				}
+				submitted.add( name );
+				parser.submit( new Callable<Result>() {
+
+					@Override
+					public Result call() throws Exception {
+						try{
+							return WorkspaceCodec.fromRecord( Files.readAllBytes( new File( directory, name ).toPath() ) );
+						}catch(IOException | NonParsableException | RuntimeException e){
+							e.printStackTrace();
+							return null;
+						}
+					}
+
+				} );
+			}
+			parser.finish();
+		}finally{
+			parser.cancel();
+		}
+		if(!existing.isEmpty()){
+			//not committed to the index
+			report.uncommitted( existing.size() );
+			String[] orphans = existing.toArray( new String[0] );
+			for(int i=0;i<orphans.length;i++){
+				new File( directory, orphans[i] ).delete();
+			}
+		}
+		report.setRestored( restored.size() );
+		repository.addAll( restored, false );
+		if(rebuilt){
+			writeIndex( Collections.<String>emptyList() );
+		}
+	}
+
+	@Override
+	public void added( List<? extends Result> results, boolean store ) {
+		for(int i=0;i<results.size();i++){
+			Result result = results.get( i );
+			String name = PREFIX+(next++)+SUFFIX;
+			names.add( name );
+			byResult.put( result, name );
+			write( result, name );
+		}
+		writeIndex( Collections.<String>emptyList() );
+	}
+
+	@Override
+	public void removed( int[] indexes, List<? extends Result> results ) {
+		ArrayList<String> deletes = new ArrayList<>();
+		for(int i=0;i<indexes.length;i++){
+			deletes.add( names.remove( indexes[i] ) );
+			byResult.remove( results.get( i ) );
+		}
+		writeIndex( deletes );
+	}
+
+	@Override
+	public void modified( Result result ) {
+		String name = byResult.get( result );
+		if(name != null){
+			write( result, name );
+		}
+	}
+
+	@Override
+	public void replaced( Result old, Result replacement ) {
+		String name = byResult.remove( old );
+		if(name != null){
+			byResult.put( replacement, name );
+		}
+	}
+
+	@Override
+	public File getProvenanceFile() {
+		return new File( directory.getPath()+".provenance" );
+	}
+
+	@Override
+	public long getStoredSize( Result result ) {
+		String name = byResult.get( result );
+		if(name == null || unwritten.contains( name )){
+			return -1;
+		}
+		File f = new File( directory, name );
+		return f.exists() ? f.length() : -1;
+	}
+
+	@Override
+	public void store() {
+		List<Result> results = repository.getResults();
+		IdentityHashMap<Result, String> updated = new IdentityHashMap<>();
+		ArrayList<String> temp = new ArrayList<>( results.size() );
+		for(int i=0;i<results.size();i++){
+			Result result = results.get( i );
+			String name = byResult.remove( result );
+			if(name == null){
+				name = PREFIX+(next++)+SUFFIX;
+				write( result, name );
+			}else if(unwritten.contains( name )){
+				//retry
+				write( result, name );
+			}
+			updated.put( result, name );
+			temp.add( name );
+		}
+		ArrayList<String> deletes = new ArrayList<>( byResult.values() );
+		byResult = updated;
+		names = temp;
+		writeIndex( deletes );
+	}
+
+	private void write(final Result result, final String name){
+		pending.add( io.submit( new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				directory.mkdirs();
+				File f = new File( directory, name );
+				File temp = new File( directory, name+TEMP );
+				try{
+					FileOutputStream out = new FileOutputStream( temp );
+					try{
+						out.write( WorkspaceCodec.toRecord( result ) );
+						out.getChannel().force( true );
+					}finally{
+						out.close();
+					}
+					move( temp, f );
+				}catch(IOException | RuntimeException e){
+					unwritten.add( name );
+					temp.delete();
+					throw e;
+				}
+				unwritten.remove( name );
+				return null;
+			}
+
+		} ) );
+	}
+
+	private static void move(File temp, File f) throws IOException{
+		try{
+			Files.move( temp.toPath(), f.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING );
+		}catch(AtomicMoveNotSupportedException e){
+			Files.move( temp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING );
+		}
+	}
+
+	/**
+	 * Writes the index of the current order of files after all pending files have been written. Afterwards, the given files are deleted.
+	 * If a newer index is requested in the meantime, only the newer index is written. If any file referred to by the index could not be written,
+	 * the failure is reported and the previous index is kept.
+	 * @param deletes the files of removed {@link Result}s
+	 */
+	private void writeIndex(final List<String> deletes){
+		final List<Future<?>> wait = pending;
+		pending = new ArrayList<>();
+		final String[] snapshot = names.toArray( new String[0] );
+		final long seq = latest.incrementAndGet();
+		requested.incrementAndGet();
+		writer.execute( new Runnable() {
+
+			@Override
+			public void run() {
+				try{
+					for(int i=0;i<wait.size();i++){
+						try{
+							wait.get( i ).get();
+						}catch(ExecutionException e){
+							repository.storageFailed( "Could not write a result to the workspace directory", e.getCause() );
+						}
+					}
+					deferred.addAll( deletes );
+					if(seq < latest.get()){
+						//superseded by a newer index
+						return;
+					}
+					for(int i=0;i<snapshot.length;i++){
+						if(unwritten.contains( snapshot[i] )){
+							//keep the previous index, which only refers to complete files
+							return;
+						}
+					}
+					directory.mkdirs();
+					File temp = new File( directory, INDEX+TEMP );
+					Writer w = new OutputStreamWriter( new FileOutputStream( temp ), StandardCharsets.UTF_8 );
+					try{
+						w.write( HEADER );
+						w.write( "\n" );
+						for(int i=0;i<snapshot.length;i++){
+							w.write( snapshot[i] );
+							w.write( "\n" );
+						}
+					}finally{
+						w.close();
+					}
+					AutosaveWriter.force( temp );
+					move( temp, new File( directory, INDEX ) );
+					AutosaveWriter.sync( directory );
+					performed.incrementAndGet();
+					HashSet<String> referenced = new HashSet<>( Arrays.asList( snapshot ) );
+					for(int i=0;i<deferred.size();i++){
+						if(!referenced.contains( deferred.get( i ) )){
+							new File( directory, deferred.get( i ) ).delete();
+						}
+					}
+					deferred.clear();
+				}catch(InterruptedException e){
+				}catch(IOException e){
+					repository.storageFailed( "Could not write the index of the workspace directory", e );
+				}
+			}
+
+		} );
+	}
+
+	@Override
+	public long getNumberOfRequestedSaves() {
+		return requested.get();
+	}
+
+	@Override
+	public long getNumberOfPerformedSaves() {
+		return performed.get();
+	}
+
+	@Override
+	public void close() {
+		drain();
+		try{
+			Runtime.getRuntime().removeShutdownHook( hook );
+		}catch(IllegalStateException e){
+			//shutting down
+		}
+	}
+
+	/**
+	 * Shuts down the background {@link Thread}s after all pending files and the index have been written.
+	 */
+	private void drain(){
+		io.shutdown();
+		writer.shutdown();
+		try{
+			if(!writer.awaitTermination( 1, TimeUnit.MINUTES ) || !io.awaitTermination( 1, TimeUnit.MINUTES )){
+				System.err.println( "Timeout while writing the workspace directory "+directory );
+			}
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,74 @@
+package de.jstacs.fx.repository;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javafx.application.Platform;
+
+/**
+ * Executes {@link Runnable}s in the JavaFX application thread in the order of their submission, irrespective of
+ * the {@link Thread} submitting them.
+ * In contrast to {@link Platform#runLater(Runnable)}, {@link Runnable}s submitted from the JavaFX application thread are executed immediately
+ * after all pending {@link Runnable}s, so the submitting code observes their effects, and pending {@link Runnable}s are executed in a single pass of the JavaFX event queue.
+ * If the JavaFX toolkit is not running (e.g., in command line mode), all {@link Runnable}s are executed in the submitting {@link Thread}.
+ *
+ * @author Jan Grau
+ *
+ */
+class FXDispatcher {
+
+	private static final ConcurrentLinkedQueue<Runnable> pending = new ConcurrentLinkedQueue<>();
+	private static final AtomicBoolean scheduled = new AtomicBoolean( false );
+	private static volatile boolean headless = false;
+
+	private FXDispatcher(){}
+
+	/**
+	 * Executes the given {@link Runnable} in the JavaFX application thread after all previously submitted {@link Runnable}s.
+	 * @param r the {@link Runnable}
+	 */
+	static void run(Runnable r){
+		if(headless){
+			r.run();
+		}else if(Platform.isFxApplicationThread()){
+			//keep the order of submission
+			drain();
+			r.run();
+		}else{
+			pending.add( r );
+			schedule();
+		}
+	}
+
+	private static void schedule(){
+		if(scheduled.compareAndSet( false, true )){
+			try{
+				Platform.runLater( new Runnable() {
+
+					@Override
+					public void run() {
+						drain();
+					}
+
+				} );
+			}catch(IllegalStateException e){
+				//JavaFX toolkit not running
+				headless = true;
+				drain();
+			}
+		}
+	}
+
+	private static void drain(){
+		scheduled.set( false );
+		Runnable r = null;
+		while( (r = pending.poll()) != null ){
+			try{
+				r.run();
+			}catch(RuntimeException e){
+				e.printStackTrace();
+			}
+		}
+	}
+
+}
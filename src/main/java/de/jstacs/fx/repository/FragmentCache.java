@@ -0,0 +1,136 @@
+package de.jstacs.fx.repository;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import de.jstacs.results.Result;
+
+/**
+ * Cache of the serialized representations of the top-level {@link Result}s of a {@link ResultRepository} in the last autosaved
+ * workspace file. When the workspace is saved again, the compressed chunks of all {@link Result}s that have not been modified since
+ * are copied from the previous file by {@link WorkspaceCodec#write(java.io.File, Result[], int, FragmentCache)} instead of serializing the
+ * {@link Result}s again. {@link LazyResult}s are not contained in the cache, as they refer to their serialized representation themselves.
+ *
+ * The cache must be notified of all modifications of {@link Result}s using {@link #invalidate(Result)}. As saving is performed in a background
+ * {@link Thread}, each save obtains the current {@link #getEpoch() epoch} when the snapshot of the workspace is taken, and representations of
+ * {@link Result}s that have been invalidated after that epoch are not added to the cache.
+ *
+ * @author Jan Grau
+ *
+ */
+class FragmentCache {
+
+	private static class Entry{
+
+		private WorkspaceCodec.Location location;
+		private long invalidated;
+
+	}
+
+	private IdentityHashMap<Result, Entry> entries;
+	private long epoch;
+
+	/**
+	 * Creates a new, empty cache.
+	 */
+	FragmentCache(){
+		this.entries = new IdentityHashMap<>();
+	}
+
+	/**
+	 * Returns the current epoch, i.e., the number of invalidations so far.
+	 * @return the epoch
+	 */
+	synchronized long getEpoch(){
+		return epoch;
+	}
+
+	/**
+	 * Returns the location of the serialized representation of the given {@link Result}, or <code>null</code> if the {@link Result}
+	 * has not been serialized before or has been modified since.
+	 * The returned location is {@link WorkspaceCodec.Location#retain() retained} and must be {@link WorkspaceCodec.Location#release() released} after reading.
+	 * @param result the {@link Result}
+	 * @return the location
+	 * @throws IOException if the workspace file of the location has already been closed
+	 */
+	synchronized WorkspaceCodec.Location get(Result result) throws IOException{
+		Entry entry = entries.get( result );
+		if(entry == null || entry.location == null){
+			return null;
+		}
+		entry.location.retain();
+		return entry.location;
+	}
+
+	/**
+	 * Returns the uncompressed size of the serialized representation of the given {@link Result}, or <code>-1</code> if the {@link Result}
+	 * has not been serialized before, has been modified since, or the size is unknown.
+	 * @param result the {@link Result}
+	 * @return the size
+	 */
+	synchronized long getSize(Result result){
+		Entry entry = entries.get( result );
+		return entry == null || entry.location == null ? -1 : entry.location.getRawLength();
+	}
+
+	/**
+	 * Invalidates the serialized representation of a {@link Result} after it has been modified.
+	 * @param result the {@link Result}
+	 */
+	synchronized void invalidate(Result result){
+		Entry entry = entries.get( result );
+		if(entry == null){
+			entry = new Entry();
+			entries.put( result, entry );
+		}
+		entry.location = null;
+		entry.invalidated = ++epoch;
+	}
+
+	/**
+	 * Replaces the contents of this cache by the serialized representations of a new workspace file.
+	 * {@link Result}s that have been invalidated after <code>since</code> are not added to the cache, and all {@link Result}s
+	 * that are not contained in the new file are removed from the cache.
+	 * @param results the top-level {@link Result}s in the new file
+	 * @param locations the locations of the {@link Result}s in the new file
+	 * @param since the epoch when the {@link Result}s have been collected for writing the file
+	 * @return the locations replaced, whose sources may be closed
+	 */
+	synchronized WorkspaceCodec.Location[] update(Result[] results, WorkspaceCodec.Location[] locations, long since){
+		IdentityHashMap<Result, Entry> updated = new IdentityHashMap<>();
+		for(int i=0;i<results.length;i++){
+			if(results[i] instanceof LazyResult){
+				continue;
+			}
+			Entry entry = entries.get( results[i] );
+			if(entry == null || entry.invalidated <= since){
+				entry = new Entry();
+				entry.location = locations[i];
+			}
+			updated.put( results[i], entry );
+		}
+		//keep invalidations of Results added after since
+		Iterator<Map.Entry<Result, Entry>> it = entries.entrySet().iterator();
+		while(it.hasNext()){
+			Map.Entry<Result, Entry> e = it.next();
+			if(!updated.containsKey( e.getKey() ) && e.getValue().invalidated > since){
+				updated.put( e.getKey(), e.getValue() );
+			}
+		}
+		WorkspaceCodec.Location[] old = new WorkspaceCodec.Location[entries.size()];
+		int n = 0;
+		it = entries.entrySet().iterator();
+		while(it.hasNext()){
+			WorkspaceCodec.Location loc = it.next().getValue().location;
+			if(loc != null){
+				old[n++] = loc;
+			}
+		}
+		entries = updated;
+		return Arrays.copyOf( old, n );
+	}
+
+}
@@ -0,0 +1,92 @@
+package de.jstacs.fx.repository;
+
+import java.util.Collections;
+import java.util.List;
+
+import de.jstacs.results.Result;
+
+/**
+ * Result of {@link ResultRepository#collectGarbage(boolean)}, i.e., the top-level {@link Result}s of tool pipelines that are not
+ * used (directly or indirectly) as inputs of any pinned {@link Result}, and the memory and disk space that is (or would be) reclaimed
+ * by removing them.
+ *
+ * @author Jan Grau
+ *
+ */
+public class GarbageReport {
+
+	private List<Result> results;
+	private long memory;
+	private long disk;
+	private boolean dryRun;
+
+	/**
+	 * Creates a new report.
+	 * @param results the unreachable {@link Result}s
+	 * @param memory the estimated memory (in bytes) occupied by the {@link Result}s
+	 * @param disk the estimated disk space (in bytes) occupied by the {@link Result}s
+	 * @param dryRun if the {@link Result}s have only been determined but not removed
+	 */
+	GarbageReport(List<Result> results, long memory, long disk, boolean dryRun){
+		this.results = Collections.unmodifiableList( results );
+		this.memory = memory;
+		this.disk = disk;
+		this.dryRun = dryRun;
+	}
+
+	/**
+	 * Returns the unreachable {@link Result}s.
+	 * @return the {@link Result}s
+	 */
+	public List<Result> getResults(){
+		return results;
+	}
+
+	/**
+	 * Returns the estimated memory (in bytes) occupied by the unreachable {@link Result}s. {@link Result}s that are currently only available on disk
+	 * do not occupy memory.
+	 * @return the memory in bytes
+	 */
+	public long getMemory(){
+		return memory;
+	}
+
+	/**
+	 * Returns the estimated disk space (in bytes) occupied by the unreachable {@link Result}s in the automatically saved workspace or spill files.
+	 * @return the disk space in bytes
+	 */
+	public long getDisk(){
+		return disk;
+	}
+
+	/**
+	 * Returns <code>true</code> if the {@link Result}s have only been determined but not removed from the repository.
+	 * @return if this is the report of a dry run
+	 */
+	public boolean isDryRun(){
+		return dryRun;
+	}
+
+	private static String format(long bytes){
+		if(bytes < 1024L*1024L){
+			return (bytes/1024L)+" KB";
+		}else if(bytes < 1024L*1024L*1024L){
+			return String.format( "%.1f MB", bytes/(1024.0*1024.0) );
+		}else{
+			return String.format( "%.2f GB", bytes/(1024.0*1024.0*1024.0) );
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append( (dryRun ? "Would remove " : "Removed ")+results.size()+" unreferenced result"+(results.size() == 1 ? "" : "s") );
+		sb.append( ", reclaiming "+format( memory )+" of memory and "+format( disk )+" of disk space" );
+		sb.append( results.isEmpty() ? "." : ":" );
+		for(int i=0;i<results.size();i++){
+			sb.append( "\n- "+results.get( i ).getName() );
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,397 @@
+package de.jstacs.fx.repository;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.Objects;
+
+import de.jstacs.io.NonParsableException;
+import de.jstacs.results.CategoricalResult;
+import de.jstacs.results.Result;
+import de.jstacs.results.ResultSetResult;
+import de.jstacs.results.SimpleResult;
+import de.jstacs.results.TextResult;
+import de.jstacs.results.savers.ResultSaver;
+import de.jstacs.tools.ToolResult;
+
+/**
+ * Placeholder for a {@link Result} in a workspace file that has not been deserialized yet.
+ * A {@link LazyResult} is created from the table of contents of a workspace file and provides all information necessary for
+ * displaying and filtering the {@link Result} (name, comment, type, date, size, mime type or file extensions), whereas the {@link Result}
+ * itself is only restored from the workspace file by {@link #resolve()} upon first access.
+ *
+ * {@link LazyResult}s for {@link ResultSetResult}s also contain placeholders for the nested {@link Result}s, which are resolved together with
+ * their top-level {@link LazyResult}.
+ *
+ * As {@link LazyResult}s may be contained in the {@link ResultRepository}, code accessing the contents of a {@link Result} should obtain
+ * the actual {@link Result} using {@link ResultRepository#resolve(Result)}.
+ *
+ * @author Jan Grau
+ *
+ */
+public class LazyResult extends CategoricalResult {
+
+	private String className;
+	private String typeName;
+	private String valueString;
+	private String storedName;
+	private Date date;
+	private long size;
+	private String mime;
+	private String extendedType;
+	private String filename;
+	private long contentLength;
+	private String[] extensions;
+
+	private LazyResult parent;
+	private int indexInParent;
+	private LazyResult[] children;
+
+	private WorkspaceCodec.Location location;
+	private Result resolved;
+
+	/**
+	 * Creates a new placeholder from the entries of the table of contents of a workspace file.
+	 * @param className the class name of the {@link Result}
+	 * @param name the name of the {@link Result}
+	 * @param comment the comment of the {@link Result}
+	 * @param type the string representation of the data type of the {@link Result}
+	 * @param value the string representation of the value of a {@link SimpleResult}, <code>null</code> otherwise
+	 * @param date the finished date of a {@link ToolResult}, <code>null</code> otherwise
+	 * @param size the size of the XML representation of the {@link Result} in bytes, or <code>-1</code> if unknown
+	 * @param mime the mime type of a {@link TextResult}, <code>null</code> otherwise
+	 * @param extendedType the extended type of a {@link TextResult}, may be <code>null</code>
+	 * @param filename the file name of the contents of a {@link TextResult}, <code>null</code> otherwise
+	 * @param contentLength the length of the file contents of a {@link TextResult}, <code>-1</code> if unknown
+	 * @param extensions the file extensions of the {@link ResultSaver} for other {@link Result}s, may be <code>null</code>
+	 * @param children the placeholders of nested {@link Result}s, <code>null</code> if the {@link Result} is no {@link ResultSetResult}
+	 */
+	LazyResult(String className, String name, String comment, String type, String value, Date date, long size, String mime, String extendedType, String filename, long contentLength, String[] extensions, LazyResult[] children){
+		super( name, comment, value == null ? type : value );
+		this.className = className;
+		this.typeName = type;
+		this.valueString = value;
+		this.storedName = name;
+		this.date = date;
+		this.size = size;
+		this.mime = mime;
+		this.extendedType = extendedType;
+		this.filename = filename;
+		this.contentLength = contentLength;
+		this.extensions = extensions;
+		this.children = children;
+		for(int i=0;children != null && i<children.length;i++){
+			children[i].parent = this;
+			children[i].indexInParent = i;
+		}
+	}
+
+	/**
+	 * Sets the location of the serialized {@link Result} in the workspace file.
+	 * Only applicable to top-level {@link LazyResult}s.
+	 * @param location the location
+	 * @return the previous location
+	 */
+	synchronized WorkspaceCodec.Location setLocation(WorkspaceCodec.Location location){
+		WorkspaceCodec.Location old = this.location;
+		this.location = location;
+		return old;
+	}
+
+	/**
+	 * Returns the class name of the {@link Result}
+	 * @return the class name
+	 */
+	public String getClassName(){
+		return className;
+	}
+
+	/**
+	 * Returns the string representation of the data type of the {@link Result}
+	 * @return the data type
+	 */
+	public String getTypeName(){
+		return typeName;
+	}
+
+	/**
+	 * Returns the string representation of the value if the {@link Result} is a {@link SimpleResult}, and <code>null</code> otherwise.
+	 * @return the value
+	 */
+	public String getValueString(){
+		return valueString;
+	}
+
+	/**
+	 * Returns the class of the {@link Result}, or <code>null</code> if this class could not be loaded.
+	 * @return the class
+	 */
+	public Class<? extends Result> getResultClass(){
+		try{
+			return Class.forName( className ).asSubclass( Result.class );
+		}catch(ClassNotFoundException | ClassCastException e){
+			return null;
+		}
+	}
+
+	/**
+	 * Returns if the {@link Result} is a {@link TextResult}.
+	 * @return if the {@link Result} is a {@link TextResult}
+	 */
+	public boolean isTextResult(){
+		Class<? extends Result> clazz = getResultClass();
+		return clazz != null && TextResult.class.isAssignableFrom( clazz );
+	}
+
+	/**
+	 * Returns if the {@link Result} is a {@link ToolResult}.
+	 * @return if the {@link Result} is a {@link ToolResult}
+	 */
+	public boolean isToolResult(){
+		Class<? extends Result> clazz = getResultClass();
+		return clazz != null && ToolResult.class.isAssignableFrom( clazz );
+	}
+
+	/**
+	 * Returns the finished date if the {@link Result} is a {@link ToolResult}, and <code>null</code> otherwise.
+	 * @return the date
+	 */
+	public Date getDate(){
+		return date;
+	}
+
+	/**
+	 * Returns the size of the serialized {@link Result} in bytes, or <code>-1</code> if unknown.
+	 * @return the size
+	 */
+	public long getSize(){
+		return size;
+	}
+
+	/**
+	 * Returns the mime type if the {@link Result} is a {@link TextResult}.
+	 * @return the mime type
+	 */
+	public String getMime(){
+		return mime;
+	}
+
+	/**
+	 * Returns the extended type if the {@link Result} is a {@link TextResult}.
+	 * @return the extended type
+	 */
+	public String getExtendedType(){
+		return extendedType;
+	}
+
+	/**
+	 * Returns the name of the file represented by a {@link TextResult}.
+	 * @return the file name
+	 */
+	public String getFilename(){
+		return filename;
+	}
+
+	/**
+	 * Returns the length of the file contents represented by a {@link TextResult}, or <code>-1</code> if unknown.
+	 * @return the length of the contents
+	 */
+	public long getContentLength(){
+		return contentLength;
+	}
+
+	/**
+	 * Returns the file extensions of the {@link ResultSaver} for the {@link Result}, if the {@link Result}
+	 * is no {@link TextResult}.
+	 * @return the extensions
+	 */
+	public String[] getExtensions(){
+		return extensions;
+	}
+
+	/**
+	 * Returns the placeholders of the {@link Result}s nested in a {@link ResultSetResult}, or <code>null</code>
+	 * if the {@link Result} is no {@link ResultSetResult}.
+	 * @return the nested placeholders
+	 */
+	public LazyResult[] getChildren(){
+		return children;
+	}
+
+	/**
+	 * Returns if the {@link Result} has already been restored from the workspace file.
+	 * @return if the {@link Result} is resolved
+	 */
+	public boolean isResolved(){
+		LazyResult top = getTop();
+		synchronized(top){
+			return top.resolved != null;
+		}
+	}
+
+	/**
+	 * Returns if this placeholder or any nested placeholder has been renamed since it has been read from the workspace file.
+	 * @return if modified
+	 */
+	boolean isModified(){
+		if(!Objects.equals( storedName, getName() )){
+			return true;
+		}
+		for(int i=0;children != null && i<children.length;i++){
+			if(children[i].isModified()){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the top-level placeholder containing this placeholder, or this placeholder itself if it is a top-level placeholder.
+	 * @return the top-level placeholder
+	 */
+	LazyResult getTop(){
+		LazyResult top = this;
+		while(top.parent != null){
+			top = top.parent;
+		}
+		return top;
+	}
+
+	/**
+	 * Closes and deletes the workspace file of this placeholder if it is a temporary file, e.g., the spill file of a {@link Result}
+	 * written by the {@link ResultCache}. Must only be called after this placeholder has been removed from the repository.
+	 */
+	synchronized void closeTemporary(){
+		if(parent == null && location != null){
+			location.closeTemporary();
+		}
+	}
+
+	/**
+	 * Returns the location of the serialized (top-level) {@link Result} in the workspace file,
+	 * or <code>null</code> if this placeholder has been modified, i.e., the serialized representation must be created from the
+	 * resolved {@link Result}.
+	 * The returned location is {@link WorkspaceCodec.Location#retain() retained}, so its workspace file is not closed if this placeholder is relocated
+	 * to a new snapshot in the meantime, and must be {@link WorkspaceCodec.Location#release() released} after reading.
+	 * @return the location
+	 * @throws IOException if the workspace file has already been closed
+	 */
+	synchronized WorkspaceCodec.Location getLocation() throws IOException{
+		if(parent != null || location == null || isModified()){
+			return null;
+		}
+		location.retain();
+		return location;
+	}
+
+	/**
+	 * Returns the actual {@link Result} represented by this placeholder. Upon the first call, the {@link Result}
+	 * is restored from the workspace file.
+	 * @return the {@link Result}
+	 * @throws IOException if the workspace file could not be read
+	 * @throws NonParsableException if the {@link Result} could not be restored
+	 */
+	public Result resolve() throws IOException, NonParsableException{
+		LazyResult top = getTop();
+		synchronized(top){
+			if(top.resolved == null){
+				top.setResolved( WorkspaceCodec.read( top.location ) );
+			}
+			return resolved;
+		}
+	}
+
+	/**
+	 * Returns the actual {@link Result} represented by this placeholder without keeping it, e.g., for indexing its contents once.
+	 * If the {@link Result} has not been restored yet, a copy is restored from the workspace file, which is not retained by this placeholder
+	 * and does not count as an access of the {@link Result} (see {@link ResultRepository#resolve(Result)}).
+	 * @return the {@link Result}
+	 * @throws IOException if the workspace file could not be read
+	 * @throws NonParsableException if the {@link Result} could not be restored
+	 */
+	Result load() throws IOException, NonParsableException{
+		LazyResult top = getTop();
+		Result res;
+		synchronized(top){
+			if(top.resolved != null){
+				return resolved;
+			}
+			res = WorkspaceCodec.read( top.location );
+		}
+		return find( res );
+	}
+
+	private Result find(Result topResult){
+		if(parent == null){
+			return topResult;
+		}
+		Result res = parent.find( topResult );
+		return ((ResultSetResult)res).getRawResult()[0].getResults()[indexInParent];
+	}
+
+	/**
+	 * Renames this placeholder and, if already restored, the actual {@link Result}.
+	 */
+	@Override
+	public void rename( String newName ) {
+		super.rename( newName );
+		LazyResult top = getTop();
+		synchronized(top){
+			if(resolved != null){
+				resolved.rename( newName );
+			}
+		}
+	}
+
+	/**
+	 * Drops the restored {@link Result} of this (top-level) placeholder, which will be restored from the workspace file again upon the next call of
+	 * {@link #resolve()}. Renamings of this placeholder are retained.
+	 * @return if the restored {@link Result} has been dropped, which is not possible for placeholders without a workspace file
+	 */
+	synchronized boolean evict(){
+		if(parent != null || resolved == null || location == null){
+			return false;
+		}
+		clearResolved();
+		return true;
+	}
+
+	/**
+	 * Returns the restored {@link Result} of this placeholder without restoring it.
+	 * @return the {@link Result}, or <code>null</code> if the placeholder has not been resolved
+	 */
+	Result getResolved(){
+		LazyResult top = getTop();
+		synchronized(top){
+			return resolved;
+		}
+	}
+
+	private void clearResolved(){
+		this.resolved = null;
+		for(int i=0;children != null && i<children.length;i++){
+			children[i].clearResolved();
+		}
+	}
+
+	private void setResolved(Result res){
+		this.resolved = res;
+		if(!Objects.equals( storedName, getName() )){
+			res.rename( getName() );
+		}
+		if(children != null && res instanceof ResultSetResult){
+			Result[] temp = ((ResultSetResult)res).getRawResult()[0].getResults();
+			for(int i=0;i<children.length && i<temp.length;i++){
+				children[i].setResolved( temp[i] );
+			}
+		}
+	}
+
+	/**
+	 * Returns the index of this placeholder among the placeholders of its parent.
+	 * @return the index
+	 */
+	int getIndexInParent(){
+		return indexInParent;
+	}
+
+}
@@ -0,0 +1,73 @@
+package de.jstacs.fx.repository;
+
+import java.io.File;
+import java.util.List;
+
+import de.jstacs.results.Result;
+
+/**
+ * {@link WorkspaceStore} that keeps the workspace in memory only, i.e., all modifications are discarded
+ * and nothing is restored on start-up.
+ *
+ * @author Jan Grau
+ *
+ */
+class MemoryStore implements WorkspaceStore {
+
+	private File location;
+
+	/**
+	 * Creates a new store.
+	 * @param location the location, which is not used
+	 */
+	MemoryStore(File location){
+		this.location = location;
+	}
+
+	@Override
+	public File getLocation() {
+		return location;
+	}
+
+	@Override
+	public void restore( RecoveryReport report ) { }
+
+	@Override
+	public void added( List<? extends Result> results, boolean store ) { }
+
+	@Override
+	public void removed( int[] indexes, List<? extends Result> results ) { }
+
+	@Override
+	public void modified( Result result ) { }
+
+	@Override
+	public void replaced( Result old, Result replacement ) { }
+
+	@Override
+	public File getProvenanceFile() {
+		return null;
+	}
+
+	@Override
+	public long getStoredSize( Result result ) {
+		return -1;
+	}
+
+	@Override
+	public void store() { }
+
+	@Override
+	public long getNumberOfRequestedSaves() {
+		return 0;
+	}
+
+	@Override
+	public long getNumberOfPerformedSaves() {
+		return 0;
+	}
+
+	@Override
+	public void close() { }
+
+}
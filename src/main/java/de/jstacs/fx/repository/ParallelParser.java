@@ -0,0 +1,123 @@
+package de.jstacs.fx.repository;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import de.jstacs.fx.ThreadPools;
+import de.jstacs.io.NonParsableException;
+import de.jstacs.results.Result;
+
+/**
+ * Restores the {@link Result}s of a workspace file in parallel, while passing them to a {@link Consumer} in the original order.
+ * The serialized {@link Result}s are submitted one by one by the reading {@link Thread} and parsed on a bounded {@link ForkJoinPool}
+ * shared by all workspaces. At most {@link #WINDOW} {@link Result}s are parsed ahead of the {@link Result} passed to the {@link Consumer} next,
+ * so memory requirements remain bounded for large workspaces.
+ * The {@link Consumer} is always called in the {@link Thread} submitting the {@link Result}s.
+ *
+ * @author Jan Grau
+ *
+ */
+class ParallelParser {
+
+	/**
+	 * Number of {@link Thread}s used for parsing
+	 */
+	static final int PARALLELISM = Math.max( 1, Math.min( 32, Runtime.getRuntime().availableProcessors() ) );
+	/**
+	 * Maximum number of {@link Result}s parsed ahead
+	 */
+	static final int WINDOW = 2*PARALLELISM;
+
+	private static ForkJoinPool pool;
+
+	/**
+	 * Returns the {@link ForkJoinPool} shared by all workspaces, which is also used for compressing workspace files (see {@link BlobStore}).
+	 * @return the pool
+	 */
+	static synchronized ForkJoinPool getPool(){
+		if(pool == null){
+			pool = ThreadPools.newForkJoinPool( "Workspace parser", PARALLELISM );
+		}
+		return pool;
+	}
+
+	private Consumer<Result> consumer;
+	private ArrayDeque<ForkJoinTask<Result>> pending;
+
+	/**
+	 * Creates a new parser passing the restored {@link Result}s to the given consumer.
+	 * @param consumer the consumer
+	 */
+	ParallelParser(Consumer<Result> consumer){
+		this.consumer = consumer;
+		this.pending = new ArrayDeque<>();
+	}
+
+	/**
+	 * Submits the next {@link Result} for parsing. If the maximum number of {@link Result}s is already pending,
+	 * this method waits for the first pending {@link Result} and passes it to the consumer.
+	 * @param task the task restoring the {@link Result}
+	 * @throws IOException if a previously submitted {@link Result} could not be read
+	 * @throws NonParsableException if a previously submitted {@link Result} could not be parsed
+	 */
+	void submit(Callable<Result> task) throws IOException, NonParsableException{
+		pending.add( getPool().submit( task ) );
+		if(pending.size() >= WINDOW){
+			deliver();
+		}
+	}
+
+	/**
+	 * Waits for all pending {@link Result}s and passes them to the consumer.
+	 * @throws IOException if a {@link Result} could not be read
+	 * @throws NonParsableException if a {@link Result} could not be parsed
+	 */
+	void finish() throws IOException, NonParsableException{
+		while(!pending.isEmpty()){
+			deliver();
+		}
+	}
+
+	/**
+	 * Cancels all pending {@link Result}s, e.g., if reading the workspace file failed.
+	 */
+	void cancel(){
+		Iterator<ForkJoinTask<Result>> it = pending.iterator();
+		while(it.hasNext()){
+			it.next().cancel( true );
+		}
+		pending.clear();
+	}
+
+	private void deliver() throws IOException, NonParsableException{
+		ForkJoinTask<Result> task = pending.poll();
+		Result res;
+		try{
+			res = task.get();
+		}catch(InterruptedException e){
+			cancel();
+			throw new InterruptedIOException( "Restoring workspace interrupted" );
+		}catch(ExecutionException e){
+			cancel();
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException){
+				throw (IOException)cause;
+			}else if(cause instanceof NonParsableException){
+				throw (NonParsableException)cause;
+			}else if(cause instanceof RuntimeException){
+				throw (RuntimeException)cause;
+			}else{
+				throw new IOException( cause );
+			}
+		}
+		consumer.accept( res );
+	}
+
+}
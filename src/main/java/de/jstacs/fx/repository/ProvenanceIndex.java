@@ -0,0 +1,307 @@
+package de.jstacs.fx.repository;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import de.jstacs.results.Result;
+
+/**
+ * Index of the provenance of the top-level {@link Result}s of a {@link ResultRepository}, i.e., which {@link Result}s have been used as inputs
+ * of the tool run that created a {@link de.jstacs.tools.ToolResult}, and of the {@link Result}s pinned by the user.
+ * Based on this index, {@link Result}s created by tools that are not (directly or indirectly) used as inputs of a pinned {@link Result}
+ * are determined as garbage.
+ *
+ * {@link Result}s without recorded inputs, e.g., files loaded by the user, are never considered garbage, even if other {@link Result}s have been
+ * derived from them. The index is persisted with the automatically saved workspace (see {@link #serialize(List)}), where {@link Result}s
+ * are identified by their position and name.
+ *
+ * All methods must be called while holding the write lock of the repository.
+ *
+ * @author Jan Grau
+ *
+ */
+class ProvenanceIndex {
+
+	private IdentityHashMap<Result, List<Result>> inputs;
+	private IdentityHashMap<Result, List<Result>> derived;
+	private IdentityHashMap<Result, Boolean> pinned;
+
+	/**
+	 * Creates a new, empty index.
+	 */
+	ProvenanceIndex(){
+		this.inputs = new IdentityHashMap<>();
+		this.derived = new IdentityHashMap<>();
+		this.pinned = new IdentityHashMap<>();
+	}
+
+	private static final String HEADER = "# Jstacs provenance 1";
+
+	private static void add(IdentityHashMap<Result, List<Result>> map, Result key, Result value){
+		List<Result> list = map.get( key );
+		if(list == null){
+			list = new ArrayList<>( 2 );
+			map.put( key, list );
+		}
+		for(int i=0;i<list.size();i++){
+			if(list.get( i ) == value){
+				return;
+			}
+		}
+		list.add( value );
+	}
+
+	private static void remove(IdentityHashMap<Result, List<Result>> map, Result key, Result value){
+		List<Result> list = map.get( key );
+		if(list != null){
+			Iterator<Result> it = list.iterator();
+			while(it.hasNext()){
+				if(it.next() == value){
+					it.remove();
+				}
+			}
+			if(list.isEmpty()){
+				map.remove( key );
+			}
+		}
+	}
+
+	/**
+	 * Records that the given top-level {@link Result} has been created from the given top-level {@link Result}s.
+	 * @param output the created {@link Result}
+	 * @param in the inputs
+	 */
+	void record(Result output, List<Result> in){
+		for(int i=0;i<in.size();i++){
+			if(in.get( i ) != output){
+				add( inputs, output, in.get( i ) );
+				add( derived, in.get( i ), output );
+			}
+		}
+	}
+
+	/**
+	 * Returns the recorded inputs of the given top-level {@link Result}.
+	 * @param output the {@link Result}
+	 * @return the inputs
+	 */
+	List<Result> getInputs(Result output){
+		List<Result> list = inputs.get( output );
+		return list == null ? Collections.<Result>emptyList() : new ArrayList<>( list );
+	}
+
+	/**
+	 * Returns the top-level {@link Result}s that have been created using the given top-level {@link Result} as input.
+	 * @param input the {@link Result}
+	 * @return the derived {@link Result}s
+	 */
+	List<Result> getDerived(Result input){
+		List<Result> list = derived.get( input );
+		return list == null ? Collections.<Result>emptyList() : new ArrayList<>( list );
+	}
+
+	/**
+	 * Pins or unpins a top-level {@link Result}.
+	 * @param result the {@link Result}
+	 * @param pin if the {@link Result} is pinned
+	 */
+	void setPinned(Result result, boolean pin){
+		if(pin){
+			pinned.put( result, Boolean.TRUE );
+		}else{
+			pinned.remove( result );
+		}
+	}
+
+	/**
+	 * Returns if the given top-level {@link Result} is pinned.
+	 * @param result the {@link Result}
+	 * @return if pinned
+	 */
+	boolean isPinned(Result result){
+		return pinned.containsKey( result );
+	}
+
+	/**
+	 * Removes a top-level {@link Result} that has been removed from the repository. The {@link Result}s derived from the removed {@link Result}
+	 * inherit its inputs, so the transitive provenance of the remaining {@link Result}s is kept.
+	 * @param result the {@link Result}
+	 */
+	void removed(Result result){
+		pinned.remove( result );
+		List<Result> in = inputs.remove( result );
+		for(int i=0;in != null && i<in.size();i++){
+			remove( derived, in.get( i ), result );
+		}
+		List<Result> out = derived.remove( result );
+		for(int i=0;out != null && i<out.size();i++){
+			remove( inputs, out.get( i ), result );
+			for(int j=0;in != null && j<in.size();j++){
+				add( inputs, out.get( i ), in.get( j ) );
+				add( derived, in.get( j ), out.get( i ) );
+			}
+		}
+	}
+
+	/**
+	 * Transfers the provenance of a top-level {@link Result} to its replacement, e.g., after spilling it to disk.
+	 * @param old the replaced {@link Result}
+	 * @param replacement the replacement
+	 */
+	void replaced(Result old, Result replacement){
+		if(pinned.remove( old ) != null){
+			pinned.put( replacement, Boolean.TRUE );
+		}
+		List<Result> in = inputs.remove( old );
+		List<Result> out = derived.remove( old );
+		for(int i=0;in != null && i<in.size();i++){
+			remove( derived, in.get( i ), old );
+		}
+		for(int i=0;out != null && i<out.size();i++){
+			remove( inputs, out.get( i ), old );
+		}
+		for(int i=0;in != null && i<in.size();i++){
+			add( inputs, replacement, in.get( i ) );
+			add( derived, in.get( i ), replacement );
+		}
+		for(int i=0;out != null && i<out.size();i++){
+			add( inputs, out.get( i ), replacement );
+			add( derived, replacement, out.get( i ) );
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if no provenance has been recorded and no {@link Result} is pinned.
+	 * @return if empty
+	 */
+	boolean isEmpty(){
+		return inputs.isEmpty() && pinned.isEmpty();
+	}
+
+	private static String getKey(Result result, IdentityHashMap<Result, Integer> positions){
+		return positions.get( result )+" "+String.valueOf( result.getName() ).hashCode();
+	}
+
+	/**
+	 * Returns a textual representation of the pins and the recorded inputs, where each {@link Result} is identified by its position in
+	 * the given top-level {@link Result}s and the hash code of its name. Inputs of {@link Result}s that are not contained
+	 * in <code>results</code> are omitted.
+	 * @param results the top-level {@link Result}s of the repository
+	 * @return the representation
+	 * @see #deserialize(List, List)
+	 */
+	String serialize(List<Result> results){
+		IdentityHashMap<Result, Integer> positions = new IdentityHashMap<>();
+		for(int i=0;i<results.size();i++){
+			positions.put( results.get( i ), i );
+		}
+		StringBuilder sb = new StringBuilder( HEADER );
+		sb.append( "\n" );
+		Iterator<Result> it = pinned.keySet().iterator();
+		while(it.hasNext()){
+			Result r = it.next();
+			if(positions.containsKey( r )){
+				sb.append( "P "+getKey( r, positions )+"\n" );
+			}
+		}
+		it = inputs.keySet().iterator();
+		while(it.hasNext()){
+			Result r = it.next();
+			List<Result> in = inputs.get( r );
+			for(int i=0;i<in.size() && positions.containsKey( r );i++){
+				if(positions.containsKey( in.get( i ) )){
+					sb.append( "I "+getKey( r, positions )+" "+getKey( in.get( i ), positions )+"\n" );
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	private static Result get(String[] parts, int off, List<Result> results){
+		int pos = Integer.parseInt( parts[off] );
+		if(pos < 0 || pos >= results.size()){
+			return null;
+		}
+		Result r = results.get( pos );
+		return String.valueOf( r.getName() ).hashCode() == Integer.parseInt( parts[off+1] ) ? r : null;
+	}
+
+	/**
+	 * Adds the pins and inputs of a representation created by {@link #serialize(List)} to this index. Entries referring to
+	 * {@link Result}s that do not match the position and name of the given top-level {@link Result}s are ignored.
+	 * @param lines the lines of the representation
+	 * @param results the top-level {@link Result}s of the repository
+	 * @return the number of ignored entries
+	 * @throws IOException if the representation is malformed
+	 */
+	int deserialize(List<String> lines, List<Result> results) throws IOException{
+		if(lines.isEmpty() || !HEADER.equals( lines.get( 0 ) )){
+			throw new IOException( "Not a provenance file" );
+		}
+		int ignored = 0;
+		try{
+			for(int i=1;i<lines.size();i++){
+				String[] parts = lines.get( i ).split( " " );
+				if("P".equals( parts[0] ) && parts.length == 3){
+					Result r = get( parts, 1, results );
+					if(r == null){
+						ignored++;
+					}else{
+						setPinned( r, true );
+					}
+				}else if("I".equals( parts[0] ) && parts.length == 5){
+					Result r = get( parts, 1, results );
+					Result in = get( parts, 3, results );
+					if(r == null || in == null){
+						ignored++;
+					}else{
+						record( r, Collections.singletonList( in ) );
+					}
+				}else if(parts[0].length() > 0){
+					throw new IOException( "Malformed provenance entry: "+lines.get( i ) );
+				}
+			}
+		}catch(NumberFormatException e){
+			throw new IOException( e );
+		}
+		return ignored;
+	}
+
+	/**
+	 * Returns the {@link Result}s with recorded inputs that are not reachable from any pinned {@link Result} via their inputs, in the order
+	 * of the given top-level {@link Result}s. If no {@link Result} is pinned, no {@link Result} is considered garbage.
+	 * @param results the top-level {@link Result}s of the repository
+	 * @return the unreachable {@link Result}s
+	 */
+	List<Result> getUnreachable(List<Result> results){
+		if(pinned.isEmpty()){
+			return Collections.emptyList();
+		}
+		IdentityHashMap<Result, Boolean> reachable = new IdentityHashMap<>();
+		ArrayDeque<Result> queue = new ArrayDeque<>( pinned.keySet() );
+		while(!queue.isEmpty()){
+			Result r = queue.poll();
+			if(reachable.put( r, Boolean.TRUE ) == null){
+				List<Result> in = inputs.get( r );
+				if(in != null){
+					queue.addAll( in );
+				}
+			}
+		}
+		ArrayList<Result> unreachable = new ArrayList<>();
+		for(int i=0;i<results.size();i++){
+			Result r = results.get( i );
+			//Results without inputs are roots, e.g., loaded by the user
+			if(!reachable.containsKey( r ) && inputs.containsKey( r )){
+				unreachable.add( r );
+			}
+		}
+		return unreachable;
+	}
+
+}
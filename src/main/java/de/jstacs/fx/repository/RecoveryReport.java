@@ -0,0 +1,178 @@
+package de.jstacs.fx.repository;
+
+import java.io.File;
+
+/**
+ * Summary of restoring the automatically saved workspace on start-up, i.e., the number of {@link de.jstacs.results.Result}s restored
+ * from the snapshot and of the modifications replayed from the journal, and of all damage detected and repaired on the way,
+ * e.g., incomplete records at the end of the journal after a crash.
+ *
+ * @author Jan Grau
+ *
+ */
+public class RecoveryReport {
+
+	private int restored;
+	private int replayed;
+	private int skipped;
+	private int ignored;
+	private int tornJournals;
+	private long discarded;
+	private int lost;
+	private int uncommitted;
+	private int rebuilt;
+	private int provenance;
+	private File damaged;
+	private boolean incompleteSnapshot;
+
+	/**
+	 * Creates a new, empty report.
+	 */
+	RecoveryReport(){ }
+
+	/**
+	 * Sets the number of {@link de.jstacs.results.Result}s restored from the snapshot.
+	 * @param restored the number of {@link de.jstacs.results.Result}s
+	 */
+	public void setRestored(int restored){
+		this.restored = restored;
+	}
+
+	/**
+	 * Counts a modification replayed from the journal.
+	 */
+	public void replayed(){
+		replayed++;
+	}
+
+	/**
+	 * Counts a modification of the journal that could not be applied, e.g., the removal of a {@link de.jstacs.results.Result}
+	 * that has been lost.
+	 */
+	public void skipped(){
+		skipped++;
+	}
+
+	/**
+	 * Counts a removal of the journal that has been ignored, because it refers to the contents of a snapshot that could not be read.
+	 */
+	public void ignoredRemoval(){
+		ignored++;
+	}
+
+	/**
+	 * Returns <code>true</code> if {@link de.jstacs.results.Result}s or modifications of the workspace have been lost, i.e., the restored
+	 * workspace may differ from the workspace of the last session.
+	 * @return if the workspace has only been restored partially
+	 */
+	public boolean isPartial(){
+		return skipped > 0 || ignored > 0 || lost > 0 || damaged != null;
+	}
+
+	/**
+	 * Notes that an incomplete or corrupted tail of the given length has been cut from a journal file.
+	 * @param bytes the number of bytes discarded
+	 */
+	public void tornJournal(long bytes){
+		tornJournals++;
+		discarded += bytes;
+	}
+
+	/**
+	 * Counts a stored {@link de.jstacs.results.Result} that could not be restored, e.g., because its file is missing or unreadable.
+	 */
+	public void lost(){
+		lost++;
+	}
+
+	/**
+	 * Notes that the given number of stored files have been discarded, because they have been written but not committed
+	 * before the application was terminated.
+	 * @param files the number of files
+	 */
+	public void uncommitted(int files){
+		uncommitted += files;
+	}
+
+	/**
+	 * Notes that the index of the stored {@link de.jstacs.results.Result}s has been lost and has been rebuilt from the given number of stored files.
+	 * @param files the number of files
+	 */
+	public void rebuiltIndex(int files){
+		rebuilt = files;
+	}
+
+	/**
+	 * Counts entries of the stored provenance of the {@link de.jstacs.results.Result}s that have been ignored,
+	 * because they do not match the restored {@link de.jstacs.results.Result}s.
+	 * @param entries the number of entries, or <code>-1</code> if the complete provenance could not be read
+	 */
+	public void ignoredProvenance(int entries){
+		provenance = entries;
+	}
+
+	/**
+	 * Notes that the snapshot could not be read and has been moved to the given file.
+	 * @param damaged the file
+	 */
+	public void setDamaged(File damaged){
+		this.damaged = damaged;
+	}
+
+	/**
+	 * Notes that an incomplete snapshot, which has been written when the application was terminated, has been discarded.
+	 */
+	public void setIncompleteSnapshot(){
+		this.incompleteSnapshot = true;
+	}
+
+	/**
+	 * Returns <code>true</code> if the workspace has been restored without detecting any damage.
+	 * @return if the workspace has been restored without damage
+	 */
+	public boolean isClean(){
+		return !isPartial() && uncommitted == 0 && rebuilt == 0 && provenance == 0 && tornJournals == 0 && !incompleteSnapshot;
+	}
+
+	@Override
+	public String toString() {
+		StringBuffer sb = new StringBuffer();
+		sb.append( "Recovered autosaved workspace: " );
+		sb.append( damaged == null ? restored+" results from snapshot, " : "snapshot unreadable, " );
+		sb.append( replayed+" modifications from journal." );
+		if(incompleteSnapshot){
+			sb.append( "\nDiscarded incomplete snapshot of last session." );
+		}
+		if(tornJournals > 0){
+			sb.append( "\nRepaired "+tornJournals+" journal"+(tornJournals > 1 ? "s" : "")+" ("+discarded+" bytes of incomplete records discarded)." );
+		}
+		if(skipped > 0){
+			sb.append( "\nSkipped "+skipped+" modifications of lost results." );
+		}
+		if(lost > 0){
+			sb.append( "\n"+lost+" stored result"+(lost > 1 ? "s" : "")+" could not be read." );
+		}
+		if(rebuilt > 0){
+			sb.append( "\nRebuilt the missing index from "+rebuilt+" stored result file"+(rebuilt > 1 ? "s" : "")+", removed results may have been restored again." );
+		}
+		if(provenance < 0){
+			sb.append( "\nThe provenance of the results could not be read, results created by tools are not collected as garbage." );
+		}else if(provenance > 0){
+			sb.append( "\nIgnored "+provenance+" outdated provenance entr"+(provenance > 1 ? "ies" : "y")+"." );
+		}
+		if(uncommitted > 0){
+			sb.append( "\nDiscarded "+uncommitted+" uncommitted result file"+(uncommitted > 1 ? "s" : "")+"." );
+		}
+		if(ignored > 0){
+			sb.append( "\nIgnored "+ignored+" removal"+(ignored > 1 ? "s" : "")+" of results of the unreadable snapshot." );
+		}
+		if(damaged != null){
+			sb.append( "\nDamaged snapshot kept as "+damaged.getName()+"." );
+		}
+		if(isPartial()){
+			sb.append( "\nThe workspace has only been restored partially, results of the last session may be missing." );
+		}
+		return sb.toString();
+	}
+
+}
@@ -0,0 +1,465 @@
+package de.jstacs.fx.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+import de.jstacs.data.DataSet;
+import de.jstacs.data.sequences.annotation.SplitSequenceAnnotationParser;
+import de.jstacs.fx.ThreadPools;
+import de.jstacs.results.DataSetResult;
+import de.jstacs.results.Result;
+import de.jstacs.results.ResultSetResult;
+import de.jstacs.results.TextResult;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.beans.value.ChangeListener;
+import javafx.beans.value.ObservableValue;
+
+/**
+ * Bounds the memory occupied by the {@link Result}s of a {@link ResultRepository} to {@link ResultRepository#memoryBudget}.
+ * The cache keeps track of the estimated size (see {@link #estimate(Result)}) and the last access of all top-level {@link Result}s that are currently held in memory,
+ * where accesses to nested {@link Result}s count as accesses to their top-level {@link Result}.
+ * If the total size exceeds the budget, the least recently used {@link Result}s are spilled to disk:
+ * <ul>
+ * <li>{@link LazyResult}s drop their restored {@link Result}, which is restored from the workspace file again on next access,</li>
+ * <li>all other {@link Result}s are written to a spill file in the cache directory and replaced by a {@link LazyResult} in the repository.</li>
+ * </ul>
+ * Estimation of sizes and writing of spill files are performed in a background {@link Thread}, which also replaces spilled {@link Result}s
+ * in the repository.
+ *
+ * @author Jan Grau
+ *
+ */
+class ResultCache {
+
+	private static class Entry{
+
+		private long size;
+		private long access;
+		private boolean spilling;
+
+		private Entry(long access){
+			this.access = access;
+		}
+
+	}
+
+	private ResultRepository repository;
+	private IdentityHashMap<Result, Entry> resident;
+	private IdentityHashMap<Result, Result> tops;
+	private IdentityHashMap<Result, Long> spilled;
+	private long accesses;
+	private long residentSize;
+	private long spilledSize;
+
+	private ReadOnlyLongWrapper residentProperty;
+	private ReadOnlyLongWrapper spilledProperty;
+
+	private ExecutorService worker;
+	//tasks of the worker, which are run one after another by a single task of the pool
+	private ArrayDeque<Runnable> tasks;
+	private boolean draining;
+	private File directory;
+	private int spills;
+
+	/**
+	 * Creates a new cache for the given repository.
+	 * @param repository the repository
+	 */
+	ResultCache(ResultRepository repository){
+		this.repository = repository;
+		this.resident = new IdentityHashMap<>();
+		this.tops = new IdentityHashMap<>();
+		this.spilled = new IdentityHashMap<>();
+		this.residentProperty = new ReadOnlyLongWrapper( 0 );
+		this.spilledProperty = new ReadOnlyLongWrapper( 0 );
+		this.worker = ThreadPools.newPool( "Workspace cache", 1 );
+		this.tasks = new ArrayDeque<>();
+		ResultRepository.memoryBudget.addListener( new ChangeListener<Number>() {
+
+			@Override
+			public void changed( ObservableValue<? extends Number> observable, Number oldValue, Number newValue ) {
+				synchronized(ResultCache.this){
+					trim();
+					publish();
+				}
+			}
+
+		} );
+	}
+
+	/**
+	 * Returns the property holding the estimated size (in bytes) of all {@link Result}s held in memory.
+	 * @return the property
+	 */
+	ReadOnlyLongProperty residentSizeProperty(){
+		return residentProperty.getReadOnlyProperty();
+	}
+
+	/**
+	 * Returns the property holding the size (in bytes) of all {@link Result}s that are currently only available on disk.
+	 * @return the property
+	 */
+	ReadOnlyLongProperty spilledSizeProperty(){
+		return spilledProperty.getReadOnlyProperty();
+	}
+
+	/**
+	 * Registers a top-level {@link Result} that has been added to the repository.
+	 * @param result the {@link Result}
+	 */
+	synchronized void added(final Result result){
+		if(result instanceof LazyResult && !((LazyResult)result).isResolved()){
+			long size = estimate( result );
+			spilled.put( result, size );
+			spilledSize += size;
+			publish();
+		}else{
+			Entry entry = new Entry( ++accesses );
+			resident.put( result, entry );
+			if(!(result instanceof LazyResult)){
+				registerNested( result, result );
+			}
+			measure( result, entry );
+		}
+	}
+
+	/**
+	 * Unregisters a top-level {@link Result} that has been removed from the repository.
+	 * @param result the {@link Result}
+	 */
+	synchronized void removed(Result result){
+		Entry entry = resident.remove( result );
+		if(entry != null && entry.spilling){
+			spilledSize -= entry.size;
+		}else if(entry != null){
+			residentSize -= entry.size;
+		}else if(spilled.containsKey( result )){
+			spilledSize -= spilled.remove( result );
+		}
+		if(!(result instanceof LazyResult)){
+			unregisterNested( result );
+		}else{
+			//delete the spill file, if any
+			((LazyResult)result).closeTemporary();
+		}
+		publish();
+	}
+
+	/**
+	 * Returns the estimated memory (in bytes) occupied by the given top-level {@link Result}, which is <code>0</code> if it is only available on disk.
+	 * @param result the {@link Result}
+	 * @return the size in bytes
+	 */
+	synchronized long getResidentSize(Result result){
+		Entry entry = resident.get( result );
+		return entry == null || entry.spilling ? 0 : entry.size;
+	}
+
+	/**
+	 * Registers an access to a (top-level or nested) {@link Result} of the repository, which has been restored if it is a {@link LazyResult}.
+	 * @param result the {@link Result}
+	 */
+	synchronized void accessed(Result result){
+		if(result instanceof LazyResult){
+			result = ((LazyResult)result).getTop();
+		}else if(tops.containsKey( result )){
+			result = tops.get( result );
+		}
+		Entry entry = resident.get( result );
+		if(entry != null){
+			entry.access = ++accesses;
+		}else if(result instanceof LazyResult && ((LazyResult)result).isResolved() && spilled.containsKey( result )){
+			entry = new Entry( ++accesses );
+			entry.size = spilled.remove( result );
+			resident.put( result, entry );
+			residentSize += entry.size;
+			spilledSize -= entry.size;
+			trim();
+			publish();
+			measure( result, entry );
+		}
+	}
+
+	private void registerNested(Result result, Result top){
+		if(result instanceof ResultSetResult){
+			Result[] temp = ((ResultSetResult)result).getRawResult()[0].getResults();
+			for(int i=0;i<temp.length;i++){
+				tops.put( temp[i], top );
+				registerNested( temp[i], top );
+			}
+		}
+	}
+
+	private void unregisterNested(Result result){
+		if(result instanceof ResultSetResult){
+			Result[] temp = ((ResultSetResult)result).getRawResult()[0].getResults();
+			for(int i=0;i<temp.length;i++){
+				tops.remove( temp[i] );
+				unregisterNested( temp[i] );
+			}
+		}
+	}
+
+	/**
+	 * Estimates the size of a resident {@link Result} in the background and updates its entry, which may still hold
+	 * a preliminary size.
+	 */
+	private void measure(final Result result, final Entry entry){
+		schedule( new Runnable() {
+
+			@Override
+			public void run() {
+				long size = estimate( result );
+				synchronized(ResultCache.this){
+					if(resident.get( result ) == entry){
+						if(entry.spilling){
+							spilledSize += size - entry.size;
+						}else{
+							residentSize += size - entry.size;
+						}
+						entry.size = size;
+						trim();
+						publish();
+					}
+				}
+			}
+
+		} );
+	}
+
+	/**
+	 * Schedules a task of the background {@link Thread}. As the pool of that {@link Thread} has a bounded queue, and its tasks
+	 * synchronize on this cache, pending tasks are kept in this cache and run by a single task of the pool.
+	 * Must be called while holding the lock of this cache.
+	 * @param task the task
+	 */
+	private void schedule(Runnable task){
+		tasks.add( task );
+		if(!draining){
+			draining = true;
+			worker.execute( new Runnable() {
+
+				@Override
+				public void run() {
+					while(true){
+						Runnable next;
+						synchronized(ResultCache.this){
+							next = tasks.poll();
+							if(next == null){
+								draining = false;
+								return;
+							}
+						}
+						try{
+							next.run();
+						}catch(RuntimeException e){
+							//keep running the remaining tasks
+							Thread.currentThread().getUncaughtExceptionHandler().uncaughtException( Thread.currentThread(), e );
+						}
+					}
+				}
+
+			} );
+		}
+	}
+
+	private void trim(){
+		long budget = ResultRepository.memoryBudget.get();
+		if(budget <= 0){
+			return;
+		}
+		while(residentSize > budget){
+			Result lru = null;
+			Entry lruEntry = null;
+			Iterator<Map.Entry<Result, Entry>> it = resident.entrySet().iterator();
+			while(it.hasNext()){
+				Map.Entry<Result, Entry> e = it.next();
+				if(e.getValue().access < accesses && !e.getValue().spilling && (lruEntry == null || e.getValue().access < lruEntry.access)){
+					lru = e.getKey();
+					lruEntry = e.getValue();
+				}
+			}
+			if(lru == null){
+				return;
+			}
+			if(lru instanceof LazyResult && ((LazyResult)lru).evict()){
+				resident.remove( lru );
+				spilled.put( lru, lruEntry.size );
+			}else{
+				lruEntry.spilling = true;
+				spill( lru, lruEntry );
+			}
+			residentSize -= lruEntry.size;
+			spilledSize += lruEntry.size;
+		}
+	}
+
+	private void spill(final Result result, final Entry entry){
+		schedule( new Runnable() {
+
+			@Override
+			public void run() {
+				final LazyResult[] lazy = new LazyResult[1];
+				try{
+					File f = new File( getDirectory(), "spill-"+(spills++)+".jst" );
+					f.deleteOnExit();
+					WorkspaceCodec.write( f, new Result[]{result}, 0, null, WorkspaceCodec.FAST );
+					WorkspaceCodec.readLazy( f, new Consumer<Result>() {
+
+						@Override
+						public void accept( Result t ) {
+							lazy[0] = (LazyResult)t;
+						}
+
+					}, true );
+				}catch(Exception e){
+					e.printStackTrace();
+				}
+				synchronized(ResultCache.this){
+					if(resident.get( result ) != entry){
+						//removed in the meantime
+						if(lazy[0] != null){
+							lazy[0].closeTemporary();
+						}
+						return;
+					}
+					if(lazy[0] == null){
+						//keep in memory
+						entry.spilling = false;
+						entry.access = ++accesses;
+						residentSize += entry.size;
+						spilledSize -= entry.size;
+						publish();
+						return;
+					}
+					resident.remove( result );
+					if(!(result instanceof LazyResult)){
+						unregisterNested( result );
+					}
+					spilled.put( lazy[0], entry.size );
+				}
+				if(result.getName() != null && !result.getName().equals( lazy[0].getName() )){
+					lazy[0].rename( result.getName() );
+				}
+				if(!repository.replace( result, lazy[0] )){
+					synchronized(ResultCache.this){
+						if(spilled.containsKey( lazy[0] )){
+							spilledSize -= spilled.remove( lazy[0] );
+						}
+					}
+					lazy[0].closeTemporary();
+				}
+				synchronized(ResultCache.this){
+					publish();
+				}
+			}
+
+		} );
+	}
+
+	private File getDirectory() throws IOException{
+		if(directory == null){
+			String autodir = ResultRepository.autodir.get();
+			if(autodir != null){
+				directory = new File( autodir+".cache" );
+				directory.mkdirs();
+			}else{
+				directory = Files.createTempDirectory( "jstacsfx-cache" ).toFile();
+			}
+			directory.deleteOnExit();
+		}
+		return directory;
+	}
+
+	private void publish(){
+		final long res = residentSize;
+		final long spilled = spilledSize;
+		FXDispatcher.run( new Runnable() {
+
+			@Override
+			public void run() {
+				residentProperty.set( res );
+				spilledProperty.set( spilled );
+			}
+
+		} );
+	}
+
+	/**
+	 * Estimates the memory occupied by the contents of a {@link Result}, where only large contents are considered, i.e.,
+	 * the contents of {@link TextResult}s, the data of {@link DataSetResult}s, and the {@link Result}s nested in {@link ResultSetResult}s.
+	 * For {@link LazyResult}s, this is the estimate of the restored {@link Result}, which is approximated from the meta data of
+	 * the placeholder if it has not been resolved, so spilled and resident {@link Result}s are measured alike.
+	 * @param result the {@link Result}
+	 * @return the estimated size in bytes
+	 */
+	static long estimate(Result result){
+		if(result instanceof LazyResult){
+			LazyResult lazy = (LazyResult)result;
+			Result resolved = lazy.getResolved();
+			if(resolved != null){
+				return estimate( resolved );
+			}else if(lazy.getChildren() != null){
+				long size = 0;
+				for(int i=0;i<lazy.getChildren().length;i++){
+					size += estimate( lazy.getChildren()[i] );
+				}
+				return size;
+			}else if(TextResult.class.getName().equals( lazy.getClassName() )){
+				return lazy.getContentLength() >= 0 ? lazy.getContentLength() : Math.max( 0, lazy.getSize() );
+			}else if(DataSetResult.class.getName().equals( lazy.getClassName() )){
+				return Math.max( 0, lazy.getSize() );
+			}else{
+				return 0;
+			}
+		}else if(result instanceof TextResult){
+			TextResult tr = (TextResult)result;
+			return tr.getValue() == null || tr.getValue().getContent() == null ? 0 : tr.getValue().getContent().length();
+		}else if(result instanceof DataSetResult){
+			DataSet data = ((DataSetResult)result).getValue();
+			final long[] size = new long[1];
+			OutputStream counter = new OutputStream() {
+
+				@Override
+				public void write( int b ) {
+					size[0]++;
+				}
+
+				@Override
+				public void write( byte[] b, int off, int len ) {
+					size[0] += len;
+				}
+
+			};
+			try{
+				if(((DataSetResult)result).getParser() == null){
+					data.save( counter, '>', new SplitSequenceAnnotationParser( ":", ";" ) );
+				}else{
+					data.save( counter, '>', ((DataSetResult)result).getParser() );
+				}
+			}catch(IOException e){
+				e.printStackTrace();
+			}
+			return size[0];
+		}else if(result instanceof ResultSetResult){
+			Result[] temp = ((ResultSetResult)result).getRawResult()[0].getResults();
+			long size = 0;
+			for(int i=0;i<temp.length;i++){
+				size += estimate( temp[i] );
+			}
+			return size;
+		}else{
+			return 0;
+		}
+	}
+
+}
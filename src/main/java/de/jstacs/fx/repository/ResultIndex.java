@@ -0,0 +1,251 @@
+package de.jstacs.fx.repository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import de.jstacs.results.Result;
+import de.jstacs.results.ResultSetResult;
+import de.jstacs.results.TextResult;
+import de.jstacs.results.savers.ResultSaver;
+import de.jstacs.results.savers.ResultSaverLibrary;
+
+/**
+ * Secondary index of the {@link Result}s in a {@link ResultRepository}, which maps normalized mime types (for {@link TextResult}s)
+ * or file extensions (for all other {@link Result}s with a registered {@link ResultSaver}) to the {@link Result}s of that type.
+ * {@link Result}s nested in {@link ResultSetResult}s are indexed as well, so filtering by mime type only needs to consider
+ * the matching {@link Result}s instead of scanning the complete repository.
+ *
+ * @author Jan Grau
+ *
+ */
+class ResultIndex {
+
+	private static class Entry{
+
+		private Result result;
+		private long order;
+		private String[] extensions;
+		private String[] types;
+		private int references;
+
+		private Entry(Result result, long order, String[] extensions, String[] types){
+			this.result = result;
+			this.order = order;
+			this.extensions = extensions;
+			this.types = types;
+			this.references = 1;
+		}
+
+	}
+
+	private static final Comparator<Entry> ORDER = new Comparator<Entry>() {
+
+		@Override
+		public int compare( Entry o1, Entry o2 ) {
+			return Long.compare( o1.order, o2.order );
+		}
+
+	};
+
+	private IdentityHashMap<Result, Entry> entries;
+	private HashMap<String, LinkedHashSet<Entry>> byType;
+	private long counter;
+
+	/**
+	 * Creates a new, empty index.
+	 */
+	ResultIndex(){
+		this.entries = new IdentityHashMap<>();
+		this.byType = new HashMap<>();
+		this.counter = 0;
+	}
+
+	/**
+	 * Normalizes a (comma-separated list of) mime type(s) or file extension(s) to the keys
+	 * used in this index.
+	 * @param mime the mime type(s)
+	 * @return the normalized keys
+	 */
+	static String[] normalize(String... mime){
+		LinkedHashSet<String> keys = new LinkedHashSet<>();
+		for(int i=0;mime != null && i<mime.length;i++){
+			if(mime[i] != null){
+				String[] parts = mime[i].split( "," );
+				for(int j=0;j<parts.length;j++){
+					String key = parts[j].trim().toLowerCase();
+					if(key.length() > 0){
+						keys.add( key );
+					}
+				}
+			}
+		}
+		return keys.toArray( new String[0] );
+	}
+
+	/**
+	 * Returns the file extensions of the {@link ResultSaver} registered for the given {@link Result}, or <code>null</code>
+	 * for {@link TextResult}s and {@link Result}s without {@link ResultSaver}.
+	 * @param result the {@link Result}
+	 * @return the extensions
+	 */
+	static String[] getExtensions(Result result){
+		if(result instanceof LazyResult){
+			return ((LazyResult)result).isTextResult() ? null : ((LazyResult)result).getExtensions();
+		}else if(result instanceof TextResult){
+			return null;
+		}else{
+			ResultSaver saver = ResultSaverLibrary.getSaver( result.getClass() );
+			if(saver != null){
+				return saver.getFileExtensions( result );
+			}else{
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Returns the {@link Result}s nested in a {@link ResultSetResult} or the placeholders nested in a {@link LazyResult},
+	 * and <code>null</code> for all other {@link Result}s.
+	 * @param result the {@link Result}
+	 * @return the nested {@link Result}s
+	 */
+	static Result[] getChildren(Result result){
+		if(result instanceof LazyResult){
+			return ((LazyResult)result).getChildren();
+		}else if(result instanceof ResultSetResult){
+			return ((ResultSetResult)result).getRawResult()[0].getResults();
+		}else{
+			return null;
+		}
+	}
+
+	/**
+	 * Adds a {@link Result} and, if it is a {@link ResultSetResult}, all {@link Result}s nested therein to this index.
+	 * @param result the {@link Result}
+	 */
+	void add(Result result){
+		Entry entry = entries.get( result );
+		if(entry != null){
+			entry.references++;
+		}else{
+			String[] extensions = getExtensions( result );
+			String[] types;
+			if(result instanceof LazyResult && ((LazyResult)result).isTextResult()){
+				types = normalize( ((LazyResult)result).getMime() );
+			}else{
+				types = result instanceof TextResult ? normalize( ((TextResult)result).getMime() ) : normalize( extensions );
+			}
+			entry = new Entry( result, counter++, extensions, types );
+			entries.put( result, entry );
+			for(int i=0;i<entry.types.length;i++){
+				LinkedHashSet<Entry> set = byType.get( entry.types[i] );
+				if(set == null){
+					set = new LinkedHashSet<>();
+					byType.put( entry.types[i], set );
+				}
+				set.add( entry );
+			}
+		}
+		Result[] temp = getChildren( result );
+		for(int i=0;temp != null && i<temp.length;i++){
+			add( temp[i] );
+		}
+	}
+
+	/**
+	 * Removes a {@link Result} and, if it is a {@link ResultSetResult}, all {@link Result}s nested therein from this index.
+	 * @param result the {@link Result}
+	 */
+	void remove(Result result){
+		Entry entry = entries.get( result );
+		if(entry == null){
+			return;
+		}
+		entry.references--;
+		if(entry.references == 0){
+			entries.remove( result );
+			for(int i=0;i<entry.types.length;i++){
+				LinkedHashSet<Entry> set = byType.get( entry.types[i] );
+				set.remove( entry );
+				if(set.isEmpty()){
+					byType.remove( entry.types[i] );
+				}
+			}
+		}
+		Result[] temp = getChildren( result );
+		for(int i=0;temp != null && i<temp.length;i++){
+			remove( temp[i] );
+		}
+	}
+
+	/**
+	 * Replaces a {@link Result} in this index by another {@link Result} with identical contents, e.g., a {@link LazyResult}
+	 * for a {@link Result} that has been spilled to disk. The replacement (and the {@link Result}s nested therein) take the position of
+	 * the original {@link Result} in the order of addition.
+	 * @param old the {@link Result} to be replaced
+	 * @param replacement the replacement
+	 */
+	void replace(Result old, Result replacement){
+		Entry entry = entries.get( old );
+		long next = counter;
+		if(entry != null){
+			counter = entry.order;
+		}
+		remove( old );
+		add( replacement );
+		counter = Math.max( counter, next );
+	}
+
+	/**
+	 * Returns all {@link Result}s in this index that match the given mime type (or extension) and extended type
+	 * in the order of their addition.
+	 * Semantics are identical to {@link ResultRepository#filterByMimeAndExtendedType(String, String)}.
+	 * @param mime the mime type(s), must not be <code>null</code>
+	 * @param extendedType the extended type, may be <code>null</code>
+	 * @return the matching {@link Result}s
+	 */
+	List<Result> filter(String mime, String extendedType){
+		String[] keys = normalize( mime );
+		ArrayList<Entry> candidates = new ArrayList<>();
+		for(int i=0;i<keys.length;i++){
+			LinkedHashSet<Entry> set = byType.get( keys[i] );
+			if(set != null){
+				candidates.addAll( set );
+			}
+		}
+		if(keys.length > 1){
+			LinkedHashSet<Entry> unique = new LinkedHashSet<>( candidates );
+			candidates = new ArrayList<>( unique );
+		}
+		//replacements are appended to the sets of their types, but take the position of the replaced result
+		Collections.sort( candidates, ORDER );
+
+		ArrayList<Result> filtered = new ArrayList<>( candidates.size() );
+		for(int i=0;i<candidates.size();i++){
+			Result r = candidates.get( i ).result;
+			if( r instanceof LazyResult && ((LazyResult)r).isTextResult() ){
+				LazyResult l = (LazyResult)r;
+				if( TextResult.equals( mime, l.getMime() ) ){
+					if(extendedType == null || l.getExtendedType() == null || TextResult.equals( extendedType, l.getExtendedType() ) ){
+						filtered.add( r );
+					}
+				}
+			}else if( r instanceof TextResult ){
+				if( TextResult.equals( mime, ((TextResult) r ).getMime() ) ){
+					if(extendedType == null || ((TextResult) r).getExtendedType() == null || TextResult.equals( extendedType, ((TextResult) r).getExtendedType() ) ){
+						filtered.add( r );
+					}
+				}
+			}else if(TextResult.equals( candidates.get( i ).extensions, mime )){
+				filtered.add( r );
+			}
+		}
+		return filtered;
+	}
+
+}
@@ -2,15 +2,40 @@ package de.jstacs.fx.repository;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.LongProperty;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleLongProperty;
+import javafx.beans.property.SimpleObjectProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
+import javafx.scene.Node;
+import javafx.scene.Parent;
+import javafx.scene.control.Accordion;
+import javafx.scene.control.ScrollPane;
+import javafx.scene.control.SplitPane;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+import javafx.scene.control.TitledPane;
 import de.jstacs.fx.Application;
 import de.jstacs.fx.renderers.parameters.FileParameterRenderer;
 import de.jstacs.io.FileManager;
@@ -25,6 +50,17 @@ import de.jstacs.utils.Compression;
 
 /**
  * Singleton repository of all {@link Result} that have been created in an {@link Application} run.
+ * 
+ * The repository may be modified from any {@link Thread}, e.g., by tools publishing {@link Result}s from their worker {@link Thread}s.
+ * Modifications are serialized by a lock, whereas the top-level {@link Result}s are held in a copy-on-write list, so
+ * {@link #getResults()} and {@link #getAllResults()} never block. Notifications of {@link ResultConsumer}s are marshalled to the JavaFX application thread
+ * where necessary (see {@link ResultConsumer#isUIConsumer()}).
+ * 
+ * The {@link Result}s of the repository may be {@link LazyResult} placeholders, e.g., for {@link Result}s of a workspace that is loaded lazily
+ * or that have been spilled to disk for bounding the memory of the repository. Placeholders provide name, comment and type of the
+ * {@link Result}, and are returned by {@link #getResults()}, {@link #getAllResults()}, {@link #filterByMimeAndExtendedType(String, String)}
+ * and passed to {@link ResultConsumer}s like any other {@link Result}. Code that accesses the contents of a {@link Result} obtained from the repository must obtain
+ * the actual {@link Result} by {@link #resolve(Result)}.
  *  
  * @author Jan Grau
  *
@@ -37,6 +73,14 @@ public class ResultRepository {
 	 * that adjusts its drop-down list of admissible values to the contents of the {@link ResultRepository}, and the {@link ResultRepositoryRenderer} that
 	 * always displays the current contents of the {@link ResultRepository}.
 	 * 
+	 * Notifications are delivered in the order of the modifications of the repository. By default, {@link ResultConsumer}s are assumed to
+	 * be part of the GUI and are notified in the JavaFX application thread, irrespective of the {@link Thread} modifying the repository.
+	 * If the repository is modified in the JavaFX application thread, these notifications have been delivered when the modifying method returns.
+	 * {@link ResultConsumer}s that return <code>false</code> for {@link #isUIConsumer()} are notified before the modifying method returns,
+	 * after the repository has been unlocked, possibly in another modifying {@link Thread}.
+	 * 
+	 * The notified {@link Result}s may be {@link LazyResult} placeholders, whose contents must be obtained by {@link ResultRepository#resolve(Result)}.
+	 * 
 	 * @author Jan Grau
 	 *
 	 */
@@ -61,50 +105,330 @@ public class ResultRepository {
 		 */
 		public void notifyRefresh(Result renamed);
 		
+		/**
+		 * Notifies the {@link ResultConsumer} that several {@link Result}s have been added to the {@link ResultRepository} at once, e.g., by {@link ResultRepository#addAll(List, boolean)}.
+		 * By default, {@link #notifyAdded(Result)} is called for each {@link Result}. {@link ResultConsumer}s that perform expensive
+		 * updates per notification should override this method to update only once.
+		 * @param added the {@link Result}s added in the order of addition
+		 */
+		public default void notifyAddedAll(List<Result> added){
+			for(int i=0;i<added.size();i++){
+				notifyAdded( added.get( i ) );
+			}
+		}
+		
+		/**
+		 * Notifies the {@link ResultConsumer} that several {@link Result}s have been removed from the {@link ResultRepository} at once, e.g., by {@link ResultRepository#removeAll(List)}.
+		 * By default, {@link #notifyRemoved(Result)} is called for each {@link Result}.
+		 * @param removed the {@link Result}s removed in the order of removal
+		 */
+		public default void notifyRemovedAll(List<Result> removed){
+			for(int i=0;i<removed.size();i++){
+				notifyRemoved( removed.get( i ) );
+			}
+		}
+		
+		/**
+		 * Notifies the {@link ResultConsumer} that a top-level {@link Result} has been replaced by another {@link Result} with identical contents,
+		 * e.g., by a {@link LazyResult} after the {@link Result} has been spilled to disk for bounding the memory of the repository.
+		 * By default, this is handled as removal of the original {@link Result} and addition of the replacement.
+		 * @param old the {@link Result} replaced
+		 * @param replacement the replacement
+		 */
+		public default void notifyReplaced(Result old, Result replacement){
+			notifyRemoved( old );
+			notifyAdded( replacement );
+		}
+		
+		/**
+		 * Returns if this {@link ResultConsumer} must be notified in the JavaFX application thread. The default is <code>true</code>.
+		 * @return if notified in the JavaFX application thread
+		 */
+		public default boolean isUIConsumer(){
+			return true;
+		}
+		
 	}
 	
+	/**
+	 * Registration of a {@link ResultConsumer} in the {@link ResultRepository}, which may be disposed if the {@link ResultConsumer}
+	 * is no longer needed.
+	 * 
+	 * @author Jan Grau
+	 *
+	 */
+	public static interface Registration{
+		
+		/**
+		 * Ends this registration, i.e., the {@link ResultConsumer} will not be notified any longer.
+		 */
+		public void dispose();
+		
+		/**
+		 * Returns if this registration has ended, either by {@link #dispose()} or, for weak registrations, because the {@link ResultConsumer}
+		 * has been garbage collected.
+		 * @return if disposed
+		 */
+		public boolean isDisposed();
+		
+	}
+	
+	/**
+	 * Key of the {@link Node#getProperties() properties} of a {@link Node} owning {@link Registration}s.
+	 * @see #register(ResultConsumer, Node)
+	 */
+	private static final String REGISTRATIONS = "de.jstacs.fx.repository.registrations";
+	
 	/**
 	 * Global property for an {@link Application} run, if the workspace is automatically saved to disk.
 	 */
 	public static BooleanProperty autosave = new SimpleBooleanProperty( false );
 	public static StringProperty autodir = new SimpleStringProperty(null);
+	/**
+	 * Global property for an {@link Application} run, if the automatically saved workspace is updated by appending
+	 * added and removed {@link Result}s to a journal instead of re-writing the complete workspace.
+	 */
+	public static BooleanProperty journal = new SimpleBooleanProperty( true );
+	/**
+	 * The size of the journal (in bytes), above which the journal is compacted into a new snapshot of the workspace.
+	 */
+	public static LongProperty journalThreshold = new SimpleLongProperty( 64L*1024L*1024L );
+	/**
+	 * The (estimated) memory (in bytes) that may be occupied by the {@link Result}s in the repository. If exceeded, the least recently used
+	 * {@link Result}s are spilled to disk and restored on next access. A value of <code>0</code> disables spilling, which is the default,
+	 * so {@link Result}s are only written to spill files if a budget has been set explicitly.
+	 */
+	public static LongProperty memoryBudget = new SimpleLongProperty( 0L );
+	/**
+	 * Global property for an {@link Application} run, if numerical {@link Result}s, lists and sets of {@link Result}s are stored in a compact
+	 * binary representation instead of XML in workspace files. Workspace files written with the binary representation switched on cannot be read by previous versions,
+	 * so it is switched off by default.
+	 */
+	public static BooleanProperty binaryCodec = new SimpleBooleanProperty( false );
+	/**
+	 * Global property for an {@link Application} run, which {@link WorkspaceStore} is used for the automatically saved workspace
+	 * at {@link ResultRepository#autodir}.
+	 */
+	public static ObjectProperty<WorkspaceStore.Factory> storage = new SimpleObjectProperty<>( WorkspaceStore.SINGLE_FILE );
 	private static ResultRepository instance;
 	
-	private LinkedList<Result> results;
-	private ArrayList<ResultConsumer> consumers;
+	private CopyOnWriteArrayList<Result> results;
+	private ResultIndex index;
+	private CopyOnWriteArrayList<ConsumerRegistration> consumers;
+	private ReentrantReadWriteLock lock;
+	private ConcurrentLinkedQueue<Consumer<ResultConsumer>> notifications;
+	private ReentrantLock notifying;
+	private volatile List<Result> allResults;
+	private volatile long modifications;
+	private WorkspaceStore workspaceStore;
+	private WorkspaceStore.Factory storeFactory;
+	private ResultCache cache;
+	private ProvenanceIndex provenance;
+	private AutosaveWriter provenanceWriter;
+	private boolean provenanceStored;
+	private TextSearchIndex searchIndex;
+	private RecoveryReport recovery;
+	private ReadOnlyStringWrapper storageError;
 	
 	/**
 	 * Returns the singleton instance of the {@link ResultRepository}.
 	 * @return the repository
 	 */
-	public static ResultRepository getInstance(){
+	public static synchronized ResultRepository getInstance(){
 		if(instance == null){
 			instance = new ResultRepository();
 		}
 		return instance;
 	}
 	
-	private ResultRepository(){
-		this.results = new LinkedList<>();
-		this.consumers = new ArrayList<>();
+	/**
+	 * Creates a new repository, which restores the automatically saved workspace if {@link #autosave} is switched on.
+	 * Except for the singleton instance, repositories are only created for restoring workspaces in isolation, e.g., in tests.
+	 */
+	ResultRepository(){
+		this.results = new CopyOnWriteArrayList<>();
+		this.index = new ResultIndex();
+		this.lock = new ReentrantReadWriteLock();
+		this.notifications = new ConcurrentLinkedQueue<>();
+		this.notifying = new ReentrantLock();
+		this.cache = new ResultCache( this );
+		this.provenance = new ProvenanceIndex();
+		this.searchIndex = new TextSearchIndex();
+		this.consumers = new CopyOnWriteArrayList<>();
+		this.storageError = new ReadOnlyStringWrapper();
 		if(autosave.get()){
-			File f = new File(autodir.get());
-			if(f.exists()){
+			this.recovery = new RecoveryReport();
+			WorkspaceStore.Factory factory = storage.get();
+			WorkspaceStore store = factory.create( this, new File(autodir.get()) );
+			try{
+				store.restore( recovery );
+			}catch(Exception e){
+				e.printStackTrace();
+			}
+			File pf = store.getProvenanceFile();
+			if(pf != null && pf.exists()){
+				lock.writeLock().lock();
 				try{
-					StringBuffer sb = FileManager.readFile( f );
-					sb = new StringBuffer( Compression.unzip( sb.toString() ) );
-					restoreResultsFromXML( sb );
-				}catch(Exception e){
-					e.printStackTrace( );
+					recovery.ignoredProvenance( provenance.deserialize( Files.readAllLines( pf.toPath(), StandardCharsets.UTF_8 ), results ) );
+					provenanceStored = true;
+				}catch(IOException e){
+					e.printStackTrace();
+					recovery.ignoredProvenance( -1 );
+				}finally{
+					unlock();
 				}
 			}
+			this.storeFactory = factory;
+			this.workspaceStore = store;
 		}
 	}
 	
-	private void notifyAdd(Result result){
-		for(int i=0;i<consumers.size();i++){
-			consumers.get( i ).notifyAdded( result );
+	/**
+	 * Returns a summary of restoring the automatically saved workspace on start-up if any damage, e.g., an incomplete
+	 * journal or snapshot after a crash, has been detected and repaired. Otherwise, e.g., if the workspace has been restored completely
+	 * or is not saved automatically, <code>null</code> is returned.
+	 * @return the summary of the recovery or <code>null</code>
+	 */
+	public String getRecoveryReport(){
+		return recovery == null || recovery.isClean() ? null : recovery.toString();
+	}
+	
+	/**
+	 * Returns the store of the workspace for the current {@link ResultRepository#autodir} and {@link ResultRepository#storage}
+	 * if the workspace is autosaved, and <code>null</code> otherwise.
+	 * @return the store
+	 */
+	private WorkspaceStore getStore(){
+		if(!autosave.get() || autodir.get() == null){
+			if(workspaceStore != null){
+				workspaceStore.close();
+				workspaceStore = null;
+			}
+			return null;
+		}
+		File f = new File(autodir.get());
+		if(workspaceStore == null || storeFactory != storage.get() || !workspaceStore.getLocation().equals( f )){
+			if(workspaceStore != null){
+				workspaceStore.close();
+			}
+			storeFactory = storage.get();
+			workspaceStore = storeFactory.create( this, f );
 		}
+		return workspaceStore;
+	}
+	
+	/**
+	 * Requests writing the provenance and pins of the top-level {@link Result}s (see {@link ProvenanceIndex#serialize(List)}) to the file
+	 * of the current store after they or the positions of the {@link Result}s have been modified. Files are written in the background
+	 * by an {@link AutosaveWriter}, and only if any provenance has been recorded.
+	 */
+	private void storeProvenance(){
+		WorkspaceStore s = workspaceStore == null ? null : getStore();
+		final File f = s == null ? null : s.getProvenanceFile();
+		if(f == null || (provenance.isEmpty() && !provenanceStored)){
+			return;
+		}
+		provenanceStored = !provenance.isEmpty();
+		final String text = provenance.serialize( results );
+		if(provenanceWriter == null){
+			provenanceWriter = new AutosaveWriter();
+		}
+		provenanceWriter.request( new AutosaveWriter.Snapshot() {
+			
+			@Override
+			public File getFile() {
+				return f;
+			}
+			
+			@Override
+			public void write( File temp ) throws IOException {
+				Files.write( temp.toPath(), text.getBytes( StandardCharsets.UTF_8 ) );
+			}
+			
+			@Override
+			public void written() { }
+			
+			@Override
+			public void failed( IOException e ) {
+				storageFailed( "Could not write the provenance of the workspace", e );
+			}
+			
+		} );
+	}
+	
+	/**
+	 * Passes the notification to all registered {@link ResultConsumer}s, where {@link ResultConsumer}s of the GUI
+	 * are notified in the JavaFX application thread.
+	 * Notifications issued while holding the write lock are queued and delivered in the order of their issue after the lock has been released
+	 * (see {@link #unlock()}), so {@link ResultConsumer}s never run while the repository is locked.
+	 * @param notification the notification
+	 */
+	private void notifyConsumers(final Consumer<ResultConsumer> notification){
+		notifications.add( notification );
+		deliver();
+	}
+	
+	/**
+	 * Releases the write lock and delivers the notifications queued while it has been held.
+	 */
+	private void unlock(){
+		lock.writeLock().unlock();
+		deliver();
+	}
+	
+	/**
+	 * Delivers all queued notifications unless the current {@link Thread} holds the write lock. Notifications are delivered
+	 * by one {@link Thread} at a time, so all {@link ResultConsumer}s see them in the same order, and the current {@link Thread} returns
+	 * only after its own notifications have been delivered (or dispatched to the JavaFX application thread).
+	 */
+	private void deliver(){
+		if(lock.isWriteLockedByCurrentThread()){
+			return;
+		}
+		notifying.lock();
+		try{
+			Consumer<ResultConsumer> notification = null;
+			while( (notification = notifications.poll()) != null ){
+				final Consumer<ResultConsumer> current = notification;
+				Iterator<ConsumerRegistration> it = consumers.iterator();
+				while(it.hasNext()){
+					final ConsumerRegistration registration = it.next();
+					final ResultConsumer consumer = registration.getConsumer();
+					if(consumer == null){
+						//disposed or garbage collected
+						consumers.remove( registration );
+					}else if(consumer.isUIConsumer()){
+						FXDispatcher.run( new Runnable() {
+							
+							@Override
+							public void run() {
+								current.accept( consumer );
+							}
+							
+						} );
+					}else{
+						try{
+							current.accept( consumer );
+						}catch(RuntimeException e){
+							e.printStackTrace();
+						}
+					}
+				}
+			}
+		}finally{
+			notifying.unlock();
+		}
+	}
+	
+	private void notifyAdd(final Result result){
+		notifyConsumers( new Consumer<ResultConsumer>() {
+			
+			@Override
+			public void accept( ResultConsumer t ) {
+				t.notifyAdded( result );
+			}
+			
+		} );
 	}
 	
 	
@@ -114,10 +438,43 @@ public class ResultRepository {
 	 * @param renamed the {@link Result} renamed
 	 * @see ResultConsumer
 	 */
-	public void notifyRefresh(Result renamed){
-		for(int i=0;i<consumers.size();i++){
-			consumers.get(i).notifyRefresh(renamed);
+	public void notifyRefresh(final Result renamed){
+		lock.writeLock().lock();
+		try{
+			WorkspaceStore s = workspaceStore == null ? null : getStore();
+			Iterator<Result> it = results.iterator();
+			while(s != null && it.hasNext()){
+				Result top = it.next();
+				if(contains( top, renamed )){
+					s.modified( top );
+				}
+			}
+			//names identify the Results in the stored provenance
+			storeProvenance();
+			notifyConsumers( new Consumer<ResultConsumer>() {
+				
+				@Override
+				public void accept( ResultConsumer t ) {
+					t.notifyRefresh( renamed );
+				}
+				
+			} );
+		}finally{
+			unlock();
+		}
+	}
+	
+	private static boolean contains(Result parent, Result result){
+		if(parent == result){
+			return true;
 		}
+		Result[] children = ResultIndex.getChildren( parent );
+		for(int i=0;children != null && i<children.length;i++){
+			if(contains( children[i], result )){
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	/**
@@ -136,42 +493,260 @@ public class ResultRepository {
 	 * @param store if autosave should be considered.
 	 */
 	public void add(Result result, boolean store){
-		this.results.add( result );
-		notifyAdd( result );
-		if(store){
-			autostore();
+		lock.writeLock().lock();
+		try{
+			this.results.add( result );
+			invalidate();
+			this.index.add( result );
+			this.searchIndex.added( result );
+			this.cache.added( result );
+			notifyAdd( result );
+			WorkspaceStore s = workspaceStore == null ? null : getStore();
+			if(s != null){
+				s.added( Collections.singletonList( result ), store );
+			}else if(store){
+				autostore();
+			}
+		}finally{
+			unlock();
 		}
 	}
 	
 	/**
-	 * If {@link ResultRepository#autosave} is set to <code>true</code>, the contents of the repository
-	 * are stored to disk in a separate {@link Thread}.
+	 * Adds a result, e.g., the {@link de.jstacs.tools.ToolResult} of a tool run, to the repository and records that it has been created
+	 * from the given {@link Result}s of the repository, e.g., the files selected as input of the tool (see {@link #getInputs(Result)}).
+	 * {@link Result}s nested in top-level {@link Result}s are recorded as their top-level {@link Result}, and {@link Result}s that are not contained
+	 * in the repository are ignored.
+	 * @param result the {@link Result} added
+	 * @param inputs the {@link Result}s used for creating <code>result</code>
+	 */
+	public void add(Result result, List<? extends Result> inputs){
+		lock.writeLock().lock();
+		try{
+			add( result, true );
+			ArrayList<Result> tops = new ArrayList<>( inputs.size() );
+			for(int i=0;i<inputs.size();i++){
+				Result top = getTopLevel( inputs.get( i ) );
+				if(top != null){
+					tops.add( top );
+				}
+			}
+			provenance.record( result, tops );
+			storeProvenance();
+		}finally{
+			unlock();
+		}
+	}
+	
+	private Result getTopLevel(Result result){
+		if(result == null){
+			return null;
+		}
+		Iterator<Result> it = results.iterator();
+		while(it.hasNext()){
+			Result top = it.next();
+			if(contains( top, result )){
+				return top;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Returns the top-level {@link Result}s that have been used for creating the given top-level {@link Result}
+	 * (see {@link #add(Result, List)}).
+	 * @param result the {@link Result}
+	 * @return the inputs
+	 */
+	public List<Result> getInputs(Result result){
+		lock.readLock().lock();
+		try{
+			return provenance.getInputs( result );
+		}finally{
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Returns the top-level {@link Result}s that have been created using the given top-level {@link Result}
+	 * (see {@link #add(Result, List)}).
+	 * @param result the {@link Result}
+	 * @return the derived {@link Result}s
+	 */
+	public List<Result> getDerived(Result result){
+		lock.readLock().lock();
+		try{
+			return provenance.getDerived( result );
+		}finally{
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Pins or unpins a top-level {@link Result}. Pinned {@link Result}s and all {@link Result}s used (directly or indirectly) for creating them
+	 * are kept by {@link #collectGarbage(boolean)}.
+	 * @param result the {@link Result}
+	 * @param pinned if the {@link Result} is pinned
+	 */
+	public void setPinned(Result result, boolean pinned){
+		lock.writeLock().lock();
+		try{
+			if(contains( result )){
+				provenance.setPinned( result, pinned );
+				storeProvenance();
+			}
+		}finally{
+			unlock();
+		}
+	}
+	
+	/**
+	 * Returns if the given top-level {@link Result} is pinned.
+	 * @param result the {@link Result}
+	 * @return if pinned
+	 * @see #setPinned(Result, boolean)
+	 */
+	public boolean isPinned(Result result){
+		lock.readLock().lock();
+		try{
+			return provenance.isPinned( result );
+		}finally{
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Determines the top-level {@link Result}s of tool pipelines that are not used (directly or indirectly) for creating any pinned {@link Result}
+	 * (see {@link #setPinned(Result, boolean)}), and removes them from the repository unless <code>dryRun</code> is <code>true</code>.
+	 * Only {@link Result}s with recorded inputs (see {@link #add(Result, List)}) are considered, so {@link Result}s loaded by the user are kept
+	 * even if they are only used as inputs of garbage. Nothing is removed if no {@link Result} is pinned.
+	 * The disk space of {@link Result}s that are not {@link LazyResult}s is determined from their stored representation, where {@link Result}s
+	 * that have not been stored completely yet are not counted.
+	 * @param dryRun if the {@link Result}s should only be determined but not removed
+	 * @return the report of the {@link Result}s and the memory and disk space reclaimed
+	 */
+	public GarbageReport collectGarbage(boolean dryRun){
+		lock.writeLock().lock();
+		try{
+			List<Result> garbage = provenance.getUnreachable( results );
+			long memory = 0;
+			long disk = 0;
+			for(int i=0;i<garbage.size();i++){
+				Result r = garbage.get( i );
+				long resident = cache.getResidentSize( r );
+				memory += resident;
+				if(r instanceof LazyResult){
+					disk += Math.max( 0, ((LazyResult)r).getSize() );
+				}else if(workspaceStore != null){
+					disk += Math.max( 0, workspaceStore.getStoredSize( r ) );
+				}
+			}
+			if(!dryRun){
+				removeAll( garbage );
+			}
+			return new GarbageReport( garbage, memory, disk, dryRun );
+		}finally{
+			unlock();
+		}
+	}
+	
+	/**
+	 * Adds several results to the repository at once. In contrast to successive calls of {@link #add(Result, boolean)},
+	 * each {@link ResultConsumer} is notified only once using {@link ResultConsumer#notifyAddedAll(List)}, and the repository is autosaved
+	 * at most once if <code>store</code> is <code>true</code>.
+	 * @param results the {@link Result}s added
+	 * @param store if autosave should be considered
+	 */
+	public void addAll(List<? extends Result> results, boolean store){
+		if(results.isEmpty()){
+			return;
+		}
+		final List<Result> added = Collections.unmodifiableList( new ArrayList<Result>( results ) );
+		lock.writeLock().lock();
+		try{
+			this.results.addAll( added );
+			invalidate();
+			for(int i=0;i<added.size();i++){
+				this.index.add( added.get( i ) );
+				this.searchIndex.added( added.get( i ) );
+				this.cache.added( added.get( i ) );
+			}
+			notifyConsumers( new Consumer<ResultConsumer>() {
+				
+				@Override
+				public void accept( ResultConsumer t ) {
+					t.notifyAddedAll( added );
+				}
+				
+			} );
+			WorkspaceStore s = workspaceStore == null ? null : getStore();
+			if(s != null){
+				s.added( added, store );
+			}else if(store){
+				autostore();
+			}
+		}finally{
+			unlock();
+		}
+	}
+	
+	/**
+	 * If {@link ResultRepository#autosave} is set to <code>true</code>, the complete contents of the repository
+	 * are stored by the {@link WorkspaceStore} selected by {@link ResultRepository#storage}, where the stores provided
+	 * write in a separate {@link Thread}. For the default {@link WorkspaceStore#SINGLE_FILE}, successive requests are coalesced, and the previous state
+	 * of the workspace is only replaced after the current one has been written completely.
+	 * If {@link ResultRepository#journal} is also set to <code>true</code>, the stored snapshot of the repository
+	 * is complemented by a journal of all subsequent modifications.
+	 * {@link Result}s that have not been modified (see {@link #notifyRefresh(Result)}) since the previous snapshot are not serialized
+	 * again, but copied from the previous snapshot.
 	 * @return the state of {@link ResultRepository#autosave} 
 	 */
 	public boolean autostore(){
 		if(autosave.get()){
-			new Thread( new Runnable(){
-
-				@Override
-				public void run() {
-					try{
-						FileManager.writeFile( autodir.get(), Compression.zip( storeResultsToXML().toString() ) );
-					}catch(IOException e){
-						e.printStackTrace();
-					}
+			lock.writeLock().lock();
+			try{
+				WorkspaceStore s = getStore();
+				if(s != null){
+					s.store();
 				}
-				
-			} ).start();
-			
+			}finally{
+				unlock();
+			}
 			return true;
 		}
 		return false;
 	}
 	
-	private void notifyRemove(Result result){
-		for(int i=0;i<consumers.size();i++){
-			consumers.get( i ).notifyRemoved( result );
-		}
+	/**
+	 * Returns the number of times autosaving the complete workspace has been requested, e.g., by
+	 * {@link #autostore()}.
+	 * @return the number of requests
+	 * @see #getNumberOfPerformedSaves()
+	 */
+	public long getNumberOfRequestedSaves(){
+		WorkspaceStore s = workspaceStore;
+		return s == null ? 0 : s.getNumberOfRequestedSaves();
+	}
+	
+	/**
+	 * Returns the number of times the complete workspace has actually been written to disk. As successive requests
+	 * are coalesced, this number may be substantially lower than {@link #getNumberOfRequestedSaves()}.
+	 * @return the number of performed saves
+	 */
+	public long getNumberOfPerformedSaves(){
+		WorkspaceStore s = workspaceStore;
+		return s == null ? 0 : s.getNumberOfPerformedSaves();
+	}
+	
+	private void notifyRemove(final Result result){
+		notifyConsumers( new Consumer<ResultConsumer>() {
+			
+			@Override
+			public void accept( ResultConsumer t ) {
+				t.notifyRemoved( result );
+			}
+			
+		} );
 	}
 	
 	/**
@@ -181,42 +756,284 @@ public class ResultRepository {
 	 * @return if the {@link Result} was removed
 	 */
 	public boolean remove(Result result){//Only top-level results
-		boolean b = this.results.remove( result );
-		if(b){
+		lock.writeLock().lock();
+		try{
+			int idx = this.results.indexOf( result );
+			if(idx < 0){
+				return false;
+			}
+			Result removed = removeAt( idx );
+			WorkspaceStore s = workspaceStore == null ? null : getStore();
+			if(s != null){
+				s.removed( new int[]{idx}, Collections.singletonList( removed ) );
+			}else{
+				autostore();
+			}
+			storeProvenance();
+			return true;
+		}finally{
+			unlock();
+		}
+	}
+	
+	/**
+	 * Removes several top-level results from the repository at once. Each {@link ResultConsumer} is notified only once using
+	 * {@link ResultConsumer#notifyRemovedAll(List)}, and the repository is autosaved at most once.
+	 * @param results the {@link Result}s removed
+	 * @return the number of {@link Result}s actually removed
+	 */
+	public int removeAll(List<? extends Result> results){
+		lock.writeLock().lock();
+		try{
+			ArrayList<Result> removed = new ArrayList<>( results.size() );
+			int[] indexes = new int[results.size()];
+			for(int k=0;k<results.size();k++){
+				int idx = this.results.indexOf( results.get( k ) );
+				if(idx < 0){
+					continue;
+				}
+				Result result = this.results.remove( idx );
+				invalidate();
+				this.index.remove( result );
+				this.searchIndex.removed( result );
+				this.cache.removed( result );
+				this.provenance.removed( result );
+				indexes[removed.size()] = idx;
+				removed.add( result );
+			}
+			if(removed.isEmpty()){
+				return 0;
+			}
+			final List<Result> temp = Collections.unmodifiableList( removed );
+			notifyConsumers( new Consumer<ResultConsumer>() {
+				
+				@Override
+				public void accept( ResultConsumer t ) {
+					t.notifyRemovedAll( temp );
+				}
+				
+			} );
+			WorkspaceStore s = workspaceStore == null ? null : getStore();
+			if(s != null){
+				s.removed( Arrays.copyOf( indexes, temp.size() ), temp );
+			}else{
+				autostore();
+			}
+			storeProvenance();
+			return temp.size();
+		}finally{
+			unlock();
+		}
+	}
+	
+	/**
+	 * Removes the top-level result at the given index without autosaving.
+	 * @param idx the index
+	 * @return the removed {@link Result}
+	 */
+	Result removeAt(int idx){
+		lock.writeLock().lock();
+		try{
+			Result result = this.results.remove( idx );
+			invalidate();
+			this.index.remove( result );
+			this.searchIndex.removed( result );
+			this.cache.removed( result );
+			this.provenance.removed( result );
 			notifyRemove( result );
-			autostore();
+			return result;
+		}finally{
+			unlock();
 		}
-		return b;
+	}
+	
+	/**
+	 * Replaces a top-level {@link Result} by another {@link Result} with identical contents without autosaving,
+	 * and notifies the consumers using {@link ResultConsumer#notifyReplaced(Result, Result)}.
+	 * @param old the {@link Result} replaced
+	 * @param replacement the replacement
+	 * @return if <code>old</code> was contained in the repository
+	 */
+	boolean replace(final Result old, final Result replacement){
+		lock.writeLock().lock();
+		try{
+			int idx = indexOf( old );
+			if(idx < 0){
+				return false;
+			}
+			this.results.set( idx, replacement );
+			WorkspaceStore s = workspaceStore == null ? null : getStore();
+			if(s != null){
+				s.replaced( old, replacement );
+			}
+			invalidate();
+			this.index.replace( old, replacement );
+			this.searchIndex.replaced( old, replacement );
+			this.provenance.replaced( old, replacement );
+			notifyConsumers( new Consumer<ResultConsumer>() {
+				
+				@Override
+				public void accept( ResultConsumer t ) {
+					t.notifyReplaced( old, replacement );
+				}
+				
+			} );
+			return true;
+		}finally{
+			unlock();
+		}
+	}
+	
+	/**
+	 * Returns if the given (identical) {@link Result} is a top-level {@link Result} of this repository.
+	 * @param result the {@link Result}
+	 * @return if contained
+	 */
+	boolean contains(Result result){
+		return indexOf( result ) > -1;
+	}
+	
+	private int indexOf(Result result){
+		int i = 0;
+		Iterator<Result> it = results.iterator();
+		while(it.hasNext()){
+			if(it.next() == result){
+				return i;
+			}
+			i++;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Returns the property holding the message of the latest failure of storing the automatically saved workspace, e.g., if a modification
+	 * could not be written to disk. The property is updated in the JavaFX application thread upon every failure, even if the message is unchanged.
+	 * @return the property
+	 */
+	public ReadOnlyStringProperty storageErrorProperty(){
+		return storageError.getReadOnlyProperty();
+	}
+	
+	/**
+	 * Reports a failure of the {@link WorkspaceStore} to the user (see {@link #storageErrorProperty()}). May be called from any {@link Thread}.
+	 * @param message the description of the failed operation
+	 * @param e the cause of the failure
+	 */
+	void storageFailed(String message, Throwable e){
+		e.printStackTrace();
+		final String text = message+": "+e.getMessage();
+		FXDispatcher.run( new Runnable() {
+			
+			@Override
+			public void run() {
+				//notify listeners also of repeated failures
+				storageError.set( null );
+				storageError.set( text );
+			}
+			
+		} );
+	}
+	
+	/**
+	 * Returns the property holding the estimated memory (in bytes) occupied by the {@link Result}s of this repository.
+	 * @return the property
+	 * @see #memoryBudget
+	 */
+	public ReadOnlyLongProperty memoryUsageProperty(){
+		return cache.residentSizeProperty();
+	}
+	
+	/**
+	 * Returns the property holding the size (in bytes) of the {@link Result}s of this repository that are currently only available on disk.
+	 * @return the property
+	 * @see #memoryBudget
+	 */
+	public ReadOnlyLongProperty spilledSizeProperty(){
+		return cache.spilledSizeProperty();
+	}
+	
+	/**
+	 * Invalidates the cached list of all {@link Result}s after a modification of the top-level {@link Result}s.
+	 * Must be called while holding the write lock.
+	 */
+	private void invalidate(){
+		modifications++;
+		allResults = null;
 	}
 	
 	/**
 	 * Returns all results (top-level and nested in {@link ResultSetResult}s) in the repository.
+	 * The returned list is an immutable snapshot, which is created once after each modification of the repository
+	 * and shared by all subsequent calls.
+	 * The list may contain {@link LazyResult} placeholders, see {@link #resolve(Result)}.
 	 * @return the results
 	 */
 	public List<Result> getAllResults(){
-		List<Result> res = getResults();
-		for(int i=0;i<this.results.size();i++){
-			Result temp = results.get( i );
-			if(temp instanceof ResultSetResult){
-				Result[] temp2 = ((ResultSetResult)temp).getRawResult()[0].getResults();
+		List<Result> all = allResults;
+		if(all != null){
+			return all;
+		}
+		long version = modifications;
+		Result[] temp = results.toArray( new Result[0] );
+		ArrayList<Result> res = new ArrayList<>( temp.length );
+		res.addAll( Arrays.asList( temp ) );
+		for(int i=0;i<temp.length;i++){
+			Result[] temp2 = ResultIndex.getChildren( temp[i] );
+			if(temp2 != null){
 				addAllResults(res,temp2);
 			}
 		}
-		return res;
+		res.trimToSize();
+		all = Collections.unmodifiableList( res );
+		lock.readLock().lock();
+		try{
+			//only cache if not modified in the meantime
+			if(version == modifications){
+				allResults = all;
+			}
+		}finally{
+			lock.readLock().unlock();
+		}
+		return all;
 	}
 	
 	private void addAllResults(List<Result> res, Result[] add){
 		for(int i=0;i<add.length;i++){
 			res.add( add[i] );
-			if(add[i] instanceof ResultSetResult){
-				Result[] temp2 = ((ResultSetResult)add[i]).getRawResult()[0].getResults();
+			Result[] temp2 = ResultIndex.getChildren( add[i] );
+			if(temp2 != null){
 				addAllResults(res,temp2);
 			}
 		}
 	}
 	
+	/**
+	 * Returns the actual {@link Result} for a {@link Result} of this repository. Workspaces restored on startup
+	 * are loaded lazily, i.e., the repository initially contains {@link LazyResult} placeholders, which are
+	 * deserialized by this method upon first access. For all other {@link Result}s, the {@link Result} itself is returned.
+	 * Hence, code accessing the contents (and not only name, comment or type) of a {@link Result} obtained from the repository
+	 * should call this method first.
+	 * Every call counts as an access of the {@link Result} when deciding which {@link Result}s are kept in memory (see {@link #memoryBudget}).
+	 * @param result the {@link Result} from the repository
+	 * @return the actual {@link Result}
+	 * @throws UnavailableResultException if the {@link Result} could not be restored from the workspace file
+	 */
+	public Result resolve(Result result) throws UnavailableResultException{
+		Result res = result;
+		if(result instanceof LazyResult){
+			try{
+				res = ((LazyResult)result).resolve();
+			}catch(Exception e){
+				throw new UnavailableResultException( result, e );
+			}
+		}
+		cache.accessed( result );
+		return res;
+	}
+	
 	/**
 	 * Returns only the top-level {@link Result}s of this repository.
+	 * The list may contain {@link LazyResult} placeholders, see {@link #resolve(Result)}.
 	 * @return the top-level {@link Result}s
 	 */
 	public List<Result> getResults(){
@@ -227,16 +1044,35 @@ public class ResultRepository {
 	
 	/**
 	 * Returns all {@link Result}s in the repository that match the filter criteria.
+	 * For a given <code>mime</code>, the {@link Result}s are obtained from an index that is updated on
+	 * every addition and removal, so the costs are proportional to the number of matching {@link Result}s.
+	 * The list may contain {@link LazyResult} placeholders, see {@link #resolve(Result)}.
 	 * @param mime the mime type (or extension) of the {@link Result} that are to be returned
 	 * @param extendedType an extended type, also {@link TextResult}s with extended type <code>null</code> are returned if they match <code>mime</code>
 	 * @return the {@link Result}s
 	 */
 	public List<Result> filterByMimeAndExtendedType(String mime, String extendedType){
+		if(mime != null){
+			lock.readLock().lock();
+			try{
+				return index.filter( mime, extendedType );
+			}finally{
+				lock.readLock().unlock();
+			}
+		}
 		ArrayList<Result> filtered = new ArrayList<>();
 		Iterator<Result> it = getAllResults().iterator();
 		while(it.hasNext()){
 			Result r = it.next();
-			if( r instanceof TextResult ){
+			if( r instanceof LazyResult ){
+				if( ((LazyResult)r).isTextResult() ){
+					if(extendedType == null || ((LazyResult) r).getExtendedType() == null || TextResult.equals( extendedType, ((LazyResult) r).getExtendedType() ) ){
+						filtered.add( r );
+					}
+				}else if(TextResult.equals( ((LazyResult)r).getExtensions(), mime )){
+					filtered.add( r );
+				}
+			}else if( r instanceof TextResult ){
 				if(mime == null || TextResult.equals( mime, ((TextResult) r ).getMime() ) ){
 					if(extendedType == null || ((TextResult) r).getExtendedType() == null || TextResult.equals( extendedType, ((TextResult) r).getExtendedType() ) ){
 						filtered.add( r );
@@ -255,21 +1091,349 @@ public class ResultRepository {
 		return filtered;
 	}
 
+	/**
+	 * Returns a {@link TextResult} of the repository with the given mime type and identical file contents, if such
+	 * a {@link TextResult} exists, and <code>null</code> otherwise. This allows for sharing the (possibly large) contents of {@link TextResult}s instead of keeping
+	 * several copies of the same contents in memory.
+	 * Only {@link TextResult}s with contents of identical length are restored (see {@link #resolve(Result)}) and compared.
+	 * @param mime the mime type
+	 * @param content the file contents
+	 * @return the {@link TextResult} (or its {@link LazyResult} placeholder) as contained in the repository, or <code>null</code>
+	 */
+	public Result findTextResult(String mime, String content){
+		if(content == null){
+			return null;
+		}
+		List<Result> candidates = filterByMimeAndExtendedType( mime, null );
+		for(int i=0;i<candidates.size();i++){
+			Result r = candidates.get( i );
+			long len = -1;
+			if(r instanceof LazyResult){
+				len = ((LazyResult)r).getContentLength();
+			}else if(r instanceof TextResult && ((TextResult)r).getValue() != null && ((TextResult)r).getValue().getContent() != null){
+				len = ((TextResult)r).getValue().getContent().length();
+			}
+			if(len < 0 || len == content.length()){
+				Result res;
+				try{
+					res = resolve( r );
+				}catch(UnavailableResultException e){
+					e.printStackTrace();
+					continue;
+				}
+				if(res instanceof TextResult && ((TextResult)res).getValue() != null && content.equals( ((TextResult)res).getValue().getContent() )){
+					return r;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Searches the names of all {@link Result}s (case-insensitive) and the contents of all {@link TextResult}s in the repository for the given query.
+	 * Contents are searched using an inverted index, which is updated in the background whenever {@link TextResult}s are added, so
+	 * recently added {@link TextResult}s may not be found immediately. A line matches if it contains all words of the query, where the last
+	 * word may also be the beginning of a word in the line. Matching names are returned first, followed by the matching lines in the order
+	 * the {@link Result}s have been added.
+	 * As the text of matching lines is extracted from contents that may have to be restored from disk, this method should not be called in the
+	 * JavaFX application thread.
+	 * @param query the query
+	 * @param max the maximum number of hits
+	 * @return the hits
+	 */
+	public List<SearchHit> search(String query, int max){
+		ArrayList<SearchHit> hits = new ArrayList<>();
+		String q = query.trim().toLowerCase();
+		if(q.length() == 0){
+			return hits;
+		}
+		List<Result> all = getAllResults();
+		for(int i=0;i<all.size() && hits.size() < max;i++){
+			String name = all.get( i ).getName();
+			if(name != null && name.toLowerCase().contains( q )){
+				hits.add( new SearchHit( all.get( i ), -1, name ) );
+			}
+		}
+		List<Object[]> lines = searchIndex.query( query, max-hits.size() );
+		Result previous = null;
+		String content = null;
+		int pos = 0;
+		int line = 0;
+		for(int i=0;i<lines.size();i++){
+			Result r = (Result)lines.get( i )[0];
+			int target = (Integer)lines.get( i )[1];
+			if(r != previous){
+				Result res;
+				try{
+					res = resolve( r );
+				}catch(UnavailableResultException e){
+					res = null;
+				}
+				content = res instanceof TextResult && ((TextResult)res).getValue() != null ? ((TextResult)res).getValue().getContent() : null;
+				previous = r;
+				pos = 0;
+				line = 0;
+			}
+			if(content == null){
+				continue;
+			}
+			//lines of a Result are in ascending order
+			while(line < target && pos >= 0){
+				pos = content.indexOf( '\n', pos );
+				if(pos >= 0){
+					pos++;
+				}
+				line++;
+			}
+			if(pos < 0){
+				continue;
+			}
+			int end = content.indexOf( '\n', pos );
+			String text = content.substring( pos, end < 0 ? content.length() : end ).trim();
+			if(text.length() > 200){
+				text = text.substring( 0, 200 )+"...";
+			}
+			hits.add( new SearchHit( r, target, text ) );
+		}
+		return hits;
+	}
+	
 	/**
 	 * Registers a {@link ResultConsumer} to this repository. All {@link ResultConsumer} registered will be notified
-	 * for changes (additions or removals) in the repository.
+	 * for changes (additions or removals) in the repository until the returned {@link Registration} is disposed.
+	 * @param resultConsumer the consumer
+	 * @return the registration
+	 */
+	public Registration register( ResultConsumer resultConsumer ) {
+		ConsumerRegistration registration = new ConsumerRegistration( this, resultConsumer, false );
+		this.consumers.add( registration );
+		return registration;
+	}
+	
+	/**
+	 * Registers a {@link ResultConsumer} to this repository that is only weakly referenced by the repository, i.e., the
+	 * registration ends as soon as the {@link ResultConsumer} is garbage collected.
 	 * @param resultConsumer the consumer
+	 * @return the registration
 	 */
-	public void register( ResultConsumer resultConsumer ) {
-		this.consumers.add( resultConsumer );
+	public Registration registerWeak( ResultConsumer resultConsumer ) {
+		ConsumerRegistration registration = new ConsumerRegistration( this, resultConsumer, true );
+		this.consumers.add( registration );
+		return registration;
 	}
 	
 	/**
-	 * Returns the list of {@link ResultConsumer}s registered for the current {@link ResultRepository}.
+	 * Registers a {@link ResultConsumer} of a GUI component to this repository. The {@link ResultConsumer} lives as long as
+	 * the given owner {@link Node}, i.e., it is only weakly referenced by the repository, and the registration ends as soon as the owner becomes unreachable,
+	 * or if {@link #dispose(Node)} is called for the owner or any of its ancestors, e.g., before the owner is replaced.
+	 * @param resultConsumer the consumer
+	 * @param owner the node owning the consumer
+	 * @return the registration
+	 */
+	public Registration register( ResultConsumer resultConsumer, Node owner ) {
+		Registration registration = registerWeak( resultConsumer );
+		@SuppressWarnings("unchecked")
+		List<Object> owned = (List<Object>)owner.getProperties().get( REGISTRATIONS );
+		if(owned == null){
+			owned = new ArrayList<>();
+			owner.getProperties().put( REGISTRATIONS, owned );
+		}
+		//keeps the consumer alive as long as its owner
+		owned.add( resultConsumer );
+		owned.add( registration );
+		return registration;
+	}
+	
+	/**
+	 * Disposes all {@link Registration}s owned by the given {@link Node} or any of its descendants (see {@link #register(ResultConsumer, Node)}).
+	 * This method should be called before a part of the GUI that contains {@link ResultConsumer}s is discarded.
+	 * Descendants include the contents of controls that have not been shown (and skinned) yet, e.g., of collapsed {@link TitledPane}s.
+	 * @param root the root of the discarded part of the GUI, may be <code>null</code>
+	 */
+	public void dispose( Node root ) {
+		if(root == null){
+			return;
+		}
+		ArrayList<Node> owners = new ArrayList<>();
+		findOwners( root, Collections.newSetFromMap( new IdentityHashMap<Node, Boolean>() ), owners );
+		for(int j=0;j<owners.size();j++){
+			List<?> owned = (List<?>)owners.get( j ).getProperties().remove( REGISTRATIONS );
+			for(int i=0;owned != null && i<owned.size();i++){
+				if(owned.get( i ) instanceof Registration){
+					((Registration)owned.get( i )).dispose();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Collects the given {@link Node} and all of its descendants that own {@link Registration}s. As the scene graph of a control is only
+	 * created when the control is skinned, the contents of controls are visited in addition to the children in the scene graph.
+	 * @param node the current {@link Node}
+	 * @param visited the {@link Node}s visited so far
+	 * @param owners the owners found so far
+	 */
+	private static void findOwners( Node node, Set<Node> visited, List<Node> owners ) {
+		if(node == null || !visited.add( node )){
+			return;
+		}
+		if(node.getProperties().containsKey( REGISTRATIONS )){
+			owners.add( node );
+		}
+		if(node instanceof Parent){
+			Iterator<Node> it = ((Parent)node).getChildrenUnmodifiable().iterator();
+			while(it.hasNext()){
+				findOwners( it.next(), visited, owners );
+			}
+		}
+		if(node instanceof ScrollPane){
+			findOwners( ((ScrollPane)node).getContent(), visited, owners );
+		}else if(node instanceof TitledPane){
+			findOwners( ((TitledPane)node).getContent(), visited, owners );
+		}else if(node instanceof SplitPane){
+			Iterator<Node> it = ((SplitPane)node).getItems().iterator();
+			while(it.hasNext()){
+				findOwners( it.next(), visited, owners );
+			}
+		}else if(node instanceof Accordion){
+			Iterator<TitledPane> it = ((Accordion)node).getPanes().iterator();
+			while(it.hasNext()){
+				findOwners( it.next(), visited, owners );
+			}
+		}else if(node instanceof TabPane){
+			Iterator<Tab> it = ((TabPane)node).getTabs().iterator();
+			while(it.hasNext()){
+				findOwners( it.next().getContent(), visited, owners );
+			}
+		}
+	}
+	
+	/**
+	 * Removes all registrations of the given {@link ResultConsumer}.
+	 * @param resultConsumer the consumer
+	 */
+	public void unregister( ResultConsumer resultConsumer ) {
+		Iterator<ConsumerRegistration> it = consumers.iterator();
+		while(it.hasNext()){
+			ConsumerRegistration registration = it.next();
+			if(registration.get() == resultConsumer){
+				registration.dispose();
+			}
+		}
+	}
+	
+	/**
+	 * Removes a disposed registration.
+	 * @param registration the registration
+	 */
+	void unregister( ConsumerRegistration registration ){
+		consumers.remove( registration );
+	}
+	
+	/**
+	 * Returns the list of {@link ResultConsumer}s currently registered for the current {@link ResultRepository}.
+	 * The returned list is a copy, so modifications do not affect the registrations.
 	 * @return the consumers
 	 */
 	public ArrayList<ResultConsumer> getConsumers(){
-		return this.consumers;
+		ArrayList<ResultConsumer> list = new ArrayList<>( consumers.size() );
+		Iterator<ConsumerRegistration> it = consumers.iterator();
+		while(it.hasNext()){
+			ConsumerRegistration registration = it.next();
+			ResultConsumer consumer = registration.getConsumer();
+			if(consumer == null){
+				consumers.remove( registration );
+			}else{
+				list.add( consumer );
+			}
+		}
+		return list;
+	}
+	
+	/**
+	 * Stores the current contents of the repository to a workspace file. In contrast to {@link #storeResultsToXML()},
+	 * the XML representations of the {@link Result}s are streamed to the compressed file one by one, so memory requirements
+	 * are bounded by the largest single {@link Result} instead of the complete workspace.
+	 * As the workspace file is explicitly requested by the user, new chunks are compressed using the maximum compression level.
+	 * The workspace is written to a temporary file next to the workspace file, which replaces the workspace file only after it has been written completely.
+	 * Hence, an existing workspace file is kept if writing fails, and {@link LazyResult}s read from that file remain valid.
+	 * @param f the workspace file
+	 * @throws IOException if the workspace could not be written
+	 */
+	public void storeResults(File f) throws IOException{
+		f = f.getAbsoluteFile();
+		File temp = File.createTempFile( f.getName(), ".tmp", f.getParentFile() );
+		try{
+			WorkspaceCodec.write( temp, results.toArray( new Result[0] ), 0, null, WorkspaceCodec.BEST );
+			AutosaveWriter.replace( temp, f );
+		}finally{
+			temp.delete();
+		}
+	}
+	
+	/**
+	 * Restores the contents of a repository from a workspace file as written by {@link #storeResults(File)}
+	 * or, in the legacy format, as the zipped output of {@link #storeResultsToXML()}.
+	 * The restored {@link Result}s are added to the current contents of the repository.
+	 * @param f the workspace file
+	 * @throws IOException if the workspace file could not be read
+	 * @throws NonParsableException if the contents of the workspace file could not be parsed
+	 */
+	public void restoreResults(File f) throws IOException, NonParsableException{
+		final ArrayList<Result> restored = new ArrayList<>();
+		try{
+			restore( f, new Consumer<Result>() {
+	
+				@Override
+				public void accept( Result t ) {
+					restored.add( t );
+				}
+				
+			}, false );
+		}finally{
+			addAll( restored, false );
+		}
+	}
+	
+	/**
+	 * Restores the {@link Result}s from a workspace file as written by {@link #storeResults(File)}
+	 * or, in the legacy format, as the zipped output of {@link #storeResultsToXML()}.
+	 * For workspace files written by {@link #storeResults(File)}, the file is decompressed and parsed as a stream
+	 * and each {@link Result} is passed to the provided {@link Consumer} as soon as it has been restored.
+	 * Hence, this method may be called in a background {@link Thread} with a {@link Consumer} that adds
+	 * the restored {@link Result}s to the repository in the JavaFX application thread, so the first {@link Result}s
+	 * become available before the complete file has been read.
+	 * @param f the workspace file
+	 * @param consumer the consumer of the restored {@link Result}s
+	 * @throws IOException if the workspace file could not be read
+	 * @throws NonParsableException if the contents of the workspace file could not be parsed
+	 */
+	public void restoreResults(File f, Consumer<Result> consumer) throws IOException, NonParsableException{
+		restore( f, consumer, false );
+	}
+	
+	/**
+	 * Restores the {@link Result}s from a workspace file and passes them to the consumer.
+	 * @param f the workspace file
+	 * @param consumer the consumer of the restored {@link Result}s
+	 * @param lazy if {@link Result}s are restored lazily on first access
+	 * @return the generation of the journal complementing the workspace file
+	 * @throws IOException if the workspace file could not be read
+	 * @throws NonParsableException if the contents of the workspace file could not be parsed
+	 */
+	static int restore(File f, Consumer<Result> consumer, boolean lazy) throws IOException, NonParsableException{
+		if(WorkspaceCodec.isWorkspaceFile( f )){
+			return lazy ? WorkspaceCodec.readLazy( f, consumer ) : WorkspaceCodec.read( f, consumer );
+		}else{
+			StringBuffer sb = FileManager.readFile( f );
+			sb = new StringBuffer( Compression.unzip( sb.toString() ) );
+			Result[] temp = (Result[])XMLParser.extractObjectForTags( sb, "results" );
+			for(int i=0;i<temp.length;i++){
+				consumer.accept( temp[i] );
+			}
+			//legacy files are not complemented by a journal
+			return 0;
+		}
 	}
 	
 	/**
@@ -280,18 +1444,23 @@ public class ResultRepository {
 	 */
 	public void restoreResultsFromXML(StringBuffer sb) throws NonParsableException{
 		Result[] temp = (Result[])XMLParser.extractObjectForTags( sb, "results" );
-		for(int i=0;i<temp.length;i++){
-			this.add( temp[i], false );
-		}
+		this.addAll( Arrays.asList( temp ), false );
 	}
 	
 	/**
 	 * Stores the current contents of the repository to an XML representation.
 	 * @return the XML representation
+	 * @throws UnavailableResultException if a {@link LazyResult} placeholder could not be restored
 	 */
 	public StringBuffer storeResultsToXML(){
+		return storeResultsToXML( results.toArray( new Result[0] ) );
+	}
+	
+	private StringBuffer storeResultsToXML(Result[] temp){
+		for(int i=0;i<temp.length;i++){
+			temp[i] = resolve( temp[i] );
+		}
 		StringBuffer sb = new StringBuffer();
-		Result[] temp = results.toArray( new Result[0] );
 		XMLParser.appendObjectWithTags( sb, temp, "results" );
 		return sb;
 	}
@@ -1,23 +1,28 @@
 package de.jstacs.fx.repository;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
 import de.jstacs.fx.Application;
 import de.jstacs.fx.LoadSaveDialogs;
+import de.jstacs.fx.ThreadPools;
 import de.jstacs.fx.renderers.results.ResultRenderer;
 import de.jstacs.fx.renderers.results.ResultRendererLibrary;
+import de.jstacs.fx.renderers.results.TextResultRenderer;
 import de.jstacs.fx.repository.ResultRepository.ResultConsumer;
 import de.jstacs.results.CategoricalResult;
 import de.jstacs.results.Result;
 import de.jstacs.results.ResultSet;
 import de.jstacs.results.ResultSetResult;
 import de.jstacs.results.SimpleResult;
+import de.jstacs.results.TextResult;
 import de.jstacs.results.savers.ResultSaver;
 import de.jstacs.results.savers.ResultSaverLibrary;
 import de.jstacs.tools.ToolResult;
@@ -32,15 +37,21 @@ import javafx.beans.value.ObservableValue;
 import javafx.collections.ListChangeListener;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
+import javafx.concurrent.Task;
+import javafx.concurrent.WorkerStateEvent;
 import javafx.geometry.Point2D;
+import javafx.geometry.Side;
 import javafx.scene.Node;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Alert.AlertType;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonBar.ButtonData;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.ContextMenu;
 import javafx.scene.control.Control;
 import javafx.scene.control.Label;
+import javafx.scene.control.MenuItem;
 import javafx.scene.control.TextField;
 import javafx.scene.control.Tooltip;
 import javafx.scene.control.TreeItem;
@@ -64,7 +75,8 @@ import javafx.util.Duration;
  * {@link Result}s with appropriate {@link ResultRenderer}s will be rendered in another {@link BorderPane} of the JavaFX GUI.
  * {@link Result}s with appropriate {@link ResultSaver}s may be stored to disk using a "Save" (or "Save all" in case of aggregate results) button also displayed
  * in the {@link TreeTableView}.
- * Top-level {@link Result}s may removed from the view (and the {@link ResultRepository}) via a "Remove" button.
+ * Top-level {@link Result}s may removed from the view (and the {@link ResultRepository}) via a "Remove" button, and may be pinned
+ * to keep them when collecting garbage (see {@link ResultRepository#collectGarbage(boolean)}).
  * This class implements {@link ResultConsumer} is is automatically notified if new results are added to the {@link ResultRepository}.
  * 
  * @author Jan Grau
@@ -78,6 +90,9 @@ public class ResultRepositoryRenderer implements ResultConsumer{
 	private TreeTableView<Result> ttv;
 	private BorderPane viewerPane;
 	private Application app;
+	private Node searchBar;
+	
+	private static final int MAX_HITS = 100;
 	
 	/**
 	 * Creates a new {@link ResultRepositoryRenderer} for the current {@link Application}, where
@@ -102,6 +117,133 @@ public class ResultRepositoryRenderer implements ResultConsumer{
 		return c;
 	}
 	
+	/**
+	 * Returns a search field for the names of all {@link Result}s and the contents of all {@link TextResult}s in the {@link ResultRepository}
+	 * (see {@link ResultRepository#search(String, int)}). Hits are listed in a drop-down menu while typing, and selecting a hit selects the {@link Result}
+	 * and, for lines of {@link TextResult}s, scrolls to the line (see {@link #show(Result, int)}).
+	 * @return the search field
+	 */
+	public Node getSearchBar(){
+		if(searchBar == null){
+			searchBar = createSearchBar();
+		}
+		return searchBar;
+	}
+	
+	private Node createSearchBar(){
+		final TextField field = new TextField();
+		field.setPromptText( "Search results..." );
+		final ContextMenu menu = new ContextMenu();
+		final PauseTransition delay = new PauseTransition( Duration.millis( 300 ) );
+		delay.setOnFinished( new EventHandler<ActionEvent>() {
+			
+			@Override
+			public void handle( ActionEvent event ) {
+				search( field, menu );
+			}
+			
+		} );
+		field.textProperty().addListener( new ChangeListener<String>() {
+
+			@Override
+			public void changed( ObservableValue<? extends String> observable, String oldValue, String newValue ) {
+				delay.playFromStart();
+			}
+			
+		} );
+		field.setOnAction( new EventHandler<ActionEvent>() {
+			
+			@Override
+			public void handle( ActionEvent event ) {
+				delay.stop();
+				search( field, menu );
+			}
+			
+		} );
+		return field;
+	}
+	
+	private static void showUnavailable(UnavailableResultException e){
+		Alert alert = new Alert( AlertType.ERROR );
+		alert.setTitle( "Result not available" );
+		alert.setHeaderText( "\""+e.getResult().getName()+"\" could not be restored from the workspace." );
+		alert.setContentText( e.getMessage() );
+		alert.showAndWait();
+	}
+	
+	private void search(final TextField field, final ContextMenu menu){
+		final String query = field.getText();
+		if(query.trim().length() == 0){
+			menu.hide();
+			return;
+		}
+		final Task<List<SearchHit>> task = new Task<List<SearchHit>>() {
+
+			@Override
+			protected List<SearchHit> call() throws Exception {
+				return ResultRepository.getInstance().search( query, MAX_HITS );
+			}
+			
+		};
+		task.setOnSucceeded( new EventHandler<WorkerStateEvent>() {
+
+			@Override
+			public void handle( WorkerStateEvent event ) {
+				if(!query.equals( field.getText() )){
+					//outdated
+					return;
+				}
+				List<SearchHit> hits = task.getValue();
+				menu.getItems().clear();
+				for(int i=0;i<hits.size();i++){
+					final SearchHit hit = hits.get( i );
+					MenuItem item = new MenuItem( hit.toString() );
+					item.setOnAction( new EventHandler<ActionEvent>() {
+
+						@Override
+						public void handle( ActionEvent event ) {
+							show( hit.getResult(), hit.getLine() );
+						}
+						
+					} );
+					menu.getItems().add( item );
+				}
+				if(hits.isEmpty()){
+					MenuItem item = new MenuItem( "No matches" );
+					item.setDisable( true );
+					menu.getItems().add( item );
+				}
+				menu.show( field, Side.BOTTOM, 0, 0 );
+			}
+			
+		} );
+		ThreadPools.getBackground().execute( task );
+	}
+	
+	/**
+	 * Selects a {@link Result} in the {@link TreeTableView}, which displays the {@link Result} in the viewer pane, and scrolls
+	 * the rendered {@link TextResult} to the given line.
+	 * @param result the {@link Result} as contained in the {@link ResultRepository}
+	 * @param line the (0-based) line, or <code>-1</code> for selecting the {@link Result} only
+	 */
+	public void show(Result result, int line){
+		TreeItem<Result> item = itemMap.get( result );
+		if(item == null){
+			return;
+		}
+		for(TreeItem<Result> parent = item.getParent(); parent != null; parent = parent.getParent()){
+			parent.setExpanded( true );
+		}
+		ttv.getSelectionModel().select( item );
+		int row = ttv.getRow( item );
+		if(row >= 0){
+			ttv.scrollTo( row );
+		}
+		if(line >= 0){
+			TextResultRenderer.showLine( viewerPane.getCenter(), line );
+		}
+	}
+	
 	/**
 	 * Adds a listener to the list of elements in the {@link TreeTableView}.
 	 * @param listener the listener
@@ -283,6 +425,8 @@ public class ResultRepositoryRenderer implements ResultConsumer{
 			public ObservableValue<Date> call( CellDataFeatures<Result, Date> arg0 ) {
 				if(arg0.getValue().getValue() instanceof ToolResult){
 					return new ReadOnlyObjectWrapper<Date>( ((ToolResult)arg0.getValue().getValue()).getFinishedDate() );
+				}else if(arg0.getValue().getValue() instanceof LazyResult && ((LazyResult)arg0.getValue().getValue()).getDate() != null){
+					return new ReadOnlyObjectWrapper<Date>( ((LazyResult)arg0.getValue().getValue()).getDate() );
 				}else{
 					return null;
 				}
@@ -296,8 +440,14 @@ public class ResultRepositoryRenderer implements ResultConsumer{
 			@Override
 			public ObservableValue<Button> call( CellDataFeatures<Result, Button> arg0 ) {
 				
-				final Result res = arg0.getValue().getValue();
-				final ResultSaver saver = ResultSaverLibrary.getSaver( res.getClass() );
+				final Result stored = arg0.getValue().getValue();
+				final ResultSaver saver;
+				if(stored instanceof LazyResult){
+					Class<? extends Result> clazz = ((LazyResult)stored).getResultClass();
+					saver = clazz == null ? null : ResultSaverLibrary.getSaver( clazz );
+				}else{
+					saver = ResultSaverLibrary.getSaver( stored.getClass() );
+				}
 				
 				if(saver != null){
 
@@ -311,6 +461,14 @@ public class ResultRepositoryRenderer implements ResultConsumer{
 
 						@Override
 						public void handle( ActionEvent arg1 ) {
+							
+							Result res;
+							try{
+								res = ResultRepository.getInstance().resolve( stored );
+							}catch(UnavailableResultException e){
+								showUnavailable( e );
+								return;
+							}
 
 							if(saver.isAtomic()){
 
@@ -403,13 +561,45 @@ public class ResultRepositoryRenderer implements ResultConsumer{
 		
 		
 		
+		TreeTableColumn<Result, CheckBox> pinColumn = new TreeTableColumn<Result, CheckBox>("Pinned");
+		pinColumn.setCellValueFactory( new Callback<TreeTableColumn.CellDataFeatures<Result,CheckBox>, ObservableValue<CheckBox>>() {
+
+			@Override
+			public ObservableValue<CheckBox> call( CellDataFeatures<Result, CheckBox> arg0 ) {
+
+				if(arg0.getValue().getParent() == root){
+
+					CheckBox box = new CheckBox();
+					box.setSelected( ResultRepository.getInstance().isPinned( arg0.getValue().getValue() ) );
+					box.setTooltip( new Tooltip( "Pinned results and all results used for creating them are kept when collecting garbage" ) );
+					box.selectedProperty().addListener( new ChangeListener<Boolean>() {
+
+						@Override
+						public void changed( ObservableValue<? extends Boolean> arg1, Boolean arg2, Boolean arg3 ) {
+							ResultRepository.getInstance().setPinned( arg0.getValue().getValue(), arg3 );
+						}
+						
+					} );
+
+					return new ReadOnlyObjectWrapper<CheckBox>( box );
+				}else{
+					return null;
+				}
+
+			}
+			
+		} );
+		
+		
+		
 		TreeTableColumn<Result, Button> restartColumn = new TreeTableColumn<Result, Button>("Parameters");
 		restartColumn.setCellValueFactory( new Callback<TreeTableColumn.CellDataFeatures<Result,Button>, ObservableValue<Button>>() {
 
 			@Override
 			public ObservableValue<Button> call( CellDataFeatures<Result, Button> arg0 ) {
 
-				if(arg0.getValue().getParent() == root && arg0.getValue().getValue() instanceof ToolResult){
+				Result value = arg0.getValue().getValue();
+				if(arg0.getValue().getParent() == root && ( value instanceof ToolResult || ( value instanceof LazyResult && ((LazyResult)value).isToolResult() ) ) ){
 
 					Button btn = new Button( "Restore" );
 					btn.setOnAction( new EventHandler<ActionEvent>() {
@@ -418,7 +608,16 @@ public class ResultRepositoryRenderer implements ResultConsumer{
 						public void handle( ActionEvent arg1 ) {
 							//System.out.println("restarting "+arg0.getValue().getValue());
 							
-							app.setParametersFromCopy( (ToolResult)arg0.getValue().getValue() );
+							Result res;
+							try{
+								res = ResultRepository.getInstance().resolve( value );
+							}catch(UnavailableResultException e){
+								showUnavailable( e );
+								return;
+							}
+							if(res instanceof ToolResult){
+								app.setParametersFromCopy( (ToolResult)res );
+							}
 
 						}
 					} );
@@ -449,11 +648,12 @@ public class ResultRepositoryRenderer implements ResultConsumer{
 				
 		ttv.setShowRoot( false );
 		
-		ttv.getColumns().setAll( nameColumn, /*commentColumn,*/ valueColumn, dateCol, saveColumn, removeColumn , restartColumn);
+		ttv.getColumns().setAll( nameColumn, /*commentColumn,*/ valueColumn, dateCol, saveColumn, removeColumn , pinColumn, restartColumn);
 		
 		nameColumn.setPrefWidth(200);
 		saveColumn.setPrefWidth(100);
 		removeColumn.setPrefWidth(100);
+		pinColumn.setPrefWidth(60);
 		restartColumn.setPrefWidth(100);
 		dateCol.setPrefWidth(200);
 		//commentColumn.setPrefWidth(200);
@@ -470,7 +670,13 @@ public class ResultRepositoryRenderer implements ResultConsumer{
 				if(arg2 == null){
 					
 				}else{
-					Result res = arg2.getValue();
+					Result res;
+					try{
+						res = ResultRepository.getInstance().resolve( arg2.getValue() );
+					}catch(UnavailableResultException e){
+						viewerPane.setCenter( new Label( e.getMessage() ) );
+						return;
+					}
 					ResultRenderer renderer = ResultRendererLibrary.getRenderer( res );
 					if(renderer != null){
 						Node node = renderer.render( res, viewerPane );
@@ -502,22 +708,36 @@ public class ResultRepositoryRenderer implements ResultConsumer{
 	}
 	
 	private void addResult(Result res, TreeItem<Result> root){
+		root.getChildren().add( createItem( res ) );
+		ttv.getSelectionModel().clearSelection();
+	}
+	
+	private TreeItem<Result> createItem(Result res){
 		if(res instanceof ResultSetResult){
 			
 			TreeItem<Result> parent = new TreeItem<Result>( res );
 			itemMap.put( res, parent );
-			root.getChildren().add( parent );
 			
 			ResultSet rs = ((ResultSetResult)res).getRawResult()[0];
 			for(int i=0;i<rs.getNumberOfResults();i++){
-				addResult( rs.getResultAt( i ), parent );
+				parent.getChildren().add( createItem( rs.getResultAt( i ) ) );
+			}
+			return parent;
+		}else if(res instanceof LazyResult && ((LazyResult)res).getChildren() != null){
+			
+			TreeItem<Result> parent = new TreeItem<Result>( res );
+			itemMap.put( res, parent );
+			
+			LazyResult[] children = ((LazyResult)res).getChildren();
+			for(int i=0;i<children.length;i++){
+				parent.getChildren().add( createItem( children[i] ) );
 			}
+			return parent;
 		}else{
 			TreeItem<Result> item = new TreeItem<>(res);
 			itemMap.put( res, item );
-			root.getChildren().add( item );
+			return item;
 		}
-		ttv.getSelectionModel().clearSelection();
 	}
 
 	/**
@@ -531,9 +751,10 @@ public class ResultRepositoryRenderer implements ResultConsumer{
 	
 	private boolean removeResult(Result res, TreeItem<Result> root){
 		//System.out.println("removing ["+res+"] from "+root);
-		boolean b = root.getChildren().remove( itemMap.get( res ) );
+		TreeItem<Result> removed = itemMap.get( res );
+		boolean b = root.getChildren().remove( removed );
 		if(b){
-			itemMap.remove( res );
+			forget( removed );
 			ttv.getSelectionModel().clearSelection();
 			return b;
 		}else{
@@ -541,7 +762,7 @@ public class ResultRepositoryRenderer implements ResultConsumer{
 			while(it.hasNext()){
 				TreeItem<Result> item = it.next();
 				Result r = item.getValue();
-				if(r instanceof ResultSetResult){
+				if(r instanceof ResultSetResult || r instanceof LazyResult){
 					b = removeResult( res, item );
 				}
 				if(b){
@@ -553,11 +774,25 @@ public class ResultRepositoryRenderer implements ResultConsumer{
 		
 	}
 	
+	/**
+	 * Removes the {@link TreeItem}s of a removed {@link Result} and of all nested {@link Result}s from the item map.
+	 * @param item the {@link TreeItem} of the removed {@link Result}
+	 */
+	private void forget(TreeItem<Result> item){
+		itemMap.remove( item.getValue() );
+		Iterator<TreeItem<Result>> it = item.getChildren().iterator();
+		while(it.hasNext()){
+			forget( it.next() );
+		}
+	}
+	
 	private void addResults(TreeItem<Result> root, List<Result> list){
+		ArrayList<TreeItem<Result>> items = new ArrayList<>( list.size() );
 		for(int i=0;i<list.size();i++){
-			Result res = list.get( i );
-			addResult(res, root);
+			items.add( createItem( list.get( i ) ) );
 		}
+		root.getChildren().addAll( items );
+		ttv.getSelectionModel().clearSelection();
 	}
 
 	@Override
@@ -569,11 +804,54 @@ public class ResultRepositoryRenderer implements ResultConsumer{
 	public void notifyRemoved( Result removed ) {
 		removeResult(removed);		
 	}
+	
+	@Override
+	public void notifyAddedAll( List<Result> added ) {
+		addResults( root, added );
+	}
+	
+	@Override
+	public void notifyRemovedAll( List<Result> removed ) {
+		HashSet<TreeItem<Result>> items = new HashSet<>();
+		for(int i=0;i<removed.size();i++){
+			TreeItem<Result> item = itemMap.get( removed.get( i ) );
+			if(item != null && item.getParent() == root){
+				forget( item );
+				items.add( item );
+			}else{
+				removeResult( removed.get( i ) );
+			}
+		}
+		root.getChildren().removeAll( items );
+		ttv.getSelectionModel().clearSelection();
+	}
 
 	@Override
 	public void notifyRefresh(Result renamed) {
 		//TODO FIXME if renaming possible somewhere else!!!
 	}
+
+	@Override
+	public void notifyReplaced( Result old, Result replacement ) {
+		if(!replaceResult( old, replacement )){
+			ResultConsumer.super.notifyReplaced( old, replacement );
+		}
+	}
+	
+	private boolean replaceResult(Result old, Result replacement){
+		TreeItem<Result> item = itemMap.remove( old );
+		if(item == null){
+			return false;
+		}
+		item.setValue( replacement );
+		itemMap.put( replacement, item );
+		Result[] temp = ResultIndex.getChildren( old );
+		Result[] children = ResultIndex.getChildren( replacement );
+		for(int i=0;temp != null && children != null && i<temp.length && i<children.length;i++){
+			replaceResult( temp[i], children[i] );
+		}
+		return true;
+	}
 	
 	
 	
@@ -0,0 +1,59 @@
+package de.jstacs.fx.repository;
+
+import de.jstacs.results.Result;
+
+/**
+ * A hit of {@link ResultRepository#search(String, int)}, i.e., a {@link Result} whose name matches the query, or a line of a
+ * {@link de.jstacs.results.TextResult} that contains the query.
+ *
+ * @author Jan Grau
+ *
+ */
+public class SearchHit {
+
+	private Result result;
+	private int line;
+	private String text;
+
+	/**
+	 * Creates a new hit.
+	 * @param result the {@link Result}
+	 * @param line the (0-based) line, or <code>-1</code> if the name matches
+	 * @param text the text of the line or the name
+	 */
+	SearchHit(Result result, int line, String text){
+		this.result = result;
+		this.line = line;
+		this.text = text;
+	}
+
+	/**
+	 * Returns the {@link Result} as contained in the repository, which may be a {@link LazyResult} placeholder.
+	 * @return the {@link Result}
+	 */
+	public Result getResult(){
+		return result;
+	}
+
+	/**
+	 * Returns the (0-based) line of the contents that contains the query, or <code>-1</code> if the name of the {@link Result} matches the query.
+	 * @return the line
+	 */
+	public int getLine(){
+		return line;
+	}
+
+	/**
+	 * Returns the text of the line that contains the query or the name of the {@link Result}.
+	 * @return the text
+	 */
+	public String getText(){
+		return text;
+	}
+
+	@Override
+	public String toString() {
+		return line < 0 ? result.getName() : result.getName()+":"+(line+1)+"  "+text;
+	}
+
+}
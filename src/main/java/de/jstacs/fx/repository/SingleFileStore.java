@@ -0,0 +1,240 @@
+package de.jstacs.fx.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import de.jstacs.fx.ThreadPools;
+import de.jstacs.results.Result;
+
+/**
+ * {@link WorkspaceStore} that writes all {@link Result}s to one workspace file (see {@link WorkspaceCodec}), from which the {@link Result}s are
+ * restored lazily by random access.
+ * If {@link ResultRepository#journal} is <code>true</code>, modifications are appended to a {@link WorkspaceJournal}, which serializes them and forces
+ * them to disk in the background in the order of the modifications, and the workspace file is only
+ * re-written if the journal exceeds {@link ResultRepository#journalThreshold}. Otherwise, the complete workspace file is re-written after each series of
+ * modifications. Workspace files are written in the background by an {@link AutosaveWriter}, where {@link Result}s that have not been modified since
+ * the previous snapshot are copied from the previous snapshot (see {@link FragmentCache}).
+ *
+ * @author Jan Grau
+ *
+ */
+class SingleFileStore implements WorkspaceStore {
+
+	private ResultRepository repository;
+	private File file;
+	private WorkspaceJournal workspaceJournal;
+	private AutosaveWriter writer;
+	private FragmentCache fragments;
+
+	/**
+	 * Creates a new store.
+	 * @param repository the repository
+	 * @param file the workspace file
+	 */
+	SingleFileStore(ResultRepository repository, File file){
+		this.repository = repository;
+		this.file = file;
+		this.writer = new AutosaveWriter();
+		this.fragments = new FragmentCache();
+	}
+
+	@Override
+	public File getLocation() {
+		return file;
+	}
+
+	@Override
+	public void restore( RecoveryReport report ) {
+		int generation = 0;
+		File temp = AutosaveWriter.getTempFile( file );
+		if(temp.exists()){
+			//terminated while writing a snapshot, previous snapshot is still complete
+			temp.delete();
+			report.setIncompleteSnapshot();
+		}
+		boolean lost = false;
+		if(file.exists()){
+			final ArrayList<Result> restored = new ArrayList<>();
+			try{
+				generation = ResultRepository.restore( file, new Consumer<Result>() {
+
+					@Override
+					public void accept( Result t ) {
+						restored.add( t );
+					}
+
+				}, true );
+			}catch(Exception e){
+				e.printStackTrace( );
+				//keep the damaged snapshot instead of overwriting it by the next autosave
+				restored.clear();
+				generation = 0;
+				lost = true;
+				File damaged = new File( file.getAbsoluteFile().getParentFile(), file.getName()+".damaged" );
+				if(file.renameTo( damaged )){
+					report.setDamaged( damaged );
+				}
+			}
+			report.setRestored( restored.size() );
+			repository.addAll( restored, false );
+		}
+		if(ResultRepository.journal.get()){
+			try{
+				WorkspaceJournal.replay( file, generation, lost, repository, report );
+			}catch(Exception e){
+				e.printStackTrace();
+			}
+			workspaceJournal = createJournal( generation );
+		}
+	}
+
+	private WorkspaceJournal createJournal(int generation){
+		return new WorkspaceJournal( file, generation, new Consumer<IOException>() {
+
+			@Override
+			public void accept( IOException e ) {
+				repository.storageFailed( "Could not append to the journal of the workspace", e );
+				//keep the modifications by a complete snapshot instead, requested by another Thread, as the Thread
+				//of the journal must not wait for the lock of the repository, which may wait for the journal to be closed
+				ThreadPools.getBackground().execute( new Runnable() {
+
+					@Override
+					public void run() {
+						repository.autostore();
+					}
+
+				} );
+			}
+
+		} );
+	}
+
+	/**
+	 * Returns the journal if the workspace is autosaved in journal mode, and <code>null</code> otherwise.
+	 * @return the journal
+	 */
+	private WorkspaceJournal getJournal(){
+		if(!ResultRepository.journal.get()){
+			if(workspaceJournal != null){
+				workspaceJournal.close();
+				workspaceJournal = null;
+			}
+			return null;
+		}
+		if(workspaceJournal == null){
+			workspaceJournal = createJournal( 0 );
+		}
+		return workspaceJournal;
+	}
+
+	@Override
+	public void added( List<? extends Result> results, boolean store ) {
+		WorkspaceJournal j = getJournal();
+		if(j != null){
+			for(int i=0;i<results.size();i++){
+				j.appendAdded( results.get( i ) );
+			}
+			if(j.getSize() > ResultRepository.journalThreshold.get()){
+				store();
+			}
+		}else if(store){
+			store();
+		}
+	}
+
+	@Override
+	public void removed( int[] indexes, List<? extends Result> results ) {
+		WorkspaceJournal j = getJournal();
+		if(j != null){
+			for(int i=0;i<indexes.length;i++){
+				j.appendRemoved( indexes[i] );
+			}
+		}else{
+			store();
+		}
+	}
+
+	@Override
+	public void modified( Result result ) {
+		fragments.invalidate( result );
+	}
+
+	@Override
+	public void replaced( Result old, Result replacement ) {
+		//contents are identical, the next snapshot copies the replacement from its own location
+	}
+
+	@Override
+	public File getProvenanceFile() {
+		return new File( file.getPath()+".provenance" );
+	}
+
+	@Override
+	public long getStoredSize( Result result ) {
+		//Results only appended to the journal are not counted
+		return fragments.getSize( result );
+	}
+
+	@Override
+	public void store() {
+		final WorkspaceJournal j = getJournal();
+		final Result[] temp = repository.getResults().toArray( new Result[0] );
+		final int generation = j == null ? -1 : j.rotate();
+		final long epoch = fragments.getEpoch();
+		writer.request( new AutosaveWriter.Snapshot() {
+
+			private WorkspaceCodec.Location[] locations;
+
+			@Override
+			public File getFile() {
+				return file;
+			}
+
+			@Override
+			public void write( File tempFile ) throws IOException {
+				locations = WorkspaceCodec.write( tempFile, temp, Math.max( 0, generation ), fragments, WorkspaceCodec.FAST );
+			}
+
+			@Override
+			public void written() {
+				try{
+					WorkspaceCodec.relocate( file, temp, locations, fragments, epoch );
+				}catch(IOException e){
+					e.printStackTrace();
+				}
+				if(j != null){
+					j.discardBefore( generation );
+				}
+			}
+
+			@Override
+			public void failed( IOException e ) {
+				repository.storageFailed( "Could not write the snapshot of the workspace", e );
+			}
+
+		} );
+	}
+
+	@Override
+	public long getNumberOfRequestedSaves() {
+		return writer.getNumberOfRequests();
+	}
+
+	@Override
+	public long getNumberOfPerformedSaves() {
+		return writer.getNumberOfWrites();
+	}
+
+	@Override
+	public void close() {
+		writer.close();
+		if(workspaceJournal != null){
+			workspaceJournal.close();
+			workspaceJournal = null;
+		}
+	}
+
+}
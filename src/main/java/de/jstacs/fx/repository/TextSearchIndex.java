@@ -0,0 +1,487 @@
+package de.jstacs.fx.repository;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+
+import de.jstacs.fx.ThreadPools;
+import de.jstacs.io.NonParsableException;
+import de.jstacs.results.Result;
+import de.jstacs.results.TextResult;
+
+/**
+ * Inverted index of the contents of the {@link TextResult}s (top-level and nested) in a {@link ResultRepository}, which maps each token
+ * (case-insensitive) to the {@link TextResult}s and lines containing that token.
+ * The contents of added {@link TextResult}s are tokenized in a background {@link Thread}, so the index is updated incrementally and may lag
+ * behind the repository for a short time. Removed {@link TextResult}s are only marked as removed and purged from the index once they
+ * make up a substantial part of it, where the remaining documents are re-numbered.
+ * The contents of {@link LazyResult}s are read from the workspace file once for indexing (see {@link LazyResult#load()}) without resolving
+ * the placeholders in the repository, so they do not occupy memory afterwards.
+ *
+ * Tokens are maximal sequences of letters, digits, <code>_</code> and <code>.</code> without leading or trailing <code>.</code>,
+ * so identifiers like <code>AT1G01010.1</code> are indexed as one token.
+ *
+ * @author Jan Grau
+ *
+ */
+class TextSearchIndex {
+
+	/**
+	 * Maximum length of contents that are indexed, larger contents are skipped.
+	 */
+	static final long MAX_LENGTH = 20000000L;
+
+	private static class Document{
+
+		private Result result;
+		//the current id, which changes when the index is purged
+		private int id;
+		private int references;
+		private boolean removed;
+
+		private Document(Result result, int id){
+			this.result = result;
+			this.id = id;
+			this.references = 1;
+		}
+
+	}
+
+	/**
+	 * List of (document, line) pairs in the order of addition.
+	 */
+	private static class Postings{
+
+		private int[] data;
+		private int size;
+
+		private Postings(){
+			this.data = new int[4];
+		}
+
+		private void add(int doc, int line){
+			if(size > 0 && data[size-2] == doc && data[size-1] == line){
+				return;
+			}
+			if(size + 2 > data.length){
+				data = Arrays.copyOf( data, data.length*2 );
+			}
+			data[size++] = doc;
+			data[size++] = line;
+		}
+
+	}
+
+	private ArrayList<Document> documents;
+	private IdentityHashMap<Result, Document> byResult;
+	private TreeMap<String, Postings> postings;
+	private int removed;
+	private ExecutorService worker;
+	//tasks of the worker, which are run one after another by a single task of the pool
+	private ArrayDeque<Runnable> tasks;
+	private boolean draining;
+
+	/**
+	 * Creates a new, empty index.
+	 */
+	TextSearchIndex(){
+		this.documents = new ArrayList<>();
+		this.byResult = new IdentityHashMap<>();
+		this.postings = new TreeMap<>();
+		this.tasks = new ArrayDeque<>();
+		this.worker = ThreadPools.newPool( "Workspace search index", 1, ThreadPools.DEFAULT_CAPACITY, Thread.MIN_PRIORITY );
+	}
+
+	private static boolean isText(Result result){
+		if(result instanceof LazyResult){
+			return ((LazyResult)result).isTextResult() && ((LazyResult)result).getContentLength() <= MAX_LENGTH;
+		}
+		return result instanceof TextResult;
+	}
+
+	/**
+	 * Adds a {@link Result} and all {@link Result}s nested therein to this index. The contents are indexed in the background.
+	 * @param result the {@link Result}
+	 */
+	synchronized void added(Result result){
+		if(isText( result )){
+			Document doc = byResult.get( result );
+			if(doc != null){
+				doc.references++;
+			}else{
+				final Document added = new Document( result, documents.size() );
+				documents.add( added );
+				byResult.put( result, added );
+				schedule( new Runnable() {
+
+					@Override
+					public void run() {
+						index( added );
+					}
+
+				} );
+			}
+		}
+		Result[] temp = ResultIndex.getChildren( result );
+		for(int i=0;temp != null && i<temp.length;i++){
+			added( temp[i] );
+		}
+	}
+
+	/**
+	 * Removes a {@link Result} and all {@link Result}s nested therein from this index.
+	 * @param result the {@link Result}
+	 */
+	synchronized void removed(Result result){
+		Document doc = byResult.get( result );
+		if(doc != null){
+			doc.references--;
+			if(doc.references == 0){
+				byResult.remove( result );
+				doc.removed = true;
+				removed++;
+				if(removed > 100 && removed > documents.size()/2){
+					schedule( new Runnable() {
+
+						@Override
+						public void run() {
+							purge();
+						}
+
+					} );
+				}
+			}
+		}
+		Result[] temp = ResultIndex.getChildren( result );
+		for(int i=0;temp != null && i<temp.length;i++){
+			removed( temp[i] );
+		}
+	}
+
+	/**
+	 * Schedules a task of the background {@link Thread}. As the pool of that {@link Thread} has a bounded queue, and its tasks
+	 * synchronize on this index, pending tasks are kept in this index and run by a single task of the pool.
+	 * Must be called while holding the lock of this index.
+	 * @param task the task
+	 */
+	private void schedule(Runnable task){
+		tasks.add( task );
+		if(!draining){
+			draining = true;
+			worker.execute( new Runnable() {
+
+				@Override
+				public void run() {
+					while(true){
+						Runnable next;
+						synchronized(TextSearchIndex.this){
+							next = tasks.poll();
+							if(next == null){
+								draining = false;
+								TextSearchIndex.this.notifyAll();
+								return;
+							}
+						}
+						try{
+							next.run();
+						}catch(RuntimeException e){
+							//keep running the remaining tasks
+							Thread.currentThread().getUncaughtExceptionHandler().uncaughtException( Thread.currentThread(), e );
+						}
+					}
+				}
+
+			} );
+		}
+	}
+
+	/**
+	 * Waits until the contents of all added {@link Result}s have been indexed and all pending purges have been performed.
+	 * @throws InterruptedException if the current {@link Thread} has been interrupted while waiting
+	 */
+	synchronized void await() throws InterruptedException{
+		while(draining){
+			wait();
+		}
+	}
+
+	/**
+	 * Replaces a {@link Result} by another {@link Result} with identical contents, e.g., a {@link LazyResult} for a {@link Result} that has
+	 * been spilled to disk, without re-indexing the contents.
+	 * @param old the replaced {@link Result}
+	 * @param replacement the replacement
+	 */
+	synchronized void replaced(Result old, Result replacement){
+		Document doc = byResult.remove( old );
+		if(doc != null){
+			doc.result = replacement;
+			byResult.put( replacement, doc );
+		}
+		Result[] temp = ResultIndex.getChildren( old );
+		Result[] children = ResultIndex.getChildren( replacement );
+		for(int i=0;temp != null && children != null && i<temp.length && i<children.length;i++){
+			replaced( temp[i], children[i] );
+		}
+	}
+
+	private void index(Document doc){
+		Result result;
+		synchronized(this){
+			if(doc.removed){
+				return;
+			}
+			result = doc.result;
+		}
+		Result res = result;
+		if(result instanceof LazyResult){
+			try{
+				res = ((LazyResult)result).load();
+			}catch(IOException | NonParsableException | RuntimeException e){
+				//not searchable, reported when resolved
+				return;
+			}
+		}
+		if(!(res instanceof TextResult) || ((TextResult)res).getValue() == null || ((TextResult)res).getValue().getContent() == null){
+			return;
+		}
+		String content = ((TextResult)res).getValue().getContent();
+		if(content.length() > MAX_LENGTH){
+			return;
+		}
+		//tokenize without holding the lock, the id of the document is set when the tokens are added to the index
+		HashMap<String, Postings> local = new HashMap<>();
+		int line = 0;
+		int start = -1;
+		for(int i=0;i<=content.length();i++){
+			char c = i < content.length() ? content.charAt( i ) : '\n';
+			if(isTokenChar( c )){
+				if(start < 0){
+					start = i;
+				}
+			}else{
+				if(start >= 0){
+					addToken( local, content, start, i, 0, line );
+					start = -1;
+				}
+				if(c == '\n'){
+					line++;
+				}
+			}
+		}
+		synchronized(this){
+			if(doc.removed){
+				return;
+			}
+			Iterator<Map.Entry<String, Postings>> it = local.entrySet().iterator();
+			while(it.hasNext()){
+				Map.Entry<String, Postings> e = it.next();
+				Postings p = postings.get( e.getKey() );
+				if(p == null){
+					p = new Postings();
+					postings.put( e.getKey(), p );
+				}
+				for(int i=0;i<e.getValue().size;i+=2){
+					p.add( doc.id, e.getValue().data[i+1] );
+				}
+			}
+		}
+	}
+
+	private static boolean isTokenChar(char c){
+		return Character.isLetterOrDigit( c ) || c == '_' || c == '.';
+	}
+
+	private static boolean isTrimmed(char c){
+		return c == '.';
+	}
+
+	private static void addToken(HashMap<String, Postings> local, String content, int start, int end, int doc, int line){
+		while(start < end && isTrimmed( content.charAt( start ) )){
+			start++;
+		}
+		while(end > start && isTrimmed( content.charAt( end-1 ) )){
+			end--;
+		}
+		if(start == end){
+			return;
+		}
+		String token = content.substring( start, end ).toLowerCase();
+		Postings p = local.get( token );
+		if(p == null){
+			p = new Postings();
+			local.put( token, p );
+		}
+		p.add( doc, line );
+	}
+
+	/**
+	 * Splits a query into tokens as used in this index.
+	 * @param query the query
+	 * @return the tokens
+	 */
+	static String[] tokenize(String query){
+		HashMap<String, Postings> local = new HashMap<>();
+		int start = -1;
+		for(int i=0;i<=query.length();i++){
+			if(i < query.length() && isTokenChar( query.charAt( i ) )){
+				if(start < 0){
+					start = i;
+				}
+			}else if(start >= 0){
+				addToken( local, query, start, i, 0, 0 );
+				start = -1;
+			}
+		}
+		return local.keySet().toArray( new String[0] );
+	}
+
+	/**
+	 * Drops all removed documents and their postings, and re-numbers the remaining documents keeping their order.
+	 */
+	synchronized void purge(){
+		int[] ids = new int[documents.size()];
+		ArrayList<Document> remaining = new ArrayList<>( documents.size()-removed );
+		for(int i=0;i<documents.size();i++){
+			Document doc = documents.get( i );
+			if(doc.removed){
+				ids[i] = -1;
+				doc.result = null;
+			}else{
+				ids[i] = remaining.size();
+				doc.id = remaining.size();
+				remaining.add( doc );
+			}
+		}
+		Iterator<Postings> it = postings.values().iterator();
+		while(it.hasNext()){
+			Postings p = it.next();
+			int k = 0;
+			for(int i=0;i<p.size;i+=2){
+				if(ids[p.data[i]] >= 0){
+					p.data[k++] = ids[p.data[i]];
+					p.data[k++] = p.data[i+1];
+				}
+			}
+			p.size = k;
+			if(k == 0){
+				it.remove();
+			}else if(k < p.data.length/4){
+				p.data = Arrays.copyOf( p.data, Math.max( 4, k ) );
+			}
+		}
+		documents = remaining;
+		removed = 0;
+	}
+
+	/**
+	 * Returns the lines of all indexed {@link TextResult}s that contain all tokens of the query, where the last token
+	 * of the query may also be a prefix of a token in the line. Lines are returned as pairs of {@link Result} and (0-based) line number,
+	 * in the order the {@link Result}s have been added to the repository.
+	 * @param query the query
+	 * @param max the maximum number of lines
+	 * @return the {@link Result}s and lines
+	 */
+	synchronized List<Object[]> query(String query, int max){
+		String[] tokens = tokenize( query );
+		ArrayList<Object[]> hits = new ArrayList<>();
+		if(tokens.length == 0){
+			return hits;
+		}
+		//the last token of the query may be incomplete while typing
+		String last = lastToken( query );
+		long[] current = null;
+		for(int i=0;i<tokens.length;i++){
+			long[] pairs;
+			if(tokens[i].equals( last ) && last.length() > 1){
+				pairs = collect( postings.subMap( last, true, last+Character.MAX_VALUE, true ) );
+			}else{
+				Postings p = postings.get( tokens[i] );
+				pairs = p == null ? new long[0] : collect( p );
+			}
+			current = current == null ? pairs : intersect( current, pairs );
+			if(current.length == 0){
+				return hits;
+			}
+		}
+		for(int i=0;i<current.length && hits.size() < max;i++){
+			Document doc = documents.get( (int)(current[i] >>> 32) );
+			if(!doc.removed){
+				hits.add( new Object[]{doc.result, (int)(current[i] & 0xffffffffL)} );
+			}
+		}
+		return hits;
+	}
+
+	private static String lastToken(String query){
+		int end = query.length();
+		while(end > 0 && !isTokenChar( query.charAt( end-1 ) )){
+			end--;
+		}
+		int start = end;
+		while(start > 0 && isTokenChar( query.charAt( start-1 ) )){
+			start--;
+		}
+		String[] last = tokenize( query.substring( start, end ) );
+		return last.length == 0 ? null : last[0];
+	}
+
+	private static long[] collect(Postings p){
+		long[] pairs = new long[p.size/2];
+		for(int i=0;i<pairs.length;i++){
+			pairs[i] = ((long)p.data[2*i] << 32) | (p.data[2*i+1] & 0xffffffffL);
+		}
+		return pairs;
+	}
+
+	private static long[] collect(NavigableMap<String, Postings> map){
+		int n = 0;
+		Iterator<Postings> it = map.values().iterator();
+		while(it.hasNext()){
+			n += it.next().size/2;
+		}
+		long[] pairs = new long[n];
+		int k = 0;
+		it = map.values().iterator();
+		while(it.hasNext()){
+			Postings p = it.next();
+			for(int i=0;i<p.size;i+=2){
+				pairs[k++] = ((long)p.data[i] << 32) | (p.data[i+1] & 0xffffffffL);
+			}
+		}
+		Arrays.sort( pairs );
+		int m = 0;
+		for(int i=0;i<pairs.length;i++){
+			if(m == 0 || pairs[m-1] != pairs[i]){
+				pairs[m++] = pairs[i];
+			}
+		}
+		return Arrays.copyOf( pairs, m );
+	}
+
+	private static long[] intersect(long[] a, long[] b){
+		long[] res = new long[Math.min( a.length, b.length )];
+		int i = 0, j = 0, k = 0;
+		while(i < a.length && j < b.length){
+			if(a[i] < b[j]){
+				i++;
+			}else if(a[i] > b[j]){
+				j++;
+			}else{
+				res[k++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		return Arrays.copyOf( res, k );
+	}
+
+}
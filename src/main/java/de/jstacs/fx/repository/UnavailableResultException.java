@@ -0,0 +1,36 @@
+package de.jstacs.fx.repository;
+
+import de.jstacs.results.Result;
+
+/**
+ * Thrown by {@link ResultRepository#resolve(Result)} if a {@link LazyResult} placeholder could not be restored from its workspace file,
+ * e.g., because the file has been damaged or deleted.
+ *
+ * @author Jan Grau
+ *
+ */
+public class UnavailableResultException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private Result result;
+
+	/**
+	 * Creates a new exception for the given placeholder.
+	 * @param result the placeholder
+	 * @param cause the reason why it could not be restored
+	 */
+	UnavailableResultException(Result result, Throwable cause){
+		super( "Result \""+result.getName()+"\" could not be restored: "+cause.getMessage(), cause );
+		this.result = result;
+	}
+
+	/**
+	 * Returns the placeholder that could not be restored.
+	 * @return the placeholder
+	 */
+	public Result getResult(){
+		return result;
+	}
+
+}
@@ -0,0 +1,930 @@
+package de.jstacs.fx.repository;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import de.jstacs.fx.repository.BlobStore.Blob;
+import de.jstacs.io.NonParsableException;
+import de.jstacs.io.XMLParser;
+import de.jstacs.results.Result;
+import de.jstacs.results.ResultSetResult;
+import de.jstacs.results.SimpleResult;
+import de.jstacs.results.TextResult;
+import de.jstacs.tools.ToolResult;
+import de.jstacs.utils.Compression;
+
+/**
+ * Reads and writes workspace files, i.e., the contents of a {@link ResultRepository}.
+ *
+ * In contrast to the legacy format, which zips the XML representation of all {@link Result}s as one {@link String}
+ * (see {@link ResultRepository#storeResultsToXML()} and {@link Compression}), workspace files are written as a stream:
+ * a short uncompressed header (magic number and format version) is followed by the content-addressed, gzipped chunks of the
+ * XML representations of all {@link Result}s (see {@link BlobStore}), where identical chunks are stored only once.
+ * Hence, memory requirements for storing a workspace are bounded by the XML representation of the largest single {@link Result},
+ * and identical file contents referenced by several {@link Result}s occupy disk space only once.
+ * The chunks are compressed in parallel with a selectable compression level, e.g., {@link #FAST} for automatically saved workspaces
+ * and {@link #BEST} for workspaces explicitly saved by the user.
+ *
+ * The chunks are followed by a table of contents, which lists all chunks and, for each {@link Result}, its name, comment, type,
+ * date, size, mime type or file extensions, and its chunks, and a trailer pointing to the table of contents.
+ * Based on the table of contents, a workspace may be loaded lazily (see {@link #readLazy(File, Consumer)}), where each {@link Result}
+ * is represented by a {@link LazyResult} and only deserialized on first access.
+ * Since version 4, {@link Result}s with mostly numerical contents may be stored in the compact binary representation of {@link BinaryCodec}
+ * instead of their XML representation (see {@link ResultRepository#binaryCodec}). Files are only written in version 4 if the binary representation is
+ * switched on, and in version 3 otherwise.
+ *
+ * @author Jan Grau
+ *
+ */
+class WorkspaceCodec {
+
+	private static final int MAGIC = 0x4A535457;
+	private static final int VERSION = 4;
+	/**
+	 * Version written if {@link ResultRepository#binaryCodec} is switched off, so the file can also be read by previous versions
+	 */
+	private static final int XML_VERSION = 3;
+
+	private static final byte CONTENTS = 'T';
+
+	private static final int BUFFER = 1 << 16;
+
+	/**
+	 * Compression level for workspace files written in the background, e.g., automatically saved workspaces
+	 */
+	static final int FAST = Deflater.BEST_SPEED;
+	/**
+	 * Compression level for workspace files explicitly saved by the user
+	 */
+	static final int BEST = Deflater.BEST_COMPRESSION;
+
+	/**
+	 * An open workspace file, from which records of {@link LazyResult}s are read.
+	 * The file is kept open as long as the {@link Source} is in use, so records can still be read if the
+	 * file has been replaced by a new snapshot in the meantime.
+	 * Readers {@link #retain() retain} the {@link Source} while reading, and {@link #close()} only closes the underlying file
+	 * after all readers have released it, so records may be copied from the file while a concurrent snapshot relocates the
+	 * {@link LazyResult}s to a new file.
+	 * @author Jan Grau
+	 *
+	 */
+	static class Source implements BlobStore.BlobSource{
+
+		private FileChannel channel;
+		private File file;
+		private boolean temporary;
+		private int readers;
+		private boolean closed;
+
+		private Source(File f) throws IOException{
+			this.channel = FileChannel.open( f.toPath(), StandardOpenOption.READ );
+			this.file = f;
+		}
+
+		private byte[] read(long offset, int length) throws IOException{
+			ByteBuffer buf = ByteBuffer.allocate( length );
+			while(buf.hasRemaining()){
+				if(channel.read( buf, offset+buf.position() ) < 0){
+					throw new EOFException( "Unexpected end of workspace file" );
+				}
+			}
+			return buf.array();
+		}
+
+		@Override
+		public byte[] read( Blob blob ) throws IOException {
+			return read( blob.getOffset(), blob.getLength() );
+		}
+
+		private long size() throws IOException{
+			return channel.size();
+		}
+
+		/**
+		 * Registers a reader of this {@link Source}, which must call {@link #release()} after reading.
+		 * @throws IOException if the underlying file has already been closed
+		 */
+		synchronized void retain() throws IOException{
+			if(closed && readers == 0){
+				throw new IOException( "Workspace file has been closed: "+file );
+			}
+			readers++;
+		}
+
+		/**
+		 * Unregisters a reader of this {@link Source}. If this {@link Source} has been closed in the meantime and this has been the
+		 * last reader, the underlying file is closed.
+		 */
+		void release(){
+			synchronized(this){
+				readers--;
+				if(!closed || readers > 0){
+					return;
+				}
+			}
+			closeFile();
+		}
+
+		/**
+		 * Closes the underlying file as soon as all readers have released this {@link Source}. Temporary files are deleted.
+		 */
+		void close(){
+			synchronized(this){
+				if(closed){
+					return;
+				}
+				closed = true;
+				if(readers > 0){
+					return;
+				}
+			}
+			closeFile();
+		}
+
+		private void closeFile(){
+			try{
+				channel.close();
+				if(temporary){
+					file.delete();
+				}
+			}catch(IOException e){
+				e.printStackTrace();
+			}
+		}
+
+	}
+
+	/**
+	 * The location of the serialized representation of a {@link Result} in a workspace file, i.e., the
+	 * list of its chunks.
+	 * @author Jan Grau
+	 *
+	 */
+	static class Location{
+
+		private Source source;
+		private Blob[] blobs;
+
+		private Location(Source source, Blob[] blobs){
+			this.source = source;
+			this.blobs = blobs;
+		}
+
+		/**
+		 * Registers a reader of the workspace file of this location, see {@link Source#retain()}.
+		 * @throws IOException if the workspace file has already been closed
+		 */
+		void retain() throws IOException{
+			if(source != null){
+				source.retain();
+			}
+		}
+
+		/**
+		 * Unregisters a reader of the workspace file of this location, see {@link Source#release()}.
+		 */
+		void release(){
+			if(source != null){
+				source.release();
+			}
+		}
+
+		/**
+		 * Closes the workspace file of this location if it is a temporary file (see {@link WorkspaceCodec#readLazy(File, Consumer, boolean)}),
+		 * which is deleted as soon as all current readers have released it.
+		 */
+		void closeTemporary(){
+			if(source != null && source.temporary){
+				source.close();
+			}
+		}
+
+		/**
+		 * Opens the uncompressed serialized representation. The location should be {@link #retain() retained} while reading.
+		 * @return the stream of the uncompressed bytes
+		 */
+		InputStream open(){
+			return new ChunkInputStream( source, blobs );
+		}
+
+		/**
+		 * Returns the uncompressed size of the serialized representation, or <code>-1</code> if unknown.
+		 * @return the size
+		 */
+		long getRawLength(){
+			long len = 0;
+			for(int i=0;i<blobs.length;i++){
+				if(blobs[i].getRawLength() < 0){
+					return -1;
+				}
+				len += blobs[i].getRawLength();
+			}
+			return len;
+		}
+
+		private Blob[] copyTo(BlobStore store) throws IOException{
+			Blob[] copy = new Blob[blobs.length];
+			for(int i=0;i<blobs.length;i++){
+				copy[i] = store.copy( blobs[i], source );
+			}
+			return copy;
+		}
+
+	}
+
+	/**
+	 * Checks if the given file is a workspace file in the format of this class. Otherwise, it may
+	 * still be a workspace file in the legacy format.
+	 * @param f the file
+	 * @return if the file is in the format of this class
+	 * @throws IOException if the file could not be read
+	 */
+	static boolean isWorkspaceFile(File f) throws IOException{
+		DataInputStream in = new DataInputStream( new FileInputStream( f ) );
+		try{
+			return f.length() >= 8 && in.readInt() == MAGIC;
+		}finally{
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the given {@link Result}s to a workspace file. Chunks of {@link LazyResult}s that have not been renamed
+	 * are copied from their original workspace file without deserializing them.
+	 * @param f the file
+	 * @param results the top-level {@link Result}s
+	 * @param generation the journal generation, see {@link WorkspaceJournal}
+	 * @return the locations of the {@link Result}s in the file, see {@link #relocate(File, Result[], Location[])}
+	 * @throws IOException if the file could not be written
+	 */
+	static Location[] write(File f, Result[] results, int generation) throws IOException{
+		return write( f, results, generation, null );
+	}
+
+	/**
+	 * Writes the given {@link Result}s to a workspace file as in {@link #write(File, Result[], int)}. In addition, the chunks of all {@link Result}s
+	 * contained in the given cache are copied from the previous workspace file instead of serializing the {@link Result}s.
+	 * @param f the file
+	 * @param results the top-level {@link Result}s
+	 * @param generation the journal generation, see {@link WorkspaceJournal}
+	 * @param cache the cache of serialized representations, may be <code>null</code>
+	 * @return the locations of the {@link Result}s in the file, see {@link #relocate(File, Result[], Location[], FragmentCache, long)}
+	 * @throws IOException if the file could not be written
+	 */
+	static Location[] write(File f, Result[] results, int generation, FragmentCache cache) throws IOException{
+		return write( f, results, generation, cache, Deflater.DEFAULT_COMPRESSION );
+	}
+
+	/**
+	 * Writes the given {@link Result}s to a workspace file as in {@link #write(File, Result[], int, FragmentCache)}, where new chunks are compressed
+	 * using the given compression level. Chunks copied from other workspace files are not compressed again.
+	 * @param f the file
+	 * @param results the top-level {@link Result}s
+	 * @param generation the journal generation, see {@link WorkspaceJournal}
+	 * @param cache the cache of serialized representations, may be <code>null</code>
+	 * @param level the compression level, e.g., {@link #FAST} or {@link #BEST}
+	 * @return the locations of the {@link Result}s in the file, see {@link #relocate(File, Result[], Location[], FragmentCache, long)}
+	 * @throws IOException if the file could not be written
+	 */
+	static Location[] write(File f, Result[] results, int generation, FragmentCache cache, int level) throws IOException{
+		Location[] locations = new Location[results.length];
+		ByteArrayOutputStream entries = new ByteArrayOutputStream();
+		DataOutputStream toc = new DataOutputStream( entries );
+
+		DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( f ), BUFFER ) );
+		try{
+			out.writeInt( MAGIC );
+			out.writeInt( ResultRepository.binaryCodec.get() ? VERSION : XML_VERSION );
+			BlobStore store = new BlobStore( out, 8, level );
+			try{
+				for(int i=0;i<results.length;i++){
+					Result res = results[i];
+					Blob[] blobs = null;
+					long size = -1;
+					if(res instanceof LazyResult){
+						Location loc = ((LazyResult)res).getLocation();
+						if(loc != null){
+							try{
+								blobs = loc.copyTo( store );
+							}finally{
+								loc.release();
+							}
+							size = ((LazyResult)res).getSize();
+						}else{
+							res = resolve( (LazyResult)res );
+						}
+					}else if(cache != null){
+						Location loc = cache.get( res );
+						if(loc != null){
+							try{
+								blobs = loc.copyTo( store );
+							}finally{
+								loc.release();
+							}
+							size = loc.getRawLength();
+						}
+					}
+					if(blobs == null){
+						if(isBinary( res )){
+							byte[] b = BinaryCodec.encode( res );
+							size = b.length;
+							blobs = store.put( new ByteArrayInputStream( b ) );
+						}else{
+							StringBuffer sb = serialize( res );
+							size = getUTF8Length( sb );
+							blobs = store.put( sb );
+						}
+					}
+					locations[i] = new Location( null, blobs );
+					toc.writeInt( blobs.length );
+					for(int j=0;j<blobs.length;j++){
+						toc.writeInt( blobs[j].getIndex() );
+					}
+					writeEntry( toc, res, size );
+				}
+				store.finish();
+			}finally{
+				store.cancel();
+			}
+			toc.close();
+
+			long pos = store.getPosition();
+			ByteArrayOutputStream contents = new ByteArrayOutputStream();
+			DataOutputStream head = new DataOutputStream( new GZIPOutputStream( contents ) );
+			head.writeInt( generation );
+			head.writeInt( store.getBlobs().size() );
+			Iterator<Blob> it = store.getBlobs().iterator();
+			while(it.hasNext()){
+				Blob blob = it.next();
+				head.write( blob.getHash() );
+				head.writeLong( blob.getOffset() );
+				head.writeInt( blob.getLength() );
+				head.writeLong( blob.getRawLength() );
+			}
+			head.writeInt( results.length );
+			entries.writeTo( head );
+			head.close();
+
+			out.writeByte( CONTENTS );
+			out.writeLong( contents.size() );
+			contents.writeTo( out );
+			out.writeLong( pos );
+			out.writeInt( MAGIC );
+		}finally{
+			out.close();
+		}
+		return locations;
+	}
+
+	/**
+	 * Lets all {@link LazyResult}s among the given {@link Result}s refer to their chunks in the given file, which has been written by
+	 * {@link #write(File, Result[], int)}. Sources of previous locations are closed as soon as all their current readers have released them.
+	 * @param f the file
+	 * @param results the {@link Result}s as passed to {@link #write(File, Result[], int)}
+	 * @param locations the locations as returned by {@link #write(File, Result[], int)}
+	 * @throws IOException if the file could not be opened
+	 */
+	static void relocate(File f, Result[] results, Location[] locations) throws IOException{
+		relocate( f, results, locations, null, 0 );
+	}
+
+	/**
+	 * Lets all {@link LazyResult}s among the given {@link Result}s refer to their chunks in the given file as in {@link #relocate(File, Result[], Location[])}, and
+	 * replaces the contents of the cache by the chunks of all other {@link Result}s in the given file.
+	 * @param f the file
+	 * @param results the {@link Result}s as passed to {@link #write(File, Result[], int, FragmentCache)}
+	 * @param locations the locations as returned by {@link #write(File, Result[], int, FragmentCache)}
+	 * @param cache the cache of serialized representations, may be <code>null</code>
+	 * @param since the {@link FragmentCache#getEpoch() epoch} of the cache when <code>results</code> have been collected
+	 * @throws IOException if the file could not be opened
+	 */
+	static void relocate(File f, Result[] results, Location[] locations, FragmentCache cache, long since) throws IOException{
+		Source source = null;
+		IdentityHashMap<Source, Boolean> previous = new IdentityHashMap<>();
+		Location[] relocated = new Location[results.length];
+		for(int i=0;i<results.length;i++){
+			if(results[i] instanceof LazyResult || cache != null){
+				if(source == null){
+					source = new Source( f );
+				}
+				relocated[i] = new Location( source, locations[i].blobs );
+			}
+			if(results[i] instanceof LazyResult){
+				Location old = ((LazyResult)results[i]).setLocation( relocated[i] );
+				if(old != null){
+					previous.put( old.source, Boolean.TRUE );
+				}
+			}
+		}
+		if(cache != null){
+			Location[] old = cache.update( results, relocated, since );
+			for(int i=0;i<old.length;i++){
+				previous.put( old[i].source, Boolean.TRUE );
+			}
+		}
+		Iterator<Source> it = previous.keySet().iterator();
+		while(it.hasNext()){
+			it.next().close();
+		}
+	}
+
+	/**
+	 * Reads the table of contents of a workspace file and passes a {@link LazyResult} for each {@link Result} in the file to the
+	 * provided {@link Consumer}. The file is kept open until the {@link LazyResult}s are relocated to another file using {@link #relocate(File, Result[], Location[])}.
+	 * @param f the file
+	 * @param consumer the consumer of the {@link LazyResult}s, called in the order of the {@link Result}s in the file
+	 * @return the journal generation stored in the file, see {@link WorkspaceJournal}
+	 * @throws IOException if the file could not be read
+	 */
+	static int readLazy(File f, final Consumer<Result> consumer) throws IOException{
+		return readLazy( f, consumer, false );
+	}
+
+	/**
+	 * Reads the table of contents of a workspace file as in {@link #readLazy(File, Consumer)}. If the file is <code>temporary</code>, it is deleted as soon as
+	 * all {@link LazyResult}s have been relocated to another file.
+	 * @param f the file
+	 * @param consumer the consumer of the {@link LazyResult}s, called in the order of the {@link Result}s in the file
+	 * @param temporary if the file is temporary
+	 * @return the journal generation stored in the file, see {@link WorkspaceJournal}
+	 * @throws IOException if the file could not be read
+	 */
+	static int readLazy(File f, final Consumer<Result> consumer, boolean temporary) throws IOException{
+		checkVersion( f );
+		Source source = new Source( f );
+		source.temporary = temporary;
+		try{
+			final int[] n = new int[1];
+			int generation = readContents( f, source, new Consumer<LazyResult>() {
+
+				@Override
+				public void accept( LazyResult t ) {
+					n[0]++;
+					consumer.accept( t );
+				}
+
+			} );
+			if(n[0] == 0){
+				source.close();
+			}
+			return generation;
+		}catch(IOException e){
+			source.close();
+			throw e;
+		}
+	}
+
+	private static int readContents(File f, Source source, Consumer<LazyResult> consumer) throws IOException{
+		long size = source.size();
+		if(size < 8+9+12){
+			throw new IOException( "Incomplete workspace file: "+f );
+		}
+		DataInputStream trailer = new DataInputStream( new ByteArrayInputStream( source.read( size-12, 12 ) ) );
+		long pos = trailer.readLong();
+		if(trailer.readInt() != MAGIC){
+			throw new IOException( "Incomplete workspace file: "+f );
+		}
+		DataInputStream head = new DataInputStream( new ByteArrayInputStream( source.read( pos, 9 ) ) );
+		if(head.readByte() != CONTENTS){
+			throw new IOException( "Corrupted workspace file: "+f );
+		}
+		int len = checkLength( head.readLong(), f );
+		DataInputStream toc = new DataInputStream( new GZIPInputStream( new ByteArrayInputStream( source.read( pos+9, len ) ) ) );
+		int generation = toc.readInt();
+		Blob[] all = new Blob[toc.readInt()];
+		for(int i=0;i<all.length;i++){
+			byte[] hash = new byte[32];
+			toc.readFully( hash );
+			all[i] = new Blob( hash, toc.readLong(), toc.readInt(), toc.readLong() );
+		}
+		int n = toc.readInt();
+		for(int i=0;i<n;i++){
+			Blob[] blobs = new Blob[toc.readInt()];
+			for(int j=0;j<blobs.length;j++){
+				blobs[j] = all[toc.readInt()];
+			}
+			LazyResult res = readEntry( toc );
+			res.setLocation( new Location( source, blobs ) );
+			consumer.accept( res );
+		}
+		return generation;
+	}
+
+	/**
+	 * Reads the {@link Result}s from a workspace file. The {@link Result}s are parsed in parallel (see {@link ParallelParser}) and
+	 * each {@link Result} is passed to the provided {@link Consumer} as soon as it and all preceding {@link Result}s have been parsed,
+	 * so only the XML representations of a bounded number of {@link Result}s are kept in memory at any time.
+	 * @param f the file
+	 * @param consumer the consumer of the restored {@link Result}s, called in the order of the {@link Result}s in the file
+	 * @return the journal generation stored in the file, see {@link WorkspaceJournal}
+	 * @throws IOException if the file could not be read
+	 * @throws NonParsableException if a {@link Result} could not be restored
+	 */
+	static int read(File f, Consumer<Result> consumer) throws IOException, NonParsableException{
+		checkVersion( f );
+		Source source = new Source( f );
+		try{
+			final ArrayList<LazyResult> lazy = new ArrayList<>();
+			int generation = readContents( f, source, new Consumer<LazyResult>() {
+
+				@Override
+				public void accept( LazyResult t ) {
+					lazy.add( t );
+				}
+
+			} );
+			ParallelParser parser = new ParallelParser( consumer );
+			try{
+				for(int i=0;i<lazy.size();i++){
+					final LazyResult res = lazy.get( i );
+					parser.submit( new Callable<Result>() {
+
+						@Override
+						public Result call() throws Exception {
+							return res.resolve();
+						}
+
+					} );
+					lazy.set( i, null );
+				}
+				parser.finish();
+			}finally{
+				parser.cancel();
+			}
+			return generation;
+		}finally{
+			source.close();
+		}
+	}
+
+	private static void checkVersion(File f) throws IOException{
+		DataInputStream in = new DataInputStream( new FileInputStream( f ) );
+		try{
+			if(in.readInt() != MAGIC){
+				throw new IOException( "Not a workspace file: "+f );
+			}
+			int version = in.readInt();
+			if(version < XML_VERSION || version > VERSION){
+				throw new IOException( "Unsupported workspace version "+version+" in "+f );
+			}
+		}finally{
+			in.close();
+		}
+	}
+
+	/**
+	 * Checks the length of a record that is read into memory as a whole, which is limited by the maximum length of an array.
+	 * As the XML representation of a {@link Result} is parsed from a {@link StringBuffer}, larger records could not be restored anyway.
+	 * @param len the length of the record in bytes
+	 * @param f the workspace file
+	 * @return the length
+	 * @throws IOException if the length is negative or exceeds the maximum length of an array
+	 */
+	private static int checkLength(long len, File f) throws IOException{
+		if(len < 0){
+			throw new IOException( "Corrupted workspace file: "+f );
+		}else if(len > Integer.MAX_VALUE-8){
+			throw new IOException( "Record of "+len+" bytes in workspace file "+f+" exceeds the maximum size of "+(Integer.MAX_VALUE-8)+" bytes" );
+		}
+		return (int)len;
+	}
+
+	/**
+	 * Restores a {@link Result} from its serialized representation.
+	 * @param location the location of the serialized representation
+	 * @return the {@link Result}
+	 * @throws IOException if the workspace file could not be read
+	 * @throws NonParsableException if the {@link Result} could not be restored
+	 */
+	static Result read(Location location) throws IOException, NonParsableException{
+		location.retain();
+		try{
+			return parse( location.open(), location.getRawLength() );
+		}finally{
+			location.release();
+		}
+	}
+
+	private static Result parse(InputStream in, long len) throws IOException, NonParsableException{
+		PushbackInputStream pin = new PushbackInputStream( in, 1 );
+		int first = pin.read();
+		if(first == BinaryCodec.MARKER){
+			pin.unread( first );
+			return BinaryCodec.decode( pin );
+		}else if(first > -1){
+			pin.unread( first );
+		}
+		in = pin;
+		Reader r = new InputStreamReader( in, StandardCharsets.UTF_8 );
+		StringBuffer sb = new StringBuffer( (int)Math.max( 16, Math.min( len, Integer.MAX_VALUE-8 ) ) );
+		char[] buf = new char[BUFFER];
+		int read;
+		while( (read = r.read( buf )) > -1 ){
+			sb.append( buf, 0, read );
+		}
+		r.close();
+		return (Result)XMLParser.extractObjectForTags( sb, "result" );
+	}
+
+	private static Result resolve(LazyResult res) throws IOException{
+		try{
+			return res.resolve();
+		}catch(NonParsableException e){
+			throw new IOException( e );
+		}
+	}
+
+	private static boolean isBinary(Result result){
+		return ResultRepository.binaryCodec.get() && BinaryCodec.isSupported( result );
+	}
+
+	private static StringBuffer serialize(Result result){
+		StringBuffer sb = new StringBuffer();
+		XMLParser.appendObjectWithTags( sb, result, "result" );
+		return sb;
+	}
+
+	/**
+	 * Creates a self-contained record, i.e., the gzipped XML or binary representation, of the given {@link Result}.
+	 * As records are appended to the journal of automatically saved workspaces, they are compressed using {@link #FAST}.
+	 * For {@link LazyResult}s that have not been renamed, the record is created from the workspace file
+	 * without deserializing the {@link Result}.
+	 * @param result the {@link Result}
+	 * @return the record
+	 * @throws IOException if the record could not be created
+	 */
+	static byte[] toRecord(Result result) throws IOException{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		GZIPOutputStream gz = BlobStore.gzip( baos, FAST );
+		Location loc = result instanceof LazyResult ? ((LazyResult)result).getLocation() : null;
+		if(loc != null){
+			try{
+				InputStream in = loc.open();
+				byte[] buf = new byte[BUFFER];
+				int len;
+				while( (len = in.read( buf )) > -1 ){
+					gz.write( buf, 0, len );
+				}
+				in.close();
+			}finally{
+				loc.release();
+			}
+		}else{
+			if(result instanceof LazyResult){
+				result = resolve( (LazyResult)result );
+			}
+			if(isBinary( result )){
+				gz.write( BinaryCodec.encode( result ) );
+			}else{
+				StringBuffer sb = serialize( result );
+				Writer w = new OutputStreamWriter( gz, StandardCharsets.UTF_8 );
+				char[] buf = new char[BUFFER];
+				for(int j=0;j<sb.length();j+=buf.length){
+					int end = Math.min( sb.length(), j+buf.length );
+					sb.getChars( j, end, buf, 0 );
+					w.write( buf, 0, end-j );
+				}
+				w.flush();
+			}
+		}
+		gz.close();
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Restores a {@link Result} from a record created by {@link #toRecord(Result)}.
+	 * @param record the record
+	 * @return the {@link Result}
+	 * @throws IOException if the record could not be decompressed
+	 * @throws NonParsableException if the {@link Result} could not be restored
+	 */
+	static Result fromRecord(byte[] record) throws IOException, NonParsableException{
+		return parse( new GZIPInputStream( new ByteArrayInputStream( record ) ), record.length*4L );
+	}
+
+	private static void writeEntry(DataOutputStream out, Result res, long size) throws IOException{
+		if(res instanceof LazyResult){
+			LazyResult lazy = (LazyResult)res;
+			writeString( out, lazy.getClassName() );
+			writeString( out, lazy.getName() );
+			writeString( out, lazy.getComment() );
+			writeString( out, lazy.getTypeName() );
+			writeString( out, lazy.getValueString() );
+			out.writeLong( lazy.getDate() == null ? -1 : lazy.getDate().getTime() );
+			out.writeLong( size );
+			writeString( out, lazy.getMime() );
+			writeString( out, lazy.getExtendedType() );
+			writeString( out, lazy.getFilename() );
+			out.writeLong( lazy.getContentLength() );
+			writeStrings( out, lazy.getExtensions() );
+			LazyResult[] children = lazy.getChildren();
+			out.writeInt( children == null ? -1 : children.length );
+			for(int i=0;children != null && i<children.length;i++){
+				writeEntry( out, children[i], children[i].getSize() );
+			}
+		}else{
+			writeString( out, res.getClass().getName() );
+			writeString( out, res.getName() );
+			writeString( out, res.getComment() );
+			writeString( out, res.getDatatype().toString() );
+			writeString( out, res instanceof SimpleResult ? String.valueOf( res.getValue() ) : null );
+			Date date = res instanceof ToolResult ? ((ToolResult)res).getFinishedDate() : null;
+			out.writeLong( date == null ? -1 : date.getTime() );
+			out.writeLong( size );
+			if(res instanceof TextResult && ((TextResult)res).getValue() != null){
+				TextResult tr = (TextResult)res;
+				writeString( out, tr.getMime() );
+				writeString( out, tr.getExtendedType() );
+				writeString( out, tr.getValue().getFilename() );
+				String content = tr.getValue().getContent();
+				out.writeLong( content == null ? -1 : content.length() );
+			}else if(res instanceof TextResult){
+				writeString( out, ((TextResult)res).getMime() );
+				writeString( out, ((TextResult)res).getExtendedType() );
+				writeString( out, null );
+				out.writeLong( -1 );
+			}else{
+				writeString( out, null );
+				writeString( out, null );
+				writeString( out, null );
+				out.writeLong( -1 );
+			}
+			writeStrings( out, ResultIndex.getExtensions( res ) );
+			if(res instanceof ResultSetResult){
+				Result[] temp = ((ResultSetResult)res).getRawResult()[0].getResults();
+				out.writeInt( temp.length );
+				for(int i=0;i<temp.length;i++){
+					writeEntry( out, temp[i], -1 );
+				}
+			}else{
+				out.writeInt( -1 );
+			}
+		}
+	}
+
+	private static LazyResult readEntry(DataInputStream in) throws IOException{
+		String className = readString( in );
+		String name = readString( in );
+		String comment = readString( in );
+		String type = readString( in );
+		String value = readString( in );
+		long date = in.readLong();
+		long size = in.readLong();
+		String mime = readString( in );
+		String extendedType = readString( in );
+		String filename = readString( in );
+		long contentLength = in.readLong();
+		String[] extensions = readStrings( in );
+		int n = in.readInt();
+		LazyResult[] children = null;
+		if(n >= 0){
+			children = new LazyResult[n];
+			for(int i=0;i<n;i++){
+				children[i] = readEntry( in );
+			}
+		}
+		return new LazyResult( className, name, comment, type, value, date < 0 ? null : new Date( date ), size, mime, extendedType, filename, contentLength, extensions, children );
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException{
+		if(s == null){
+			out.writeInt( -1 );
+		}else{
+			byte[] b = s.getBytes( StandardCharsets.UTF_8 );
+			out.writeInt( b.length );
+			out.write( b );
+		}
+	}
+
+	private static String readString(DataInputStream in) throws IOException{
+		int len = in.readInt();
+		if(len < 0){
+			return null;
+		}
+		byte[] b = new byte[len];
+		in.readFully( b );
+		return new String( b, StandardCharsets.UTF_8 );
+	}
+
+	private static void writeStrings(DataOutputStream out, String[] s) throws IOException{
+		out.writeInt( s == null ? -1 : s.length );
+		for(int i=0;s != null && i<s.length;i++){
+			writeString( out, s[i] );
+		}
+	}
+
+	private static String[] readStrings(DataInputStream in) throws IOException{
+		int n = in.readInt();
+		if(n < 0){
+			return null;
+		}
+		String[] s = new String[n];
+		for(int i=0;i<n;i++){
+			s[i] = readString( in );
+		}
+		return s;
+	}
+
+	/**
+	 * Returns the number of bytes of the UTF-8 encoding of the given characters.
+	 * @param sb the characters
+	 * @return the number of bytes
+	 */
+	static long getUTF8Length(CharSequence sb){
+		long len = 0;
+		int n = sb.length();
+		for(int i=0;i<n;i++){
+			char c = sb.charAt( i );
+			if(c < 0x80){
+				len++;
+			}else if(c < 0x800){
+				len += 2;
+			}else if(Character.isHighSurrogate( c ) && i+1 < n && Character.isLowSurrogate( sb.charAt( i+1 ) )){
+				len += 4;
+				i++;
+			}else if(Character.isSurrogate( c )){
+				//malformed, replaced by '?'
+				len++;
+			}else{
+				len += 3;
+			}
+		}
+		return len;
+	}
+
+	/**
+	 * {@link InputStream} that decompresses the chunks of a serialized representation one after the other.
+	 * Each chunk is only read from the workspace file when the previous one has been consumed.
+	 * @author Jan Grau
+	 *
+	 */
+	private static class ChunkInputStream extends InputStream{
+
+		private Source source;
+		private Blob[] blobs;
+		private int next;
+		private InputStream current;
+
+		private ChunkInputStream(Source source, Blob[] blobs){
+			this.source = source;
+			this.blobs = blobs;
+		}
+
+		private boolean advance() throws IOException{
+			if(current == null){
+				if(next >= blobs.length){
+					return false;
+				}
+				current = new GZIPInputStream( new ByteArrayInputStream( source.read( blobs[next++] ) ), BUFFER );
+			}
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read( b, 0, 1 ) < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read( byte[] b, int off, int len ) throws IOException {
+			while(advance()){
+				int read = current.read( b, off, len );
+				if(read > -1){
+					return read;
+				}
+				current = null;
+			}
+			return -1;
+		}
+
+	}
+
+}
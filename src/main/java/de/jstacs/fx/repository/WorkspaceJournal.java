@@ -0,0 +1,545 @@
+package de.jstacs.fx.repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import de.jstacs.fx.ThreadPools;
+import de.jstacs.io.NonParsableException;
+import de.jstacs.results.Result;
+
+/**
+ * Append-only journal of the modifications of a {@link ResultRepository} that is used for autosaving the workspace.
+ * Instead of re-writing the complete workspace after each addition or removal of a {@link Result}, each modification is appended
+ * to the journal as a self-contained record. The snapshot of the workspace (i.e., the file in {@link ResultRepository#autodir}) is only
+ * re-written if the journal exceeds {@link ResultRepository#journalThreshold} bytes.
+ *
+ * Journals are organized in generations. Each snapshot stores the generation of the first journal that has not been compacted
+ * into this snapshot, and all journal files of earlier generations are deleted after the snapshot has been written.
+ * Hence, the state of the workspace is always given by the snapshot plus all journals of the stored or later generations,
+ * even if the application is terminated while writing the snapshot.
+ *
+ * Each record carries a CRC32 checksum and is forced to disk before the next one is written, so the journal serves as a write-ahead log
+ * of the workspace. If the application is terminated while writing a record, the incomplete or corrupted tail of the journal is detected
+ * and cut off when the journal is replayed (see {@link #replay(File, int, boolean, ResultRepository, RecoveryReport)}).
+ *
+ * Records are serialized, appended and forced to disk by one background {@link Thread} in the order of the calls of {@link #appendAdded(Result)} and
+ * {@link #appendRemoved(int)}, so modifications of the repository do not wait for disk I/O. Each record is numbered by a sequence number, and
+ * {@link #await(long)} waits until the record of a given sequence number has been forced to disk. Pending records are written before the journal is closed
+ * or the JVM shuts down. If a record could not be written, all subsequent records of the same generation are skipped, as they could not be replayed
+ * consistently, and the failure is reported to the handler of the journal, which should request a new snapshot.
+ * Snapshots are written by the {@link AutosaveWriter}.
+ *
+ * @author Jan Grau
+ *
+ */
+class WorkspaceJournal {
+
+	private static final int MAGIC = 0x4A53544A;
+	private static final int VERSION = 2;
+
+	private static final byte ADDED = 'a';
+	private static final byte REMOVED = 'r';
+
+	/**
+	 * A modification that has not been written to the journal yet.
+	 * @author Jan Grau
+	 *
+	 */
+	private static class Record{
+
+		private long sequence;
+		private int generation;
+		private byte type;
+		//the added Result, which is serialized by the background Thread
+		private Result result;
+		private int index;
+
+		private Record(long sequence, int generation, byte type, Result result, int index){
+			this.sequence = sequence;
+			this.generation = generation;
+			this.type = type;
+			this.result = result;
+			this.index = index;
+		}
+
+	}
+
+	private File snapshot;
+	private volatile int generation;
+	private AtomicLong size;
+	private Consumer<IOException> failed;
+
+	//pending records, which are written one after another by a single task of the pool
+	private ArrayDeque<Record> records;
+	private boolean draining;
+	private ExecutorService appender;
+	//sequence numbers of the latest appended and written (or skipped) record
+	private long appended;
+	private long written;
+	private Thread hook;
+
+	//lock of the journal files
+	private Object files;
+	private int openGeneration;
+	private FileOutputStream file;
+	private DataOutputStream out;
+	//generation whose records are skipped after a failure
+	private int failedGeneration;
+	//generations before are contained in a written snapshot
+	private int discarded;
+
+	/**
+	 * Creates a new journal for the given snapshot file. New records are appended to the latest existing journal file
+	 * of the snapshot or, if no such file exists, to the journal of generation <code>baseGeneration</code>.
+	 * @param snapshot the snapshot file
+	 * @param baseGeneration the generation stored in the snapshot
+	 * @param failed the handler of records that could not be written, which is called by the background {@link Thread}
+	 */
+	WorkspaceJournal(File snapshot, int baseGeneration, Consumer<IOException> failed){
+		this.snapshot = snapshot;
+		int[] gens = getGenerations( snapshot );
+		this.generation = Math.max( baseGeneration, gens.length > 0 ? gens[gens.length-1] : 0 );
+		this.size = new AtomicLong( getJournalFile( snapshot, generation ).length() );
+		this.failed = failed;
+		this.records = new ArrayDeque<>();
+		this.appender = ThreadPools.newPool( "Workspace journal", 1 );
+		this.files = new Object();
+		this.openGeneration = -1;
+		this.failedGeneration = -1;
+		this.hook = new Thread( new Runnable() {
+
+			@Override
+			public void run() {
+				flush();
+			}
+
+		}, "Workspace journal (shutdown)" );
+		Runtime.getRuntime().addShutdownHook( hook );
+	}
+
+	/**
+	 * Returns the snapshot file of this journal.
+	 * @return the snapshot file
+	 */
+	File getSnapshot(){
+		return snapshot;
+	}
+
+	/**
+	 * Returns the number of bytes written to the journal of the current generation.
+	 * @return the size of the journal
+	 */
+	long getSize(){
+		return size.get();
+	}
+
+	/**
+	 * Returns the journal file of the given generation for the given snapshot file.
+	 * @param snapshot the snapshot file
+	 * @param generation the generation
+	 * @return the journal file
+	 */
+	static File getJournalFile(File snapshot, int generation){
+		return new File( snapshot.getAbsoluteFile().getParentFile(), snapshot.getName()+"."+generation+".journal" );
+	}
+
+	/**
+	 * Returns the generations of all existing journal files for the given snapshot file in ascending order.
+	 * @param snapshot the snapshot file
+	 * @return the generations
+	 */
+	static int[] getGenerations(File snapshot){
+		File dir = snapshot.getAbsoluteFile().getParentFile();
+		String prefix = snapshot.getName()+".";
+		String[] names = dir == null ? null : dir.list();
+		if(names == null){
+			return new int[0];
+		}
+		int[] gens = new int[names.length];
+		int n = 0;
+		for(int i=0;i<names.length;i++){
+			if(names[i].startsWith( prefix ) && names[i].endsWith( ".journal" )){
+				try{
+					gens[n] = Integer.parseInt( names[i].substring( prefix.length(), names[i].length()-".journal".length() ) );
+					n++;
+				}catch(NumberFormatException e){ }
+			}
+		}
+		gens = Arrays.copyOf( gens, n );
+		Arrays.sort( gens );
+		return gens;
+	}
+
+	/**
+	 * Replays all journals of the given or later generations of the snapshot file to the repository.
+	 * Incomplete or corrupted records at the end of a journal, e.g., due to a crash while writing, are cut off from the journal file.
+	 * As removals are recorded by the index of the removed {@link Result}, they can only be replayed onto the contents of the snapshot.
+	 * If the snapshot has been lost, removals are ignored, as they might otherwise remove other {@link Result}s than originally.
+	 * @param snapshot the snapshot file
+	 * @param fromGeneration the generation stored in the snapshot
+	 * @param snapshotLost if the snapshot could not be read, i.e., the journals are replayed onto an empty repository instead of the contents of the snapshot
+	 * @param repository the repository
+	 * @param report the report of the recovery, which receives all replayed records and repairs
+	 * @return the number of replayed records
+	 * @throws IOException if a journal could not be read or repaired
+	 * @throws NonParsableException if a {@link Result} could not be restored from a journal
+	 */
+	static int replay(File snapshot, int fromGeneration, boolean snapshotLost, ResultRepository repository, RecoveryReport report) throws IOException, NonParsableException{
+		int[] gens = getGenerations( snapshot );
+		int n = 0;
+		for(int i=0;i<gens.length;i++){
+			if(gens[i] < fromGeneration){
+				continue;
+			}
+			File f = getJournalFile( snapshot, gens[i] );
+			long[] valid = new long[1];
+			n += replay( f, snapshotLost, repository, report, valid );
+			long length = f.length();
+			if(length > valid[0]){
+				RandomAccessFile raf = new RandomAccessFile( f, "rw" );
+				try{
+					raf.setLength( valid[0] );
+					raf.getFD().sync();
+				}finally{
+					raf.close();
+				}
+				report.tornJournal( length - valid[0] );
+			}
+		}
+		return n;
+	}
+
+	private static int replay(File f, boolean snapshotLost, ResultRepository repository, RecoveryReport report, long[] valid) throws IOException, NonParsableException{
+		long length = f.length();
+		valid[0] = 0;
+		if(length < 8){
+			return 0;
+		}
+		int n = 0;
+		DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( f ) ) );
+		try{
+			if(in.readInt() != MAGIC || in.readInt() != VERSION){
+				throw new IOException( "Not a workspace journal: "+f );
+			}
+			valid[0] = 8;
+			CRC32 crc = new CRC32();
+			int type;
+			while( (type = in.read()) > -1 ){
+				byte[] record;
+				long size;
+				if(type == ADDED || type == REMOVED){
+					int len = in.readInt();
+					long checksum = in.readInt() & 0xFFFFFFFFL;
+					record = read( in, len, length-valid[0]-9 );
+					if(record != null){
+						crc.reset();
+						crc.update( type );
+						crc.update( record );
+						if(crc.getValue() != checksum){
+							record = null;
+						}
+					}
+					size = 9 + (record == null ? 0 : record.length);
+				}else{
+					record = null;
+					size = 0;
+				}
+				if(record == null){
+					//corrupted record
+					return n;
+				}
+				if(type == ADDED){
+					repository.add( WorkspaceCodec.fromRecord( record ), false );
+				}else{
+					int index = ByteBuffer.wrap( record ).getInt();
+					if(snapshotLost){
+						report.ignoredRemoval();
+					}else if(index < 0 || index >= repository.getResults().size()){
+						report.skipped();
+					}else{
+						repository.removeAt( index );
+					}
+				}
+				valid[0] += size;
+				report.replayed();
+				n++;
+			}
+		}catch(EOFException e){
+			//incomplete last record
+		}finally{
+			in.close();
+		}
+		return n;
+	}
+
+	private static byte[] read(DataInputStream in, int len, long remaining) throws IOException{
+		if(len < 0 || len > remaining){
+			return null;
+		}
+		byte[] record = new byte[len];
+		in.readFully( record );
+		return record;
+	}
+
+	private DataOutputStream getStream(int gen) throws IOException{
+		if(out == null || openGeneration != gen){
+			if(out != null){
+				out.close();
+			}
+			File f = getJournalFile( snapshot, gen );
+			boolean exists = f.length() > 0;
+			file = new FileOutputStream( f, true );
+			out = new DataOutputStream( new BufferedOutputStream( file ) );
+			openGeneration = gen;
+			if(!exists){
+				out.writeInt( MAGIC );
+				out.writeInt( VERSION );
+				out.flush();
+				file.getChannel().force( false );
+				AutosaveWriter.sync( f.getAbsoluteFile().getParentFile() );
+			}
+		}
+		return out;
+	}
+
+	private void append(int gen, byte type, byte[] record) throws IOException{
+		CRC32 crc = new CRC32();
+		crc.update( type );
+		crc.update( record );
+		DataOutputStream out = getStream( gen );
+		long length = file.getChannel().size();
+		try{
+			out.writeByte( type );
+			out.writeInt( record.length );
+			out.writeInt( (int)crc.getValue() );
+			out.write( record );
+			out.flush();
+			file.getChannel().force( false );
+		}catch(IOException e){
+			//cut off the incomplete record, which would hide all subsequent records on replay
+			FileOutputStream temp = file;
+			this.out = null;
+			this.file = null;
+			try{
+				temp.getChannel().truncate( length );
+				temp.close();
+			}catch(IOException ex){
+				e.addSuppressed( ex );
+			}
+			throw e;
+		}
+		if(gen == generation){
+			size.addAndGet( record.length + 9 );
+		}
+	}
+
+	/**
+	 * Writes the given record, unless its generation is already contained in a written snapshot or a previous record
+	 * of its generation could not be written.
+	 * @param record the record
+	 * @throws IOException if the record could not be written
+	 */
+	private void write(Record record) throws IOException{
+		Result result = record.result;
+		record.result = null;
+		synchronized(files){
+			if(record.generation < discarded || record.generation == failedGeneration){
+				return;
+			}
+		}
+		//serialize without holding any lock
+		byte[] bytes = record.type == ADDED ? WorkspaceCodec.toRecord( result ) : ByteBuffer.allocate( 4 ).putInt( record.index ).array();
+		synchronized(files){
+			if(record.generation < discarded){
+				return;
+			}
+			try{
+				append( record.generation, record.type, bytes );
+			}catch(IOException e){
+				failedGeneration = record.generation;
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Appends a record to the pending records and starts the background {@link Thread} if necessary.
+	 * Must be called while holding the lock of this journal.
+	 * @param record the record
+	 * @return the sequence number of the record
+	 */
+	private long schedule(Record record){
+		records.add( record );
+		appended = record.sequence;
+		if(!draining){
+			draining = true;
+			appender.execute( new Runnable() {
+
+				@Override
+				public void run() {
+					drain();
+				}
+
+			} );
+		}
+		return record.sequence;
+	}
+
+	private void drain(){
+		while(true){
+			Record next;
+			synchronized(this){
+				next = records.poll();
+				if(next == null){
+					draining = false;
+					return;
+				}
+			}
+			IOException failure = null;
+			try{
+				write( next );
+			}catch(IOException e){
+				failure = e;
+			}catch(RuntimeException e){
+				failure = new IOException( e );
+			}
+			synchronized(this){
+				written = next.sequence;
+				notifyAll();
+			}
+			if(failure != null){
+				failed.accept( failure );
+			}
+		}
+	}
+
+	/**
+	 * Appends the addition of a {@link Result} to the journal. The {@link Result} is serialized and the record is forced to disk in the background.
+	 * @param result the added {@link Result}
+	 * @return the sequence number of the record, see {@link #await(long)}
+	 */
+	synchronized long appendAdded(Result result){
+		return schedule( new Record( appended+1, generation, ADDED, result, -1 ) );
+	}
+
+	/**
+	 * Appends the removal of the top-level {@link Result} at the given index of the repository to the journal. The record is forced to disk in the background.
+	 * @param index the index of the removed {@link Result}
+	 * @return the sequence number of the record, see {@link #await(long)}
+	 */
+	synchronized long appendRemoved(int index){
+		return schedule( new Record( appended+1, generation, REMOVED, null, index ) );
+	}
+
+	/**
+	 * Waits until the record of the given sequence number and all previous records have been forced to disk or skipped after a failure,
+	 * which has been reported to the handler of this journal.
+	 * @param sequence the sequence number as returned by {@link #appendAdded(Result)} or {@link #appendRemoved(int)}
+	 * @throws InterruptedException if the current {@link Thread} has been interrupted while waiting
+	 */
+	synchronized void await(long sequence) throws InterruptedException{
+		while(written < sequence){
+			wait();
+		}
+	}
+
+	/**
+	 * Waits (at most one minute) until all records appended so far have been forced to disk.
+	 */
+	void flush(){
+		long sequence;
+		synchronized(this){
+			sequence = appended;
+		}
+		long end = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis( 1 );
+		try{
+			synchronized(this){
+				while(written < sequence && System.currentTimeMillis() < end){
+					wait( end - System.currentTimeMillis() );
+				}
+				if(written < sequence){
+					System.err.println( "Timeout while writing the workspace journal of "+snapshot );
+				}
+			}
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Starts a new generation of the journal. All records appended after this call are
+	 * written to the journal of the new generation.
+	 * Must be called in the same critical section as obtaining the contents of the snapshot.
+	 * @return the new generation
+	 */
+	synchronized int rotate(){
+		generation++;
+		size.set( 0 );
+		return generation;
+	}
+
+	/**
+	 * Deletes all journals that are older than the given generation, i.e., whose records are contained in a snapshot that has
+	 * been written successfully. Pending records of these generations are skipped.
+	 * @param gen the generation as obtained from {@link #rotate()}
+	 */
+	void discardBefore(int gen){
+		synchronized(files){
+			discarded = Math.max( discarded, gen );
+			try{
+				if(out != null && openGeneration < gen){
+					out.close();
+					out = null;
+					file = null;
+				}
+			}catch(IOException e){
+				e.printStackTrace();
+			}
+			int[] gens = getGenerations( snapshot );
+			for(int i=0;i<gens.length && gens[i] < gen;i++){
+				getJournalFile( snapshot, gens[i] ).delete();
+			}
+		}
+	}
+
+	/**
+	 * Closes this journal after all pending records have been written.
+	 */
+	void close(){
+		flush();
+		appender.shutdown();
+		try{
+			Runtime.getRuntime().removeShutdownHook( hook );
+		}catch(IllegalStateException e){
+			//shutting down
+		}
+		synchronized(files){
+			try{
+				if(out != null){
+					out.close();
+					out = null;
+					file = null;
+				}
+			}catch(IOException e){
+				e.printStackTrace();
+			}
+		}
+	}
+
+}
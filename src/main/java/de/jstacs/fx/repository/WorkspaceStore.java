@@ -0,0 +1,197 @@
+package de.jstacs.fx.repository;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import de.jstacs.io.NonParsableException;
+import de.jstacs.results.Result;
+
+/**
+ * Storage backend of the automatically saved workspace of the {@link ResultRepository}.
+ * The {@link ResultRepository} passes all modifications of its contents to the store of the current {@link ResultRepository#autodir}, which
+ * may persist them incrementally or as complete snapshots. All methods except {@link #restore(RecoveryReport)} are called
+ * while holding the lock of the {@link ResultRepository} in the order of the modifications, so stores should perform expensive
+ * operations in the background.
+ *
+ * Stores are created by a {@link Factory}, which is selected by {@link ResultRepository#storage}. Available implementations are
+ * {@link #MEMORY} (nothing is stored), {@link #DIRECTORY} (one file per {@link Result}), and {@link #SINGLE_FILE} (one workspace file with
+ * random access and a journal of modifications, the default).
+ *
+ * @author Jan Grau
+ *
+ */
+public interface WorkspaceStore {
+
+	/**
+	 * Factory of {@link WorkspaceStore}s.
+	 * @author Jan Grau
+	 *
+	 */
+	public static interface Factory{
+
+		/**
+		 * Creates a new store for the given repository at the given location.
+		 * @param repository the repository
+		 * @param location the location, e.g., a file or directory
+		 * @return the store
+		 */
+		public WorkspaceStore create(ResultRepository repository, File location);
+
+		/**
+		 * Returns the name of the stores created by this factory, see {@link WorkspaceStore#forName(String)}.
+		 * @return the name
+		 */
+		public String getName();
+
+	}
+
+	/**
+	 * Factory of stores that keep the workspace in memory only.
+	 */
+	public static final Factory MEMORY = new Factory() {
+
+		@Override
+		public WorkspaceStore create( ResultRepository repository, File location ) {
+			return new MemoryStore( location );
+		}
+
+		@Override
+		public String getName() {
+			return "memory";
+		}
+
+	};
+
+	/**
+	 * Factory of stores that write one file per {@link Result} to a directory, see {@link DirectoryStore}.
+	 */
+	public static final Factory DIRECTORY = new Factory() {
+
+		@Override
+		public WorkspaceStore create( ResultRepository repository, File location ) {
+			return new DirectoryStore( repository, location );
+		}
+
+		@Override
+		public String getName() {
+			return "directory";
+		}
+
+	};
+
+	/**
+	 * Factory of stores that write all {@link Result}s to one workspace file with a journal of modifications, see {@link SingleFileStore}.
+	 */
+	public static final Factory SINGLE_FILE = new Factory() {
+
+		@Override
+		public WorkspaceStore create( ResultRepository repository, File location ) {
+			return new SingleFileStore( repository, location );
+		}
+
+		@Override
+		public String getName() {
+			return "file";
+		}
+
+	};
+
+	/**
+	 * Returns the factory of the built-in stores with the given name, i.e., <code>memory</code>, <code>directory</code>, or <code>file</code>.
+	 * @param name the name
+	 * @return the factory
+	 * @throws IllegalArgumentException if no store of that name exists
+	 */
+	public static Factory forName(String name) throws IllegalArgumentException{
+		Factory[] all = {MEMORY, DIRECTORY, SINGLE_FILE};
+		for(int i=0;i<all.length;i++){
+			if(all[i].getName().equalsIgnoreCase( name.trim() )){
+				return all[i];
+			}
+		}
+		throw new IllegalArgumentException( "Unknown workspace store: "+name );
+	}
+
+	/**
+	 * Returns the location of this store.
+	 * @return the location
+	 */
+	public File getLocation();
+
+	/**
+	 * Restores the stored {@link Result}s by adding them to the repository without autosaving (see {@link ResultRepository#addAll(List, boolean)}).
+	 * Called once on start-up before any other method, where modifications of the repository are not passed to this store.
+	 * @param report the report of all damage detected and repaired
+	 * @throws IOException if the stored {@link Result}s could not be read
+	 * @throws NonParsableException if a stored {@link Result} could not be parsed
+	 */
+	public void restore(RecoveryReport report) throws IOException, NonParsableException;
+
+	/**
+	 * Notifies this store that {@link Result}s have been appended to the repository.
+	 * @param results the added {@link Result}s
+	 * @param store if the addition completes a series of additions, see {@link ResultRepository#add(Result, boolean)}
+	 */
+	public void added(List<? extends Result> results, boolean store);
+
+	/**
+	 * Notifies this store that top-level {@link Result}s have been removed from the repository.
+	 * @param indexes the indexes of the {@link Result}s at the time of their removal, in the order of removal
+	 * @param results the removed {@link Result}s
+	 */
+	public void removed(int[] indexes, List<? extends Result> results);
+
+	/**
+	 * Notifies this store that a top-level {@link Result} or a {@link Result} nested therein has been modified, e.g., renamed.
+	 * @param result the top-level {@link Result}
+	 */
+	public void modified(Result result);
+
+	/**
+	 * Notifies this store that a top-level {@link Result} has been replaced by another {@link Result} with identical contents,
+	 * e.g., by a {@link LazyResult} after it has been spilled to disk.
+	 * Subsequent notifications refer to the replacement.
+	 * @param old the replaced {@link Result}
+	 * @param replacement the replacement
+	 */
+	public void replaced(Result old, Result replacement);
+
+	/**
+	 * Returns the file the provenance and pins of the stored {@link Result}s (see {@link ResultRepository#add(Result, List)}) are written to,
+	 * or <code>null</code> if provenance is not stored.
+	 * @return the file
+	 */
+	public File getProvenanceFile();
+
+	/**
+	 * Returns the size in bytes of the stored serialized representation of a top-level {@link Result}, or <code>-1</code> if the {@link Result}
+	 * has not been stored (yet) or its size is unknown.
+	 * @param result the {@link Result}
+	 * @return the size
+	 */
+	public long getStoredSize(Result result);
+
+	/**
+	 * Requests storing the complete current contents of the repository.
+	 */
+	public void store();
+
+	/**
+	 * Returns the number of times storing the complete workspace has been requested.
+	 * @return the number of requests
+	 */
+	public long getNumberOfRequestedSaves();
+
+	/**
+	 * Returns the number of times the complete workspace has actually been stored.
+	 * @return the number of performed saves
+	 */
+	public long getNumberOfPerformedSaves();
+
+	/**
+	 * Closes this store after all pending modifications have been stored.
+	 */
+	public void close();
+
+}
@@ -0,0 +1,82 @@
+package de.jstacs.fx;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for splitting the cores among jobs by the {@link CpuArbiter}.
+ *
+ * @author Jan Grau
+ *
+ */
+class CpuArbiterTest {
+
+	private Object a = new Object();
+	private Object b = new Object();
+	private Object c = new Object();
+
+	@Test
+	void jobsWithoutBudgetShareTheCoresEqually(){
+		CpuArbiter arbiter = new CpuArbiter( 8 );
+		assertEquals( 4, arbiter.acquire( a, 0, 2 ) );
+		assertEquals( 4, arbiter.acquire( b, 0, 2 ) );
+		assertEquals( 4, arbiter.getThreads( a ) );
+		assertEquals( 4, arbiter.getThreads( b ) );
+	}
+
+	@Test
+	void budgetsLeaveOneCoreForEachJobStartedLater(){
+		CpuArbiter arbiter = new CpuArbiter( 8 );
+		//two more jobs are expected to start
+		assertEquals( 6, arbiter.acquire( a, 8, 3 ) );
+		assertEquals( 1, arbiter.acquire( b, 6, 3 ) );
+		assertEquals( 1, arbiter.acquire( c, 0, 3 ) );
+	}
+
+	@Test
+	void budgetsBelowTheFreeCoresAreKept(){
+		CpuArbiter arbiter = new CpuArbiter( 8 );
+		assertEquals( 2, arbiter.acquire( a, 2, 2 ) );
+		assertEquals( 3, arbiter.acquire( b, 3, 2 ) );
+	}
+
+	@Test
+	void jobsGetAtLeastOneThread(){
+		CpuArbiter arbiter = new CpuArbiter( 8 );
+		assertEquals( 8, arbiter.acquire( a, 16, 1 ) );
+		assertEquals( 1, arbiter.acquire( b, 4, 1 ) );
+		assertEquals( 1, arbiter.acquire( c, 0, 1 ) );
+	}
+
+	@Test
+	void releasedCoresAreAssignedToJobsStartedLater(){
+		CpuArbiter arbiter = new CpuArbiter( 8 );
+		arbiter.acquire( a, 0, 2 );
+		arbiter.acquire( b, 0, 2 );
+		arbiter.release( a );
+		assertEquals( 0, arbiter.getThreads( a ) );
+		assertEquals( 4, arbiter.acquire( c, 0, 1 ) );
+
+		arbiter.release( b );
+		//releasing twice has no effect
+		arbiter.release( b );
+		assertEquals( 8, arbiter.acquire( a, 0, 1 )+arbiter.getThreads( c ) );
+	}
+
+	@Test
+	void acquiringAgainReplacesThePreviousAssignment(){
+		CpuArbiter arbiter = new CpuArbiter( 4 );
+		assertEquals( 4, arbiter.acquire( a, 0, 1 ) );
+		assertEquals( 2, arbiter.acquire( a, 2, 1 ) );
+		assertEquals( 2, arbiter.acquire( b, 0, 1 ) );
+	}
+
+	@Test
+	void thereIsAlwaysOneCore(){
+		CpuArbiter arbiter = new CpuArbiter( 0 );
+		assertEquals( 1, arbiter.getCores() );
+		assertEquals( 1, arbiter.acquire( a, 0, 4 ) );
+	}
+
+}
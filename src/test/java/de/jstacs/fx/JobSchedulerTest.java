@@ -0,0 +1,158 @@
+package de.jstacs.fx;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.jstacs.fx.JobScheduler.Priority;
+import de.jstacs.results.ResultSetResult;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+
+/**
+ * Tests for ordering the enqueued jobs of a {@link JobScheduler} by priority and for jobs depending on other jobs.
+ * As the tests run without the JavaFX application thread, all jobs depend on a job that is never started, so they are waiting
+ * instead of being started.
+ *
+ * @author Jan Grau
+ *
+ */
+class JobSchedulerTest {
+
+	private ObservableList<Task<ResultSetResult>> enqueued;
+	private JobScheduler scheduler;
+	private Job blocker;
+
+	private static class Job extends Task<ResultSetResult>{
+
+		private String name;
+
+		private Job(String name){
+			this.name = name;
+		}
+
+		@Override
+		protected ResultSetResult call() throws Exception {
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+
+	}
+
+	@BeforeEach
+	void createScheduler(){
+		enqueued = FXCollections.observableArrayList();
+		scheduler = new JobScheduler( enqueued );
+		blocker = new Job( "blocker" );
+	}
+
+	private Job enqueue(String name, Priority priority){
+		Job job = new Job( name );
+		scheduler.enqueue( job, priority, Arrays.<Task<ResultSetResult>>asList( blocker ) );
+		return job;
+	}
+
+	private String order(){
+		return enqueued.toString();
+	}
+
+	@Test
+	void waitingJobsAreOrderedByPriority(){
+		enqueue( "batch", Priority.BATCH );
+		enqueue( "normal1", Priority.NORMAL );
+		enqueue( "interactive1", Priority.INTERACTIVE );
+		enqueue( "normal2", Priority.NORMAL );
+		enqueue( "interactive2", Priority.INTERACTIVE );
+
+		assertEquals( "[interactive1, interactive2, normal1, normal2, batch]", order() );
+		assertEquals( 5, scheduler.getNumberOfWaiting() );
+		assertTrue( scheduler.getRunning().isEmpty() );
+	}
+
+	@Test
+	void promotedJobsMoveBeforeJobsOfLowerPriority(){
+		enqueue( "interactive", Priority.INTERACTIVE );
+		enqueue( "normal", Priority.NORMAL );
+		Job batch = enqueue( "batch", Priority.BATCH );
+
+		assertTrue( scheduler.promote( batch ) );
+		assertEquals( Priority.NORMAL, scheduler.getPriority( batch ) );
+		assertEquals( "[interactive, normal, batch]", order() );
+
+		assertTrue( scheduler.promote( batch ) );
+		assertEquals( Priority.INTERACTIVE, scheduler.getPriority( batch ) );
+		assertEquals( "[interactive, batch, normal]", order() );
+
+		//already of highest priority, but still moved before all jobs of lower priority
+		assertTrue( scheduler.promote( batch ) );
+		assertEquals( Priority.INTERACTIVE, scheduler.getPriority( batch ) );
+		assertEquals( "[interactive, batch, normal]", order() );
+	}
+
+	@Test
+	void movedJobsSwapWithTheirNeighbours(){
+		Job first = enqueue( "first", Priority.NORMAL );
+		enqueue( "second", Priority.BATCH );
+		Job third = enqueue( "third", Priority.BATCH );
+
+		assertFalse( scheduler.moveUp( first ) );
+		assertFalse( scheduler.moveDown( third ) );
+
+		assertTrue( scheduler.moveDown( first ) );
+		assertEquals( "[second, first, third]", order() );
+		//moving does not change the priority
+		assertEquals( Priority.NORMAL, scheduler.getPriority( first ) );
+		assertTrue( scheduler.moveUp( third ) );
+		assertTrue( scheduler.moveUp( third ) );
+		assertEquals( "[third, second, first]", order() );
+	}
+
+	@Test
+	void jobsThatAreNotEnqueuedAreNotReordered(){
+		enqueue( "enqueued", Priority.NORMAL );
+		Job other = new Job( "other" );
+
+		assertFalse( scheduler.isWaiting( other ) );
+		assertFalse( scheduler.promote( other ) );
+		assertFalse( scheduler.moveUp( other ) );
+		assertEquals( "[enqueued]", order() );
+	}
+
+	@Test
+	void jobsWaitForTheJobsTheyDependOn(){
+		Job dependent = enqueue( "dependent", Priority.INTERACTIVE );
+		Job other = new Job( "other" );
+		Job second = new Job( "second" );
+		scheduler.enqueue( second, Priority.NORMAL, Arrays.<Task<ResultSetResult>>asList( dependent, other ) );
+
+		assertTrue( scheduler.isBlocked( dependent ) );
+		assertTrue( scheduler.isBlocked( second ) );
+		assertFalse( scheduler.isBlocked( other ) );
+		//blocked jobs are still waiting and may be reordered
+		assertTrue( scheduler.isWaiting( second ) );
+		assertTrue( scheduler.getRunning().isEmpty() );
+		assertEquals( 2, scheduler.getNumberOfWaiting() );
+		assertEquals( "[dependent, second]", order() );
+	}
+
+	@Test
+	void dependenciesAreDroppedWithTheJob(){
+		Job dependent = enqueue( "dependent", Priority.NORMAL );
+		enqueued.remove( dependent );
+
+		assertFalse( scheduler.isBlocked( dependent ) );
+		assertFalse( scheduler.isWaiting( dependent ) );
+		assertEquals( 0, scheduler.getNumberOfWaiting() );
+	}
+
+}
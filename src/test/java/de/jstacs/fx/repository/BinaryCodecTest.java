@@ -0,0 +1,134 @@
+package de.jstacs.fx.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.jstacs.DataType;
+import de.jstacs.results.CategoricalResult;
+import de.jstacs.results.ListResult;
+import de.jstacs.results.NumericalResult;
+import de.jstacs.results.Result;
+import de.jstacs.results.ResultSet;
+import de.jstacs.results.ResultSetResult;
+
+/**
+ * Tests for the binary representation of {@link Result}s with mostly numerical contents by {@link BinaryCodec}.
+ *
+ * @author Jan Grau
+ *
+ */
+class BinaryCodecTest {
+
+	@TempDir
+	File dir;
+
+	@AfterEach
+	void resetCodec(){
+		ResultRepository.binaryCodec.set( false );
+	}
+
+	private static Result roundTrip(Result result) throws Exception{
+		return BinaryCodec.decode( new ByteArrayInputStream( BinaryCodec.encode( result ) ) );
+	}
+
+	private static void assertSameResult(Result expected, Result actual){
+		assertEquals( expected.getClass(), actual.getClass() );
+		assertEquals( expected.getName(), actual.getName() );
+		assertEquals( expected.getComment(), actual.getComment() );
+		assertEquals( expected.getDatatype(), actual.getDatatype() );
+		if(expected instanceof ListResult){
+			ResultSet[] e = ((ListResult)expected).getRawResult();
+			ResultSet[] a = ((ListResult)actual).getRawResult();
+			assertEquals( e.length, a.length );
+			for(int i=0;i<e.length;i++){
+				assertSameResults( e[i].getResults(), a[i].getResults() );
+			}
+		}else if(expected instanceof ResultSetResult){
+			assertSameResults( ((ResultSetResult)expected).getRawResult()[0].getResults(), ((ResultSetResult)actual).getRawResult()[0].getResults() );
+		}else{
+			assertEquals( expected.getValue(), actual.getValue() );
+		}
+	}
+
+	private static void assertSameResults(Result[] expected, Result[] actual){
+		assertEquals( expected.length, actual.length );
+		for(int i=0;i<expected.length;i++){
+			assertSameResult( expected[i], actual[i] );
+		}
+	}
+
+	private static ListResult table(int rows){
+		ResultSet[] sets = new ResultSet[rows];
+		for(int i=0;i<rows;i++){
+			sets[i] = new ResultSet( new Result[]{
+					new NumericalResult( "score", "the score", Math.PI*i ),
+					new NumericalResult( "index", null, -i ),
+					new NumericalResult( "offset", "", 1L << (40+i%20) ),
+					new CategoricalResult( "id", "", "seq"+i )
+			} );
+		}
+		return new ListResult( "table", "comment", null, sets );
+	}
+
+	@Test
+	void simpleResultsKeepTheirTypesAndValues() throws Exception{
+		Result[] results = {
+				new NumericalResult( "double", "comment", 0.1 ),
+				new NumericalResult( "nan", "", Double.NaN ),
+				new NumericalResult( "int", null, Integer.MIN_VALUE ),
+				new NumericalResult( "long", "comment", Long.MAX_VALUE ),
+				new CategoricalResult( "string", "comment", "äöü" )
+		};
+		for(int i=0;i<results.length;i++){
+			assertTrue( BinaryCodec.isSupported( results[i] ) );
+			assertSameResult( results[i], roundTrip( results[i] ) );
+		}
+		assertEquals( DataType.INT, roundTrip( results[2] ).getDatatype() );
+	}
+
+	@Test
+	void tablesAreRestoredByColumns() throws Exception{
+		ListResult table = table( 1000 );
+		assertTrue( BinaryCodec.isSupported( table ) );
+		assertSameResult( table, roundTrip( table ) );
+	}
+
+	@Test
+	void irregularTablesAndNestedSetsAreRestored() throws Exception{
+		ListResult irregular = new ListResult( "irregular", null, null,
+				new ResultSet( new Result[]{new NumericalResult( "a", "", 1.0 )} ),
+				new ResultSet( new Result[]{new CategoricalResult( "a", "", "x" ), new NumericalResult( "b", "", 2 )} ) );
+		ResultSetResult set = new ResultSetResult( "set", "comment", null, new ResultSet( new Result[]{table( 3 ), irregular, new NumericalResult( "n", "", 3L )} ) );
+
+		assertSameResult( irregular, roundTrip( irregular ) );
+		assertSameResult( set, roundTrip( set ) );
+	}
+
+	@Test
+	void otherResultsAreNotSupported(){
+		assertFalse( BinaryCodec.isSupported( WorkspaceCodecTest.text( "text", "ACGT" ) ) );
+	}
+
+	@Test
+	void workspacesMayMixBinaryAndXmlRecords() throws Exception{
+		ResultRepository.binaryCodec.set( true );
+		ListResult table = table( 100 );
+		File f = new File( dir, "workspace.jst" );
+		WorkspaceCodec.write( f, new Result[]{table, WorkspaceCodecTest.text( "text", "ACGT" )}, 0 );
+
+		ArrayList<Result> read = new ArrayList<>();
+		WorkspaceCodec.read( f, read::add );
+		assertSameResult( table, read.get( 0 ) );
+		WorkspaceCodecTest.assertSameText( WorkspaceCodecTest.text( "text", "ACGT" ), read.get( 1 ) );
+	}
+
+}
@@ -0,0 +1,110 @@
+package de.jstacs.fx.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.jstacs.fx.repository.BlobStore.Blob;
+import de.jstacs.results.Result;
+import de.jstacs.results.TextResult;
+
+/**
+ * Tests for the deduplication of identical contents by the {@link BlobStore} of workspace files.
+ *
+ * @author Jan Grau
+ *
+ */
+class BlobStoreTest {
+
+	@TempDir
+	File dir;
+
+	private static byte[] random(int length, long seed){
+		byte[] data = new byte[length];
+		new Random( seed ).nextBytes( data );
+		return data;
+	}
+
+	private static String sequence(int length, long seed){
+		Random r = new Random( seed );
+		StringBuilder sb = new StringBuilder( length );
+		for(int i=0;i<length;i++){
+			sb.append( "ACGT".charAt( r.nextInt( 4 ) ) );
+			if(i % 60 == 59){
+				sb.append( '\n' );
+			}
+		}
+		return sb.toString();
+	}
+
+	@Test
+	void identicalContentsAreStoredOnce() throws Exception{
+		byte[] data = random( 300000, 1 );
+
+		ByteArrayOutputStream once = new ByteArrayOutputStream();
+		BlobStore single = new BlobStore( new DataOutputStream( once ), 0, Deflater.BEST_SPEED );
+		Blob[] expected = single.put( new ByteArrayInputStream( data ) );
+		single.finish();
+
+		ByteArrayOutputStream twice = new ByteArrayOutputStream();
+		BlobStore store = new BlobStore( new DataOutputStream( twice ), 0, Deflater.BEST_SPEED );
+		Blob[] first = store.put( new ByteArrayInputStream( data ) );
+		Blob[] second = store.put( new ByteArrayInputStream( data ) );
+		store.finish();
+
+		assertTrue( first.length > 1 );
+		assertEquals( expected.length, first.length );
+		assertEquals( first.length, second.length );
+		for(int i=0;i<first.length;i++){
+			assertSame( first[i], second[i] );
+		}
+		assertEquals( first.length, store.getBlobs().size() );
+		assertEquals( once.size(), twice.size() );
+		assertEquals( single.getPosition(), store.getPosition() );
+	}
+
+	@Test
+	void contentsAtDifferentOffsetsShareChunks() throws Exception{
+		byte[] data = random( 500000, 2 );
+		byte[] prefixed = new byte[data.length+1000];
+		System.arraycopy( random( 1000, 3 ), 0, prefixed, 0, 1000 );
+		System.arraycopy( data, 0, prefixed, 1000, data.length );
+
+		BlobStore store = new BlobStore( new DataOutputStream( new ByteArrayOutputStream() ), 0, Deflater.BEST_SPEED );
+		Blob[] first = store.put( new ByteArrayInputStream( data ) );
+		Blob[] second = store.put( new ByteArrayInputStream( prefixed ) );
+		store.finish();
+
+		HashSet<Blob> shared = new HashSet<>( Arrays.asList( first ) );
+		shared.retainAll( Arrays.asList( second ) );
+		//only the chunks up to the first boundary after the prefix differ
+		assertTrue( shared.size() >= first.length-2, shared.size()+" of "+first.length+" chunks shared" );
+	}
+
+	@Test
+	void workspacesStoreIdenticalFileContentsOnce() throws Exception{
+		String content = sequence( 1000000, 4 );
+		TextResult loaded = WorkspaceCodecTest.text( "loaded", content );
+		TextResult copy = WorkspaceCodecTest.text( "copy", content );
+
+		File one = new File( dir, "one.jst" );
+		WorkspaceCodec.write( one, new Result[]{loaded}, 0 );
+		File two = new File( dir, "two.jst" );
+		WorkspaceCodec.write( two, new Result[]{loaded, copy}, 0 );
+
+		assertTrue( two.length() < one.length()*11/10, two.length()+" bytes for two copies, "+one.length()+" bytes for one" );
+	}
+
+}
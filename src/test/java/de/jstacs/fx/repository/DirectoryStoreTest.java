@@ -0,0 +1,117 @@
+package de.jstacs.fx.repository;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.jstacs.results.Result;
+
+/**
+ * Tests for storing the {@link Result}s of a {@link ResultRepository} in a {@link DirectoryStore} and restoring them,
+ * including the recovery from a lost index.
+ *
+ * @author Jan Grau
+ *
+ */
+class DirectoryStoreTest {
+
+	@TempDir
+	File dir;
+
+	/**
+	 * Stores the results with the given names and removes the second result afterwards.
+	 */
+	private File store(String... names){
+		File directory = new File( dir, "workspace" );
+		ResultRepository repository = new ResultRepository();
+		for(int i=0;i<names.length;i++){
+			repository.add( WorkspaceCodecTest.text( names[i], "content of "+names[i] ), false );
+		}
+		DirectoryStore store = new DirectoryStore( repository, directory );
+		List<Result> results = repository.getResults();
+		store.added( results, true );
+		store.removed( new int[]{1}, Arrays.asList( results.get( 1 ) ) );
+		store.close();
+		return directory;
+	}
+
+	private static String[] restore(File directory, RecoveryReport report) throws Exception{
+		ResultRepository repository = new ResultRepository();
+		DirectoryStore store = new DirectoryStore( repository, directory );
+		store.restore( report );
+		store.close();
+		List<Result> results = repository.getResults();
+		String[] names = new String[results.size()];
+		for(int i=0;i<names.length;i++){
+			names[i] = results.get( i ).getName();
+		}
+		return names;
+	}
+
+	private static TreeSet<String> list(File directory){
+		return new TreeSet<>( Arrays.asList( directory.list() ) );
+	}
+
+	@Test
+	void storedResultsAreRestoredInOrder() throws Exception{
+		File directory = store( "a", "b", "c", "d" );
+		//the file of the removed result is deleted with the index
+		assertEquals( new TreeSet<>( Arrays.asList( "index", "r0.jsr", "r2.jsr", "r3.jsr" ) ), list( directory ) );
+
+		RecoveryReport report = new RecoveryReport();
+		assertArrayEquals( new String[]{"a", "c", "d"}, restore( directory, report ) );
+		assertTrue( report.isClean() );
+	}
+
+	@Test
+	void lostIndexIsRebuiltFromAllFiles() throws Exception{
+		File directory = store( "a", "b", "c" );
+		assertTrue( new File( directory, "index" ).delete() );
+
+		RecoveryReport report = new RecoveryReport();
+		assertArrayEquals( new String[]{"a", "c"}, restore( directory, report ) );
+		assertFalse( report.isClean() );
+		assertTrue( new File( directory, "index" ).exists() );
+
+		report = new RecoveryReport();
+		assertArrayEquals( new String[]{"a", "c"}, restore( directory, report ) );
+		assertTrue( report.isClean() );
+	}
+
+	@Test
+	void uncommittedFilesAreDiscarded() throws Exception{
+		File directory = store( "a", "b", "c" );
+		//a result written but not committed to the index, and a result that was being written
+		FileOutputStream out = new FileOutputStream( new File( directory, "r5.jsr" ) );
+		out.write( WorkspaceCodec.toRecord( WorkspaceCodecTest.text( "uncommitted", "" ) ) );
+		out.close();
+		new FileOutputStream( new File( directory, "r6.jsr.tmp" ) ).close();
+
+		RecoveryReport report = new RecoveryReport();
+		assertArrayEquals( new String[]{"a", "c"}, restore( directory, report ) );
+		assertFalse( report.isClean() );
+		assertFalse( report.isPartial() );
+		assertEquals( new TreeSet<>( Arrays.asList( "index", "r0.jsr", "r2.jsr" ) ), list( directory ) );
+	}
+
+	@Test
+	void filesMissingFromTheIndexAreReportedAsLost() throws Exception{
+		File directory = store( "a", "b", "c" );
+		assertTrue( new File( directory, "r2.jsr" ).delete() );
+
+		RecoveryReport report = new RecoveryReport();
+		assertArrayEquals( new String[]{"a"}, restore( directory, report ) );
+		assertTrue( report.isPartial() );
+	}
+
+}
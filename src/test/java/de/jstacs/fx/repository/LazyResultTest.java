@@ -0,0 +1,110 @@
+package de.jstacs.fx.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.jstacs.results.CategoricalResult;
+import de.jstacs.results.Result;
+import de.jstacs.results.TextResult;
+
+/**
+ * Tests for the {@link LazyResult} placeholders read from the table of contents of a workspace file.
+ *
+ * @author Jan Grau
+ *
+ */
+class LazyResultTest {
+
+	@TempDir
+	File dir;
+
+	private ArrayList<LazyResult> readLazy(File f) throws Exception{
+		final ArrayList<LazyResult> lazy = new ArrayList<>();
+		WorkspaceCodec.readLazy( f, r -> lazy.add( (LazyResult)r ) );
+		return lazy;
+	}
+
+	@Test
+	void placeholdersDescribeResultsWithoutRestoringThem() throws Exception{
+		TextResult text = WorkspaceCodecTest.text( "sequences", "ACGT\nTTTT" );
+		File f = new File( dir, "workspace.jst" );
+		WorkspaceCodec.write( f, new Result[]{text, new CategoricalResult( "category", "", "value" )}, 0 );
+
+		ArrayList<LazyResult> lazy = readLazy( f );
+		assertEquals( 2, lazy.size() );
+		LazyResult first = lazy.get( 0 );
+		assertFalse( first.isResolved() );
+		assertEquals( "sequences", first.getName() );
+		assertEquals( "comment of sequences", first.getComment() );
+		assertTrue( first.isTextResult() );
+		assertEquals( "txt", first.getMime() );
+		assertEquals( "sequences.txt", first.getFilename() );
+		assertEquals( TextResult.class, first.getResultClass() );
+		assertFalse( lazy.get( 1 ).isTextResult() );
+		assertEquals( "value", lazy.get( 1 ).getValueString() );
+	}
+
+	@Test
+	void resolveRestoresTheResultOnce() throws Exception{
+		TextResult text = WorkspaceCodecTest.text( "sequences", "ACGT\nTTTT" );
+		File f = new File( dir, "workspace.jst" );
+		WorkspaceCodec.write( f, new Result[]{text}, 0 );
+
+		LazyResult lazy = readLazy( f ).get( 0 );
+		Result resolved = lazy.resolve();
+		WorkspaceCodecTest.assertSameText( text, resolved );
+		assertTrue( lazy.isResolved() );
+		assertSame( resolved, lazy.resolve() );
+	}
+
+	@Test
+	void loadDoesNotKeepTheResult() throws Exception{
+		TextResult text = WorkspaceCodecTest.text( "sequences", "ACGT\nTTTT" );
+		File f = new File( dir, "workspace.jst" );
+		WorkspaceCodec.write( f, new Result[]{text}, 0 );
+
+		LazyResult lazy = readLazy( f ).get( 0 );
+		WorkspaceCodecTest.assertSameText( text, lazy.load() );
+		assertFalse( lazy.isResolved() );
+	}
+
+	@Test
+	void unresolvedPlaceholdersAreCopiedToNewWorkspaceFiles() throws Exception{
+		TextResult text = WorkspaceCodecTest.text( "sequences", "ACGT\nTTTT" );
+		File f = new File( dir, "workspace.jst" );
+		WorkspaceCodec.write( f, new Result[]{text}, 0 );
+		ArrayList<LazyResult> lazy = readLazy( f );
+
+		File copy = new File( dir, "copy.jst" );
+		WorkspaceCodec.write( copy, lazy.toArray( new Result[0] ), 0 );
+		assertFalse( lazy.get( 0 ).isResolved() );
+
+		ArrayList<Result> read = new ArrayList<>();
+		WorkspaceCodec.read( copy, read::add );
+		WorkspaceCodecTest.assertSameText( text, read.get( 0 ) );
+	}
+
+	@Test
+	void renamedPlaceholdersAreWrittenAndResolvedWithTheirNewName() throws Exception{
+		File f = new File( dir, "workspace.jst" );
+		WorkspaceCodec.write( f, new Result[]{WorkspaceCodecTest.text( "old", "ACGT" )}, 0 );
+		LazyResult lazy = readLazy( f ).get( 0 );
+		lazy.rename( "new" );
+
+		File copy = new File( dir, "copy.jst" );
+		WorkspaceCodec.write( copy, new Result[]{lazy}, 0 );
+		ArrayList<Result> read = new ArrayList<>();
+		WorkspaceCodec.read( copy, read::add );
+		assertEquals( "new", read.get( 0 ).getName() );
+		assertEquals( "new", lazy.resolve().getName() );
+	}
+
+}
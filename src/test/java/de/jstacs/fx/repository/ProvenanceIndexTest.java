@@ -0,0 +1,102 @@
+package de.jstacs.fx.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.jstacs.results.Result;
+
+/**
+ * Tests for determining unreferenced {@link Result}s by the {@link ProvenanceIndex} and persisting the provenance.
+ *
+ * @author Jan Grau
+ *
+ */
+class ProvenanceIndexTest {
+
+	private Result input = WorkspaceCodecTest.text( "input", "" );
+	private Result model = WorkspaceCodecTest.text( "model", "" );
+	private Result prediction = WorkspaceCodecTest.text( "prediction", "" );
+	private Result unused = WorkspaceCodecTest.text( "unused", "" );
+	private List<Result> results = Arrays.asList( input, model, prediction, unused );
+
+	/**
+	 * input -> model -> prediction, input -> unused
+	 */
+	private ProvenanceIndex create(){
+		ProvenanceIndex index = new ProvenanceIndex();
+		index.record( model, Arrays.asList( input ) );
+		index.record( prediction, Arrays.asList( model, input ) );
+		index.record( unused, Arrays.asList( input ) );
+		return index;
+	}
+
+	@Test
+	void nothingIsGarbageWithoutPins(){
+		assertTrue( create().getUnreachable( results ).isEmpty() );
+	}
+
+	@Test
+	void resultsNotUsedForPinnedResultsAreGarbage(){
+		ProvenanceIndex index = create();
+		index.setPinned( prediction, true );
+		assertEquals( Arrays.asList( unused ), index.getUnreachable( results ) );
+
+		index.setPinned( prediction, false );
+		index.setPinned( unused, true );
+		assertEquals( Arrays.asList( model, prediction ), index.getUnreachable( results ) );
+	}
+
+	@Test
+	void derivedResultsInheritTheInputsOfRemovedResults(){
+		ProvenanceIndex index = create();
+		index.removed( model );
+		assertEquals( Arrays.asList( input ), index.getInputs( prediction ) );
+		assertEquals( Arrays.asList( prediction, unused ), index.getDerived( input ) );
+	}
+
+	@Test
+	void replacementsKeepProvenanceAndPins(){
+		ProvenanceIndex index = create();
+		index.setPinned( model, true );
+		Result spilled = WorkspaceCodecTest.text( "model", "" );
+		index.replaced( model, spilled );
+
+		assertTrue( index.isPinned( spilled ) );
+		assertEquals( Arrays.asList( input ), index.getInputs( spilled ) );
+		List<Result> inputs = index.getInputs( prediction );
+		assertEquals( 2, inputs.size() );
+		assertTrue( inputs.contains( spilled ) && inputs.contains( input ) );
+		assertEquals( Arrays.asList( prediction, unused ), index.getUnreachable( Arrays.asList( input, spilled, prediction, unused ) ) );
+	}
+
+	@Test
+	void serializedProvenanceIsRestoredByPositionAndName() throws Exception{
+		ProvenanceIndex index = create();
+		index.setPinned( prediction, true );
+		List<String> lines = Arrays.asList( index.serialize( results ).split( "\n" ) );
+
+		ProvenanceIndex restored = new ProvenanceIndex();
+		assertEquals( 0, restored.deserialize( lines, results ) );
+		assertEquals( Arrays.asList( unused ), restored.getUnreachable( results ) );
+
+		//the name of the pinned result does not match anymore
+		List<Result> renamed = Arrays.asList( input, model, WorkspaceCodecTest.text( "other", "" ), unused );
+		restored = new ProvenanceIndex();
+		assertEquals( 3, restored.deserialize( lines, renamed ) );
+		assertTrue( restored.getUnreachable( renamed ).isEmpty() );
+	}
+
+	@Test
+	void otherFilesAreRejected(){
+		assertThrows( IOException.class, () -> new ProvenanceIndex().deserialize( Collections.singletonList( "no provenance" ), results ) );
+	}
+
+}
@@ -0,0 +1,106 @@
+package de.jstacs.fx.repository;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import de.jstacs.parameters.FileParameter.FileRepresentation;
+import de.jstacs.results.Result;
+import de.jstacs.results.ResultSet;
+import de.jstacs.results.ResultSetResult;
+import de.jstacs.results.TextResult;
+
+/**
+ * Tests for filtering the {@link Result}s of a {@link ResultIndex} by mime type and extended type.
+ *
+ * @author Jan Grau
+ *
+ */
+class ResultIndexTest {
+
+	private static TextResult text(String name, String mime, String extendedType){
+		return new TextResult( name, "", new FileRepresentation( name, name ), false, mime, "test", extendedType, false );
+	}
+
+	@Test
+	void normalizeSplitsAndLowerCasesMimeTypes(){
+		assertArrayEquals( new String[]{"fasta", "tsv"}, ResultIndex.normalize( " FASTA, tsv,,fasta" ) );
+		assertArrayEquals( new String[]{"fasta", "tsv"}, ResultIndex.normalize( "fasta", null, "tsv" ) );
+		assertArrayEquals( new String[0], ResultIndex.normalize( (String[])null ) );
+	}
+
+	@Test
+	void filterReturnsMatchingResultsInOrderOfAddition(){
+		ResultIndex index = new ResultIndex();
+		TextResult a = text( "a", "fasta", null );
+		TextResult b = text( "b", "tsv", null );
+		TextResult c = text( "c", "fasta", null );
+		index.add( a );
+		index.add( b );
+		index.add( c );
+
+		assertEquals( Arrays.asList( a, c ), index.filter( "fasta", null ) );
+		assertEquals( Arrays.asList( b ), index.filter( "tsv", null ) );
+		assertEquals( Arrays.asList( a, b, c ), index.filter( "tsv,fasta", null ) );
+		assertTrue( index.filter( "gff", null ).isEmpty() );
+	}
+
+	@Test
+	void filterByExtendedTypeKeepsResultsWithoutExtendedType(){
+		ResultIndex index = new ResultIndex();
+		TextResult dna = text( "dna", "fasta", "dna" );
+		TextResult protein = text( "protein", "fasta", "protein" );
+		TextResult any = text( "any", "fasta", null );
+		index.add( dna );
+		index.add( protein );
+		index.add( any );
+
+		assertEquals( Arrays.asList( dna, any ), index.filter( "fasta", "dna" ) );
+		assertEquals( Arrays.asList( dna, protein, any ), index.filter( "fasta", null ) );
+	}
+
+	@Test
+	void nestedResultsAreIndexedAndRemovedWithTheirParent(){
+		ResultIndex index = new ResultIndex();
+		TextResult top = text( "top", "fasta", null );
+		TextResult nested = text( "nested", "fasta", null );
+		ResultSetResult set = new ResultSetResult( "set", "", null, new ResultSet( new Result[]{nested, top} ) );
+		index.add( top );
+		index.add( set );
+
+		assertEquals( Arrays.asList( top, nested ), index.filter( "fasta", null ) );
+
+		//top is still contained in the repository as top-level result
+		index.remove( set );
+		assertEquals( Arrays.asList( top ), index.filter( "fasta", null ) );
+
+		index.remove( top );
+		assertTrue( index.filter( "fasta", null ).isEmpty() );
+	}
+
+	@Test
+	void replacementTakesThePositionOfTheReplacedResult(){
+		ResultIndex index = new ResultIndex();
+		TextResult a = text( "a", "fasta", null );
+		TextResult b = text( "b", "fasta", null );
+		TextResult c = text( "c", "fasta", null );
+		index.add( a );
+		index.add( b );
+		index.add( c );
+
+		TextResult replacement = text( "b", "fasta", null );
+		index.replace( b, replacement );
+		TextResult d = text( "d", "fasta", null );
+		index.add( d );
+
+		List<Result> filtered = index.filter( "fasta", null );
+		assertEquals( Arrays.asList( a, replacement, c, d ), filtered );
+		assertEquals( Arrays.asList( a, replacement, c, d ), index.filter( "fasta,tsv", null ) );
+	}
+
+}
@@ -0,0 +1,130 @@
+package de.jstacs.fx.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.jstacs.results.Result;
+import de.jstacs.results.ResultSet;
+import de.jstacs.results.ResultSetResult;
+import de.jstacs.results.TextResult;
+
+/**
+ * Tests for tokenizing and querying the contents of {@link TextResult}s in a {@link TextSearchIndex}.
+ *
+ * @author Jan Grau
+ *
+ */
+class TextSearchIndexTest {
+
+	@TempDir
+	File dir;
+
+	private static String hits(List<Object[]> hits){
+		StringBuilder sb = new StringBuilder();
+		for(int i=0;i<hits.size();i++){
+			sb.append( ((Result)hits.get( i )[0]).getName() ).append( ':' ).append( hits.get( i )[1] ).append( ' ' );
+		}
+		return sb.toString().trim();
+	}
+
+	private static TextSearchIndex index(Result... results) throws InterruptedException{
+		TextSearchIndex index = new TextSearchIndex();
+		for(int i=0;i<results.length;i++){
+			index.added( results[i] );
+		}
+		index.await();
+		return index;
+	}
+
+	@Test
+	void tokensAreCaseInsensitiveAndKeepInnerDots(){
+		assertEquals( new HashSet<>( Arrays.asList( "at1g01010.1", "foo_bar", "x" ) ),
+				new HashSet<>( Arrays.asList( TextSearchIndex.tokenize( "AT1G01010.1, Foo_Bar. ..x foo_bar" ) ) ) );
+		assertEquals( 0, TextSearchIndex.tokenize( " ,;. " ).length );
+	}
+
+	@Test
+	void queriesReturnLinesContainingAllTokens() throws Exception{
+		TextSearchIndex index = index(
+				WorkspaceCodecTest.text( "genes", "AT1G01010.1 NAC001\nAT1G01020.1 ARV1\nAT1G01030.1 NGA3" ),
+				WorkspaceCodecTest.text( "peaks", "chr1 100 AT1G01020.1\nchr2 200 other" ) );
+
+		assertEquals( "genes:1 peaks:0", hits( index.query( "at1g01020.1", 10 ) ) );
+		assertEquals( "genes:1", hits( index.query( "ARV1 AT1G01020.1", 10 ) ) );
+		assertEquals( "peaks:1", hits( index.query( "chr2", 10 ) ) );
+		assertEquals( "genes:1", hits( index.query( "at1g01020.1", 1 ) ) );
+		assertEquals( "", hits( index.query( "ARV1 chr1", 10 ) ) );
+	}
+
+	@Test
+	void lastTokenMayBeIncomplete() throws Exception{
+		TextSearchIndex index = index( WorkspaceCodecTest.text( "genes", "AT1G01010.1 NAC001\nAT1G01020.1 ARV1\nAT1G01030.1 NGA3" ) );
+
+		assertEquals( "genes:0 genes:1 genes:2", hits( index.query( "AT1G010", 10 ) ) );
+		assertEquals( "genes:2", hits( index.query( "AT1G01030.1 ng", 10 ) ) );
+		//only the last token is completed
+		assertEquals( "", hits( index.query( "ng AT1G01030.1", 10 ) ) );
+	}
+
+	@Test
+	void nestedTextResultsAreIndexed() throws Exception{
+		TextResult nested = WorkspaceCodecTest.text( "nested", "motif ACGTACGT" );
+		ResultSetResult set = new ResultSetResult( "set", "", null, new ResultSet( new Result[]{nested} ) );
+		TextSearchIndex index = index( set );
+
+		List<Object[]> hits = index.query( "motif", 10 );
+		assertEquals( 1, hits.size() );
+		assertSame( nested, hits.get( 0 )[0] );
+
+		index.removed( set );
+		assertTrue( index.query( "motif", 10 ).isEmpty() );
+	}
+
+	@Test
+	void removedResultsArePurged() throws Exception{
+		ArrayList<Result> results = new ArrayList<>();
+		for(int i=0;i<300;i++){
+			results.add( WorkspaceCodecTest.text( "r"+i, "common\nvalue"+i ) );
+		}
+		TextSearchIndex index = index( results.toArray( new Result[0] ) );
+		//removing most results purges the index in the background
+		for(int i=0;i<250;i++){
+			index.removed( results.get( i ) );
+		}
+		index.await();
+
+		assertEquals( 50, index.query( "common", 1000 ).size() );
+		assertEquals( "r250:0 r251:0", hits( index.query( "common", 2 ) ) );
+		assertEquals( "r299:1", hits( index.query( "value299", 10 ) ) );
+		assertEquals( "", hits( index.query( "value10", 10 ) ) );
+
+		index.added( results.get( 0 ) );
+		index.await();
+		assertEquals( "r0:1", hits( index.query( "value0", 10 ) ) );
+		assertEquals( 51, index.query( "common", 1000 ).size() );
+	}
+
+	@Test
+	void placeholdersAreIndexedWithoutResolvingThem() throws Exception{
+		File f = new File( dir, "workspace.jst" );
+		WorkspaceCodec.write( f, new Result[]{WorkspaceCodecTest.text( "lazy", "header\nAT1G01010.1" )}, 0 );
+		final ArrayList<Result> lazy = new ArrayList<>();
+		WorkspaceCodec.readLazy( f, lazy::add );
+		TextSearchIndex index = index( lazy.get( 0 ) );
+
+		assertEquals( "lazy:1", hits( index.query( "AT1G01010.1", 10 ) ) );
+		assertFalse( ((LazyResult)lazy.get( 0 )).isResolved() );
+	}
+
+}
@@ -0,0 +1,103 @@
+package de.jstacs.fx.repository;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.jstacs.parameters.FileParameter.FileRepresentation;
+import de.jstacs.results.CategoricalResult;
+import de.jstacs.results.Result;
+import de.jstacs.results.TextResult;
+
+/**
+ * Tests for writing workspace files by {@link WorkspaceCodec} and restoring the {@link Result}s therein.
+ *
+ * @author Jan Grau
+ *
+ */
+class WorkspaceCodecTest {
+
+	@TempDir
+	File dir;
+
+	static TextResult text(String name, String content){
+		return new TextResult( name, "comment of "+name, new FileRepresentation( name+".txt", content ), false, "txt", "test", null, false );
+	}
+
+	static void assertSameText(TextResult expected, Result actual){
+		assertTrue( actual instanceof TextResult );
+		TextResult text = (TextResult)actual;
+		assertEquals( expected.getName(), text.getName() );
+		assertEquals( expected.getComment(), text.getComment() );
+		assertEquals( expected.getMime(), text.getMime() );
+		assertEquals( expected.getValue().getFilename(), text.getValue().getFilename() );
+		assertEquals( expected.getValue().getContent(), text.getValue().getContent() );
+	}
+
+	@Test
+	void readRestoresWrittenResultsInOrder() throws Exception{
+		StringBuilder large = new StringBuilder();
+		for(int i=0;i<100000;i++){
+			large.append( "line " ).append( i ).append( " äöü\n" );
+		}
+		TextResult first = text( "first", "ACGT" );
+		TextResult second = text( "second", large.toString() );
+		CategoricalResult third = new CategoricalResult( "third", "comment", "value" );
+		File f = new File( dir, "workspace.jst" );
+		WorkspaceCodec.write( f, new Result[]{first, second, third}, 7 );
+
+		assertTrue( WorkspaceCodec.isWorkspaceFile( f ) );
+		ArrayList<Result> read = new ArrayList<>();
+		//the journal generation is stored in the file
+		assertEquals( 7, WorkspaceCodec.read( f, read::add ) );
+		assertEquals( 3, read.size() );
+		assertSameText( first, read.get( 0 ) );
+		assertSameText( second, read.get( 1 ) );
+		assertTrue( read.get( 2 ) instanceof CategoricalResult );
+		assertEquals( "third", read.get( 2 ).getName() );
+		assertEquals( "value", read.get( 2 ).getValue() );
+	}
+
+	@Test
+	void emptyWorkspaceCanBeRead() throws Exception{
+		File f = new File( dir, "empty.jst" );
+		WorkspaceCodec.write( f, new Result[0], 0 );
+
+		ArrayList<Result> read = new ArrayList<>();
+		WorkspaceCodec.read( f, read::add );
+		assertTrue( read.isEmpty() );
+	}
+
+	@Test
+	void otherFilesAreNoWorkspaceFiles() throws Exception{
+		File f = new File( dir, "legacy.xml" );
+		FileOutputStream out = new FileOutputStream( f );
+		out.write( "<results></results>".getBytes( StandardCharsets.UTF_8 ) );
+		out.close();
+
+		assertFalse( WorkspaceCodec.isWorkspaceFile( f ) );
+	}
+
+	@Test
+	void truncatedWorkspaceIsRejected() throws Exception{
+		File f = new File( dir, "truncated.jst" );
+		WorkspaceCodec.write( f, new Result[]{text( "a", "ACGT" ), text( "b", "TTTT" )}, 0 );
+		RandomAccessFile raf = new RandomAccessFile( f, "rw" );
+		raf.setLength( f.length()-6 );
+		raf.close();
+
+		assertThrows( IOException.class, () -> WorkspaceCodec.read( f, r -> {} ) );
+	}
+
+}
@@ -0,0 +1,165 @@
+package de.jstacs.fx.repository;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.jstacs.results.Result;
+
+/**
+ * Tests for appending modifications to a {@link WorkspaceJournal} and replaying them after a regular shutdown or a crash.
+ *
+ * @author Jan Grau
+ *
+ */
+class WorkspaceJournalTest {
+
+	@TempDir
+	File dir;
+
+	//failures are reported by the background Thread of the journal
+	private List<IOException> failures = Collections.synchronizedList( new ArrayList<IOException>() );
+
+	@AfterEach
+	void checkFailures(){
+		assertTrue( failures.isEmpty(), failures.toString() );
+	}
+
+	private WorkspaceJournal open(File snapshot){
+		return new WorkspaceJournal( snapshot, 0, failures::add );
+	}
+
+	/**
+	 * Journals the addition of the results with the given names, followed by the removal of the second result.
+	 */
+	private File write(String... names) throws Exception{
+		File snapshot = new File( dir, "workspace.jst" );
+		WorkspaceJournal journal = open( snapshot );
+		for(int i=0;i<names.length;i++){
+			journal.appendAdded( WorkspaceCodecTest.text( names[i], "content of "+names[i] ) );
+		}
+		journal.await( journal.appendRemoved( 1 ) );
+		journal.close();
+		return snapshot;
+	}
+
+	private static String[] getNames(ResultRepository repository){
+		List<Result> results = repository.getResults();
+		String[] names = new String[results.size()];
+		for(int i=0;i<names.length;i++){
+			names[i] = results.get( i ).getName();
+		}
+		return names;
+	}
+
+	@Test
+	void replayRestoresAdditionsAndRemovals() throws Exception{
+		File snapshot = write( "a", "b", "c" );
+
+		ResultRepository repository = new ResultRepository();
+		RecoveryReport report = new RecoveryReport();
+		assertEquals( 4, WorkspaceJournal.replay( snapshot, 0, false, repository, report ) );
+		assertArrayEquals( new String[]{"a", "c"}, getNames( repository ) );
+		WorkspaceCodecTest.assertSameText( WorkspaceCodecTest.text( "c", "content of c" ), repository.getResults().get( 1 ) );
+		assertTrue( report.isClean() );
+	}
+
+	@Test
+	void tornTailIsCutOff() throws Exception{
+		File snapshot = write( "a", "b", "c" );
+		File journal = WorkspaceJournal.getJournalFile( snapshot, 0 );
+		long length = journal.length();
+		//an addition of 50 bytes, of which only a few have been written before the crash
+		FileOutputStream out = new FileOutputStream( journal, true );
+		out.write( new byte[]{'a', 0, 0, 0, 50, 1, 2, 3, 4, 5, 6} );
+		out.close();
+
+		ResultRepository repository = new ResultRepository();
+		RecoveryReport report = new RecoveryReport();
+		assertEquals( 4, WorkspaceJournal.replay( snapshot, 0, false, repository, report ) );
+		assertArrayEquals( new String[]{"a", "c"}, getNames( repository ) );
+		assertEquals( length, journal.length() );
+		assertFalse( report.isClean() );
+		assertFalse( report.isPartial() );
+
+		//new records are appended after the repaired tail
+		WorkspaceJournal appended = open( snapshot );
+		appended.await( appended.appendAdded( WorkspaceCodecTest.text( "d", "" ) ) );
+		appended.close();
+		repository = new ResultRepository();
+		assertEquals( 5, WorkspaceJournal.replay( snapshot, 0, false, repository, new RecoveryReport() ) );
+		assertArrayEquals( new String[]{"a", "c", "d"}, getNames( repository ) );
+	}
+
+	@Test
+	void corruptedRecordsAreCutOff() throws Exception{
+		File snapshot = write( "a", "b", "c" );
+		File journal = WorkspaceJournal.getJournalFile( snapshot, 0 );
+		long length = journal.length();
+		//the removal is the last record, consisting of 9 bytes of header and the index
+		RandomAccessFile raf = new RandomAccessFile( journal, "rw" );
+		raf.seek( length-1 );
+		raf.write( 7 );
+		raf.close();
+
+		ResultRepository repository = new ResultRepository();
+		RecoveryReport report = new RecoveryReport();
+		assertEquals( 3, WorkspaceJournal.replay( snapshot, 0, false, repository, report ) );
+		assertArrayEquals( new String[]{"a", "b", "c"}, getNames( repository ) );
+		assertEquals( length-13, journal.length() );
+		assertFalse( report.isClean() );
+	}
+
+	@Test
+	void removalsAreIgnoredIfTheSnapshotIsLost() throws Exception{
+		File snapshot = write( "a", "b", "c" );
+
+		ResultRepository repository = new ResultRepository();
+		RecoveryReport report = new RecoveryReport();
+		WorkspaceJournal.replay( snapshot, 0, true, repository, report );
+		assertArrayEquals( new String[]{"a", "b", "c"}, getNames( repository ) );
+		assertTrue( report.isPartial() );
+	}
+
+	@Test
+	void generationsBeforeTheSnapshotAreDiscarded() throws Exception{
+		File snapshot = new File( dir, "workspace.jst" );
+		WorkspaceJournal journal = open( snapshot );
+		journal.appendAdded( WorkspaceCodecTest.text( "old", "" ) );
+		int generation = journal.rotate();
+		long sequence = journal.appendAdded( WorkspaceCodecTest.text( "new", "" ) );
+		journal.discardBefore( generation );
+		journal.await( sequence );
+		journal.close();
+
+		assertArrayEquals( new int[]{generation}, WorkspaceJournal.getGenerations( snapshot ) );
+		ResultRepository repository = new ResultRepository();
+		WorkspaceJournal.replay( snapshot, generation, false, repository, new RecoveryReport() );
+		assertArrayEquals( new String[]{"new"}, getNames( repository ) );
+	}
+
+	@Test
+	void otherFilesAreNoJournals() throws Exception{
+		File snapshot = new File( dir, "workspace.jst" );
+		FileOutputStream out = new FileOutputStream( WorkspaceJournal.getJournalFile( snapshot, 0 ) );
+		out.write( "no journal at all".getBytes() );
+		out.close();
+
+		assertThrows( IOException.class, () -> WorkspaceJournal.replay( snapshot, 0, false, new ResultRepository(), new RecoveryReport() ) );
+	}
+
+}